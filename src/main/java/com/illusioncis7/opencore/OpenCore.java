@@ -56,6 +56,9 @@ public class OpenCore extends JavaPlugin {
     private com.illusioncis7.opencore.setup.SetupManager setupManager;
     private com.illusioncis7.opencore.reputation.ChatAnalyzerTask chatAnalyzerTask;
     private org.bukkit.scheduler.BukkitTask chatAnalyzerTimer;
+    private ChatLogger chatLogger;
+    private com.illusioncis7.opencore.logging.ChatArchive chatArchive;
+    private com.illusioncis7.opencore.logging.ChatStore chatStore;
 
     private boolean moduleConfigGrabber = true;
     private boolean moduleSuggestions = true;
@@ -92,6 +95,7 @@ public class OpenCore extends JavaPlugin {
             moduleSuggestions = mods.getBoolean("suggestions", true);
             moduleChatAnalyzer = mods.getBoolean("chat-analyzer", true);
         }
+        String chatStoreType = modCfg.getString("chat-store", "database");
 
         database = new Database(this);
         database.connect();
@@ -124,6 +128,8 @@ public class OpenCore extends JavaPlugin {
         }
 
         votingService = new VotingService(this, database, gptService, configService, ruleService, reputationService, planHook);
+        // handlers of durable GPT work are registered by now
+        gptService.replayPending();
 
         webTokenService = new WebTokenService(this, database);
         commentService = new com.illusioncis7.opencore.web.SuggestionCommentService(this, database);
@@ -170,7 +176,11 @@ public class OpenCore extends JavaPlugin {
 
         com.illusioncis7.opencore.admin.StatusCommand statusCmd = new com.illusioncis7.opencore.admin.StatusCommand(gptQueueManager, votingService, database, gptService);
 
-        com.illusioncis7.opencore.admin.ImportSqlCommand importSqlCmd = new com.illusioncis7.opencore.admin.ImportSqlCommand(database);
+        com.illusioncis7.opencore.admin.ImportSqlCommand importSqlCmd = new com.illusioncis7.opencore.admin.ImportSqlCommand(this, database);
+
+        com.illusioncis7.opencore.admin.ExportCommand exportCmd = new com.illusioncis7.opencore.admin.ExportCommand(this, database);
+
+        com.illusioncis7.opencore.admin.ImportDataCommand importDataCmd = new com.illusioncis7.opencore.admin.ImportDataCommand(this, database);
 
         com.illusioncis7.opencore.config.command.ConfigListCommand cfgListCmd = new com.illusioncis7.opencore.config.command.ConfigListCommand(configService);
 
@@ -196,11 +206,15 @@ public class OpenCore extends JavaPlugin {
         coreCommand.register("chatflags", chatFlagsCmd);
         coreCommand.register("reload", reloadCmd);
         coreCommand.register("importsql", importSqlCmd);
+        coreCommand.register("export", exportCmd);
+        coreCommand.register("importdata", importDataCmd);
         coreCommand.register("chatanalyze", chatAnalyzeCmd);
 
         Objects.requireNonNull(getCommand("opencore")).setExecutor(coreCommand);
         getCommand("opencore").setTabCompleter(coreCommand);
 
+        chatArchive = new com.illusioncis7.opencore.logging.ChatArchive(this);
+        chatStore = createChatStore(chatStoreType);
         if (moduleChatAnalyzer) {
             startChatAnalyzer();
         } else {
@@ -216,7 +230,12 @@ public class OpenCore extends JavaPlugin {
             }.runTaskTimerAsynchronously(this, 0L, 30 * 60 * 20L);
         }
 
-        getServer().getPluginManager().registerEvents(new ChatLogger(database, getLogger()), this);
+        chatLogger = new ChatLogger(this, chatStore);
+        chatLogger.start();
+        getServer().getPluginManager().registerEvents(chatLogger, this);
+        if (chatStore instanceof com.illusioncis7.opencore.logging.JdbcChatStore && chatArchive.isEnabled()) {
+            new com.illusioncis7.opencore.logging.ChatRetentionTask(this, database, chatArchive).start(this);
+        }
         getServer().getPluginManager().registerEvents(new PlayerJoinListener(reputationService, getLogger(), planHook, messageService), this);
         getServer().getPluginManager().registerEvents(gptResponseHandler, this);
 
@@ -225,9 +244,16 @@ public class OpenCore extends JavaPlugin {
                         new File(getDataFolder(), "api.yml"));
         int port = apiCfg.getInt("port", 0);
         boolean exposeRep = apiCfg.getBoolean("expose-reputations", true);
+        boolean exposeMetrics = apiCfg.getBoolean("expose-metrics", false);
+        boolean exposeExport = apiCfg.getBoolean("expose-export", false);
+        boolean exposeGptUsage = apiCfg.getBoolean("expose-gpt-usage", false);
         try {
             apiServer = new com.illusioncis7.opencore.api.ApiServer(port, exposeRep, votingService,
-                    reputationService, chatFlagService, ruleService, configService, setupManager, getLogger());
+                    reputationService, chatFlagService, ruleService, configService, setupManager,
+                    exposeMetrics ? database : null,
+                    exposeExport ? new com.illusioncis7.opencore.database.DataExporter(this, database) : null,
+                    exposeGptUsage ? gptService.getTelemetry() : null,
+                    getLogger());
         } catch (Exception e) {
             getLogger().warning("Failed to start API server: " + e.getMessage());
         }
@@ -235,12 +261,19 @@ public class OpenCore extends JavaPlugin {
 
     @Override
     public void onDisable() {
-        if (database != null) {
-            database.disconnect();
+        if (chatLogger != null) {
+            chatLogger.shutdown();
+        }
+        if (chatStore != null) {
+            chatStore.close();
         }
         if (gptService != null) {
+            // writes its last usage minute, so before the database goes away
             gptService.shutdown();
         }
+        if (database != null) {
+            database.disconnect();
+        }
         if (gptQueueManager != null) {
             gptQueueManager.stop();
         }
@@ -252,6 +285,34 @@ public class OpenCore extends JavaPlugin {
         }
     }
 
+    public com.illusioncis7.opencore.logging.ChatArchive getChatArchive() {
+        return chatArchive;
+    }
+
+    public com.illusioncis7.opencore.logging.ChatStore getChatStore() {
+        return chatStore;
+    }
+
+    /**
+     * Create the chat store selected by <code>chat-store</code> in modules.yml.
+     * Falls back to the database if the journal cannot be opened.
+     */
+    private com.illusioncis7.opencore.logging.ChatStore createChatStore(String type) {
+        if ("journal".equalsIgnoreCase(type)) {
+            try {
+                com.illusioncis7.opencore.logging.JournalChatStore journal =
+                        com.illusioncis7.opencore.logging.JournalChatStore.fromConfig(this);
+                getLogger().info("Chat messages are stored in the chat journal (" + journal.getMessageCount() + " messages)");
+                return journal;
+            } catch (java.io.IOException e) {
+                getLogger().severe("Failed to open chat journal, using the database: " + e.getMessage());
+            }
+        } else if (!"database".equalsIgnoreCase(type)) {
+            getLogger().warning("Unknown chat-store '" + type + "', using the database");
+        }
+        return new com.illusioncis7.opencore.logging.JdbcChatStore(database, chatArchive);
+    }
+
     public Database getDatabase() {
         return database;
     }
@@ -318,7 +379,7 @@ public class OpenCore extends JavaPlugin {
     /** Start the periodic chat analyzer using the configured interval. */
     private void startChatAnalyzer() {
         int ticks = reputationService.getAnalysisIntervalMinutes() * 60 * 20;
-        chatAnalyzerTask = new com.illusioncis7.opencore.reputation.ChatAnalyzerTask(database, gptService, reputationService, chatFlagService, ruleService, getLogger());
+        chatAnalyzerTask = new com.illusioncis7.opencore.reputation.ChatAnalyzerTask(database, chatStore, gptService, reputationService, chatFlagService, ruleService, getLogger());
         chatAnalyzerTimer = chatAnalyzerTask.runTaskTimerAsynchronously(this, 0L, ticks);
     }
 
@@ -329,7 +390,7 @@ public class OpenCore extends JavaPlugin {
         }
         int ticks = reputationService.getAnalysisIntervalMinutes() * 60 * 20;
         chatAnalyzerTask = new com.illusioncis7.opencore.reputation.ChatAnalyzerTask(
-                database, gptService, reputationService, chatFlagService, ruleService, getLogger());
+                database, chatStore, gptService, reputationService, chatFlagService, ruleService, getLogger());
         chatAnalyzerTimer = chatAnalyzerTask.runTaskTimerAsynchronously(this, ticks, ticks);
     }
 
@@ -0,0 +1,92 @@
+package com.illusioncis7.opencore.admin;
+
+import com.illusioncis7.opencore.OpenCore;
+import com.illusioncis7.opencore.database.DataExporter;
+import com.illusioncis7.opencore.database.Database;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes a compressed NDJSON export of all OpenCore tables to
+ * <code>exports/</code> inside the plugin folder. Runs asynchronously and
+ * reports its progress to the sender.
+ */
+public class ExportCommand implements TabExecutor {
+
+    private final OpenCore plugin;
+    private final Database database;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public ExportCommand(OpenCore plugin, Database database) {
+        this.plugin = plugin;
+        this.database = database;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (!sender.hasPermission("opencore.command.export")) {
+            plugin.getMessageService().send(sender, "no_permission", null);
+            return true;
+        }
+        if (args.length != 0) {
+            plugin.getMessageService().send(sender, "export.usage", null);
+            return true;
+        }
+        if (!running.compareAndSet(false, true)) {
+            plugin.getMessageService().send(sender, "export.running", null);
+            return true;
+        }
+
+        String name = "opencore-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT).format(new Date()) + ".ndjson.gz";
+        File file = new File(new File(plugin.getDataFolder(), "exports"), name);
+        plugin.getMessageService().send(sender, "export.started", Map.of("file", "exports/" + name));
+        DataExporter exporter = new DataExporter(plugin, database);
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                DataExporter.Result result = exporter.export(file, (table, rows, rate) -> {
+                    Map<String, String> ph = new HashMap<>();
+                    ph.put("table", table);
+                    ph.put("rows", String.valueOf(rows));
+                    ph.put("rate", String.format(Locale.ROOT, "%.0f", rate));
+                    reply(sender, "export.progress", ph);
+                });
+                Map<String, String> ph = new HashMap<>();
+                ph.put("file", "exports/" + name);
+                ph.put("tables", String.valueOf(result.tables));
+                ph.put("rows", String.valueOf(result.rows));
+                ph.put("seconds", String.format(Locale.ROOT, "%.1f", result.elapsedMs / 1000.0));
+                ph.put("size", String.format(Locale.ROOT, "%.1f", file.length() / 1048576.0));
+                if (result.success) {
+                    reply(sender, "export.success", ph);
+                } else {
+                    ph.put("error", String.valueOf(result.error));
+                    reply(sender, "export.failed", ph);
+                }
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    private void reply(CommandSender sender, String key, Map<String, String> placeholders) {
+        Bukkit.getScheduler().runTask(plugin, () -> plugin.getMessageService().send(sender, key, placeholders));
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,103 @@
+package com.illusioncis7.opencore.admin;
+
+import com.illusioncis7.opencore.OpenCore;
+import com.illusioncis7.opencore.database.DataImporter;
+import com.illusioncis7.opencore.database.Database;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loads an export written by <code>/opencore export</code> into the active
+ * database. The file must be located inside the plugin folder.
+ */
+public class ImportDataCommand implements TabExecutor {
+
+    private final OpenCore plugin;
+    private final Database database;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public ImportDataCommand(OpenCore plugin, Database database) {
+        this.plugin = plugin;
+        this.database = database;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (!sender.hasPermission("opencore.command.importdata")) {
+            plugin.getMessageService().send(sender, "no_permission", null);
+            return true;
+        }
+        boolean replace = args.length == 2 && args[1].equalsIgnoreCase("replace");
+        if (args.length != 1 && !replace) {
+            plugin.getMessageService().send(sender, "importdata.usage", null);
+            return true;
+        }
+        if (!running.compareAndSet(false, true)) {
+            plugin.getMessageService().send(sender, "importdata.running", null);
+            return true;
+        }
+
+        File file = new File(plugin.getDataFolder(), args[0]);
+        plugin.getMessageService().send(sender, "importdata.started", Map.of("file", file.getName()));
+        DataImporter importer = new DataImporter(plugin, database);
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                DataImporter.Result result = importer.run(file, replace, (table, rows, rate) -> {
+                    Map<String, String> ph = new HashMap<>();
+                    ph.put("table", table);
+                    ph.put("rows", String.valueOf(rows));
+                    ph.put("rate", String.format(Locale.ROOT, "%.0f", rate));
+                    reply(sender, "importdata.progress", ph);
+                });
+                Map<String, String> ph = new HashMap<>();
+                ph.put("tables", String.valueOf(result.tables));
+                ph.put("rows", String.valueOf(result.rows));
+                ph.put("seconds", String.format(Locale.ROOT, "%.1f", result.elapsedMs / 1000.0));
+                ph.put("rate", String.format(Locale.ROOT, "%.0f", result.rowsPerSecond()));
+                if (result.success) {
+                    reply(sender, "importdata.success", ph);
+                } else {
+                    ph.put("error", String.valueOf(result.error));
+                    reply(sender, "importdata.failed", ph);
+                }
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    private void reply(CommandSender sender, String key, Map<String, String> placeholders) {
+        Bukkit.getScheduler().runTask(plugin, () -> plugin.getMessageService().send(sender, key, placeholders));
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        if (args.length == 1) {
+            List<String> files = new ArrayList<>();
+            String[] names = new File(plugin.getDataFolder(), "exports").list((dir, n) -> n.endsWith(".ndjson.gz"));
+            if (names != null) {
+                for (String n : names) {
+                    files.add("exports/" + n);
+                }
+            }
+            Collections.sort(files);
+            return files;
+        }
+        if (args.length == 2) {
+            return Collections.singletonList("replace");
+        }
+        return Collections.emptyList();
+    }
+}
@@ -2,50 +2,91 @@ package com.illusioncis7.opencore.admin;
 
 import com.illusioncis7.opencore.OpenCore;
 import com.illusioncis7.opencore.database.Database;
+import com.illusioncis7.opencore.database.SqlImporter;
+import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabExecutor;
 
 import java.io.File;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Imports SQL statements from a file into the active database.
- * The file must be located inside the plugin folder.
+ * The file must be located inside the plugin folder. The import runs
+ * asynchronously and reports its progress to the sender.
  */
 public class ImportSqlCommand implements TabExecutor {
 
+    private final OpenCore plugin;
     private final Database database;
+    private final AtomicBoolean running = new AtomicBoolean();
 
-    public ImportSqlCommand(Database database) {
+    public ImportSqlCommand(OpenCore plugin, Database database) {
+        this.plugin = plugin;
         this.database = database;
     }
 
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
         if (!sender.hasPermission("opencore.command.importsql")) {
-            OpenCore.getInstance().getMessageService().send(sender, "no_permission", null);
+            plugin.getMessageService().send(sender, "no_permission", null);
             return true;
         }
-        if (args.length != 1) {
-            OpenCore.getInstance().getMessageService().send(sender, "importsql.usage", null);
+        boolean resume = args.length == 2 && args[1].equalsIgnoreCase("resume");
+        if (args.length != 1 && !resume) {
+            plugin.getMessageService().send(sender, "importsql.usage", null);
             return true;
         }
-
-        File file = new File(OpenCore.getInstance().getDataFolder(), args[0]);
-        boolean result = database.executeSqlFile(file);
-        if (result) {
-            OpenCore.getInstance().getMessageService().send(sender, "importsql.success", null);
-        } else {
-            OpenCore.getInstance().getMessageService().send(sender, "importsql.failed", null);
+        if (!running.compareAndSet(false, true)) {
+            plugin.getMessageService().send(sender, "importsql.running", null);
+            return true;
         }
+
+        File file = new File(plugin.getDataFolder(), args[0]);
+        plugin.getMessageService().send(sender, "importsql.started", Map.of("file", file.getName()));
+        SqlImporter importer = new SqlImporter(plugin, database);
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                SqlImporter.Result result = importer.run(file, resume, (statements, rows, rate) -> {
+                    Map<String, String> ph = new HashMap<>();
+                    ph.put("statements", String.valueOf(statements));
+                    ph.put("rows", String.valueOf(rows));
+                    ph.put("rate", String.format(Locale.ROOT, "%.0f", rate));
+                    reply(sender, "importsql.progress", ph);
+                });
+                Map<String, String> ph = new HashMap<>();
+                ph.put("statements", String.valueOf(result.statements));
+                ph.put("rows", String.valueOf(result.rows));
+                ph.put("seconds", String.format(Locale.ROOT, "%.1f", result.elapsedMs / 1000.0));
+                ph.put("rate", String.format(Locale.ROOT, "%.0f", result.rowsPerSecond()));
+                if (result.success) {
+                    reply(sender, "importsql.success", ph);
+                } else {
+                    ph.put("error", String.valueOf(result.error));
+                    reply(sender, "importsql.failed", ph);
+                }
+            } finally {
+                running.set(false);
+            }
+        });
         return true;
     }
 
+    private void reply(CommandSender sender, String key, Map<String, String> placeholders) {
+        Bukkit.getScheduler().runTask(plugin, () -> plugin.getMessageService().send(sender, key, placeholders));
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        if (args.length == 2) {
+            return Collections.singletonList("resume");
+        }
         return Collections.emptyList();
     }
 }
-
@@ -1,8 +1,19 @@
 package com.illusioncis7.opencore.admin;
 
 import com.illusioncis7.opencore.database.Database;
+import com.illusioncis7.opencore.gpt.CircuitBreaker;
+import com.illusioncis7.opencore.gpt.GptPriority;
+import com.illusioncis7.opencore.gpt.GptProvider;
 import com.illusioncis7.opencore.gpt.GptQueueManager;
+import com.illusioncis7.opencore.gpt.GptResponseCache;
+import com.illusioncis7.opencore.gpt.GptScheduler;
 import com.illusioncis7.opencore.gpt.GptService;
+import com.illusioncis7.opencore.gpt.GptTelemetry;
+import com.illusioncis7.opencore.gpt.GptTransport;
+import com.illusioncis7.opencore.gpt.RateLimiter;
+import com.illusioncis7.opencore.message.MessageService;
+import com.illusioncis7.opencore.metrics.PoolStats;
+import com.illusioncis7.opencore.metrics.QueryMetrics;
 import com.illusioncis7.opencore.voting.VotingService;
 import org.bukkit.command.Command;
 import org.bukkit.command.TabExecutor;
@@ -11,6 +22,7 @@ import com.illusioncis7.opencore.OpenCore;
 import java.util.HashMap;
 
 import java.util.Collections;
+import java.util.Locale;
 
 public class StatusCommand implements TabExecutor {
     private final GptQueueManager queueManager;
@@ -32,13 +44,35 @@ public class StatusCommand implements TabExecutor {
             OpenCore.getInstance().getMessageService().send(sender, "no_permission", null);
             return true;
         }
-        int queue = queueManager.getQueueSize();
+        if (args.length > 0 && args[0].equalsIgnoreCase("db")) {
+            sendDatabaseStatus(sender);
+            return true;
+        }
+        if (args.length > 0 && args[0].equalsIgnoreCase("gpt")) {
+            sendGptUsage(sender);
+            return true;
+        }
+        // background jobs of the queue manager are part of the service's queue
+        int queue = gptService.getQueueDepth();
         int open = votingService.getOpenSuggestions().size();
         long ping = database.ping();
         long last = gptService.getLastResponseDuration();
         java.util.Map<String,String> ph = new HashMap<>();
         ph.put("queue", String.valueOf(queue));
+        ph.put("inflight", String.valueOf(gptService.getInFlight()));
+        ph.put("max", String.valueOf(gptService.getMaxConcurrent()));
+        ph.put("wait", String.format(java.util.Locale.ROOT, "%.1f", gptService.getWaitTimes().percentile(0.95) / 1000.0));
+        ph.put("oldest", String.valueOf(gptService.getOldestWaitMs() / 1000));
         OpenCore.getInstance().getMessageService().send(sender, "status.queue", ph);
+        GptScheduler scheduler = gptService.getScheduler();
+        ph = new HashMap<>();
+        for (GptPriority priority : GptPriority.values()) {
+            String name = priority.name().toLowerCase(Locale.ROOT);
+            ph.put(name, String.valueOf(scheduler.size(priority)));
+            ph.put(name + "_wait", String.format(Locale.ROOT, "%.1f",
+                    scheduler.getWaitTimes(priority).percentile(0.95) / 1000.0));
+        }
+        OpenCore.getInstance().getMessageService().send(sender, "status.classes", ph);
         ph = new HashMap<>();
         ph.put("open", String.valueOf(open));
         OpenCore.getInstance().getMessageService().send(sender, "status.open", ph);
@@ -48,11 +82,158 @@ public class StatusCommand implements TabExecutor {
         ph = new HashMap<>();
         ph.put("last", last >= 0 ? last + " ms" : "n/a");
         OpenCore.getInstance().getMessageService().send(sender, "status.last", ph);
+        RateLimiter limiter = gptService.getRateLimiter();
+        ph = new HashMap<>();
+        ph.put("requests", limiter.getRequestLimit() > 0 ? String.valueOf(limiter.getRemainingRequests()) : "-");
+        ph.put("rpm", limiter.getRequestLimit() > 0 ? String.valueOf(limiter.getRequestLimit()) : "?");
+        ph.put("tokens", limiter.getTokenLimit() > 0 ? String.valueOf(limiter.getRemainingTokens()) : "-");
+        ph.put("tpm", limiter.getTokenLimit() > 0 ? String.valueOf(limiter.getTokenLimit()) : "?");
+        ph.put("throttled", String.valueOf(limiter.getRateLimitedCount()));
+        long paused = limiter.getPausedMs();
+        String pausedText = "";
+        if (paused > 0) {
+            pausedText = String.join("", OpenCore.getInstance().getMessageService().getMessage(
+                    "status.paused", java.util.Map.of("seconds", String.valueOf((paused + 999) / 1000))));
+        }
+        ph.put("paused", pausedText);
+        OpenCore.getInstance().getMessageService().send(sender, "status.limits", ph);
+        GptResponseCache cache = gptService.getCache();
+        long hits = cache.getMemoryHits() + cache.getDatabaseHits();
+        long lookups = hits + cache.getMisses();
+        ph = new HashMap<>();
+        ph.put("hits", String.valueOf(hits));
+        ph.put("memory", String.valueOf(cache.getMemoryHits()));
+        ph.put("misses", String.valueOf(cache.getMisses()));
+        ph.put("rate", lookups > 0 ? String.valueOf(hits * 100 / lookups) : "0");
+        OpenCore.getInstance().getMessageService().send(sender, "status.cache", ph);
+        ph = new HashMap<>();
+        ph.put("count", String.valueOf(gptService.getRenderTimes().getCount()));
+        ph.put("render", String.format(Locale.ROOT, "%.3f", gptService.getRenderTimes().percentile(0.95)));
+        OpenCore.getInstance().getMessageService().send(sender, "status.render", ph);
+        for (GptProvider provider : gptService.getRouter().getProviders()) {
+            CircuitBreaker breaker = provider.getCircuitBreaker();
+            ph = new HashMap<>();
+            ph.put("remaining", String.valueOf((breaker.getRemainingOpenMs() + 999) / 1000));
+            String state = String.join("", OpenCore.getInstance().getMessageService().getMessage(
+                    "status.breaker_state." + breaker.getState().name().toLowerCase(Locale.ROOT), ph));
+            ph = new HashMap<>();
+            ph.put("name", provider.name);
+            ph.put("state", state);
+            ph.put("rate", String.valueOf(Math.round(breaker.getFailureRate() * 100)));
+            ph.put("opened", String.valueOf(breaker.getOpenedCount()));
+            ph.put("health", String.valueOf(Math.round(provider.getHealth() * 100)));
+            ph.put("latency", provider.getLatencyMs() < 0 ? "-" : String.valueOf(Math.round(provider.getLatencyMs())));
+            OpenCore.getInstance().getMessageService().send(sender, "status.provider", ph);
+        }
+        ph = new HashMap<>();
+        ph.put("hedges", String.valueOf(gptService.getHedgesSent()));
+        ph.put("wins", String.valueOf(gptService.getHedgeWins()));
+        OpenCore.getInstance().getMessageService().send(sender, "status.hedging", ph);
+        GptTransport transport = gptService.getTransport();
+        if (transport != null) {
+            long plain = transport.getBytesReceivedPlain();
+            ph = new HashMap<>();
+            ph.put("active", String.valueOf(transport.getActive()));
+            ph.put("h2", String.valueOf(transport.getHttp2Responses()));
+            ph.put("total", String.valueOf(transport.getExchanges()));
+            ph.put("errors", String.valueOf(transport.getErrors()));
+            ph.put("sent", String.valueOf(transport.getBytesSent() / 1024));
+            ph.put("received", String.valueOf(transport.getBytesReceived() / 1024));
+            ph.put("saved", plain > 0 ? String.valueOf(100 - transport.getBytesReceived() * 100 / plain) : "0");
+            ph.put("queued", String.valueOf(transport.getQueuedCallbacks()));
+            OpenCore.getInstance().getMessageService().send(sender, "status.transport", ph);
+        }
         return true;
     }
 
+    private void sendDatabaseStatus(CommandSender sender) {
+        MessageService messages = OpenCore.getInstance().getMessageService();
+        QueryMetrics metrics = database.getQueryMetrics();
+        if (metrics == null) {
+            messages.send(sender, "status.db.disabled", null);
+            return;
+        }
+        for (PoolStats pool : database.getPoolStats()) {
+            java.util.Map<String, String> ph = new HashMap<>();
+            ph.put("name", pool.name);
+            ph.put("active", String.valueOf(pool.active));
+            ph.put("max", String.valueOf(pool.max));
+            ph.put("idle", String.valueOf(pool.idle));
+            ph.put("waiting", String.valueOf(pool.waiting));
+            ph.put("wait", pool.waitTime != null ? format(pool.waitTime.percentile(0.95)) : "n/a");
+            messages.send(sender, "status.db.pool", ph);
+        }
+        long[] writer = database.getWriterCommitStats();
+        if (writer != null) {
+            java.util.Map<String, String> ph = new HashMap<>();
+            ph.put("groups", String.valueOf(writer[0]));
+            ph.put("writes", String.valueOf(writer[1]));
+            ph.put("avg", writer[0] > 0 ? format((double) writer[1] / writer[0]) : "0");
+            ph.put("queue", String.valueOf(database.getPendingWrites()));
+            messages.send(sender, "status.db.writer", ph);
+        }
+        messages.send(sender, "status.db.header",
+                Collections.singletonMap("threshold", String.valueOf(metrics.getSlowThresholdMs())));
+        int shown = 0;
+        for (QueryMetrics.QueryStats q : metrics.getQueries()) {
+            if (shown++ >= 10) break;
+            java.util.Map<String, String> ph = new HashMap<>();
+            ph.put("key", q.key);
+            ph.put("count", String.valueOf(q.latency.getCount()));
+            ph.put("p50", format(q.latency.percentile(0.50)));
+            ph.put("p95", format(q.latency.percentile(0.95)));
+            ph.put("p99", format(q.latency.percentile(0.99)));
+            ph.put("slow", String.valueOf(q.getSlowCount()));
+            messages.send(sender, "status.db.query", ph);
+        }
+    }
+
+    private void sendGptUsage(CommandSender sender) {
+        MessageService messages = OpenCore.getInstance().getMessageService();
+        java.util.Map<String, GptTelemetry.Stats> totals = gptService.getTelemetry().getTotals();
+        if (totals.isEmpty()) {
+            messages.send(sender, "status.gpt.none", null);
+            return;
+        }
+        messages.send(sender, "status.gpt.header", null);
+        long prompt = 0;
+        long completion = 0;
+        double cost = 0.0;
+        for (java.util.Map.Entry<String, GptTelemetry.Stats> e : totals.entrySet()) {
+            GptTelemetry.Stats stats = e.getValue();
+            java.util.Map<String, String> ph = new HashMap<>();
+            ph.put("module", e.getKey());
+            ph.put("ok", String.valueOf(stats.getSuccesses()));
+            ph.put("failed", String.valueOf(stats.getFailures()));
+            ph.put("retries", String.valueOf(stats.getRetries()));
+            ph.put("throttled", String.valueOf(stats.getRateLimited()));
+            ph.put("cached", String.valueOf(stats.getCacheHits()));
+            ph.put("p50", format(stats.latency.percentile(0.50) / 1000.0));
+            ph.put("p95", format(stats.latency.percentile(0.95) / 1000.0));
+            ph.put("prompt", String.valueOf(stats.getPromptTokens()));
+            ph.put("completion", String.valueOf(stats.getCompletionTokens()));
+            ph.put("cost", String.format(Locale.ROOT, "%.4f", stats.getCost()));
+            messages.send(sender, "status.gpt.module", ph);
+            prompt += stats.getPromptTokens();
+            completion += stats.getCompletionTokens();
+            cost += stats.getCost();
+        }
+        java.util.Map<String, String> ph = new HashMap<>();
+        ph.put("prompt", String.valueOf(prompt));
+        ph.put("completion", String.valueOf(completion));
+        ph.put("cost", String.format(Locale.ROOT, "%.4f", cost));
+        messages.send(sender, "status.gpt.total", ph);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
     @Override
     public java.util.List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        if (args.length == 1) {
+            return java.util.Arrays.asList("db", "gpt");
+        }
         return Collections.emptyList();
     }
 }
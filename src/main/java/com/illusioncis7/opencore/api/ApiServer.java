@@ -4,6 +4,9 @@ import com.illusioncis7.opencore.rules.Rule;
 import com.illusioncis7.opencore.rules.RuleService;
 import com.illusioncis7.opencore.config.ConfigService;
 import com.illusioncis7.opencore.config.ConfigParameter;
+import com.illusioncis7.opencore.database.DataExporter;
+import com.illusioncis7.opencore.database.Database;
+import com.illusioncis7.opencore.gpt.GptTelemetry;
 import com.illusioncis7.opencore.setup.SetupManager;
 import com.illusioncis7.opencore.reputation.ReputationService;
 import com.illusioncis7.opencore.reputation.ReputationService.PlayerReputation;
@@ -22,6 +25,8 @@ import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
 /**
@@ -37,10 +42,16 @@ public class ApiServer {
     private final Logger logger;
     private HttpServer server;
     private final boolean exposeReputations;
+    private final Database database;
+    private final DataExporter exporter;
+    private final GptTelemetry telemetry;
+    private ExecutorService executor;
 
     public ApiServer(int port, boolean exposeReputations, VotingService votingService, ReputationService reputationService,
                      ChatReputationFlagService chatFlagService,
-                     RuleService ruleService, ConfigService configService, SetupManager setupManager, Logger logger) throws IOException {
+                     RuleService ruleService, ConfigService configService, SetupManager setupManager,
+                     Database metricsDatabase, DataExporter exporter, GptTelemetry telemetry,
+                     Logger logger) throws IOException {
         this.votingService = votingService;
         this.reputationService = reputationService;
         this.chatFlagService = chatFlagService;
@@ -49,8 +60,14 @@ public class ApiServer {
         this.setupManager = setupManager;
         this.logger = logger;
         this.exposeReputations = exposeReputations;
+        this.database = metricsDatabase;
+        this.exporter = exporter;
+        this.telemetry = telemetry;
         if (port > 0) {
             server = HttpServer.create(new InetSocketAddress(port), 0);
+            // a streaming export must not hold up the other endpoints
+            executor = Executors.newFixedThreadPool(4);
+            server.setExecutor(executor);
             registerContexts();
             server.start();
             logger.info("API server listening on port " + port);
@@ -66,6 +83,15 @@ public class ApiServer {
             server.createContext("/api/reputations", exchange -> handle(exchange, this::writeReputations));
         }
         server.createContext("/api/chatflags", exchange -> handle(exchange, this::writeChatFlags));
+        if (database != null && database.getQueryMetrics() != null) {
+            server.createContext("/metrics", exchange -> handle(exchange, this::writeMetrics));
+        }
+        if (exporter != null) {
+            server.createContext("/admin/export", this::handleExport);
+        }
+        if (telemetry != null) {
+            server.createContext("/api/gpt/usage", this::handleGptUsage);
+        }
 
         server.createContext("/setup/status", this::handleSetupStatus);
         server.createContext("/setup/rules", this::handleRulesGet);
@@ -116,6 +142,12 @@ public class ApiServer {
         return new JSONObject().put("suggestions", arr);
     }
 
+    private JSONObject writeMetrics() {
+        JSONObject obj = new JSONObject();
+        obj.put("database", database.getQueryMetrics().toJson(database.getPoolStats()));
+        return obj;
+    }
+
     private JSONObject writeRules() {
         JSONArray arr = new JSONArray();
         List<Rule> list = ruleService.getRules();
@@ -154,6 +186,53 @@ public class ApiServer {
         return new JSONObject().put("flags", arr);
     }
 
+    /** Stream a full export; restricted to requests from the server itself. */
+    private void handleExport(HttpExchange ex) throws IOException {
+        if (!"GET".equalsIgnoreCase(ex.getRequestMethod())) { ex.sendResponseHeaders(405, -1); return; }
+        if (!ex.getRemoteAddress().getAddress().isLoopbackAddress()) { ex.sendResponseHeaders(403, -1); return; }
+        ex.getResponseHeaders().add("Content-Type", "application/gzip");
+        ex.getResponseHeaders().add("Content-Disposition", "attachment; filename=\"opencore-export.ndjson.gz\"");
+        // chunked: the size is unknown until the last table has been read
+        ex.sendResponseHeaders(200, 0);
+        try (OutputStream os = ex.getResponseBody()) {
+            DataExporter.Result result = exporter.export(os, null);
+            if (!result.success) {
+                // the client sees a truncated gzip stream and fails to decompress it
+                logger.warning("API export aborted: " + result.error);
+            }
+        }
+    }
+
+    /**
+     * GPT usage per module since startup plus the stored minutes of the last
+     * <code>minutes</code> (default 60, at most one week).
+     */
+    private void handleGptUsage(HttpExchange ex) throws IOException {
+        if (!"GET".equalsIgnoreCase(ex.getRequestMethod())) { ex.sendResponseHeaders(405, -1); return; }
+        int minutes = 60;
+        String query = ex.getRequestURI().getQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                if (param.startsWith("minutes=")) {
+                    try {
+                        minutes = Math.max(1, Math.min(7 * 24 * 60, Integer.parseInt(param.substring(8))));
+                    } catch (NumberFormatException e) {
+                        ex.sendResponseHeaders(400, -1);
+                        return;
+                    }
+                }
+            }
+        }
+        JSONObject totals = new JSONObject();
+        for (java.util.Map.Entry<String, GptTelemetry.Stats> e : telemetry.getTotals().entrySet()) {
+            totals.put(e.getKey(), e.getValue().toJson());
+        }
+        JSONObject obj = new JSONObject();
+        obj.put("totals", totals);
+        obj.put("minutes", telemetry.loadUsage(System.currentTimeMillis() - minutes * 60_000L));
+        writeJson(ex, obj);
+    }
+
     /* ===== Setup handlers ===== */
     private void handleSetupStatus(HttpExchange ex) throws IOException {
         if (!allowSetup(ex, false)) return;
@@ -323,5 +402,8 @@ public class ApiServer {
         if (server != null) {
             server.stop(0);
         }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
     }
 }
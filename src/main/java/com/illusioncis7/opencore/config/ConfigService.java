@@ -1,12 +1,15 @@
 package com.illusioncis7.opencore.config;
 
 import com.illusioncis7.opencore.database.Database;
+import com.illusioncis7.opencore.database.repository.ConfigParameterRepository;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import java.io.*;
@@ -29,6 +32,7 @@ public class ConfigService {
 
     private final JavaPlugin plugin;
     private final Database database;
+    private final ConfigParameterRepository parameterRepository;
     private final Set<String> excluded = new HashSet<>();
     private boolean enabled = true;
     private Path serverRoot;
@@ -36,6 +40,7 @@ public class ConfigService {
     public ConfigService(JavaPlugin plugin, Database database) {
         this.plugin = plugin;
         this.database = database;
+        this.parameterRepository = new ConfigParameterRepository(database);
 
         File cfgFile = new File(plugin.getDataFolder(), "config-scan.yml");
         FileConfiguration config = YamlConfiguration.loadConfiguration(cfgFile);
@@ -93,16 +98,19 @@ public class ConfigService {
         FileConfiguration cfg = YamlConfiguration.loadConfiguration(file);
         Map<String, Object> values = cfg.getValues(true);
         String relative = serverRoot.relativize(file.getAbsoluteFile().toPath()).toString().replace(File.separatorChar, '/');
+        List<ConfigParameterRepository.ScannedParameter> params = new ArrayList<>();
         for (Map.Entry<String, Object> entry : values.entrySet()) {
             Object val = entry.getValue();
-            insertParameter(relative, entry.getKey(), val != null ? val.toString() : null);
+            params.add(new ConfigParameterRepository.ScannedParameter(relative, entry.getKey(), val != null ? val.toString() : null));
         }
+        insertParameters(relative, params);
     }
 
     private void storeConf(File file) {
+        List<ConfigParameterRepository.ScannedParameter> params = new ArrayList<>();
+        String relative = serverRoot.relativize(file.getAbsoluteFile().toPath()).toString().replace(File.separatorChar, '/');
         try (BufferedReader br = new BufferedReader(new FileReader(file))) {
             String line;
-            String relative = serverRoot.relativize(file.getAbsoluteFile().toPath()).toString().replace(File.separatorChar, '/');
             while ((line = br.readLine()) != null) {
                 line = line.trim();
                 if (line.isEmpty() || line.startsWith("#") || line.startsWith(";")) {
@@ -110,44 +118,23 @@ public class ConfigService {
                 }
                 String[] parts = line.split("[:=]", 2);
                 if (parts.length == 2) {
-                    insertParameter(relative, parts[0].trim(), parts[1].trim());
+                    params.add(new ConfigParameterRepository.ScannedParameter(relative, parts[0].trim(), parts[1].trim()));
                 }
             }
         } catch (IOException e) {
             plugin.getLogger().warning("Failed to parse conf file " + file + ": " + e.getMessage());
         }
+        insertParameters(relative, params);
     }
 
-    private void insertParameter(String path, String parameter, String value) {
-        if (!database.isConnected()) {
+    private void insertParameters(String file, List<ConfigParameterRepository.ScannedParameter> params) {
+        if (!database.isConnected() || params.isEmpty()) {
             return;
         }
-
-        String sql;
-        if (database.isSQLite()) {
-            sql = "INSERT INTO config_params (path, parameter_path, description, value_type, current_value) " +
-                    "VALUES (?, ?, ?, ?, ?) " +
-                    "ON CONFLICT(path, parameter_path) DO UPDATE SET " +
-                    "current_value=excluded.current_value, description=excluded.description";
-        } else {
-            sql = "INSERT INTO config_params (path, parameter_path, description, value_type, current_value) VALUES (?, ?, ?, ?, ?) " +
-                    "ON DUPLICATE KEY UPDATE path = VALUES(path), current_value = VALUES(current_value), description = VALUES(description)";
-        }
-
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, path);
-            ps.setString(2, parameter);
-            ps.setNull(3, Types.VARCHAR);
-            ps.setString(4, ConfigType.STRING.name());
-            if (value != null) {
-                ps.setString(5, value);
-            } else {
-                ps.setNull(5, Types.VARCHAR);
-            }
-            ps.executeUpdate();
+        try {
+            parameterRepository.upsertBatch(params, ConfigType.STRING.name());
         } catch (SQLException e) {
-            plugin.getLogger().warning("Failed to store config parameter " + parameter + ": " + e.getMessage());
+            plugin.getLogger().warning("Failed to store config parameters of " + file + ": " + e.getMessage());
         }
     }
 
@@ -157,16 +144,19 @@ public class ConfigService {
         if (!database.isConnected()) return false;
         String sql = "INSERT INTO config_params (path, parameter_path, editable, description, current_value, min_value, max_value) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?)";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, configFilePath);
-            ps.setString(2, yamlPath);
-            ps.setBoolean(3, editable);
-            ps.setString(4, description);
-            if (currentValue != null) ps.setString(5, currentValue); else ps.setNull(5, Types.VARCHAR);
-            if (minValue != null) ps.setInt(6, minValue); else ps.setNull(6, Types.INTEGER);
-            if (maxValue != null) ps.setInt(7, maxValue); else ps.setNull(7, Types.INTEGER);
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, configFilePath);
+                    ps.setString(2, yamlPath);
+                    ps.setBoolean(3, editable);
+                    ps.setString(4, description);
+                    if (currentValue != null) ps.setString(5, currentValue); else ps.setNull(5, Types.VARCHAR);
+                    if (minValue != null) ps.setInt(6, minValue); else ps.setNull(6, Types.INTEGER);
+                    if (maxValue != null) ps.setInt(7, maxValue); else ps.setNull(7, Types.INTEGER);
+                    return ps.executeUpdate();
+                }
+            });
             return true;
         } catch (SQLException e) {
             plugin.getLogger().warning("Failed to register parameter: " + e.getMessage());
@@ -316,19 +306,22 @@ public class ConfigService {
     private void logChange(int paramId, Object oldVal, Object newVal, UUID player) {
         if (!database.isConnected()) return;
         String sql = "INSERT INTO config_change_history (change_id, player_uuid, param_key, old_value, new_value, changed_at) VALUES (?, ?, ?, ?, ?, ?)";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, UUID.randomUUID().toString());
-            if (player != null) {
-                ps.setString(2, player.toString());
-            } else {
-                ps.setNull(2, Types.VARCHAR);
-            }
-            ps.setString(3, String.valueOf(paramId));
-            ps.setString(4, oldVal != null ? oldVal.toString() : null);
-            ps.setString(5, newVal != null ? newVal.toString() : null);
-            ps.setTimestamp(6, new Timestamp(System.currentTimeMillis()));
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, UUID.randomUUID().toString());
+                    if (player != null) {
+                        ps.setString(2, player.toString());
+                    } else {
+                        ps.setNull(2, Types.VARCHAR);
+                    }
+                    ps.setString(3, String.valueOf(paramId));
+                    ps.setString(4, oldVal != null ? oldVal.toString() : null);
+                    ps.setString(5, newVal != null ? newVal.toString() : null);
+                    ps.setTimestamp(6, new Timestamp(System.currentTimeMillis()));
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             plugin.getLogger().warning("Failed to log config change: " + e.getMessage());
         }
@@ -337,15 +330,18 @@ public class ConfigService {
     private void updateStoredValue(int id, String value) {
         if (!database.isConnected()) return;
         String sql = "UPDATE config_params SET current_value = ? WHERE id = ?";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            if (value != null) {
-                ps.setString(1, value);
-            } else {
-                ps.setNull(1, Types.VARCHAR);
-            }
-            ps.setInt(2, id);
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    if (value != null) {
+                        ps.setString(1, value);
+                    } else {
+                        ps.setNull(1, Types.VARCHAR);
+                    }
+                    ps.setInt(2, id);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             plugin.getLogger().warning("Failed to update stored value: " + e.getMessage());
         }
@@ -430,10 +426,13 @@ public class ConfigService {
     public boolean deleteParameter(int id) {
         if (!database.isConnected()) return false;
         String sql = "DELETE FROM config_params WHERE id = ?";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, id);
-            return ps.executeUpdate() > 0;
+        try {
+            return database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, id);
+                    return ps.executeUpdate();
+                }
+            }) > 0;
         } catch (SQLException e) {
             plugin.getLogger().warning("Failed to delete config parameter: " + e.getMessage());
             return false;
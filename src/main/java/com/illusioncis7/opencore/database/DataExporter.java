@@ -0,0 +1,322 @@
+package com.illusioncis7.opencore.database;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams all OpenCore tables as gzip-compressed NDJSON.
+ * <p>
+ * The first line describes the export (format, schema version, source
+ * engine). Every table starts with a line naming its columns and their
+ * types, followed by one JSON array per row and a closing line with the row
+ * count. Rows are read through forward-only cursors with a fetch size, and
+ * all tables are read inside one read transaction: a consistent snapshot on
+ * InnoDB and a WAL read transaction on SQLite. Neither blocks writers.
+ */
+public class DataExporter {
+
+    /** Format identifier written to and expected in the header line. */
+    public static final String FORMAT = "opencore-ndjson";
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * Tables included in an export, parents first. schema_version and
+     * import_checkpoints are left out: the target migrates itself. gpt_cache
+     * only holds answers that can be fetched again, and gpt_queue is work
+     * of the running server.
+     */
+    static final String[] TABLES = {
+            "player_registry",
+            "server_rules",
+            "rule_changes",
+            "reputation_events",
+            "reputation_guidelines",
+            "config_params",
+            "config_change_history",
+            "suggestions",
+            "suggestion_comments",
+            "votes",
+            "chat_log",
+            "chat_analysis_log",
+            "gpt_log",
+            "gpt_prompts",
+            "gpt_responses",
+            "gpt_usage",
+            "web_access_tokens"
+    };
+
+    private final JavaPlugin plugin;
+    private final Database database;
+    private final Logger logger;
+    private final int fetchSize;
+    private final long progressIntervalMs;
+
+    /** Receives progress updates while an export runs. */
+    public interface ProgressListener {
+        void onProgress(String table, long rows, double rowsPerSecond);
+    }
+
+    /** Outcome of an export run. */
+    public static class Result {
+        public final boolean success;
+        public final int tables;
+        public final long rows;
+        public final long elapsedMs;
+        public final String error;
+
+        Result(boolean success, int tables, long rows, long elapsedMs, String error) {
+            this.success = success;
+            this.tables = tables;
+            this.rows = rows;
+            this.elapsedMs = elapsedMs;
+            this.error = error;
+        }
+
+        public double rowsPerSecond() {
+            return elapsedMs > 0 ? rows * 1000.0 / elapsedMs : rows;
+        }
+    }
+
+    public DataExporter(JavaPlugin plugin, Database database) {
+        this.plugin = plugin;
+        this.database = database;
+        this.logger = plugin.getLogger();
+        ConfigurationSection sec = YamlConfiguration.loadConfiguration(
+                new File(plugin.getDataFolder(), "database.yml")).getConfigurationSection("export");
+        int fetch = 1000;
+        int progress = 5;
+        if (sec != null) {
+            fetch = sec.getInt("fetch-size", fetch);
+            progress = sec.getInt("progress-seconds", progress);
+        }
+        this.fetchSize = Math.max(1, fetch);
+        this.progressIntervalMs = Math.max(1, progress) * 1000L;
+    }
+
+    /**
+     * Export into a file. The data is written to <code>&lt;file&gt;.part</code>
+     * first and only renamed once the export is complete.
+     */
+    public Result export(File file, ProgressListener listener) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            return new Result(false, 0, 0, 0, "cannot create directory " + parent);
+        }
+        File part = new File(file.getPath() + ".part");
+        Result result;
+        try (OutputStream out = new FileOutputStream(part)) {
+            result = export(out, listener);
+        } catch (IOException e) {
+            result = new Result(false, 0, 0, 0, e.getMessage());
+        }
+        try {
+            if (result.success) {
+                Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(part.toPath());
+            }
+        } catch (IOException e) {
+            return new Result(false, result.tables, result.rows, result.elapsedMs, e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Write a gzip-compressed export to the stream. The stream is finished
+     * but not closed. Blocks until all tables are written; call it off the
+     * main thread.
+     */
+    public Result export(OutputStream target, ProgressListener listener) {
+        long start = System.currentTimeMillis();
+        if (!database.isConnected()) {
+            return new Result(false, 0, 0, 0, "database not connected");
+        }
+        int tables = 0;
+        long rows = 0;
+        try (Connection conn = database.getConnection()) {
+            if (conn == null) {
+                return new Result(false, 0, 0, 0, "no database connection available");
+            }
+            boolean autoCommit = conn.getAutoCommit();
+            int isolation = conn.getTransactionIsolation();
+            try {
+                beginSnapshot(conn);
+                GZIPOutputStream gzip = new GZIPOutputStream(target, 1 << 16);
+                Writer out = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), 1 << 16);
+                JSONObject header = new JSONObject();
+                header.put("format", FORMAT);
+                header.put("version", FORMAT_VERSION);
+                header.put("schema", new SchemaMigrator(plugin, !database.isMariaDB()).currentVersion(conn));
+                header.put("source", database.isMariaDB() ? "mariadb" : "sqlite");
+                header.put("created", Instant.now().toString());
+                writeLine(out, header.toString());
+                long[] lastProgress = {start};
+                for (String table : TABLES) {
+                    rows += exportTable(conn, table, out, rows, start, lastProgress, listener);
+                    tables++;
+                }
+                out.flush();
+                gzip.finish();
+            } finally {
+                if (!conn.getAutoCommit()) {
+                    conn.rollback();
+                }
+                conn.setAutoCommit(autoCommit);
+                conn.setTransactionIsolation(isolation);
+            }
+        } catch (IOException | SQLException e) {
+            logger.warning("Export failed: " + e.getMessage());
+            return new Result(false, tables, rows, System.currentTimeMillis() - start, e.getMessage());
+        }
+        return new Result(true, tables, rows, System.currentTimeMillis() - start, null);
+    }
+
+    private void beginSnapshot(Connection conn) throws SQLException {
+        if (database.isMariaDB()) {
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                // MVCC snapshot taken now; no locks are held
+                stmt.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT");
+            }
+        } else {
+            // the read transaction pins the WAL snapshot at the first SELECT
+            conn.setAutoCommit(false);
+        }
+    }
+
+    private long exportTable(Connection conn, String table, Writer out, long rowsBefore, long start,
+                             long[] lastProgress, ProgressListener listener) throws SQLException, IOException {
+        long count = 0;
+        try (PreparedStatement ps = conn.prepareStatement("SELECT * FROM " + table,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(fetchSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                int columns = meta.getColumnCount();
+                String[] types = new String[columns];
+                JSONArray names = new JSONArray();
+                for (int i = 1; i <= columns; i++) {
+                    names.put(meta.getColumnLabel(i));
+                    types[i - 1] = typeOf(meta.getColumnType(i), meta.getColumnTypeName(i));
+                }
+                writeLine(out, new JSONObject().put("table", table).put("columns", names)
+                        .put("types", new JSONArray(Arrays.asList(types))).toString());
+                while (rs.next()) {
+                    JSONArray row = new JSONArray();
+                    for (int i = 1; i <= columns; i++) {
+                        row.put(read(rs, i, types[i - 1]));
+                    }
+                    writeLine(out, row.toString());
+                    count++;
+                    if (listener != null && (count & 1023) == 0) {
+                        long now = System.currentTimeMillis();
+                        if (now - lastProgress[0] >= progressIntervalMs) {
+                            lastProgress[0] = now;
+                            listener.onProgress(table, rowsBefore + count,
+                                    (rowsBefore + count) * 1000.0 / Math.max(1, now - start));
+                        }
+                    }
+                }
+            }
+        }
+        writeLine(out, new JSONObject().put("end", table).put("rows", count).toString());
+        return count;
+    }
+
+    /** Portable column type used in the export; decides how values are written and bound. */
+    static String typeOf(int sqlType, String typeName) {
+        String name = typeName != null ? typeName.toUpperCase(Locale.ROOT) : "";
+        switch (sqlType) {
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return "bool";
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return name.startsWith("BOOL") ? "bool" : "long";
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return "double";
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return "timestamp";
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return "bytes";
+            default:
+                // SQLite reports declared types loosely
+                if (name.contains("TIME") || name.contains("DATE")) return "timestamp";
+                if (name.startsWith("BOOL")) return "bool";
+                return "string";
+        }
+    }
+
+    private static Object read(ResultSet rs, int i, String type) throws SQLException {
+        Object value;
+        switch (type) {
+            case "bool":
+                value = rs.getBoolean(i);
+                break;
+            case "long":
+                value = rs.getLong(i);
+                break;
+            case "double":
+                value = rs.getDouble(i);
+                break;
+            case "timestamp":
+                Timestamp ts = rs.getTimestamp(i);
+                value = ts != null ? ts.getTime() : null;
+                break;
+            case "bytes":
+                byte[] data = rs.getBytes(i);
+                value = data != null ? Base64.getEncoder().encodeToString(data) : null;
+                break;
+            default:
+                value = rs.getString(i);
+                break;
+        }
+        return value == null || rs.wasNull() ? JSONObject.NULL : value;
+    }
+
+    private static void writeLine(Writer out, String line) throws IOException {
+        out.write(line);
+        out.write('\n');
+    }
+}
@@ -0,0 +1,336 @@
+package com.illusioncis7.opencore.database;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Bulk-loads a file written by {@link DataExporter}. Rows are inserted with
+ * their original ids in JDBC batches and committed in chunks, so importing a
+ * SQLite export into MariaDB (or the other way round) keeps all references
+ * intact. The target must be on the same schema version as the export and,
+ * unless <code>replace</code> is set, its tables must be empty.
+ */
+public class DataImporter {
+
+    private final JavaPlugin plugin;
+    private final Database database;
+    private final Logger logger;
+    private final int batchSize;
+    private final int commitEvery;
+    private final long progressIntervalMs;
+
+    /** Outcome of an import run. */
+    public static class Result {
+        public final boolean success;
+        public final int tables;
+        public final long rows;
+        public final long elapsedMs;
+        public final String error;
+
+        Result(boolean success, int tables, long rows, long elapsedMs, String error) {
+            this.success = success;
+            this.tables = tables;
+            this.rows = rows;
+            this.elapsedMs = elapsedMs;
+            this.error = error;
+        }
+
+        public double rowsPerSecond() {
+            return elapsedMs > 0 ? rows * 1000.0 / elapsedMs : rows;
+        }
+    }
+
+    /** Table block currently being loaded. */
+    private static final class TableLoad {
+        final String table;
+        final String insertSql;
+        final String[] types;
+        final List<JSONArray> pending = new ArrayList<>();
+        long rows;
+
+        TableLoad(String table, String insertSql, String[] types) {
+            this.table = table;
+            this.insertSql = insertSql;
+            this.types = types;
+        }
+    }
+
+    public DataImporter(JavaPlugin plugin, Database database) {
+        this.plugin = plugin;
+        this.database = database;
+        this.logger = plugin.getLogger();
+        ConfigurationSection sec = YamlConfiguration.loadConfiguration(
+                new File(plugin.getDataFolder(), "database.yml")).getConfigurationSection("import");
+        int batch = 200;
+        int commit = 2000;
+        int progress = 5;
+        if (sec != null) {
+            batch = sec.getInt("batch-size", batch);
+            commit = sec.getInt("commit-every", commit);
+            progress = sec.getInt("progress-seconds", progress);
+        }
+        this.batchSize = Math.max(1, batch);
+        this.commitEvery = Math.max(batchSize, commit);
+        this.progressIntervalMs = Math.max(1, progress) * 1000L;
+    }
+
+    /**
+     * Run the import. Blocks until the file has been processed; call it off
+     * the main thread.
+     *
+     * @param replace delete existing rows of every imported table first
+     */
+    public Result run(File file, boolean replace, DataExporter.ProgressListener listener) {
+        long start = System.currentTimeMillis();
+        if (!database.isConnected()) {
+            return new Result(false, 0, 0, 0, "database not connected");
+        }
+        if (file == null || !file.isFile()) {
+            return new Result(false, 0, 0, 0, "file not found: " + file);
+        }
+        int tables = 0;
+        long rows = 0;
+        long lastProgress = start;
+        TableLoad load = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(file), 1 << 16), StandardCharsets.UTF_8), 1 << 16)) {
+            checkHeader(in.readLine());
+            if (!replace) {
+                checkEmpty();
+            }
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                if (load != null && line.charAt(0) == '[') {
+                    load.pending.add(new JSONArray(line));
+                    if (load.pending.size() >= commitEvery) {
+                        rows += flush(load);
+                        long now = System.currentTimeMillis();
+                        if (listener != null && now - lastProgress >= progressIntervalMs) {
+                            lastProgress = now;
+                            listener.onProgress(load.table, rows, rows * 1000.0 / Math.max(1, now - start));
+                        }
+                    }
+                    continue;
+                }
+                JSONObject obj = new JSONObject(line);
+                if (load == null && obj.has("table")) {
+                    load = beginTable(obj, replace);
+                } else if (load != null && load.table.equals(obj.optString("end", null))) {
+                    rows += flush(load);
+                    long expected = obj.getLong("rows");
+                    if (load.rows != expected) {
+                        throw new IOException("table " + load.table + ": expected " + expected
+                                + " rows, read " + load.rows);
+                    }
+                    tables++;
+                    load = null;
+                } else {
+                    throw new IOException("unexpected line: " + abbreviate(line));
+                }
+            }
+            if (load != null) {
+                throw new IOException("file ends inside table " + load.table);
+            }
+        } catch (IOException | SQLException | JSONException e) {
+            logger.warning("Import of " + file.getName() + " failed: " + e.getMessage());
+            return new Result(false, tables, rows, System.currentTimeMillis() - start, e.getMessage());
+        }
+        return new Result(true, tables, rows, System.currentTimeMillis() - start, null);
+    }
+
+    private void checkHeader(String line) throws IOException, SQLException {
+        if (line == null) {
+            throw new IOException("empty file");
+        }
+        JSONObject header = new JSONObject(line);
+        if (!DataExporter.FORMAT.equals(header.optString("format"))) {
+            throw new IOException("not an OpenCore export");
+        }
+        if (header.optInt("version") != DataExporter.FORMAT_VERSION) {
+            throw new IOException("unsupported export version " + header.optInt("version"));
+        }
+        int current;
+        try (Connection conn = database.getConnection()) {
+            if (conn == null) {
+                throw new SQLException("No database connection available");
+            }
+            current = new SchemaMigrator(plugin, !database.isMariaDB()).currentVersion(conn);
+        }
+        int schema = header.optInt("schema");
+        if (schema != current) {
+            throw new IOException("export has schema version " + schema + ", database has " + current);
+        }
+    }
+
+    private void checkEmpty() throws SQLException, IOException {
+        try (Connection conn = database.getConnection();
+             Statement stmt = conn.createStatement()) {
+            for (String table : DataExporter.TABLES) {
+                try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + table + " LIMIT 1")) {
+                    if (rs.next()) {
+                        throw new IOException("table " + table + " is not empty (use replace)");
+                    }
+                }
+            }
+        }
+    }
+
+    private TableLoad beginTable(JSONObject obj, boolean replace) throws IOException, SQLException {
+        String table = obj.getString("table");
+        // names from the file end up in SQL, so only known tables and existing columns are accepted
+        if (!Arrays.asList(DataExporter.TABLES).contains(table)) {
+            throw new IOException("unknown table " + abbreviate(table));
+        }
+        Map<String, String> targetColumns = new HashMap<>();
+        try (Connection conn = database.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+            ResultSetMetaData meta = rs.getMetaData();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                String name = meta.getColumnLabel(i);
+                targetColumns.put(name.toLowerCase(Locale.ROOT), name);
+            }
+        }
+        JSONArray columns = obj.getJSONArray("columns");
+        JSONArray types = obj.getJSONArray("types");
+        if (columns.length() != types.length() || columns.length() == 0) {
+            throw new IOException("invalid column list for " + table);
+        }
+        StringBuilder cols = new StringBuilder();
+        StringBuilder marks = new StringBuilder();
+        String[] typeArr = new String[columns.length()];
+        for (int i = 0; i < columns.length(); i++) {
+            String column = targetColumns.get(columns.getString(i).toLowerCase(Locale.ROOT));
+            if (column == null) {
+                throw new IOException("column " + abbreviate(columns.getString(i)) + " does not exist in " + table);
+            }
+            if (i > 0) {
+                cols.append(", ");
+                marks.append(", ");
+            }
+            // quote so names like "change" survive on both engines
+            cols.append(database.isMariaDB() ? "`" + column + "`" : "\"" + column + "\"");
+            marks.append('?');
+            typeArr[i] = types.getString(i);
+        }
+        if (replace) {
+            database.executeWrite(conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    return stmt.executeUpdate("DELETE FROM " + table);
+                }
+            });
+        }
+        String sql = "INSERT INTO " + table + " (" + cols + ") VALUES (" + marks + ")";
+        return new TableLoad(table, sql, typeArr);
+    }
+
+    /** Insert all pending rows of the table in one transaction. */
+    private long flush(TableLoad load) throws SQLException {
+        if (load.pending.isEmpty()) {
+            return 0;
+        }
+        List<JSONArray> rows = new ArrayList<>(load.pending);
+        load.pending.clear();
+        database.executeWrite(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(load.insertSql)) {
+                int inBatch = 0;
+                for (JSONArray row : rows) {
+                    if (row.length() != load.types.length) {
+                        throw new SQLException("row with " + row.length() + " values in " + load.table);
+                    }
+                    for (int i = 0; i < load.types.length; i++) {
+                        bind(ps, i + 1, load.types[i], row.opt(i));
+                    }
+                    ps.addBatch();
+                    if (++inBatch >= batchSize) {
+                        ps.executeBatch();
+                        inBatch = 0;
+                    }
+                }
+                if (inBatch > 0) {
+                    ps.executeBatch();
+                }
+            }
+            return null;
+        });
+        load.rows += rows.size();
+        return rows.size();
+    }
+
+    private static void bind(PreparedStatement ps, int index, String type, Object value) throws SQLException {
+        if (value == null || value == JSONObject.NULL) {
+            ps.setNull(index, sqlType(type));
+            return;
+        }
+        switch (type) {
+            case "bool":
+                ps.setBoolean(index, value instanceof Boolean ? (Boolean) value : ((Number) value).intValue() != 0);
+                break;
+            case "long":
+                ps.setLong(index, ((Number) value).longValue());
+                break;
+            case "double":
+                ps.setDouble(index, ((Number) value).doubleValue());
+                break;
+            case "timestamp":
+                ps.setTimestamp(index, new Timestamp(((Number) value).longValue()));
+                break;
+            case "bytes":
+                ps.setBytes(index, Base64.getDecoder().decode(value.toString()));
+                break;
+            default:
+                ps.setString(index, value.toString());
+                break;
+        }
+    }
+
+    private static int sqlType(String type) {
+        switch (type) {
+            case "bool":
+                return Types.BOOLEAN;
+            case "long":
+                return Types.BIGINT;
+            case "double":
+                return Types.DOUBLE;
+            case "timestamp":
+                return Types.TIMESTAMP;
+            case "bytes":
+                return Types.VARBINARY;
+            default:
+                return Types.VARCHAR;
+        }
+    }
+
+    private static String abbreviate(String text) {
+        return text.length() > 80 ? text.substring(0, 80) + "..." : text;
+    }
+}
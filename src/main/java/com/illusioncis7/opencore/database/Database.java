@@ -6,9 +6,18 @@ import org.bukkit.plugin.java.JavaPlugin;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.illusioncis7.opencore.metrics.PoolStats;
+import com.illusioncis7.opencore.metrics.QueryMetrics;
+import org.bukkit.configuration.ConfigurationSection;
 
 import java.io.File;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Database {
 
@@ -16,8 +25,31 @@ public class Database {
 
     private final JavaPlugin plugin;
     private HikariDataSource dataSource;
+    private WriteExecutor writeExecutor;
+    private QueryMetrics metrics;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger replicaCursor = new AtomicInteger();
+    private final Map<String, Long> recentWrites = new ConcurrentHashMap<>();
+    private org.bukkit.scheduler.BukkitTask replicaCheckTask;
+    private int maxReplicaLagSeconds = 5;
+    private long readYourWritesMs = 10000L;
     private Engine engine = Engine.SQLITE;
 
+    /** Read-only pool for one MariaDB replica. */
+    private static class Replica {
+        final String host;
+        final HikariDataSource source;
+        volatile boolean healthy = true;
+        volatile int lagSeconds = -1;
+        /** Why the last check failed, null if it got a status. */
+        String error;
+
+        Replica(String host, HikariDataSource source) {
+            this.host = host;
+            this.source = source;
+        }
+    }
+
     public Database(JavaPlugin plugin) {
         this.plugin = plugin;
     }
@@ -37,14 +69,24 @@ public class Database {
                 engine = Engine.SQLITE;
             }
 
+            ConfigurationSection metricsSec = config.getConfigurationSection("metrics");
+            if (metricsSec == null || metricsSec.getBoolean("enabled", true)) {
+                long slowMs = metricsSec != null ? metricsSec.getLong("slow-query-ms", 100L) : 100L;
+                boolean logSlow = metricsSec != null && metricsSec.getBoolean("log-slow-queries", false);
+                metrics = new QueryMetrics(slowMs, logSlow, plugin.getLogger());
+            }
+
             HikariConfig hikariConfig = new HikariConfig();
+            ConfigurationSection sqlite = config.getConfigurationSection("sqlite");
             if (engine == Engine.SQLITE) {
                 String file = config.getString("file", "opencore.db");
                 File dbFile = new File(plugin.getDataFolder(), file);
-                hikariConfig.setDriverClassName("org.sqlite.JDBC");
-                hikariConfig.setJdbcUrl("jdbc:sqlite:" + dbFile.getAbsolutePath());
-                // allow a second connection so tasks can reuse the pool
-                hikariConfig.setMaximumPoolSize(2);
+                applySqliteSettings(hikariConfig, dbFile, sqlite);
+                // readers; writes go through the single writer connection
+                hikariConfig.setPoolName("OpenCore-SQLiteReader");
+                hikariConfig.setMaximumPoolSize(sqlite != null ? Math.max(1, sqlite.getInt("reader-pool-size", 4)) : 4);
+                // a write that bypasses executeWrite fails instead of racing the writer
+                hikariConfig.setConnectionInitSql("PRAGMA query_only = ON");
             } else {
                 String host = config.getString("host", "localhost");
                 int port = config.getInt("port", 3306);
@@ -57,10 +99,39 @@ public class Database {
                 hikariConfig.setJdbcUrl(url);
                 hikariConfig.setUsername(username);
                 hikariConfig.setPassword(password);
+                hikariConfig.setPoolName("OpenCore-Primary");
                 hikariConfig.setMaximumPoolSize(10);
                 hikariConfig.setLeakDetectionThreshold(10000);
+                // server-side prepared statements, reused per connection by the driver cache
+                ConfigurationSection mariadb = config.getConfigurationSection("mariadb");
+                int cacheSize = mariadb != null ? mariadb.getInt("prep-stmt-cache-size", 250) : 250;
+                hikariConfig.addDataSourceProperty("useServerPrepStmts", "true");
+                hikariConfig.addDataSourceProperty("cachePrepStmts", String.valueOf(cacheSize > 0));
+                hikariConfig.addDataSourceProperty("prepStmtCacheSize", String.valueOf(Math.max(0, cacheSize)));
+                ConfigurationSection replicaSec = mariadb != null ? mariadb.getConfigurationSection("replicas") : null;
+                if (replicaSec != null && replicaSec.getBoolean("enabled", false)) {
+                    setupReplicas(replicaSec, database, username, password, cacheSize);
+                }
             }
             hikariConfig.setConnectionTimeout(5000);
+            if (engine == Engine.SQLITE) {
+                // the writer opens the file first so journal mode and migrations are in place for the readers
+                HikariConfig writerConfig = new HikariConfig();
+                String file = config.getString("file", "opencore.db");
+                applySqliteSettings(writerConfig, new File(plugin.getDataFolder(), file), sqlite);
+                writerConfig.setPoolName("OpenCore-SQLiteWriter");
+                writerConfig.setMaximumPoolSize(1);
+                writerConfig.setConnectionTimeout(5000);
+                HikariDataSource writer = new HikariDataSource(writerConfig);
+                try (Connection conn = writer.getConnection()) {
+                    setupTables(conn);
+                } catch (SQLException e) {
+                    writer.close();
+                    throw e;
+                }
+                int groupSize = sqlite != null ? sqlite.getInt("group-commit-max", 64) : 64;
+                writeExecutor = new WriteExecutor(writer, groupSize, plugin.getLogger());
+            }
             dataSource = new HikariDataSource(hikariConfig);
 
             try (Connection conn = dataSource.getConnection();
@@ -69,373 +140,270 @@ public class Database {
                 ps.execute();
                 long ping = System.currentTimeMillis() - start;
                 plugin.getLogger().info("Datenbank verbunden (Ping: " + ping + " ms)");
-                setupTables(conn);
+                if (engine == Engine.MARIADB) {
+                    setupTables(conn);
+                }
             }
         } catch (SQLException e) {
             plugin.getLogger().severe("Could not connect to the database: " + e.getMessage());
         }
     }
 
-    private void setupTables(Connection connection) throws SQLException {
-        if (engine == Engine.SQLITE) {
-            setupSQLiteTables(connection);
-        } else {
-            setupMariaTables(connection);
+    private void setupReplicas(ConfigurationSection sec, String database, String username, String password, int cacheSize) {
+        maxReplicaLagSeconds = Math.max(0, sec.getInt("max-lag-seconds", 5));
+        // reads of freshly written keys stay on the primary at least as long as replicas may lag
+        readYourWritesMs = Math.max(sec.getLong("read-your-writes-ms", 10000L), (maxReplicaLagSeconds + 1) * 1000L);
+        String user = sec.getString("username", username);
+        String pass = sec.getString("password", password);
+        int poolSize = Math.max(1, sec.getInt("pool-size", 6));
+        for (String host : sec.getStringList("hosts")) {
+            if (!host.contains(":")) {
+                host = host + ":3306";
+            }
+            HikariConfig cfg = new HikariConfig();
+            cfg.setPoolName("OpenCore-Replica-" + host);
+            cfg.setDriverClassName("shaded.org.mariadb.jdbc.Driver");
+            cfg.setJdbcUrl("jdbc:mariadb://" + host + "/" + database + "?useSSL=false");
+            cfg.setUsername(user);
+            cfg.setPassword(pass);
+            cfg.setReadOnly(true);
+            cfg.setMaximumPoolSize(poolSize);
+            cfg.setConnectionTimeout(2000);
+            // do not fail plugin start when a replica is down; the lag check marks it unhealthy
+            cfg.setInitializationFailTimeout(-1);
+            cfg.addDataSourceProperty("useServerPrepStmts", "true");
+            cfg.addDataSourceProperty("cachePrepStmts", String.valueOf(cacheSize > 0));
+            cfg.addDataSourceProperty("prepStmtCacheSize", String.valueOf(Math.max(0, cacheSize)));
+            replicas.add(new Replica(host, new HikariDataSource(cfg)));
+        }
+        if (replicas.isEmpty()) {
+            return;
         }
+        long period = Math.max(1, sec.getInt("lag-check-seconds", 10)) * 20L;
+        replicaCheckTask = plugin.getServer().getScheduler()
+                .runTaskTimerAsynchronously(plugin, this::checkReplicas, 20L, period);
+        plugin.getLogger().info("Read replicas configured: " + replicas.size());
     }
 
-    private void setupMariaTables(Connection connection) throws SQLException {
-        try (Statement stmt = connection.createStatement()) {
-            String chatSql = "CREATE TABLE IF NOT EXISTS chat_log (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "player_uuid VARCHAR(36) NOT NULL," +
-                    "message_time TIMESTAMP NOT NULL," +
-                    "message TEXT NOT NULL" +
-                    ")";
-            stmt.executeUpdate(chatSql);
-
-            String gptSql = "CREATE TABLE IF NOT EXISTS gpt_log (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "request_uuid VARCHAR(36) NOT NULL," +
-                    "player_uuid VARCHAR(36)," +
-                    "request_time TIMESTAMP NOT NULL," +
-                    "prompt TEXT NOT NULL," +
-                    "response TEXT," +
-                    "response_time TIMESTAMP" +
-                    ")";
-            stmt.executeUpdate(gptSql);
-
-            String cfgSql = "CREATE TABLE IF NOT EXISTS config_params (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "path VARCHAR(255) NOT NULL," +
-                    "parameter_path VARCHAR(255) NOT NULL," +
-                    "min_value INT," +
-                    "max_value INT," +
-                    "recommended_range VARCHAR(255)," +
-                    "editable BOOLEAN DEFAULT 0," +
-                    "impact_category VARCHAR(50)," +
-                    "impact_rating INT DEFAULT 5," +
-                    "description TEXT," +
-                    "value_type VARCHAR(20) DEFAULT 'STRING'," +
-                    "current_value TEXT," +
-                    "UNIQUE KEY path_param (path, parameter_path)" +
-                    ")";
-            stmt.executeUpdate(cfgSql);
-
-            String playerSql = "CREATE TABLE IF NOT EXISTS player_registry (" +
-                    "uuid VARCHAR(36) PRIMARY KEY," +
-                    "alias_id VARCHAR(36) NOT NULL," +
-                    "reputation_score INT DEFAULT 0," +
-                    "reputation_rank VARCHAR(50)" +
-                    ")";
-            stmt.executeUpdate(playerSql);
-
-            String eventSql = "CREATE TABLE IF NOT EXISTS reputation_events (" +
-                    "id VARCHAR(36) PRIMARY KEY," +
-                    "timestamp TIMESTAMP NOT NULL," +
-                    "player_uuid VARCHAR(36) NOT NULL," +
-                    "`change` INT NOT NULL," +
-                    "reason_summary VARCHAR(255)," +
-                    "source_module VARCHAR(50)," +
-                    "details TEXT" +
-                    ")";
-            stmt.executeUpdate(eventSql);
-
-            String guideSql = "CREATE TABLE IF NOT EXISTS reputation_guidelines (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "module VARCHAR(50) NOT NULL," +
-                    "rule VARCHAR(255) NOT NULL," +
-                    "points INT NOT NULL," +
-                    "description TEXT" +
-                    ")";
-            stmt.executeUpdate(guideSql);
-
-
-
-            String suggestionSql = "CREATE TABLE IF NOT EXISTS suggestions (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "player_uuid VARCHAR(36) NOT NULL," +
-                    "parameter_id INT," +
-                    "new_value VARCHAR(255)," +
-                    "text TEXT," +
-                    "created TIMESTAMP NOT NULL," +
-                    "open BOOLEAN DEFAULT 1," +
-                    "expired BOOLEAN DEFAULT 0," +
-                    "suggestion_type ENUM('CONFIG_CHANGE','RULE_CHANGE','MODERATION_REQUEST','FEATURE_REQUEST','BUG_REPORT','EVENT_PROPOSAL','OTHER')," +
-                    "gpt_reasoning TEXT," +
-                    "gpt_confidence FLOAT," +
-                    "classified_at TIMESTAMP" +
-                    ")";
-            stmt.executeUpdate(suggestionSql);
-
-            String commentSql = "CREATE TABLE IF NOT EXISTS suggestion_comments (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "suggestion_id INT NOT NULL," +
-                    "player_uuid VARCHAR(36) NOT NULL," +
-                    "content TEXT NOT NULL," +
-                    "timestamp TIMESTAMP NOT NULL" +
-                    ")";
-            stmt.executeUpdate(commentSql);
-
-            try { stmt.executeUpdate("ALTER TABLE suggestions ADD COLUMN expired BOOLEAN DEFAULT 0"); } catch (SQLException ignore) {}
-
-            try { stmt.executeUpdate("ALTER TABLE suggestions ADD COLUMN expired BOOLEAN DEFAULT 0"); } catch (SQLException ignore) {}
-
-            String voteSql = "CREATE TABLE IF NOT EXISTS votes (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "suggestion_id INT NOT NULL," +
-                    "player_uuid VARCHAR(36) NOT NULL," +
-                    "vote_yes BOOLEAN NOT NULL," +
-                    "weight DOUBLE NOT NULL," +
-                    "UNIQUE KEY suggestion_player (suggestion_id, player_uuid)" +
-                    ")";
-            stmt.executeUpdate(voteSql);
-
-            String promptSql = "CREATE TABLE IF NOT EXISTS gpt_prompts (" +
-                    "category VARCHAR(50) PRIMARY KEY," +
-                    "prompt TEXT NOT NULL" +
-                    ")";
-            stmt.executeUpdate(promptSql);
-
-            String responseSql = "CREATE TABLE IF NOT EXISTS gpt_responses (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "player_uuid VARCHAR(36) NOT NULL," +
-                    "module VARCHAR(50)," +
-                    "response TEXT NOT NULL," +
-                    "created TIMESTAMP NOT NULL," +
-                    "delivered BOOLEAN DEFAULT 0" +
-                    ")";
-            stmt.executeUpdate(responseSql);
-
-            String rulesSql = "CREATE TABLE IF NOT EXISTS server_rules (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "rule_text TEXT NOT NULL," +
-                    "category VARCHAR(50)" +
-                    ")";
-            stmt.executeUpdate(rulesSql);
-
-            String ruleLogSql = "CREATE TABLE IF NOT EXISTS rule_changes (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "rule_id INT NOT NULL," +
-                    "old_text TEXT NOT NULL," +
-                    "new_text TEXT NOT NULL," +
-                    "changed_at TIMESTAMP NOT NULL," +
-                    "changed_by VARCHAR(36)," +
-                    "suggestion_id INT" +
-                    ")";
-            stmt.executeUpdate(ruleLogSql);
-
-            String cfgHistSql = "CREATE TABLE IF NOT EXISTS config_change_history (" +
-                    "change_id VARCHAR(36) PRIMARY KEY," +
-                    "player_uuid VARCHAR(36)," +
-                    "param_key VARCHAR(255) NOT NULL," +
-                    "old_value TEXT," +
-                    "new_value TEXT," +
-                    "changed_at TIMESTAMP NOT NULL" +
-                    ")";
-            stmt.executeUpdate(cfgHistSql);
-
-            String analysisSql = "CREATE TABLE IF NOT EXISTS chat_analysis_log (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "timestamp TIMESTAMP NOT NULL," +
-                    "chatlog TEXT NOT NULL," +
-                    "json TEXT NOT NULL," +
-                    "betroffene_spieler TEXT" +
-                    ")";
-            stmt.executeUpdate(analysisSql);
-
-            String tokenSql = "CREATE TABLE IF NOT EXISTS web_access_tokens (" +
-                    "id VARCHAR(36) PRIMARY KEY," +
-                    "player_uuid VARCHAR(36) NOT NULL," +
-                    "token TEXT NOT NULL," +
-                    "type VARCHAR(20) NOT NULL," +
-                    "issued_at TIMESTAMP NOT NULL," +
-                    "expires_at TIMESTAMP NOT NULL," +
-                    "used BOOLEAN DEFAULT 0" +
-                    ")";
-            stmt.executeUpdate(tokenSql);
+    /** Mark replicas unhealthy when replication is stopped or lags too far behind. */
+    private void checkReplicas() {
+        for (Replica r : replicas) {
+            boolean healthy;
+            int lag = -1;
+            String error = null;
+            try (Connection conn = r.source.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SHOW SLAVE STATUS")) {
+                if (rs.next()) {
+                    lag = rs.getInt("Seconds_Behind_Master");
+                    healthy = !rs.wasNull() && lag <= maxReplicaLagSeconds;
+                } else {
+                    healthy = false;
+                    error = "not a replica";
+                }
+            } catch (SQLException e) {
+                // e.g. a user without the REPLICATION CLIENT / SLAVE MONITOR privilege
+                healthy = false;
+                error = e.getMessage();
+            }
+            r.lagSeconds = lag;
+            if (r.healthy != healthy || (error != null && !error.equals(r.error))) {
+                plugin.getLogger().warning("Replica " + r.host + (healthy ? " is healthy again" : " removed from reads")
+                        + " (lag: " + (lag < 0 ? "unknown" : lag + "s") + ")" + (error != null ? ": " + error : ""));
+            }
+            r.healthy = healthy;
+            r.error = error;
         }
+        long cutoff = System.currentTimeMillis() - readYourWritesMs;
+        recentWrites.values().removeIf(t -> t < cutoff);
     }
 
-    private void setupSQLiteTables(Connection connection) throws SQLException {
-        try (Statement stmt = connection.createStatement()) {
-            String chatSql = "CREATE TABLE IF NOT EXISTS chat_log (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "player_uuid TEXT NOT NULL," +
-                    "message_time TIMESTAMP NOT NULL," +
-                    "message TEXT NOT NULL" +
-                    ")";
-            stmt.executeUpdate(chatSql);
-
-            String gptSql = "CREATE TABLE IF NOT EXISTS gpt_log (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "request_uuid TEXT NOT NULL," +
-                    "player_uuid TEXT," +
-                    "request_time TIMESTAMP NOT NULL," +
-                    "prompt TEXT NOT NULL," +
-                    "response TEXT," +
-                    "response_time TIMESTAMP" +
-                    ")";
-            stmt.executeUpdate(gptSql);
-
-            String cfgSql = "CREATE TABLE IF NOT EXISTS config_params (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "path TEXT NOT NULL," +
-                    "parameter_path TEXT NOT NULL," +
-                    "min_value INT," +
-                    "max_value INT," +
-                    "recommended_range TEXT," +
-                    "editable BOOLEAN DEFAULT 0," +
-                    "impact_category TEXT," +
-                    "impact_rating INT DEFAULT 5," +
-                    "description TEXT," +
-                    "value_type TEXT DEFAULT 'STRING'," +
-                    "current_value TEXT," +
-                    "UNIQUE(path, parameter_path)" +
-                    ")";
-            stmt.executeUpdate(cfgSql);
-
-            String playerSql = "CREATE TABLE IF NOT EXISTS player_registry (" +
-                    "uuid TEXT PRIMARY KEY," +
-                    "alias_id TEXT NOT NULL," +
-                    "reputation_score INT DEFAULT 0," +
-                    "reputation_rank TEXT" +
-                    ")";
-            stmt.executeUpdate(playerSql);
-
-            String eventSql = "CREATE TABLE IF NOT EXISTS reputation_events (" +
-                    "id TEXT PRIMARY KEY," +
-                    "timestamp TIMESTAMP NOT NULL," +
-                    "player_uuid TEXT NOT NULL," +
-                    "change INT NOT NULL," +
-                    "reason_summary TEXT," +
-                    "source_module TEXT," +
-                    "details TEXT" +
-                    ")";
-            stmt.executeUpdate(eventSql);
-
-            String guideSql = "CREATE TABLE IF NOT EXISTS reputation_guidelines (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "module TEXT NOT NULL," +
-                    "rule TEXT NOT NULL," +
-                    "points INT NOT NULL," +
-                    "description TEXT" +
-                    ")";
-            stmt.executeUpdate(guideSql);
-
-
-
-            String suggestionSql = "CREATE TABLE IF NOT EXISTS suggestions (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "player_uuid TEXT NOT NULL," +
-                    "parameter_id INT," +
-                    "new_value TEXT," +
-                    "text TEXT," +
-                    "created TIMESTAMP NOT NULL," +
-                    "open BOOLEAN DEFAULT 1," +
-                    "expired BOOLEAN DEFAULT 0," +
-                    "suggestion_type TEXT," +
-                    "gpt_reasoning TEXT," +
-                    "gpt_confidence FLOAT," +
-                    "classified_at TIMESTAMP" +
-                    ")";
-            stmt.executeUpdate(suggestionSql);
-
-            String commentSql = "CREATE TABLE IF NOT EXISTS suggestion_comments (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "suggestion_id INT NOT NULL," +
-                    "player_uuid TEXT NOT NULL," +
-                    "content TEXT NOT NULL," +
-                    "timestamp TIMESTAMP NOT NULL" +
-                    ")";
-            stmt.executeUpdate(commentSql);
-
-            String voteSql = "CREATE TABLE IF NOT EXISTS votes (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "suggestion_id INT NOT NULL," +
-                    "player_uuid TEXT NOT NULL," +
-                    "vote_yes BOOLEAN NOT NULL," +
-                    "weight DOUBLE NOT NULL," +
-                    "UNIQUE(suggestion_id, player_uuid)" +
-                    ")";
-            stmt.executeUpdate(voteSql);
-
-            String promptSql = "CREATE TABLE IF NOT EXISTS gpt_prompts (" +
-                    "category TEXT PRIMARY KEY," +
-                    "prompt TEXT NOT NULL" +
-                    ")";
-            stmt.executeUpdate(promptSql);
-
-            String responseSql = "CREATE TABLE IF NOT EXISTS gpt_responses (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "player_uuid TEXT NOT NULL," +
-                    "module TEXT," +
-                    "response TEXT NOT NULL," +
-                    "created TIMESTAMP NOT NULL," +
-                    "delivered BOOLEAN DEFAULT 0" +
-                    ")";
-            stmt.executeUpdate(responseSql);
-
-            String rulesSql = "CREATE TABLE IF NOT EXISTS server_rules (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "rule_text TEXT NOT NULL," +
-                    "category TEXT" +
-                    ")";
-            stmt.executeUpdate(rulesSql);
-
-            String ruleLogSql = "CREATE TABLE IF NOT EXISTS rule_changes (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "rule_id INT NOT NULL," +
-                    "old_text TEXT NOT NULL," +
-                    "new_text TEXT NOT NULL," +
-                    "changed_at TIMESTAMP NOT NULL," +
-                    "changed_by TEXT," +
-                    "suggestion_id INT" +
-                    ")";
-            stmt.executeUpdate(ruleLogSql);
-
-            String cfgHistSql = "CREATE TABLE IF NOT EXISTS config_change_history (" +
-                    "change_id TEXT PRIMARY KEY," +
-                    "player_uuid TEXT," +
-                    "param_key TEXT NOT NULL," +
-                    "old_value TEXT," +
-                    "new_value TEXT," +
-                    "changed_at TIMESTAMP NOT NULL" +
-                    ")";
-            stmt.executeUpdate(cfgHistSql);
-
-            String analysisSql = "CREATE TABLE IF NOT EXISTS chat_analysis_log (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "timestamp TIMESTAMP NOT NULL," +
-                    "chatlog TEXT NOT NULL," +
-                    "json TEXT NOT NULL," +
-                    "betroffene_spieler TEXT" +
-                    ")";
-            stmt.executeUpdate(analysisSql);
-
-            String tokenSql = "CREATE TABLE IF NOT EXISTS web_access_tokens (" +
-                    "id TEXT PRIMARY KEY," +
-                    "player_uuid TEXT NOT NULL," +
-                    "token TEXT NOT NULL," +
-                    "type TEXT NOT NULL," +
-                    "issued_at TIMESTAMP NOT NULL," +
-                    "expires_at TIMESTAMP NOT NULL," +
-                    "used BOOLEAN DEFAULT 0" +
-                    ")";
-            stmt.executeUpdate(tokenSql);
-        }
+    /**
+     * Configure a SQLite pool: WAL journal so readers never block the writer,
+     * relaxed fsync and larger page cache / mmap window.
+     */
+    private void applySqliteSettings(HikariConfig hikariConfig, File dbFile, ConfigurationSection sec) {
+        hikariConfig.setDriverClassName("org.sqlite.JDBC");
+        hikariConfig.setJdbcUrl("jdbc:sqlite:" + dbFile.getAbsolutePath());
+        String journal = sec != null ? sec.getString("journal-mode", "WAL") : "WAL";
+        String sync = sec != null ? sec.getString("synchronous", "NORMAL") : "NORMAL";
+        long mmapMb = sec != null ? sec.getLong("mmap-size-mb", 256L) : 256L;
+        long cacheMb = sec != null ? sec.getLong("cache-size-mb", 64L) : 64L;
+        int busyTimeout = sec != null ? sec.getInt("busy-timeout-ms", 5000) : 5000;
+        hikariConfig.addDataSourceProperty("journal_mode", journal);
+        hikariConfig.addDataSourceProperty("synchronous", sync);
+        hikariConfig.addDataSourceProperty("mmap_size", String.valueOf(mmapMb * 1024L * 1024L));
+        // negative cache_size is interpreted as KiB
+        hikariConfig.addDataSourceProperty("cache_size", String.valueOf(-cacheMb * 1024L));
+        hikariConfig.addDataSourceProperty("busy_timeout", String.valueOf(busyTimeout));
+    }
+
+    private void setupTables(Connection connection) throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator(plugin, engine == Engine.SQLITE);
+        migrator.migrate(connection);
     }
 
     public Connection getConnection() {
         if (dataSource == null) return null;
         try {
-            return dataSource.getConnection();
+            return acquire(dataSource);
         } catch (SQLException e) {
             plugin.getLogger().warning("Failed to obtain connection: " + e.getMessage());
             return null;
         }
     }
 
+    /** Borrow a connection, recording the wait time and timing its statements. */
+    private Connection acquire(HikariDataSource source) throws SQLException {
+        if (metrics == null) {
+            return source.getConnection();
+        }
+        long start = System.nanoTime();
+        Connection conn = source.getConnection();
+        metrics.recordWait(source.getPoolName(), System.nanoTime() - start);
+        return metrics.wrap(conn, metrics.callerKey());
+    }
+
+    /**
+     * Connection for queries that tolerate replication lag. Uses a healthy
+     * replica when configured and falls back to the primary otherwise.
+     * Callers must not write through this connection.
+     */
+    public Connection getReadConnection() {
+        int n = replicas.size();
+        if (n > 0) {
+            int start = Math.floorMod(replicaCursor.getAndIncrement(), n);
+            for (int i = 0; i < n; i++) {
+                Replica r = replicas.get((start + i) % n);
+                if (!r.healthy) continue;
+                try {
+                    return acquire(r.source);
+                } catch (SQLException e) {
+                    r.healthy = false;
+                    plugin.getLogger().warning("Replica " + r.host + " unavailable: " + e.getMessage());
+                }
+            }
+        }
+        return getConnection();
+    }
+
+    /**
+     * Read-your-writes variant of {@link #getReadConnection()}: if
+     * <code>key</code> was passed to {@link #markWrite(String)} recently the
+     * primary is used so the caller sees its own change.
+     *
+     * @param key consistency key such as <code>"player:" + uuid</code>
+     */
+    public Connection getReadConnection(String key) {
+        if (key != null && !replicas.isEmpty()) {
+            Long written = recentWrites.get(key);
+            if (written != null && System.currentTimeMillis() - written < readYourWritesMs) {
+                return getConnection();
+            }
+        }
+        return getReadConnection();
+    }
+
+    /** Record a committed write for read-your-writes routing. */
+    public void markWrite(String key) {
+        if (key != null && !replicas.isEmpty()) {
+            recentWrites.put(key, System.currentTimeMillis());
+        }
+    }
+
+    /** @return number of replicas currently serving reads */
+    public int getHealthyReplicaCount() {
+        int count = 0;
+        for (Replica r : replicas) {
+            if (r.healthy) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Run write work inside a transaction. On SQLite the work is handed to the
+     * single writer thread and committed together with concurrent writes; on
+     * MariaDB it runs on a pooled connection. The call blocks until committed.
+     *
+     * @param work statements to execute; must not manage the transaction itself
+     * @return the value returned by the work
+     */
+    public <T> T executeWrite(SqlWork<T> work) throws SQLException {
+        if (!isConnected()) {
+            throw new SQLException("Database not connected");
+        }
+        if (writeExecutor != null) {
+            if (metrics == null) {
+                return writeExecutor.execute(work);
+            }
+            String caller = metrics.callerKey();
+            long queued = System.nanoTime();
+            return writeExecutor.execute(conn -> {
+                // time spent waiting for the single writer
+                metrics.recordWait("OpenCore-SQLiteWriter", System.nanoTime() - queued);
+                return work.run(metrics.wrap(conn, caller));
+            });
+        }
+        try (Connection conn = acquire(dataSource)) {
+            conn.setAutoCommit(false);
+            try {
+                T result = work.run(conn);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /** @return query metrics, or null if disabled in database.yml */
+    public QueryMetrics getQueryMetrics() {
+        return metrics;
+    }
+
+    /** Snapshot of all connection pools (primary or SQLite readers, writer, replicas). */
+    public java.util.List<PoolStats> getPoolStats() {
+        java.util.List<PoolStats> list = new ArrayList<>();
+        if (dataSource != null) {
+            list.add(poolStats(dataSource));
+        }
+        if (writeExecutor != null) {
+            list.add(new PoolStats("OpenCore-SQLiteWriter", writeExecutor.isBusy() ? 1 : 0, writeExecutor.isBusy() ? 0 : 1,
+                    1, 1, writeExecutor.getQueueDepth(),
+                    metrics != null ? metrics.getWaitHistogram("OpenCore-SQLiteWriter") : null));
+        }
+        for (Replica r : replicas) {
+            list.add(poolStats(r.source));
+        }
+        return list;
+    }
+
+    private PoolStats poolStats(HikariDataSource source) {
+        HikariPoolMXBean mx = source.getHikariPoolMXBean();
+        String name = source.getPoolName();
+        return new PoolStats(name,
+                mx != null ? mx.getActiveConnections() : 0,
+                mx != null ? mx.getIdleConnections() : 0,
+                mx != null ? mx.getTotalConnections() : 0,
+                source.getMaximumPoolSize(),
+                mx != null ? mx.getThreadsAwaitingConnection() : 0,
+                metrics != null ? metrics.getWaitHistogram(name) : null);
+    }
+
+    /** @return committed write groups and the writes they contained, or null on MariaDB */
+    public long[] getWriterCommitStats() {
+        if (writeExecutor == null) return null;
+        return new long[]{writeExecutor.getCommittedGroups(), writeExecutor.getCommittedTasks()};
+    }
+
+    /** Number of writes waiting for the SQLite writer, or 0 on MariaDB. */
+    public int getPendingWrites() {
+        return writeExecutor != null ? writeExecutor.getQueueDepth() : 0;
+    }
+
     public boolean isConnected() {
         return dataSource != null && !dataSource.isClosed();
     }
@@ -454,6 +422,13 @@ public class Database {
         return engine == Engine.MARIADB;
     }
 
+    /**
+     * @return SQL dialect of the configured engine.
+     */
+    public SqlDialect getDialect() {
+        return engine == Engine.SQLITE ? SqlDialect.SQLITE : SqlDialect.MARIADB;
+    }
+
     public String getPrompt(String category) {
         if (!isConnected()) return null;
         String sql = "SELECT prompt FROM gpt_prompts WHERE category = ?";
@@ -488,51 +463,20 @@ public class Database {
     }
 
     public void disconnect() {
-        if (dataSource != null) {
-            dataSource.close();
+        if (replicaCheckTask != null) {
+            replicaCheckTask.cancel();
+            replicaCheckTask = null;
         }
-    }
-
-    /**
-     * Execute SQL statements from a file. Statements must be separated by
-     * semicolons. Lines starting with '--' or '#' are ignored.
-     *
-     * @param file SQL file located inside the plugin folder
-     * @return true if execution succeeded
-     */
-    public boolean executeSqlFile(java.io.File file) {
-        if (!isConnected()) return false;
-        if (file == null || !file.exists()) {
-            plugin.getLogger().warning("SQL file not found: " + file);
-            return false;
+        for (Replica r : replicas) {
+            r.source.close();
         }
-        try (Connection conn = getConnection();
-             java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.FileReader(file));
-             Statement stmt = conn.createStatement()) {
-            conn.setAutoCommit(false);
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty() || line.startsWith("--") || line.startsWith("#")) {
-                    continue;
-                }
-                sb.append(line).append(' ');
-                if (line.endsWith(";")) {
-                    String sql = sb.toString().trim();
-                    sql = sql.substring(0, sql.lastIndexOf(';')).trim();
-                    if (!sql.isEmpty()) {
-                        stmt.execute(sql);
-                    }
-                    sb.setLength(0);
-                }
-            }
-            conn.commit();
-            conn.setAutoCommit(true);
-            return true;
-        } catch (Exception e) {
-            plugin.getLogger().warning("Failed to execute SQL file: " + e.getMessage());
-            return false;
+        replicas.clear();
+        if (writeExecutor != null) {
+            writeExecutor.shutdown();
+            writeExecutor = null;
+        }
+        if (dataSource != null) {
+            dataSource.close();
         }
     }
 }
@@ -0,0 +1,146 @@
+package com.illusioncis7.opencore.database;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Applies the versioned SQL scripts below <code>migrations/&lt;dialect&gt;/</code>
+ * in order and records each applied version in <code>schema_version</code>.
+ * Scripts are never edited once released; schema changes get a new entry in
+ * {@link #MIGRATIONS} with one script per dialect.
+ */
+public class SchemaMigrator {
+
+    /** Ordered migration names; the version is the position in this list plus one. */
+    private static final String[] MIGRATIONS = {
+            "001_baseline",
+            "002_indexes",
+            "003_import_checkpoints",
+            "004_gpt_cache",
+            "005_gpt_queue",
+            "006_gpt_usage"
+    };
+
+    private final JavaPlugin plugin;
+    private final Logger logger;
+    private final String dialect;
+
+    public SchemaMigrator(JavaPlugin plugin, boolean sqlite) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.dialect = sqlite ? "sqlite" : "mariadb";
+    }
+
+    /**
+     * Bring the schema up to the latest version.
+     *
+     * @param conn connection used for all migration statements
+     */
+    public void migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT PRIMARY KEY," +
+                    "name VARCHAR(100) NOT NULL," +
+                    "applied_at TIMESTAMP NOT NULL" +
+                    ")");
+        }
+        int current = currentVersion(conn);
+        if (current > MIGRATIONS.length) {
+            logger.warning("Database schema version " + current + " is newer than this plugin (" + MIGRATIONS.length + ")");
+            return;
+        }
+        for (int i = current; i < MIGRATIONS.length; i++) {
+            apply(conn, i + 1, MIGRATIONS[i]);
+        }
+    }
+
+    /** @return the highest applied schema version or 0 for a fresh database. */
+    public int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /** @return the schema version this plugin build expects. */
+    public int latestVersion() {
+        return MIGRATIONS.length;
+    }
+
+    private void apply(Connection conn, int version, String name) throws SQLException {
+        List<String> statements = loadScript(name);
+        boolean autoCommit = conn.getAutoCommit();
+        // DDL is transactional on SQLite only; MariaDB commits each statement implicitly,
+        // which is why every script must be safe to re-run.
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+            if (version == 1) {
+                // databases created before the expired flag existed
+                ensureColumn(conn, "suggestions", "expired", "BOOLEAN DEFAULT 0");
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO schema_version (version, name, applied_at) VALUES (?, ?, ?)")) {
+                ps.setInt(1, version);
+                ps.setString(2, name);
+                ps.setTimestamp(3, Timestamp.from(Instant.now()));
+                ps.executeUpdate();
+            }
+            conn.commit();
+            logger.info("Applied database migration " + name);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw new SQLException("Migration " + name + " failed: " + e.getMessage(), e);
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void ensureColumn(Connection conn, String table, String column, String definition) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        try (ResultSet rs = meta.getColumns(conn.getCatalog(), null, table, column)) {
+            if (rs.next()) {
+                return;
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    private List<String> loadScript(String name) throws SQLException {
+        String path = "migrations/" + dialect + "/" + name + ".sql";
+        InputStream in = plugin.getResource(path);
+        if (in == null) {
+            throw new SQLException("Missing migration script " + path);
+        }
+        List<String> statements = new ArrayList<>();
+        try (SqlScriptReader reader = new SqlScriptReader(
+                new InputStreamReader(in, StandardCharsets.UTF_8), dialect.equals("mariadb"))) {
+            String sql;
+            while ((sql = reader.next()) != null) {
+                statements.add(sql);
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to read migration script " + path + ": " + e.getMessage(), e);
+        }
+        return statements;
+    }
+}
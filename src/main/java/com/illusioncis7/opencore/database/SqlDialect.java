@@ -0,0 +1,71 @@
+package com.illusioncis7.opencore.database;
+
+/**
+ * SQL fragments that differ between the supported engines.
+ * Repositories build their statements from these once per dialect.
+ */
+public enum SqlDialect {
+    SQLITE,
+    MARIADB;
+
+    /**
+     * Build an insert that updates the given columns when a row with the same
+     * unique key already exists.
+     *
+     * @param table      target table
+     * @param columns    inserted columns, bound in this order
+     * @param keyColumns columns of the unique key that triggers the update
+     * @param updates    columns overwritten with the inserted values
+     */
+    public String upsert(String table, String[] columns, String[] keyColumns, String[] updates) {
+        String[] assignments = new String[updates.length];
+        for (int i = 0; i < updates.length; i++) {
+            assignments[i] = updates[i] + " = " + inserted(updates[i]);
+        }
+        return upsertSet(table, columns, keyColumns, assignments);
+    }
+
+    /**
+     * Like {@link #upsert} with explicit assignments such as
+     * <code>hits = hits + </code>{@link #inserted}<code>("hits")</code>. MariaDB
+     * applies them left to right, so a later assignment sees the new value of
+     * a column assigned before it; SQLite always sees the old row.
+     */
+    public String upsertSet(String table, String[] columns, String[] keyColumns, String[] assignments) {
+        StringBuilder sb = new StringBuilder("INSERT INTO ").append(table).append(" (")
+                .append(String.join(", ", columns)).append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        sb.append(") ");
+        if (this == SQLITE) {
+            sb.append("ON CONFLICT(").append(String.join(", ", keyColumns)).append(") DO UPDATE SET ");
+        } else {
+            sb.append("ON DUPLICATE KEY UPDATE ");
+        }
+        return sb.append(String.join(", ", assignments)).toString();
+    }
+
+    /** The value the conflicting insert tried to write, for the update part of an upsert. */
+    public String inserted(String column) {
+        return this == SQLITE ? "excluded." + column : "VALUES(" + column + ")";
+    }
+
+    /** Insert that silently skips rows violating a unique key. */
+    public String insertIgnore(String table, String[] columns) {
+        StringBuilder sb = new StringBuilder(this == SQLITE ? "INSERT OR IGNORE INTO " : "INSERT IGNORE INTO ")
+                .append(table).append(" (").append(String.join(", ", columns)).append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.append(")").toString();
+    }
+
+    /** Clamp an expression between two bound parameters: the lower bound first, then the upper bound. */
+    public String clamp(String expression) {
+        if (this == SQLITE) {
+            return "MAX(?, MIN(?, " + expression + "))";
+        }
+        return "GREATEST(?, LEAST(?, " + expression + "))";
+    }
+}
@@ -0,0 +1,233 @@
+package com.illusioncis7.opencore.database;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Imports an SQL script statement by statement. Statements are sent in JDBC
+ * batches and committed in chunks; after every chunk the number of completed
+ * statements is stored in <code>import_checkpoints</code> within the same
+ * transaction, so a failed import can resume after the last committed chunk.
+ */
+public class SqlImporter {
+
+    /** Transaction control from dumps would interfere with chunked commits. */
+    private static final Pattern SKIPPED = Pattern.compile(
+            "^(START\\s+TRANSACTION|BEGIN(\\s+TRANSACTION)?|COMMIT|ROLLBACK|LOCK\\s+TABLES|UNLOCK\\s+TABLES|SET\\s+autocommit)\\b.*",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final String[] CHECKPOINT_COLUMNS =
+            {"file_name", "file_size", "file_modified", "statements_done", "rows_done", "updated_at"};
+
+    private final Database database;
+    private final Logger logger;
+    private final int batchSize;
+    private final int commitEvery;
+    private final long progressIntervalMs;
+
+    /** Receives progress updates while an import runs. */
+    public interface ProgressListener {
+        void onProgress(long statements, long rows, double rowsPerSecond);
+    }
+
+    /** Outcome of an import run. */
+    public static class Result {
+        public final boolean success;
+        public final long statements;
+        public final long rows;
+        public final long resumedFrom;
+        public final long elapsedMs;
+        public final String error;
+
+        Result(boolean success, long statements, long rows, long resumedFrom, long elapsedMs, String error) {
+            this.success = success;
+            this.statements = statements;
+            this.rows = rows;
+            this.resumedFrom = resumedFrom;
+            this.elapsedMs = elapsedMs;
+            this.error = error;
+        }
+
+        public double rowsPerSecond() {
+            return elapsedMs > 0 ? rows * 1000.0 / elapsedMs : rows;
+        }
+    }
+
+    public SqlImporter(JavaPlugin plugin, Database database) {
+        this.database = database;
+        this.logger = plugin.getLogger();
+        ConfigurationSection sec = YamlConfiguration.loadConfiguration(
+                new File(plugin.getDataFolder(), "database.yml")).getConfigurationSection("import");
+        int batch = 200;
+        int commit = 2000;
+        int progress = 5;
+        if (sec != null) {
+            batch = sec.getInt("batch-size", batch);
+            commit = sec.getInt("commit-every", commit);
+            progress = sec.getInt("progress-seconds", progress);
+        }
+        this.batchSize = Math.max(1, batch);
+        this.commitEvery = Math.max(batchSize, commit);
+        this.progressIntervalMs = Math.max(1, progress) * 1000L;
+    }
+
+    /**
+     * Run the import. Blocks until the script has been processed; call it off
+     * the main thread.
+     *
+     * @param resume continue after the last checkpoint instead of starting over
+     */
+    public Result run(File file, boolean resume, ProgressListener listener) {
+        long start = System.currentTimeMillis();
+        if (!database.isConnected()) {
+            return new Result(false, 0, 0, 0, 0, "database not connected");
+        }
+        if (file == null || !file.isFile()) {
+            return new Result(false, 0, 0, 0, 0, "file not found: " + file);
+        }
+        String name = file.getName();
+        long skip = 0;
+        long rows = 0;
+        try {
+            long[] checkpoint = loadCheckpoint(name, file);
+            if (resume && checkpoint != null) {
+                skip = checkpoint[0];
+                rows = checkpoint[1];
+                logger.info("Resuming import of " + name + " after statement " + skip);
+            } else if (!resume) {
+                clearCheckpoint(name);
+            }
+        } catch (SQLException e) {
+            return new Result(false, 0, 0, 0, 0, e.getMessage());
+        }
+
+        long index = 0;
+        long rowsAtStart = rows;
+        long lastProgress = start;
+        List<String> chunk = new ArrayList<>(commitEvery);
+        List<Long> lines = new ArrayList<>(commitEvery);
+        try (SqlScriptReader reader = new SqlScriptReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), database.isMariaDB())) {
+            String sql;
+            while ((sql = reader.next()) != null) {
+                index++;
+                if (index <= skip || SKIPPED.matcher(sql).matches()) {
+                    continue;
+                }
+                chunk.add(sql);
+                lines.add(reader.getStatementLine());
+                if (chunk.size() >= commitEvery) {
+                    rows += commitChunk(name, file, chunk, lines, index, rows);
+                    chunk.clear();
+                    lines.clear();
+                    long now = System.currentTimeMillis();
+                    if (listener != null && now - lastProgress >= progressIntervalMs) {
+                        lastProgress = now;
+                        listener.onProgress(index, rows, (rows - rowsAtStart) * 1000.0 / Math.max(1, now - start));
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                rows += commitChunk(name, file, chunk, lines, index, rows);
+            }
+            clearCheckpoint(name);
+        } catch (IOException | SQLException e) {
+            logger.warning("Import of " + name + " failed: " + e.getMessage());
+            return new Result(false, index, rows - rowsAtStart, skip, System.currentTimeMillis() - start, e.getMessage());
+        }
+        return new Result(true, index, rows - rowsAtStart, skip, System.currentTimeMillis() - start, null);
+    }
+
+    private long commitChunk(String name, File file, List<String> chunk, List<Long> lines,
+                             long statementsDone, long rowsBefore) throws SQLException {
+        String upsert = database.getDialect().upsert("import_checkpoints", CHECKPOINT_COLUMNS,
+                new String[]{"file_name"},
+                new String[]{"file_size", "file_modified", "statements_done", "rows_done", "updated_at"});
+        return database.executeWrite(conn -> {
+            long affected = 0;
+            int batchStart = 0;
+            try (Statement stmt = conn.createStatement()) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.addBatch(chunk.get(i));
+                    if ((i + 1) % batchSize == 0 || i == chunk.size() - 1) {
+                        try {
+                            affected += count(stmt.executeBatch());
+                        } catch (BatchUpdateException e) {
+                            int failed = batchStart + (e.getUpdateCounts() != null ? e.getUpdateCounts().length : 0);
+                            long line = lines.get(Math.min(failed, lines.size() - 1));
+                            throw new SQLException("statement on line " + line + ": " + e.getMessage(), e);
+                        }
+                        batchStart = i + 1;
+                    }
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(upsert)) {
+                ps.setString(1, name);
+                ps.setLong(2, file.length());
+                ps.setLong(3, file.lastModified());
+                ps.setLong(4, statementsDone);
+                ps.setLong(5, rowsBefore + affected);
+                ps.setTimestamp(6, Timestamp.from(Instant.now()));
+                ps.executeUpdate();
+            }
+            return affected;
+        });
+    }
+
+    private static long count(int[] results) {
+        long sum = 0;
+        for (int r : results) {
+            // SUCCESS_NO_INFO counts as one affected row
+            sum += r >= 0 ? r : (r == Statement.SUCCESS_NO_INFO ? 1 : 0);
+        }
+        return sum;
+    }
+
+    /** @return statements and rows done, or null if there is no checkpoint for this exact file. */
+    private long[] loadCheckpoint(String name, File file) throws SQLException {
+        try (Connection conn = database.getConnection()) {
+            if (conn == null) {
+                throw new SQLException("No database connection available");
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT file_size, file_modified, statements_done, rows_done FROM import_checkpoints WHERE file_name = ?")) {
+                ps.setString(1, name);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return null;
+                    if (rs.getLong(1) != file.length() || rs.getLong(2) != file.lastModified()) {
+                        logger.warning("Import checkpoint for " + name + " ignored: file has changed");
+                        return null;
+                    }
+                    return new long[]{rs.getLong(3), rs.getLong(4)};
+                }
+            }
+        }
+    }
+
+    private void clearCheckpoint(String name) throws SQLException {
+        database.executeWrite(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM import_checkpoints WHERE file_name = ?")) {
+                ps.setString(1, name);
+                return ps.executeUpdate();
+            }
+        });
+    }
+}
@@ -0,0 +1,245 @@
+package com.illusioncis7.opencore.database;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming tokenizer that splits an SQL script into single statements.
+ * Delimiters inside quoted strings, quoted identifiers and comments are
+ * ignored; line (<code>--</code>, <code>#</code>) and block comments are
+ * dropped from the returned statements. <code>DELIMITER</code> lines as
+ * written by mysqldump change the statement delimiter.
+ */
+public class SqlScriptReader implements AutoCloseable {
+
+    private final Reader reader;
+    private final boolean backslashEscapes;
+    private final char[] buf = new char[8192];
+    private int pos;
+    private int len;
+    private int pushback = -1;
+    private String delimiter = ";";
+    private long line = 1;
+    private long statementLine = 1;
+
+    /**
+     * @param reader           script source
+     * @param backslashEscapes whether a backslash escapes the next character inside
+     *                         strings (MariaDB) or is a literal character (SQLite)
+     */
+    public SqlScriptReader(Reader reader, boolean backslashEscapes) {
+        this.reader = reader;
+        this.backslashEscapes = backslashEscapes;
+    }
+
+    /** @return line on which the last returned statement started. */
+    public long getStatementLine() {
+        return statementLine;
+    }
+
+    /**
+     * Read the next statement.
+     *
+     * @return statement text without delimiter, or null at the end of the script
+     */
+    public String next() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        boolean lineStart = true;
+        int c;
+        while ((c = read()) != -1) {
+            if (sb.length() == 0 && Character.isWhitespace(c)) {
+                lineStart = c == '\n';
+                continue;
+            }
+            if (sb.length() == 0) {
+                statementLine = line;
+            }
+            if (lineStart && sb.length() == 0 && (c == 'D' || c == 'd') && readDelimiterDirective(c)) {
+                continue;
+            }
+            lineStart = false;
+            switch (c) {
+                case '\'':
+                case '"':
+                case '`':
+                    readQuoted(c, sb);
+                    break;
+                case '-': {
+                    int n = read();
+                    if (n == '-') {
+                        skipLine();
+                        appendSeparator(sb);
+                    } else {
+                        sb.append('-');
+                        unread(n);
+                    }
+                    break;
+                }
+                case '#':
+                    skipLine();
+                    appendSeparator(sb);
+                    break;
+                case '/': {
+                    int n = read();
+                    if (n == '*') {
+                        skipBlockComment();
+                        appendSeparator(sb);
+                    } else {
+                        sb.append('/');
+                        unread(n);
+                    }
+                    break;
+                }
+                default:
+                    sb.append((char) c);
+                    if (c == delimiter.charAt(delimiter.length() - 1) && endsWithDelimiter(sb)) {
+                        sb.setLength(sb.length() - delimiter.length());
+                        String sql = sb.toString().trim();
+                        if (!sql.isEmpty()) {
+                            return sql;
+                        }
+                        sb.setLength(0);
+                    }
+            }
+        }
+        String rest = sb.toString().trim();
+        return rest.isEmpty() ? null : rest;
+    }
+
+    private boolean endsWithDelimiter(StringBuilder sb) {
+        int start = sb.length() - delimiter.length();
+        if (start < 0) return false;
+        for (int i = 0; i < delimiter.length(); i++) {
+            if (sb.charAt(start + i) != delimiter.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /** Comments separate tokens, so keep a blank where one was removed. */
+    private void appendSeparator(StringBuilder sb) {
+        if (sb.length() > 0 && !Character.isWhitespace(sb.charAt(sb.length() - 1))) {
+            sb.append(' ');
+        }
+    }
+
+    private boolean readDelimiterDirective(int first) throws IOException {
+        StringBuilder word = new StringBuilder().append((char) first);
+        String keyword = "DELIMITER";
+        int c;
+        while (word.length() < keyword.length()) {
+            c = read();
+            if (c == -1 || Character.toUpperCase(c) != keyword.charAt(word.length())) {
+                // not a directive: hand the consumed characters back
+                if (c != -1) unread(c);
+                replay(word.substring(1));
+                return false;
+            }
+            word.append((char) c);
+        }
+        c = read();
+        if (c != ' ' && c != '\t') {
+            if (c != -1) unread(c);
+            replay(word.substring(1));
+            return false;
+        }
+        StringBuilder value = new StringBuilder();
+        while ((c = read()) != -1 && c != '\n') {
+            value.append((char) c);
+        }
+        String d = value.toString().trim();
+        if (!d.isEmpty()) {
+            delimiter = d;
+        }
+        return true;
+    }
+
+    private String replayed;
+    private int replayPos;
+
+    private void replay(String chars) {
+        if (chars.isEmpty()) return;
+        // the pushed back char (if any) comes after the replayed ones
+        int pending = pushback;
+        pushback = -1;
+        replayed = pending >= 0 ? chars + (char) pending : chars;
+        replayPos = 0;
+    }
+
+    private void readQuoted(int quote, StringBuilder sb) throws IOException {
+        sb.append((char) quote);
+        int c;
+        while ((c = read()) != -1) {
+            sb.append((char) c);
+            if (c == '\\' && backslashEscapes && quote != '`') {
+                int n = read();
+                if (n == -1) break;
+                sb.append((char) n);
+            } else if (c == quote) {
+                int n = read();
+                if (n == quote) {
+                    // doubled quote is an escaped quote
+                    sb.append((char) n);
+                } else {
+                    unread(n);
+                    return;
+                }
+            }
+        }
+        throw new IOException("Unterminated quoted string starting on line " + statementLine);
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != '\n') {
+            // skip
+        }
+    }
+
+    private void skipBlockComment() throws IOException {
+        int prev = -1;
+        int c;
+        while ((c = read()) != -1) {
+            if (prev == '*' && c == '/') return;
+            prev = c;
+        }
+        throw new IOException("Unterminated block comment");
+    }
+
+    private int read() throws IOException {
+        int c;
+        if (replayed != null) {
+            c = replayed.charAt(replayPos++);
+            if (replayPos >= replayed.length()) {
+                replayed = null;
+            }
+            return c;
+        }
+        if (pushback >= 0) {
+            c = pushback;
+            pushback = -1;
+            return c;
+        }
+        if (pos >= len) {
+            len = reader.read(buf, 0, buf.length);
+            pos = 0;
+            if (len <= 0) {
+                len = 0;
+                return -1;
+            }
+        }
+        c = buf[pos++];
+        if (c == '\n') line++;
+        return c;
+    }
+
+    private void unread(int c) {
+        if (c >= 0) {
+            pushback = c;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,15 @@
+package com.illusioncis7.opencore.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Unit of database work executed on a connection supplied by {@link Database}.
+ * Implementations must not commit, roll back or close the connection.
+ *
+ * @param <T> result type
+ */
+@FunctionalInterface
+public interface SqlWork<T> {
+    T run(Connection conn) throws SQLException;
+}
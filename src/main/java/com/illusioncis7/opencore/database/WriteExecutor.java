@@ -0,0 +1,268 @@
+package com.illusioncis7.opencore.database;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Serializes all SQLite writes onto one thread and one connection.
+ * Work submitted concurrently is grouped into a single transaction
+ * (group commit); each unit runs inside its own savepoint so a failing
+ * unit only rolls back itself. Callers block until the group is committed.
+ * A caller that gives up before the writer took its work withdraws it, so a
+ * reported failure never commits later.
+ */
+class WriteExecutor {
+
+    /** Longest a caller waits for its write; a stuck writer must not hang the caller forever. */
+    private static final long WAIT_MS = TimeUnit.SECONDS.toMillis(60);
+
+    private static class WriteTask<T> {
+        final SqlWork<T> work;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        /** Set by whoever decides the task's fate first: the writer or a caller giving up. */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        T result;
+        SQLException error;
+
+        WriteTask(SqlWork<T> work) {
+            this.work = work;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        void run(Connection conn) {
+            Savepoint sp = null;
+            try {
+                sp = conn.setSavepoint();
+                result = work.run(conn);
+                conn.releaseSavepoint(sp);
+            } catch (SQLException | RuntimeException e) {
+                error = e instanceof SQLException ? (SQLException) e : new SQLException(e);
+                if (sp != null) {
+                    try {
+                        conn.rollback(sp);
+                    } catch (SQLException ignore) {
+                        // the group rollback below takes care of it
+                    }
+                }
+            }
+        }
+
+        void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    private final DataSource writerSource;
+    private final Logger logger;
+    private final int maxGroupSize;
+    private final long waitMs;
+    private final BlockingQueue<WriteTask<?>> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong committedGroups = new AtomicLong();
+    private final AtomicLong committedTasks = new AtomicLong();
+    private final Thread thread;
+    /** Guards the running check in execute() against shutdown() in between. */
+    private final Object admission = new Object();
+    private volatile boolean running = true;
+    private volatile boolean busy;
+
+    WriteExecutor(DataSource writerSource, int maxGroupSize, Logger logger) {
+        this(writerSource, maxGroupSize, WAIT_MS, logger);
+    }
+
+    /** @param waitMs longest a caller waits for its write */
+    WriteExecutor(DataSource writerSource, int maxGroupSize, long waitMs, Logger logger) {
+        this.writerSource = writerSource;
+        this.maxGroupSize = Math.max(1, maxGroupSize);
+        this.waitMs = Math.max(1L, waitMs);
+        this.logger = logger;
+        this.thread = new Thread(this::loop, "OpenCore-SQLiteWriter");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Run the work on the writer thread and wait for its group to commit.
+     * Calls from the writer thread itself are rejected because they would deadlock.
+     */
+    <T> T execute(SqlWork<T> work) throws SQLException {
+        if (Thread.currentThread() == thread) {
+            throw new SQLException("Nested write must use the connection passed to the outer SqlWork");
+        }
+        WriteTask<T> task = new WriteTask<>(work);
+        synchronized (admission) {
+            if (!running) {
+                throw new SQLException("SQLite writer is shut down");
+            }
+            queue.add(task);
+        }
+        try {
+            try {
+                return task.future.get(waitMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (withdraw(task)) {
+                    throw new SQLException("Timed out waiting for SQLite write after " + waitMs + "ms");
+                }
+                // the writer is running it; its outcome is about to be known
+                try {
+                    return task.future.get(waitMs, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException again) {
+                    throw new SQLException("SQLite write still running after " + (2 * waitMs)
+                            + "ms, it may still commit");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (withdraw(task)) {
+                throw new SQLException("Interrupted while waiting for write", e);
+            }
+            throw new SQLException("Interrupted while the write was running, it may still commit", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    /** @return true if the task was withdrawn before the writer took it */
+    private boolean withdraw(WriteTask<?> task) {
+        if (!task.claim()) {
+            return false;
+        }
+        task.future.cancel(false);
+        queue.remove(task);
+        return true;
+    }
+
+    /** @return true while a group is being executed */
+    boolean isBusy() {
+        return busy;
+    }
+
+    int getQueueDepth() {
+        return queue.size();
+    }
+
+    long getCommittedGroups() {
+        return committedGroups.get();
+    }
+
+    long getCommittedTasks() {
+        return committedTasks.get();
+    }
+
+    /** Finish all queued work and stop the writer thread. */
+    void shutdown() {
+        synchronized (admission) {
+            running = false;
+        }
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+            if (thread.isAlive()) {
+                // stop after the current group; whatever is still queued fails
+                logger.warning("SQLite writer still busy after 10s, abandoning " + queue.size() + " queued writes");
+                thread.interrupt();
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            logger.severe("SQLite writer did not stop, leaving its connection open");
+            return;
+        }
+        if (writerSource instanceof Closeable) {
+            try {
+                ((Closeable) writerSource).close();
+            } catch (IOException e) {
+                logger.warning("Failed to close SQLite writer: " + e.getMessage());
+            }
+        }
+    }
+
+    private void loop() {
+        List<WriteTask<?>> group = new ArrayList<>(maxGroupSize);
+        while (true) {
+            try {
+                WriteTask<?> first = queue.poll(250, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (!running) {
+                        break;
+                    }
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, maxGroupSize - 1);
+                // callers that gave up have withdrawn their work
+                group.removeIf(task -> !task.claim());
+                if (!group.isEmpty()) {
+                    runGroup(group);
+                }
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                group.clear();
+            }
+        }
+        List<WriteTask<?>> left = new ArrayList<>();
+        queue.drainTo(left);
+        for (WriteTask<?> task : left) {
+            if (task.claim()) {
+                task.future.completeExceptionally(new SQLException("SQLite writer is shut down"));
+            }
+        }
+    }
+
+    private void runGroup(List<WriteTask<?>> group) {
+        busy = true;
+        try (Connection conn = writerSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (WriteTask<?> task : group) {
+                    task.run(conn);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            committedGroups.incrementAndGet();
+            committedTasks.addAndGet(group.size());
+            for (WriteTask<?> task : group) {
+                task.complete();
+            }
+        } catch (SQLException e) {
+            logger.severe("SQLite write group of " + group.size() + " failed: " + e.getMessage());
+            for (WriteTask<?> task : group) {
+                task.future.completeExceptionally(e);
+            }
+        } finally {
+            busy = false;
+        }
+    }
+}
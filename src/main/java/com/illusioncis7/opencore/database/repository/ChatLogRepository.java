@@ -0,0 +1,53 @@
+package com.illusioncis7.opencore.database.repository;
+
+import com.illusioncis7.opencore.database.Database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes chat messages to <code>chat_log</code>.
+ */
+public class ChatLogRepository {
+
+    public static final String INSERT_SQL =
+            "INSERT INTO chat_log (player_uuid, message_time, message) VALUES (?, ?, ?)";
+
+    private final Database database;
+
+    /** Single chat message. */
+    public static class Entry {
+        public final UUID player;
+        public final long time;
+        public final String message;
+
+        public Entry(UUID player, long time, String message) {
+            this.player = player;
+            this.time = time;
+            this.message = message;
+        }
+    }
+
+    public ChatLogRepository(Database database) {
+        this.database = database;
+    }
+
+    /** Insert all entries in one transaction. */
+    public void insertBatch(List<Entry> entries) throws SQLException {
+        if (entries.isEmpty()) return;
+        database.executeWrite(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+                for (Entry e : entries) {
+                    ps.setString(1, e.player.toString());
+                    ps.setTimestamp(2, new Timestamp(e.time));
+                    ps.setString(3, e.message);
+                    ps.addBatch();
+                }
+                return ps.executeBatch();
+            }
+        });
+    }
+}
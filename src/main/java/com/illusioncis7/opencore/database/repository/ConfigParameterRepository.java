@@ -0,0 +1,64 @@
+package com.illusioncis7.opencore.database.repository;
+
+import com.illusioncis7.opencore.database.Database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Writes scanned configuration values to <code>config_params</code>.
+ */
+public class ConfigParameterRepository {
+
+    private static final String[] COLUMNS = {"path", "parameter_path", "description", "value_type", "current_value"};
+
+    private final Database database;
+
+    /** Parameter read from a configuration file. */
+    public static class ScannedParameter {
+        public final String path;
+        public final String parameter;
+        public final String value;
+
+        public ScannedParameter(String path, String parameter, String value) {
+            this.path = path;
+            this.parameter = parameter;
+            this.value = value;
+        }
+    }
+
+    public ConfigParameterRepository(Database database) {
+        this.database = database;
+    }
+
+    /** Insert the parameter or refresh its current value. */
+    public void upsert(ScannedParameter param, String valueType) throws SQLException {
+        upsertBatch(List.of(param), valueType);
+    }
+
+    /** Batch variant of {@link #upsert(ScannedParameter, String)}, written in one transaction. */
+    public void upsertBatch(List<ScannedParameter> params, String valueType) throws SQLException {
+        if (params.isEmpty()) return;
+        String sql = database.getDialect().upsert("config_params", COLUMNS,
+                new String[]{"path", "parameter_path"}, new String[]{"current_value", "description"});
+        database.executeWrite(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (ScannedParameter p : params) {
+                    ps.setString(1, p.path);
+                    ps.setString(2, p.parameter);
+                    ps.setNull(3, Types.VARCHAR);
+                    ps.setString(4, valueType);
+                    if (p.value != null) {
+                        ps.setString(5, p.value);
+                    } else {
+                        ps.setNull(5, Types.VARCHAR);
+                    }
+                    ps.addBatch();
+                }
+                return ps.executeBatch();
+            }
+        });
+    }
+}
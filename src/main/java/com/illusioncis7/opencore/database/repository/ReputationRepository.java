@@ -0,0 +1,135 @@
+package com.illusioncis7.opencore.database.repository;
+
+import com.illusioncis7.opencore.database.Database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes to <code>player_registry</code> and <code>reputation_events</code>.
+ * Methods taking a {@link Connection} participate in the caller's transaction.
+ */
+public class ReputationRepository {
+
+    private static final String[] PLAYER_COLUMNS = {"uuid", "alias_id", "reputation_score", "reputation_rank"};
+    private static final String SET_SCORE = "UPDATE player_registry SET reputation_score = ? WHERE uuid = ?";
+    private static final String INSERT_EVENT =
+            "INSERT INTO reputation_events (id, timestamp, player_uuid, `change`, reason_summary, source_module, details) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final Database database;
+
+    /** Reputation change including the event written to the history. */
+    public static class ScoreChange {
+        public final UUID player;
+        public final int delta;
+        public final String reason;
+        public final String source;
+        public final String details;
+
+        public ScoreChange(UUID player, int delta, String reason, String source, String details) {
+            this.player = player;
+            this.delta = delta;
+            this.reason = reason;
+            this.source = source;
+            this.details = details;
+        }
+    }
+
+    public ReputationRepository(Database database) {
+        this.database = database;
+    }
+
+    /** Create the registry entry with a random alias unless the player already exists. */
+    public void ensurePlayer(Connection conn, UUID player) throws SQLException {
+        String sql = database.getDialect().insertIgnore("player_registry", PLAYER_COLUMNS);
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            bindPlayer(ps, player);
+            ps.executeUpdate();
+        }
+    }
+
+    public void ensurePlayer(UUID player) throws SQLException {
+        database.executeWrite(conn -> {
+            ensurePlayer(conn, player);
+            return null;
+        });
+        database.markWrite("player:" + player);
+    }
+
+    /** Apply a change clamped to the given bounds and record it as an event. */
+    public void adjust(ScoreChange change, int minScore, int maxScore) throws SQLException {
+        adjustBatch(List.of(change), minScore, maxScore);
+    }
+
+    /** Apply several changes in one transaction using batched statements. */
+    public void adjustBatch(List<ScoreChange> changes, int minScore, int maxScore) throws SQLException {
+        if (changes.isEmpty()) return;
+        String ensureSql = database.getDialect().insertIgnore("player_registry", PLAYER_COLUMNS);
+        String updateSql = "UPDATE player_registry SET reputation_score = "
+                + database.getDialect().clamp("reputation_score + ?") + " WHERE uuid = ?";
+        database.executeWrite(conn -> {
+            try (PreparedStatement ensure = conn.prepareStatement(ensureSql);
+                 PreparedStatement update = conn.prepareStatement(updateSql);
+                 PreparedStatement event = conn.prepareStatement(INSERT_EVENT)) {
+                Timestamp now = Timestamp.from(Instant.now());
+                for (ScoreChange c : changes) {
+                    bindPlayer(ensure, c.player);
+                    ensure.addBatch();
+
+                    update.setInt(1, minScore);
+                    update.setInt(2, maxScore);
+                    update.setInt(3, c.delta);
+                    update.setString(4, c.player.toString());
+                    update.addBatch();
+
+                    event.setString(1, UUID.randomUUID().toString());
+                    event.setTimestamp(2, now);
+                    event.setString(3, c.player.toString());
+                    event.setInt(4, c.delta);
+                    event.setString(5, c.reason);
+                    event.setString(6, c.source);
+                    event.setString(7, c.details);
+                    event.addBatch();
+                }
+                // registry rows must exist before the updates run
+                ensure.executeBatch();
+                update.executeBatch();
+                event.executeBatch();
+            }
+            return null;
+        });
+        for (ScoreChange c : changes) {
+            database.markWrite("player:" + c.player);
+        }
+    }
+
+    /** Overwrite the stored score. */
+    public void setScore(UUID player, int score) throws SQLException {
+        String ensureSql = database.getDialect().insertIgnore("player_registry", PLAYER_COLUMNS);
+        database.executeWrite(conn -> {
+            try (PreparedStatement ensure = conn.prepareStatement(ensureSql)) {
+                bindPlayer(ensure, player);
+                ensure.executeUpdate();
+            }
+            try (PreparedStatement ps = conn.prepareStatement(SET_SCORE)) {
+                ps.setInt(1, score);
+                ps.setString(2, player.toString());
+                return ps.executeUpdate();
+            }
+        });
+        database.markWrite("player:" + player);
+    }
+
+    private void bindPlayer(PreparedStatement ps, UUID player) throws SQLException {
+        ps.setString(1, player.toString());
+        ps.setString(2, UUID.randomUUID().toString());
+        ps.setInt(3, 0);
+        ps.setString(4, "Neuling");
+    }
+}
@@ -0,0 +1,103 @@
+package com.illusioncis7.opencore.database.repository;
+
+import com.illusioncis7.opencore.database.Database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Access to the <code>votes</code> table.
+ */
+public class VoteRepository {
+
+    private static final String[] COLUMNS = {"suggestion_id", "player_uuid", "vote_yes", "weight"};
+    private static final String SELECT_BY_SUGGESTION =
+            "SELECT player_uuid, vote_yes, weight FROM votes WHERE suggestion_id = ?";
+
+    private final Database database;
+
+    /** Single vote row. */
+    public static class Vote {
+        public final int suggestionId;
+        public final UUID player;
+        public final boolean yes;
+        public final double weight;
+
+        public Vote(int suggestionId, UUID player, boolean yes, double weight) {
+            this.suggestionId = suggestionId;
+            this.player = player;
+            this.yes = yes;
+            this.weight = weight;
+        }
+    }
+
+    public VoteRepository(Database database) {
+        this.database = database;
+    }
+
+    private String upsertSql() {
+        return database.getDialect().upsert("votes", COLUMNS,
+                new String[]{"suggestion_id", "player_uuid"}, new String[]{"vote_yes", "weight"});
+    }
+
+    /** Insert a vote or replace the player's previous vote on the suggestion. */
+    public void upsert(Vote vote) throws SQLException {
+        String sql = upsertSql();
+        database.executeWrite(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                bind(ps, vote);
+                return ps.executeUpdate();
+            }
+        });
+        database.markWrite("suggestion:" + vote.suggestionId);
+    }
+
+    /** Batch variant of {@link #upsert(Vote)}, written in one transaction. */
+    public void upsertBatch(List<Vote> votes) throws SQLException {
+        if (votes.isEmpty()) return;
+        String sql = upsertSql();
+        database.executeWrite(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (Vote vote : votes) {
+                    bind(ps, vote);
+                    ps.addBatch();
+                }
+                return ps.executeBatch();
+            }
+        });
+        for (Vote vote : votes) {
+            database.markWrite("suggestion:" + vote.suggestionId);
+        }
+    }
+
+    /** All votes cast on a suggestion. */
+    public List<Vote> findBySuggestion(int suggestionId) throws SQLException {
+        List<Vote> list = new ArrayList<>();
+        try (Connection conn = database.getReadConnection("suggestion:" + suggestionId)) {
+            if (conn == null) {
+                throw new SQLException("No database connection available");
+            }
+            try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_SUGGESTION)) {
+                ps.setInt(1, suggestionId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        list.add(new Vote(suggestionId, UUID.fromString(rs.getString(1)), rs.getBoolean(2), rs.getDouble(3)));
+                    }
+                }
+            }
+        }
+        return list;
+    }
+
+    private void bind(PreparedStatement ps, Vote vote) throws SQLException {
+        ps.setInt(1, vote.suggestionId);
+        ps.setString(2, vote.player.toString());
+        ps.setBoolean(3, vote.yes);
+        ps.setDouble(4, vote.weight);
+    }
+}
@@ -0,0 +1,166 @@
+package com.illusioncis7.opencore.gpt;
+
+/**
+ * Circuit breaker for the GPT API. While closed, the outcomes of the last
+ * <code>windowSize</code> calls are kept; once at least
+ * <code>minimumCalls</code> are recorded and the failure rate reaches the
+ * threshold, the breaker opens and no calls are permitted for
+ * <code>openMs</code>. After that it is half-open: a limited number of probe
+ * calls go through, a success closes it again and a failure opens it for
+ * another period.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final double failureThreshold;
+    private final long openMs;
+    private final int probes;
+
+    private State state = State.CLOSED;
+    private int position;
+    private int recorded;
+    private int failures;
+    private long openUntil;
+    private int probesInFlight;
+    private long openedCount;
+
+    /**
+     * @param windowSize       number of recent calls the failure rate is taken from
+     * @param minimumCalls     calls needed in the window before the breaker may open
+     * @param failureThreshold failure rate between 0 and 1 that opens the breaker
+     * @param openMs           time the breaker stays open before probing
+     * @param probes           calls permitted at once while half-open
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureThreshold, long openMs, int probes) {
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, window.length));
+        this.failureThreshold = Math.max(0.01, Math.min(1.0, failureThreshold));
+        this.openMs = Math.max(0, openMs);
+        this.probes = Math.max(1, probes);
+    }
+
+    /**
+     * Ask to send a call. Every permitted call has to be reported with
+     * {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+     *
+     * @return false if the breaker is open or all probes are in flight
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(System.currentTimeMillis());
+    }
+
+    synchronized boolean tryAcquire(long now) {
+        if (state == State.OPEN) {
+            if (now < openUntil) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= probes) {
+                return false;
+            }
+            probesInFlight++;
+        }
+        return true;
+    }
+
+    /** Record a call the API answered. */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            close();
+            return;
+        }
+        record(false, System.currentTimeMillis());
+    }
+
+    /** Record a call that timed out, failed to connect or got a server error. */
+    public void onFailure() {
+        onFailure(System.currentTimeMillis());
+    }
+
+    synchronized void onFailure(long now) {
+        if (state == State.HALF_OPEN) {
+            open(now);
+            return;
+        }
+        record(true, now);
+    }
+
+    /** Release a permitted call whose outcome says nothing about the API's health, e.g. a 429. */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && probesInFlight > 0) {
+            probesInFlight--;
+        }
+    }
+
+    private void record(boolean failure, long now) {
+        if (state != State.CLOSED) {
+            // a late answer of a call sent before the breaker opened
+            return;
+        }
+        if (recorded == window.length) {
+            if (window[position]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[position] = failure;
+        if (failure) {
+            failures++;
+        }
+        position = (position + 1) % window.length;
+        if (recorded >= minimumCalls && failures >= failureThreshold * recorded) {
+            open(now);
+        }
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        openUntil = now + openMs;
+        probesInFlight = 0;
+        openedCount++;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        position = 0;
+        recorded = 0;
+        failures = 0;
+        probesInFlight = 0;
+    }
+
+    /** @return current state; an open breaker whose wait is over still reports OPEN until the next call */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /** @return true if calls are rejected without a probe being possible right now */
+    public boolean isOpen() {
+        return isOpen(System.currentTimeMillis());
+    }
+
+    synchronized boolean isOpen(long now) {
+        return state == State.OPEN && now < openUntil;
+    }
+
+    /** @return milliseconds until the breaker lets a probe through, 0 if not open */
+    public synchronized long getRemainingOpenMs() {
+        return state == State.OPEN ? Math.max(0, openUntil - System.currentTimeMillis()) : 0L;
+    }
+
+    /** @return failure rate of the current window between 0 and 1 */
+    public synchronized double getFailureRate() {
+        return recorded > 0 ? (double) failures / recorded : 0.0;
+    }
+
+    /** @return how often the breaker has opened since startup */
+    public synchronized long getOpenedCount() {
+        return openedCount;
+    }
+}
@@ -0,0 +1,401 @@
+package com.illusioncis7.opencore.gpt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Reads GPT answers straight into typed results. The answer is parsed once
+ * by {@link JsonStreamParser} and checked against the module's schema from
+ * {@link GptSchemas} in the same pass: types, required and unexpected
+ * properties. The supported schema subset is what the policy schemas use
+ * (object, array, string, integer, number, boolean).
+ */
+public final class GptBinder {
+
+    /** Builds a result from the scalar properties of one object. */
+    interface Factory<T> {
+        T create(Map<String, Object> fields) throws GptFormatException;
+    }
+
+    /** Receives the results of a streamed answer one by one. */
+    public interface Elements<T> {
+        /** Next complete and valid result. */
+        void element(T element);
+
+        /** The answer starts over; results received so far are void. */
+        void restart();
+
+        /**
+         * @param error null if the whole answer was valid, otherwise why the
+         *              remaining text was dropped
+         */
+        void complete(String error);
+    }
+
+    private static final Map<String, Shape> SHAPES = new ConcurrentHashMap<>();
+
+    private GptBinder() {
+    }
+
+    /** Bind a <code>chat_analysis</code> answer. */
+    public static List<GptEvaluation> evaluations(String json) throws GptFormatException {
+        return bind("chat_analysis", "evaluations[]", GptBinder::evaluation, json);
+    }
+
+    /** Bind a <code>suggest_classify_batch</code> answer. */
+    public static List<GptClassification> classifications(String json) throws GptFormatException {
+        return bind("suggest_classify_batch", "classifications[]", f -> classification(f, true), json);
+    }
+
+    /** Bind a <code>suggest_classify</code> answer. */
+    public static GptClassification classification(String json) throws GptFormatException {
+        return one(bind("suggest_classify", "", f -> classification(f, false), json));
+    }
+
+    /** Bind a <code>suggest_map</code> answer. */
+    public static GptMapping configMapping(String json) throws GptFormatException {
+        return one(bind("suggest_map", "", f -> new GptMapping(integer(f, "id", null), string(f, "value", null), "", 5),
+                json));
+    }
+
+    /** Bind a <code>rule_map</code> answer. */
+    public static GptMapping ruleMapping(String json) throws GptFormatException {
+        return one(bind("rule_map", "", f -> new GptMapping(integer(f, "id", null), string(f, "text", null),
+                string(f, "summary", ""), integer(f, "impact", 5)), json));
+    }
+
+    /**
+     * Listener for a streamed <code>chat_analysis</code> answer that hands
+     * every evaluation over as soon as it is complete.
+     */
+    public static GptStreamListener evaluationStream(Elements<GptEvaluation> elements) {
+        return stream("chat_analysis", "evaluations[]", GptBinder::evaluation, elements);
+    }
+
+    private static <T> GptStreamListener stream(String module, String path, Factory<T> factory, Elements<T> elements) {
+        return new GptStreamListener() {
+            private JsonStreamParser parser = parser(module, path, factory, elements::element);
+            private String error;
+
+            @Override
+            public void onDelta(String text) {
+                if (error != null) {
+                    return;
+                }
+                try {
+                    parser.feed(text);
+                } catch (GptFormatException e) {
+                    error = e.getMessage();
+                }
+            }
+
+            @Override
+            public void onRestart() {
+                parser = parser(module, path, factory, elements::element);
+                error = null;
+                elements.restart();
+            }
+
+            @Override
+            public void onComplete(String answer) {
+                if (answer == null) {
+                    elements.complete("no answer");
+                    return;
+                }
+                if (error == null) {
+                    try {
+                        parser.end();
+                    } catch (GptFormatException e) {
+                        error = e.getMessage();
+                    }
+                }
+                elements.complete(error);
+            }
+        };
+    }
+
+    private static GptEvaluation evaluation(Map<String, Object> f) throws GptFormatException {
+        return new GptEvaluation(string(f, "player", null), string(f, "flag", null), integer(f, "change", null),
+                string(f, "reason", ""));
+    }
+
+    private static GptClassification classification(Map<String, Object> f, boolean batch) throws GptFormatException {
+        return new GptClassification(batch ? integer(f, "id", null) : -1, string(f, "suggestion_type", null),
+                string(f, "reasoning", ""), number(f, "confidence", 0.0));
+    }
+
+    private static <T> T one(List<T> results) throws GptFormatException {
+        if (results.isEmpty()) {
+            throw new GptFormatException("answer is not an object");
+        }
+        return results.get(0);
+    }
+
+    private static <T> List<T> bind(String module, String path, Factory<T> factory, String json)
+            throws GptFormatException {
+        if (json == null || json.isEmpty()) {
+            throw new GptFormatException("empty answer");
+        }
+        List<T> results = new ArrayList<>();
+        JsonStreamParser parser = parser(module, path, factory, results::add);
+        parser.feed(json);
+        parser.end();
+        return results;
+    }
+
+    /**
+     * Parser that hands every object found at <code>path</code> to the sink
+     * as soon as it is complete and valid. The document as a whole is only
+     * known to be valid after {@link JsonStreamParser#end()}.
+     *
+     * @param path property names separated by dots, <code>[]</code> for array
+     *             elements, empty for the top-level object
+     */
+    static <T> JsonStreamParser parser(String module, String path, Factory<T> factory, Consumer<T> sink) {
+        return new JsonStreamParser(new Binding<>(shape(module), path, factory, sink));
+    }
+
+    private static Shape shape(String module) {
+        String source = GptSchemas.source(module);
+        if (source == null) {
+            return Shape.ANY;
+        }
+        return SHAPES.computeIfAbsent(module, m -> {
+            try {
+                return Shape.compile(JsonStreamParser.parse(source));
+            } catch (GptFormatException e) {
+                throw new IllegalStateException("Invalid schema for " + m + ": " + e.getMessage(), e);
+            }
+        });
+    }
+
+    private static String string(Map<String, Object> f, String name, String def) throws GptFormatException {
+        Object v = f.get(name);
+        if (v instanceof String) {
+            return (String) v;
+        }
+        if (v != null || def == null) {
+            throw new GptFormatException(name + ": expected string");
+        }
+        return def;
+    }
+
+    private static int integer(Map<String, Object> f, String name, Integer def) throws GptFormatException {
+        Object v = f.get(name);
+        if (v instanceof Number) {
+            double d = ((Number) v).doubleValue();
+            if (d != Math.rint(d) || d < Integer.MIN_VALUE || d > Integer.MAX_VALUE) {
+                throw new GptFormatException(name + ": " + v + " is not an int");
+            }
+            return (int) d;
+        }
+        if (v != null || def == null) {
+            throw new GptFormatException(name + ": expected integer");
+        }
+        return def;
+    }
+
+    private static double number(Map<String, Object> f, String name, double def) throws GptFormatException {
+        Object v = f.get(name);
+        if (v instanceof Number) {
+            return ((Number) v).doubleValue();
+        }
+        if (v != null) {
+            throw new GptFormatException(name + ": expected number");
+        }
+        return def;
+    }
+
+    /** Compiled subset of a JSON schema. */
+    static final class Shape {
+        static final Shape ANY = new Shape(null, Collections.emptyMap(), Collections.emptySet(), true, null);
+
+        /** JSON type or null for any. */
+        final String type;
+        final Map<String, Shape> properties;
+        final Set<String> required;
+        final boolean additionalProperties;
+        final Shape items;
+
+        private Shape(String type, Map<String, Shape> properties, Set<String> required,
+                      boolean additionalProperties, Shape items) {
+            this.type = type;
+            this.properties = properties;
+            this.required = required;
+            this.additionalProperties = additionalProperties;
+            this.items = items;
+        }
+
+        @SuppressWarnings("unchecked")
+        static Shape compile(Object node) {
+            if (!(node instanceof Map)) {
+                return ANY;
+            }
+            Map<String, Object> schema = (Map<String, Object>) node;
+            Object type = schema.get("type");
+            Map<String, Shape> properties = new HashMap<>();
+            if (schema.get("properties") instanceof Map) {
+                for (Map.Entry<String, Object> e : ((Map<String, Object>) schema.get("properties")).entrySet()) {
+                    properties.put(e.getKey(), compile(e.getValue()));
+                }
+            }
+            Set<String> required = new HashSet<>();
+            if (schema.get("required") instanceof List) {
+                for (Object name : (List<Object>) schema.get("required")) {
+                    required.add(String.valueOf(name));
+                }
+            }
+            return new Shape(type instanceof String ? (String) type : null, properties, required,
+                    !Boolean.FALSE.equals(schema.get("additionalProperties")),
+                    schema.containsKey("items") ? compile(schema.get("items")) : null);
+        }
+
+        /** @return true if a value of the given JSON type is allowed */
+        boolean accepts(String actual, Object value) {
+            if (type == null || type.equals(actual)) {
+                return true;
+            }
+            if ("number".equals(type)) {
+                return "integer".equals(actual);
+            }
+            // 5.0 is an integer in JSON schema
+            return "integer".equals(type) && value instanceof Double && (Double) value == Math.rint((Double) value);
+        }
+    }
+
+    private static final class Frame {
+        final Shape shape;
+        final boolean array;
+        final String path;
+        final Set<String> seen = new HashSet<>();
+        final Map<String, Object> fields = new HashMap<>();
+        String key;
+        Shape keyShape;
+
+        Frame(Shape shape, boolean array, String path) {
+            this.shape = shape;
+            this.array = array;
+            this.path = path;
+        }
+    }
+
+    /** Validates the event stream against a shape and builds results on the way. */
+    private static final class Binding<T> implements JsonStreamParser.Handler {
+        private final Shape root;
+        private final String target;
+        private final Factory<T> factory;
+        private final Consumer<T> sink;
+        private final Deque<Frame> frames = new ArrayDeque<>();
+
+        Binding(Shape root, String target, Factory<T> factory, Consumer<T> sink) {
+            this.root = root;
+            this.target = target;
+            this.factory = factory;
+            this.sink = sink;
+        }
+
+        private Shape next() {
+            Frame top = frames.peek();
+            Shape shape;
+            if (top == null) {
+                shape = root;
+            } else if (top.array) {
+                shape = top.shape.items;
+            } else {
+                shape = top.keyShape;
+            }
+            return shape != null ? shape : Shape.ANY;
+        }
+
+        private String nextPath() {
+            Frame top = frames.peek();
+            if (top == null) {
+                return "";
+            }
+            if (top.array) {
+                return top.path + "[]";
+            }
+            return top.path.isEmpty() ? top.key : top.path + "." + top.key;
+        }
+
+        private void check(String actual, Object value) throws GptFormatException {
+            if (!next().accepts(actual, value)) {
+                String path = nextPath();
+                throw new GptFormatException((path.isEmpty() ? "answer" : path) + ": expected " + next().type
+                        + ", got " + actual);
+            }
+        }
+
+        @Override
+        public void startObject() throws GptFormatException {
+            check("object", null);
+            frames.push(new Frame(next(), false, nextPath()));
+        }
+
+        @Override
+        public void endObject() throws GptFormatException {
+            Frame frame = frames.pop();
+            for (String name : frame.shape.required) {
+                if (!frame.seen.contains(name)) {
+                    throw new GptFormatException((frame.path.isEmpty() ? "" : frame.path + ".") + name + " is missing");
+                }
+            }
+            if (frame.path.equals(target)) {
+                sink.accept(factory.create(frame.fields));
+            }
+        }
+
+        @Override
+        public void startArray() throws GptFormatException {
+            check("array", null);
+            frames.push(new Frame(next(), true, nextPath()));
+        }
+
+        @Override
+        public void endArray() {
+            frames.pop();
+        }
+
+        @Override
+        public void key(String name) throws GptFormatException {
+            Frame top = frames.peek();
+            Shape shape = top.shape.properties.get(name);
+            if (shape == null && !top.shape.additionalProperties) {
+                throw new GptFormatException("unexpected property " + (top.path.isEmpty() ? "" : top.path + ".") + name);
+            }
+            top.seen.add(name);
+            top.key = name;
+            top.keyShape = shape;
+        }
+
+        @Override
+        public void value(Object value) throws GptFormatException {
+            String actual;
+            if (value == null) {
+                actual = "null";
+            } else if (value instanceof String) {
+                actual = "string";
+            } else if (value instanceof Boolean) {
+                actual = "boolean";
+            } else if (value instanceof Long) {
+                actual = "integer";
+            } else {
+                actual = "number";
+            }
+            check(actual, value);
+            Frame top = frames.peek();
+            if (top != null && !top.array) {
+                top.fields.put(top.key, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.illusioncis7.opencore.gpt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Recorded GPT answers for tests and benchmarks without an API key. In
+ * record mode every successful answer is kept together with its latency and
+ * token usage, keyed by policy module and a hash of the normalized prompt.
+ * In replay mode the service answers from the cassette instead of the API;
+ * several takes of the same prompt are served in turn. The file is a gzip
+ * compressed sequence of binary records.
+ */
+public class GptCassette {
+
+    public enum Mode {
+        OFF, RECORD, REPLAY;
+
+        static Mode parse(String value) {
+            try {
+                return value != null ? valueOf(value.trim().toUpperCase(Locale.ROOT)) : OFF;
+            } catch (IllegalArgumentException e) {
+                return OFF;
+            }
+        }
+    }
+
+    /** Latency added to a replayed answer. */
+    public enum Latency {
+        /** Answer at once. */
+        NONE,
+        /** Wait as long as the recorded call took. */
+        RECORDED,
+        /** Draw from a log-normal distribution given by median and p95. */
+        LOGNORMAL;
+
+        static Latency parse(String value) {
+            try {
+                return value != null ? valueOf(value.trim().toUpperCase(Locale.ROOT)) : NONE;
+            } catch (IllegalArgumentException e) {
+                return NONE;
+            }
+        }
+    }
+
+    /** One recorded answer. */
+    public static final class Entry {
+        public final String module;
+        public final String hash;
+        public final String model;
+        public final String answer;
+        public final long latencyMs;
+        public final int promptTokens;
+        public final int completionTokens;
+
+        Entry(String module, String hash, String model, String answer, long latencyMs,
+              int promptTokens, int completionTokens) {
+            this.module = module;
+            this.hash = hash;
+            this.model = model;
+            this.answer = answer;
+            this.latencyMs = latencyMs;
+            this.promptTokens = promptTokens;
+            this.completionTokens = completionTokens;
+        }
+    }
+
+    private static final int MAGIC = 0x4F434743; // "OCGC"
+    private static final int VERSION = 1;
+    /** z-score of the 95th percentile of the standard normal distribution. */
+    private static final double Z95 = 1.6448536;
+
+    private final Logger logger;
+    private final Map<String, List<Entry>> entries = new HashMap<>();
+    private final Map<String, Integer> cursors = new HashMap<>();
+    private Mode mode = Mode.OFF;
+    private File file;
+    private Latency latency = Latency.NONE;
+    private double medianMs;
+    private double sigma;
+    private Random random = new Random(0);
+    private boolean live;
+    private boolean dirty;
+
+    public GptCassette(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Switch mode and file. A recording in progress is saved first; an
+     * existing file is loaded in both modes, so recordings add up.
+     *
+     * @param latencyP95Ms only used for {@link Latency#LOGNORMAL}
+     * @param live         in replay mode, send prompts missing on the cassette to the API
+     */
+    public synchronized void configure(Mode mode, File file, Latency latency, long latencyMedianMs,
+                                       long latencyP95Ms, long seed, boolean live) {
+        save();
+        entries.clear();
+        cursors.clear();
+        this.mode = mode;
+        this.file = file;
+        this.latency = latency;
+        this.medianMs = Math.max(1L, latencyMedianMs);
+        this.sigma = Math.log(Math.max(latencyP95Ms, latencyMedianMs) / this.medianMs) / Z95;
+        this.random = new Random(seed);
+        this.live = live;
+        if (mode != Mode.OFF && file.isFile()) {
+            load();
+        }
+    }
+
+    public synchronized Mode getMode() {
+        return mode;
+    }
+
+    public synchronized boolean isLive() {
+        return live;
+    }
+
+    /** @return number of recorded answers */
+    public synchronized int size() {
+        int n = 0;
+        for (List<Entry> list : entries.values()) {
+            n += list.size();
+        }
+        return n;
+    }
+
+    public synchronized void record(String module, String prompt, String model, String answer,
+                                    long latencyMs, int promptTokens, int completionTokens) {
+        if (mode != Mode.RECORD || answer == null) {
+            return;
+        }
+        add(new Entry(module != null ? module : "", hash(prompt), model != null ? model : "", answer,
+                latencyMs, promptTokens, completionTokens));
+        dirty = true;
+    }
+
+    /** @return the next take recorded for the prompt, null if there is none */
+    public synchronized Entry next(String module, String prompt) {
+        String key = key(module != null ? module : "", hash(prompt));
+        List<Entry> list = entries.get(key);
+        if (list == null) {
+            return null;
+        }
+        int cursor = cursors.getOrDefault(key, 0);
+        cursors.put(key, cursor + 1);
+        return list.get(cursor % list.size());
+    }
+
+    /** @return milliseconds to wait before the entry is answered */
+    public synchronized long latencyMs(Entry entry) {
+        switch (latency) {
+            case RECORDED:
+                return entry.latencyMs;
+            case LOGNORMAL:
+                return Math.round(medianMs * Math.exp(sigma * random.nextGaussian()));
+            default:
+                return 0L;
+        }
+    }
+
+    private void add(Entry entry) {
+        entries.computeIfAbsent(key(entry.module, entry.hash), k -> new ArrayList<>()).add(entry);
+    }
+
+    private static String key(String module, String hash) {
+        return module + '\n' + hash;
+    }
+
+    /** Hex SHA-256 of the normalized prompt, truncated to 128 bits. */
+    static String hash(String prompt) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(GptResponseCache.normalize(prompt).getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /** Write the recording if it changed since the last save. */
+    public synchronized void save() {
+        if (!dirty || file == null) {
+            return;
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tmp = new File(dir, file.getName() + ".tmp");
+        try {
+            Files.createDirectories(dir.toPath());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(tmp.toPath()))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                for (List<Entry> list : entries.values()) {
+                    for (Entry e : list) {
+                        writeString(out, e.module);
+                        writeString(out, e.hash);
+                        writeString(out, e.model);
+                        writeString(out, e.answer);
+                        out.writeLong(e.latencyMs);
+                        out.writeInt(e.promptTokens);
+                        out.writeInt(e.completionTokens);
+                    }
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+            logger.info("Saved " + size() + " GPT answers to cassette " + file.getName());
+        } catch (IOException e) {
+            logger.warning("Failed to save GPT cassette " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file.toPath()))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger.warning("GPT cassette " + file + " has an unknown format, ignoring it");
+                return;
+            }
+            while (true) {
+                String module;
+                try {
+                    module = readString(in);
+                } catch (EOFException end) {
+                    break;
+                }
+                add(new Entry(module, readString(in), readString(in), readString(in),
+                        in.readLong(), in.readInt(), in.readInt()));
+            }
+            logger.info("Loaded " + size() + " GPT answers from cassette " + file.getName());
+        } catch (IOException e) {
+            logger.warning("Failed to read GPT cassette " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,17 @@
+package com.illusioncis7.opencore.gpt;
+
+/** A <code>suggest_classify</code> answer or one entry of a batch classification. */
+public class GptClassification {
+    /** Suggestion id, -1 in answers for a single suggestion. */
+    public final int id;
+    public final String suggestionType;
+    public final String reasoning;
+    public final double confidence;
+
+    public GptClassification(int id, String suggestionType, String reasoning, double confidence) {
+        this.id = id;
+        this.suggestionType = suggestionType;
+        this.reasoning = reasoning;
+        this.confidence = confidence;
+    }
+}
@@ -0,0 +1,32 @@
+package com.illusioncis7.opencore.gpt;
+
+import org.json.JSONObject;
+
+/** One entry of a <code>chat_analysis</code> answer. */
+public class GptEvaluation {
+    /** Alias of the player as written in the chat log. */
+    public final String player;
+    public final String flag;
+    public final int change;
+    /** Explanation given by GPT, empty if there is none. */
+    public final String reason;
+
+    public GptEvaluation(String player, String flag, int change, String reason) {
+        this.player = player;
+        this.flag = flag;
+        this.change = change;
+        this.reason = reason;
+    }
+
+    /** @return the entry as GPT sent it, with the given change */
+    public JSONObject toJson(int change) {
+        JSONObject obj = new JSONObject();
+        obj.put("player", player);
+        obj.put("flag", flag);
+        obj.put("change", change);
+        if (!reason.isEmpty()) {
+            obj.put("reason", reason);
+        }
+        return obj;
+    }
+}
@@ -0,0 +1,9 @@
+package com.illusioncis7.opencore.gpt;
+
+/** A GPT answer that is not valid JSON or does not match the module's schema. */
+public class GptFormatException extends Exception {
+
+    public GptFormatException(String message) {
+        super(message);
+    }
+}
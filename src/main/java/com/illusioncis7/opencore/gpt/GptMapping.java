@@ -0,0 +1,22 @@
+package com.illusioncis7.opencore.gpt;
+
+/**
+ * A <code>suggest_map</code> or <code>rule_map</code> answer: the config
+ * parameter or rule the suggestion changes and its new value or text.
+ */
+public class GptMapping {
+    public final int id;
+    /** New parameter value or new rule text. */
+    public final String value;
+    /** Short summary of a rule change, empty for config changes. */
+    public final String summary;
+    /** Impact of a rule change, 5 if GPT did not rate it. */
+    public final int impact;
+
+    public GptMapping(int id, String value, String summary, int impact) {
+        this.id = id;
+        this.value = value;
+        this.summary = summary;
+        this.impact = impact;
+    }
+}
@@ -0,0 +1,25 @@
+package com.illusioncis7.opencore.gpt;
+
+import java.util.Locale;
+
+/** Scheduling class of a GPT request, most urgent first. */
+public enum GptPriority {
+    /** A player is waiting for the answer. */
+    INTERACTIVE,
+    /** Stages of the suggestion pipeline. */
+    PIPELINE,
+    /** Chat analysis and other work nobody waits for. */
+    BACKGROUND;
+
+    /** Parse a class name from configuration, falling back to <code>def</code>. */
+    public static GptPriority parse(String name, GptPriority def) {
+        if (name == null) {
+            return def;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return def;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.illusioncis7.opencore.gpt;
+
+/**
+ * One OpenAI-compatible chat completions endpoint with its own rate limits,
+ * circuit breaker and health score. The health score is an exponentially
+ * weighted success rate between 0 and 1; it starts at 1 and drops with every
+ * failed call.
+ */
+public class GptProvider {
+
+    /** Weight of the newest outcome in the health score and latency average. */
+    private static final double ALPHA = 0.2;
+
+    public final String name;
+    /** Full URL of the chat completions endpoint. */
+    public final String url;
+    final String apiKey;
+    public final String model;
+    /** Bundled stub server; it is told the module of each request. */
+    final boolean stub;
+    /** Send the module's JSON schema as response format. */
+    final boolean structuredOutput;
+    final RateLimiter rateLimiter;
+    final CircuitBreaker breaker;
+
+    private double health = 1.0;
+    private double latencyMs = -1;
+    private long successes;
+    private long failures;
+
+    public GptProvider(String name, String url, String apiKey, String model, boolean stub,
+                       boolean structuredOutput, RateLimiter rateLimiter, CircuitBreaker breaker) {
+        this.name = name;
+        this.url = url;
+        this.apiKey = apiKey;
+        this.model = model;
+        this.stub = stub;
+        this.structuredOutput = structuredOutput;
+        this.rateLimiter = rateLimiter;
+        this.breaker = breaker;
+    }
+
+    synchronized void recordSuccess(long latency) {
+        health = health * (1 - ALPHA) + ALPHA;
+        latencyMs = latencyMs < 0 ? latency : latencyMs * (1 - ALPHA) + latency * ALPHA;
+        successes++;
+    }
+
+    synchronized void recordFailure() {
+        health = health * (1 - ALPHA);
+        failures++;
+    }
+
+    /** @return weighted success rate of recent calls between 0 and 1 */
+    public synchronized double getHealth() {
+        return health;
+    }
+
+    /** @return weighted average latency of successful calls, -1 before the first */
+    public synchronized double getLatencyMs() {
+        return latencyMs;
+    }
+
+    public synchronized long getSuccesses() {
+        return successes;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return breaker;
+    }
+}
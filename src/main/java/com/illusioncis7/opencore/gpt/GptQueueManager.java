@@ -1,33 +1,33 @@
 package com.illusioncis7.opencore.gpt;
 
-import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitTask;
 
-import java.util.Queue;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Handles GPT requests with a fixed rate to avoid API flooding.
+ * Entry point for background GPT jobs whose answers go to the
+ * {@link GptResponseHandler}. Requests are handed to the shared
+ * {@link GptScheduler} in the {@link GptPriority#BACKGROUND} class, so they
+ * run whenever interactive and pipeline work leaves room; the number of
+ * unanswered requests is capped to avoid flooding the queue.
  */
 public class GptQueueManager {
 
-    private final JavaPlugin plugin;
     private final GptService gptService;
     private final GptResponseHandler responseHandler;
-    private final Queue<GptRequest> queue = new ConcurrentLinkedQueue<>();
-    private BukkitTask task;
+    private final AtomicInteger outstanding = new AtomicInteger();
     private final Logger logger;
     private final int maxQueueSize;
+    private volatile boolean running;
 
     /**
-     * Get current queue size.
+     * Get the number of submitted requests that have not been answered yet.
      */
     public int getQueueSize() {
-        return queue.size();
+        return outstanding.get();
     }
 
     public GptQueueManager(JavaPlugin plugin, GptService gptService, GptResponseHandler responseHandler) {
@@ -35,7 +35,6 @@ public class GptQueueManager {
     }
 
     public GptQueueManager(JavaPlugin plugin, GptService gptService, GptResponseHandler responseHandler, int maxQueueSize) {
-        this.plugin = plugin;
         this.gptService = gptService;
         this.responseHandler = responseHandler;
         this.logger = plugin.getLogger();
@@ -43,47 +42,37 @@ public class GptQueueManager {
     }
 
     /**
-     * Start processing queued requests every 10 minutes.
+     * Start accepting requests.
      */
     public void start() {
-        if (task != null) {
-            return;
-        }
-        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::processNext, 0L, 10 * 60 * 20L);
+        running = true;
     }
 
     /**
-     * Stop processing and clear the queue.
+     * Stop accepting requests. Requests already handed to the GPT service are
+     * dropped with its queue on shutdown.
      */
     public void stop() {
-        if (task != null) {
-            task.cancel();
-            task = null;
-        }
-        queue.clear();
+        running = false;
     }
 
     /**
      * Queue a new GPT request.
      */
     public void submit(String module, String prompt, UUID player) {
-        if (queue.size() >= maxQueueSize) {
-            logger.log(Level.WARNING, "GPT queue full (" + queue.size() + "/" + maxQueueSize + ") – rejecting request from " + module);
+        if (!running) {
+            logger.warning("GPT queue stopped – rejecting request from " + module);
             return;
         }
-        GptRequest req = new GptRequest(UUID.randomUUID(), module, prompt, player, null);
-        queue.add(req);
-        logger.info("Queued GPT request " + req.requestId + " from " + module + " (queue=" + queue.size() + ")");
-    }
-
-    private void processNext() {
-        logger.fine("GPT queue size: " + queue.size());
-        GptRequest req = queue.poll();
-        if (req == null) {
+        if (outstanding.incrementAndGet() > maxQueueSize) {
+            outstanding.decrementAndGet();
+            logger.log(Level.WARNING, "GPT queue full (" + maxQueueSize + "/" + maxQueueSize + ") – rejecting request from " + module);
             return;
         }
-        logger.info("Processing queued GPT request " + req.requestId);
-        gptService.submitRequest(req.prompt, req.playerUuid, response -> {
+        GptRequest req = new GptRequest(UUID.randomUUID(), module, prompt, player, null);
+        logger.info("Queued GPT request " + req.requestId + " from " + module + " (queue=" + outstanding.get() + ")");
+        gptService.submitRequest(module, prompt, player, GptPriority.BACKGROUND, response -> {
+            outstanding.decrementAndGet();
             if (responseHandler != null) {
                 responseHandler.handleResponse(req, response);
             }
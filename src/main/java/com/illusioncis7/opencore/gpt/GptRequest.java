@@ -15,6 +15,24 @@ public class GptRequest {
     public final UUID playerUuid;
     /** Callback for the response. */
     public final Consumer<String> callback;
+    /** Creation time in epoch milliseconds, used for queue wait statistics. */
+    public final long createdAt = System.currentTimeMillis();
+    /** Tokens taken from the rate limit budget when the request was sent. */
+    int reservedTokens;
+    /** Times the request was put back into the queue after a 429. */
+    int rateLimitRetries;
+    /** Response cache key, {@code null} if the answer is not cached. */
+    String cacheKey;
+    /** Scheduling class. */
+    GptPriority priority = GptPriority.PIPELINE;
+    /** Virtual start tag assigned by {@link GptScheduler}. */
+    double startTag;
+    /** Stored in <code>gpt_queue</code>; such requests wait out an open circuit instead of failing. */
+    boolean durable;
+    /** Provider the current attempt goes to, set on dispatch and on failover. */
+    GptProvider provider;
+    /** Set for streamed requests; the answer is read as it is generated. */
+    GptStream stream;
 
     /**
      * Creates a new request.
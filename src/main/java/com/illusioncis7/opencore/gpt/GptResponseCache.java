@@ -0,0 +1,226 @@
+package com.illusioncis7.opencore.gpt;
+
+import com.illusioncis7.opencore.database.Database;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Content-addressed cache of GPT answers. The key is a SHA-256 of model,
+ * temperature and the whitespace-normalized prompt. Lookups go to an
+ * in-memory LRU first and to the <code>gpt_cache</code> table second; hits
+ * from the table are promoted into memory.
+ */
+public class GptResponseCache {
+
+    private static final String[] COLUMNS = {"cache_key", "module", "model", "response", "created_at", "expires_at"};
+
+    private final Database database;
+    private final Logger logger;
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong databaseHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile int maxEntries;
+
+    /** Cached answer with its expiry in epoch milliseconds. */
+    private static final class Entry {
+        final String response;
+        final long expiresAt;
+
+        Entry(String response, long expiresAt) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    public GptResponseCache(Database database, Logger logger, int maxEntries) {
+        this.database = database;
+        this.logger = logger;
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /** Cache key for a request; prompts differing only in whitespace share a key. */
+    public static String key(String model, double temperature, String prompt) {
+        String material = model + '\n' + String.format(Locale.ROOT, "%.3f", temperature) + '\n' + normalize(prompt);
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(material.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(64);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /** Trim the prompt and collapse every run of whitespace into a single space. */
+    static String normalize(String prompt) {
+        StringBuilder sb = new StringBuilder(prompt.length());
+        boolean space = false;
+        for (int i = 0; i < prompt.length(); i++) {
+            char c = prompt.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+            } else {
+                if (space) {
+                    sb.append(' ');
+                    space = false;
+                }
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Look the key up in memory only. Safe to call on the main thread.
+     *
+     * @return the cached answer or null; a null result is not counted as a miss
+     */
+    public String getCached(String key) {
+        synchronized (memory) {
+            Entry entry = memory.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt <= System.currentTimeMillis()) {
+                memory.remove(key);
+                return null;
+            }
+            memoryHits.incrementAndGet();
+            return entry.response;
+        }
+    }
+
+    /**
+     * Look the key up in memory and then in the database. Blocks on the
+     * database; call it off the main thread.
+     *
+     * @return the cached answer or null
+     */
+    public String load(String key) {
+        String cached = getCached(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (database.isConnected()) {
+            String sql = "SELECT response, expires_at FROM gpt_cache WHERE cache_key = ?";
+            try (Connection conn = database.getReadConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, key);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        long expiresAt = rs.getTimestamp(2).getTime();
+                        if (expiresAt > System.currentTimeMillis()) {
+                            String response = rs.getString(1);
+                            remember(key, response, expiresAt);
+                            databaseHits.incrementAndGet();
+                            return response;
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                logger.warning("Failed to read GPT cache: " + e.getMessage());
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /** Store an answer in memory and in the database. Blocks on the database write. */
+    public void put(String key, String module, String model, String response, long ttlMs) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + ttlMs;
+        remember(key, response, expiresAt);
+        if (!database.isConnected()) {
+            return;
+        }
+        String sql = database.getDialect().upsert("gpt_cache", COLUMNS, new String[]{"cache_key"},
+                new String[]{"module", "model", "response", "created_at", "expires_at"});
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, key);
+                    if (module != null) {
+                        ps.setString(2, module);
+                    } else {
+                        ps.setNull(2, Types.VARCHAR);
+                    }
+                    ps.setString(3, model);
+                    ps.setString(4, response);
+                    ps.setTimestamp(5, new Timestamp(now));
+                    ps.setTimestamp(6, new Timestamp(expiresAt));
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            logger.warning("Failed to store GPT cache entry: " + e.getMessage());
+        }
+    }
+
+    /** Delete expired rows from the database. */
+    public int purgeExpired() {
+        if (!database.isConnected()) {
+            return 0;
+        }
+        try {
+            return database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM gpt_cache WHERE expires_at <= ?")) {
+                    ps.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            logger.warning("Failed to purge GPT cache: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private void remember(String key, String response, long expiresAt) {
+        synchronized (memory) {
+            memory.put(key, new Entry(response, expiresAt));
+        }
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDatabaseHits() {
+        return databaseHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int getSize() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+}
@@ -61,17 +61,21 @@ public class GptResponseHandler implements Listener {
             return;
         }
         String sql = "INSERT INTO gpt_responses (player_uuid, module, response, created, delivered) VALUES (?, ?, ?, ?, 0)";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, uuid.toString());
-            if (module != null) {
-                ps.setString(2, module);
-            } else {
-                ps.setNull(2, Types.VARCHAR);
-            }
-            ps.setString(3, response);
-            ps.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, uuid.toString());
+                    if (module != null) {
+                        ps.setString(2, module);
+                    } else {
+                        ps.setNull(2, Types.VARCHAR);
+                    }
+                    ps.setString(3, response);
+                    ps.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+                    return ps.executeUpdate();
+                }
+            });
+            database.markWrite("player:" + uuid);
         } catch (Exception e) {
             logger.warning("Failed to store GPT response: " + e.getMessage());
         }
@@ -113,10 +117,13 @@ public class GptResponseHandler implements Listener {
     private void markDelivered(int id) {
         if (!database.isConnected()) return;
         String sql = "UPDATE gpt_responses SET delivered = 1 WHERE id = ?";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, id);
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, id);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (Exception e) {
             logger.warning("Failed to mark response delivered: " + e.getMessage());
         }
@@ -129,7 +136,7 @@ public class GptResponseHandler implements Listener {
         java.util.List<GptResponseRecord> list = new java.util.ArrayList<>();
         if (!database.isConnected()) return list;
         String sql = "SELECT module, response, created FROM gpt_responses WHERE player_uuid = ? ORDER BY created DESC LIMIT ?";
-        try (Connection conn = database.getConnection();
+        try (Connection conn = database.getReadConnection("player:" + uuid);
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, uuid.toString());
             ps.setInt(2, limit);
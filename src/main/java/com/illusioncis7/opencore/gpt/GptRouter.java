@@ -0,0 +1,154 @@
+package com.illusioncis7.opencore.gpt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Chooses the {@link GptProvider} for a request. Every policy module has a
+ * route, an ordered list of providers; modules without their own route use
+ * the default route. A request goes to the first provider of its route that
+ * is healthy, has its breaker closed (or a probe free) and rate limit budget
+ * left. Providers whose health score fell below <code>minHealth</code> are
+ * only used, best score first, when no healthy one can take the request.
+ */
+public class GptRouter {
+
+    private final Map<String, GptProvider> providers;
+    private final List<GptProvider> defaultRoute;
+    private final Map<String, List<GptProvider>> routes = new HashMap<>();
+    private final double minHealth;
+
+    /**
+     * @param providers    providers by name, in configuration order
+     * @param defaultRoute provider names for modules without a route; empty for all providers
+     * @param routes       provider names by module
+     */
+    public GptRouter(Map<String, GptProvider> providers, List<String> defaultRoute,
+                     Map<String, List<String>> routes, double minHealth, Logger logger) {
+        if (providers.isEmpty()) {
+            throw new IllegalArgumentException("no GPT provider configured");
+        }
+        this.providers = new LinkedHashMap<>(providers);
+        this.minHealth = minHealth;
+        List<GptProvider> def = resolve("default", defaultRoute, logger);
+        this.defaultRoute = def.isEmpty() ? new ArrayList<>(this.providers.values()) : def;
+        for (Map.Entry<String, List<String>> e : routes.entrySet()) {
+            List<GptProvider> route = resolve(e.getKey(), e.getValue(), logger);
+            if (!route.isEmpty()) {
+                this.routes.put(e.getKey(), route);
+            }
+        }
+    }
+
+    private List<GptProvider> resolve(String module, List<String> names, Logger logger) {
+        List<GptProvider> route = new ArrayList<>();
+        for (String name : names) {
+            GptProvider provider = providers.get(name);
+            if (provider == null) {
+                if (logger != null) {
+                    logger.warning("Unknown GPT provider " + name + " in route of " + module);
+                }
+            } else if (!route.contains(provider)) {
+                route.add(provider);
+            }
+        }
+        return route;
+    }
+
+    /** @return providers of the module in the configured order */
+    public List<GptProvider> route(String module) {
+        List<GptProvider> route = module != null ? routes.get(module) : null;
+        return route != null ? route : defaultRoute;
+    }
+
+    /** @return first provider of the module's route */
+    public GptProvider primary(String module) {
+        return route(module).get(0);
+    }
+
+    public boolean routes(String module, GptProvider provider) {
+        return route(module).contains(provider);
+    }
+
+    /** @return true if every provider of the module's route has an open breaker */
+    public boolean isOpen(String module) {
+        for (GptProvider provider : route(module)) {
+            if (!provider.breaker.isOpen()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return milliseconds until a provider of the route may take a probe, 0 if one is not open */
+    public long getRemainingOpenMs(String module) {
+        long remaining = Long.MAX_VALUE;
+        for (GptProvider provider : route(module)) {
+            remaining = Math.min(remaining, provider.breaker.getRemainingOpenMs());
+        }
+        return remaining;
+    }
+
+    /**
+     * Take breaker permit and rate limit budget from the provider the request
+     * should go to.
+     *
+     * @param avoid provider that just failed the request; only used if no other one can take it
+     * @param wait  receives the milliseconds until a provider may have budget again if none is returned
+     * @return the provider to send to, null if none can take the request now
+     */
+    public GptProvider acquire(String module, int tokens, GptProvider avoid, long[] wait) {
+        wait[0] = Long.MAX_VALUE;
+        for (GptProvider provider : candidates(module, avoid)) {
+            if (provider.breaker.isOpen()) {
+                wait[0] = Math.min(wait[0], provider.breaker.getRemainingOpenMs());
+                continue;
+            }
+            long delay = provider.rateLimiter.acquire(tokens);
+            if (delay > 0) {
+                wait[0] = Math.min(wait[0], delay);
+                continue;
+            }
+            if (!provider.breaker.tryAcquire()) {
+                // half-open with all probes out; give the budget back
+                provider.rateLimiter.release(tokens);
+                continue;
+            }
+            return provider;
+        }
+        return null;
+    }
+
+    /** Route order with unhealthy providers behind healthy ones and the avoided one last. */
+    List<GptProvider> candidates(String module, GptProvider avoid) {
+        List<GptProvider> healthy = new ArrayList<>();
+        List<GptProvider> unhealthy = new ArrayList<>();
+        for (GptProvider provider : route(module)) {
+            if (provider == avoid) {
+                continue;
+            }
+            if (provider.getHealth() >= minHealth) {
+                healthy.add(provider);
+            } else {
+                unhealthy.add(provider);
+            }
+        }
+        unhealthy.sort(Comparator.comparingDouble(GptProvider::getHealth).reversed());
+        healthy.addAll(unhealthy);
+        if (avoid != null && routes(module, avoid)) {
+            healthy.add(avoid);
+        }
+        return healthy;
+    }
+
+    public Collection<GptProvider> getProviders() {
+        return Collections.unmodifiableCollection(providers.values());
+    }
+}
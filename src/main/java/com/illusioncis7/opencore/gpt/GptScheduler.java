@@ -0,0 +1,212 @@
+package com.illusioncis7.opencore.gpt;
+
+import com.illusioncis7.opencore.metrics.LatencyHistogram;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Queue of pending GPT requests with one level per {@link GptPriority}.
+ * <p>
+ * Within a level, requests are grouped into flows (one per player, otherwise
+ * one per module) and served by start-time fair queuing: every request gets a
+ * virtual start and finish tag from its estimated token cost divided by the
+ * module weight, and the flow with the smallest head start tag goes next. A
+ * player or module flooding the queue therefore only delays itself.
+ * <p>
+ * Across levels the more urgent level wins, but every <code>agingMs</code> a
+ * request has waited lifts its level by one, so background work still gets
+ * through under sustained load.
+ */
+public class GptScheduler {
+
+    /** FIFO of one player or module inside a level. */
+    private static final class Flow {
+        final ArrayDeque<GptRequest> requests = new ArrayDeque<>();
+        double lastFinish;
+    }
+
+    /** One priority level. */
+    private static final class Level {
+        final Map<String, Flow> flows = new HashMap<>();
+        final LatencyHistogram waitTimes = new LatencyHistogram();
+        double virtualTime;
+        int size;
+
+        /** @return flow whose head has the smallest start tag, null if empty */
+        Flow head() {
+            Flow best = null;
+            for (Flow flow : flows.values()) {
+                GptRequest r = flow.requests.peekFirst();
+                if (r != null && (best == null || r.startTag < best.requests.peekFirst().startTag)) {
+                    best = flow;
+                }
+            }
+            return best;
+        }
+
+        long oldestCreatedAt() {
+            long oldest = Long.MAX_VALUE;
+            for (Flow flow : flows.values()) {
+                for (GptRequest r : flow.requests) {
+                    oldest = Math.min(oldest, r.createdAt);
+                }
+            }
+            return oldest;
+        }
+    }
+
+    private final EnumMap<GptPriority, Level> levels = new EnumMap<>(GptPriority.class);
+    private long agingMs = TimeUnit.MINUTES.toMillis(1);
+    private Map<String, Double> moduleWeights = new HashMap<>();
+
+    public GptScheduler() {
+        for (GptPriority priority : GptPriority.values()) {
+            levels.put(priority, new Level());
+        }
+    }
+
+    /**
+     * @param agingMs       wait time that lifts a request by one level, 0 for strict priorities
+     * @param moduleWeights share of each module within its level, default 1
+     */
+    public synchronized void configure(long agingMs, Map<String, Double> moduleWeights) {
+        this.agingMs = Math.max(0, agingMs);
+        this.moduleWeights = new HashMap<>(moduleWeights);
+    }
+
+    /** Add a request with its estimated cost in tokens. */
+    public synchronized void add(GptRequest request, int cost) {
+        Level level = levels.get(request.priority);
+        Flow flow = level.flows.computeIfAbsent(flowKey(request), k -> new Flow());
+        double weight = moduleWeights.getOrDefault(request.module != null ? request.module : "", 1.0);
+        request.startTag = Math.max(level.virtualTime, flow.lastFinish);
+        flow.lastFinish = request.startTag + Math.max(1, cost) / Math.max(0.01, weight);
+        flow.requests.addLast(request);
+        level.size++;
+    }
+
+    /** Put a request taken by {@link #poll()} back at the head of its flow, keeping its tags. */
+    public synchronized void requeue(GptRequest request) {
+        Level level = levels.get(request.priority);
+        level.flows.computeIfAbsent(flowKey(request), k -> new Flow()).requests.addFirst(request);
+        level.size++;
+    }
+
+    /** @return the request {@link #poll()} would return, without removing it */
+    public synchronized GptRequest peek() {
+        Level level = next();
+        return level != null ? level.head().requests.peekFirst() : null;
+    }
+
+    /** Remove and return the next request, null if empty. */
+    public synchronized GptRequest poll() {
+        Level level = next();
+        if (level == null) {
+            return null;
+        }
+        GptRequest request = level.head().requests.pollFirst();
+        level.size--;
+        level.virtualTime = Math.max(level.virtualTime, request.startTag);
+        level.waitTimes.record(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - request.createdAt));
+        // idle flows are kept only while their finish tag still matters
+        Iterator<Flow> it = level.flows.values().iterator();
+        while (it.hasNext()) {
+            Flow flow = it.next();
+            if (flow.requests.isEmpty() && flow.lastFinish <= level.virtualTime) {
+                it.remove();
+            }
+        }
+        return request;
+    }
+
+    /** Level to serve next: the lowest rank after aging, the more urgent one on ties. */
+    private Level next() {
+        long now = System.currentTimeMillis();
+        Level best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (Map.Entry<GptPriority, Level> e : levels.entrySet()) {
+            Level level = e.getValue();
+            if (level.size == 0) {
+                continue;
+            }
+            double score = e.getKey().ordinal();
+            if (agingMs > 0) {
+                score -= (now - level.oldestCreatedAt()) / (double) agingMs;
+            }
+            if (score < bestScore) {
+                bestScore = score;
+                best = level;
+            }
+        }
+        return best;
+    }
+
+    private static String flowKey(GptRequest request) {
+        if (request.playerUuid != null) {
+            return "player:" + request.playerUuid;
+        }
+        return "module:" + (request.module != null ? request.module : "");
+    }
+
+    public synchronized int size() {
+        int total = 0;
+        for (Level level : levels.values()) {
+            total += level.size;
+        }
+        return total;
+    }
+
+    public synchronized int size(GptPriority priority) {
+        return levels.get(priority).size;
+    }
+
+    /** Remove and return all queued requests matching the filter, oldest first. */
+    public synchronized List<GptRequest> removeIf(Predicate<GptRequest> filter) {
+        List<GptRequest> removed = new ArrayList<>();
+        for (Level level : levels.values()) {
+            for (Flow flow : level.flows.values()) {
+                Iterator<GptRequest> it = flow.requests.iterator();
+                while (it.hasNext()) {
+                    GptRequest request = it.next();
+                    if (filter.test(request)) {
+                        it.remove();
+                        level.size--;
+                        removed.add(request);
+                    }
+                }
+            }
+        }
+        removed.sort(Comparator.comparingLong(r -> r.createdAt));
+        return removed;
+    }
+
+    public synchronized void clear() {
+        for (Level level : levels.values()) {
+            level.flows.clear();
+            level.size = 0;
+        }
+    }
+
+    /** @return creation time of the oldest queued request, {@link Long#MAX_VALUE} if empty */
+    public synchronized long oldestCreatedAt() {
+        long oldest = Long.MAX_VALUE;
+        for (Level level : levels.values()) {
+            oldest = Math.min(oldest, level.oldestCreatedAt());
+        }
+        return oldest;
+    }
+
+    /** @return distribution of the time requests of the class spent in the queue */
+    public LatencyHistogram getWaitTimes(GptPriority priority) {
+        return levels.get(priority).waitTimes;
+    }
+}
@@ -1,21 +1,18 @@
 package com.illusioncis7.opencore.gpt;
 
-import org.everit.json.schema.Schema;
-import org.everit.json.schema.loader.SchemaLoader;
-import org.json.JSONArray;
-import org.json.JSONObject;
-import org.json.JSONTokener;
-
 import java.util.HashMap;
 import java.util.Map;
 
-/** Utility for validating GPT responses against predefined JSON schemas. */
+/**
+ * JSON schemas of the GPT answers per template. They are sent as
+ * <code>response_format</code> and checked by {@link GptBinder}.
+ */
 public final class GptSchemas {
-    private static final Map<String, Schema> SCHEMAS = new HashMap<>();
+    private static final Map<String, String> SOURCES = new HashMap<>();
 
     static {
         // Schema for suggestion_classifier responses
-        SCHEMAS.put("suggest_classify", load("""
+        put("suggest_classify", """
             {
               "type": "object",
               "properties": {
@@ -26,9 +23,33 @@ public final class GptSchemas {
               "required": ["suggestion_type"],
               "additionalProperties": true
             }
-        """));
+        """);
+        // Schema for batched suggestion_classifier responses, one entry per suggestion id
+        put("suggest_classify_batch", """
+            {
+              "type": "object",
+              "properties": {
+                "classifications": {
+                  "type": "array",
+                  "items": {
+                    "type": "object",
+                    "properties": {
+                      "id": {"type": "integer"},
+                      "suggestion_type": {"type": "string"},
+                      "reasoning": {"type": "string"},
+                      "confidence": {"type": "number"}
+                    },
+                    "required": ["id", "suggestion_type"],
+                    "additionalProperties": true
+                  }
+                }
+              },
+              "required": ["classifications"],
+              "additionalProperties": true
+            }
+        """);
         // Schema for suggest_map responses
-        SCHEMAS.put("suggest_map", load("""
+        put("suggest_map", """
             {
               "type": "object",
               "properties": {
@@ -38,9 +59,9 @@ public final class GptSchemas {
               "required": ["id", "value"],
               "additionalProperties": true
             }
-        """));
+        """);
         // Schema for rule_map responses
-        SCHEMAS.put("rule_map", load("""
+        put("rule_map", """
             {
               "type": "object",
               "properties": {
@@ -52,9 +73,9 @@ public final class GptSchemas {
               "required": ["id", "text"],
               "additionalProperties": true
             }
-        """));
+        """);
         // Schema for chat_analysis responses (v2)
-        SCHEMAS.put("chat_analysis", load("""
+        put("chat_analysis", """
             {
               "type": "object",
               "properties": {
@@ -76,43 +97,18 @@ public final class GptSchemas {
               "required": ["evaluations"],
               "additionalProperties": false
             }
-        """));
+        """);
     }
 
-    private static Schema load(String schemaJson) {
-        JSONObject obj = new JSONObject(new JSONTokener(schemaJson));
-        return SchemaLoader.load(obj);
+    private static void put(String template, String schemaJson) {
+        SOURCES.put(template, schemaJson);
     }
 
     private GptSchemas() {
     }
 
-    /**
-     * Validate the given response against the schema for the specified template.
-     *
-     * @param template name of the GPT template
-     * @param response response string
-     * @return {@code true} if valid or no schema defined
-     */
-    public static boolean validate(String template, String response) {
-        Schema schema = SCHEMAS.get(template);
-        if (schema == null) {
-            return true;
-        }
-        try {
-            Object json;
-            String trimmed = response.trim();
-            if (trimmed.startsWith("{")) {
-                json = new JSONObject(trimmed);
-            } else if (trimmed.startsWith("[")) {
-                json = new JSONArray(trimmed);
-            } else {
-                return false;
-            }
-            schema.validate(json);
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+    /** @return JSON text of the template's schema, null if none is defined */
+    public static String source(String template) {
+        return template != null ? SOURCES.get(template) : null;
     }
 }
@@ -1,15 +1,15 @@
 package com.illusioncis7.opencore.gpt;
 
 import com.illusioncis7.opencore.database.Database;
+import com.illusioncis7.opencore.metrics.LatencyHistogram;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.sql.Connection;
@@ -17,82 +17,306 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
-import java.util.Queue;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+/**
+ * Sends GPT requests from a {@link GptScheduler}. Up to <code>max-concurrent</code>
+ * requests are in flight at once; a new one is started as soon as a request
+ * is queued or a running one finishes, as long as the {@link RateLimiter}
+ * has budget left. Requests answered with 429 go back to the head of the
+ * queue instead of using up a retry. Answers are cached per policy module
+ * in a {@link GptResponseCache}; a cached answer skips the queue entirely.
+ * <p>
+ * A {@link CircuitBreaker} stops sending while the API keeps failing:
+ * interactive requests fail at once, everything else stays queued until a
+ * probe succeeds. Requests of modules listed under <code>hedging</code> are
+ * sent a second time if the first copy has not been answered after the p95
+ * response time; the first answer wins.
+ */
 public class GptService {
 
+    /** Processes answers of requests submitted with {@link #submitDurable}. */
+    public interface DurableHandler {
+        /**
+         * @param requestId id of the request, stable across restarts
+         * @param payload   payload given at submit
+         * @param response  answer or null if the request failed
+         */
+        void handle(UUID requestId, JSONObject payload, String response);
+    }
+
     private final JavaPlugin plugin;
     private final Database database;
     private final PolicyService policyService;
-    private final Queue<GptRequest> queue = new ConcurrentLinkedQueue<>();
-    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final GptScheduler queue = new GptScheduler();
+    /** Created on the first init; thread counts take effect after a restart. */
+    private volatile GptTransport transport;
     private final Set<UUID> activePlayers = ConcurrentHashMap.newKeySet();
     private final Map<UUID, Long> cooldowns = new ConcurrentHashMap<>();
     private static final long COOLDOWN_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final int MAX_ATTEMPTS = 3;
+    private static final String OPENAI_HOST = "https://api.openai.com/";
+    private static final String OPENAI_URL = OPENAI_HOST + "v1/chat/completions";
+    /** Name of the provider registered for the bundled stub server. */
+    private static final String STUB_PROVIDER = "stub";
+    /** Successful answers needed before the hedge delay follows their p95. */
+    private static final int HEDGE_MIN_SAMPLES = 20;
+    /** Delay before dispatch looks at a half-open breaker again. */
+    private static final long BREAKER_RECHECK_MS = 1000L;
+    /** Limit for a complete answer. */
+    private static final long TIMEOUT_SECONDS = 30L;
+    /** Limit for a streamed answer, which arrives bit by bit and may be long. */
+    private static final long STREAM_TIMEOUT_SECONDS = 120L;
 
     /** Duration of the last GPT response in milliseconds. */
     private volatile long lastResponseMs = -1;
 
-    private String apiKey;
-    private int intervalSeconds;
-    private boolean enabled;
-    private boolean processing;
-    private String model;
-    private double temperature;
+    /** Requests currently sent or waiting for a retry. */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    /** Time from submit until a request is sent for the first time. */
+    private final LatencyHistogram waitTimes = new LatencyHistogram();
+    /** Time from the first send until the final answer, retries included. */
+    private final LatencyHistogram responseTimes = new LatencyHistogram();
+    /** Time from sending a single attempt until a successful answer; base of the hedge delay. */
+    private final LatencyHistogram attemptTimes = new LatencyHistogram();
+    /** Time from sending a streamed request until its first piece of text. */
+    private final LatencyHistogram firstTokenTimes = new LatencyHistogram();
+    /** Guards taking the head of the queue together with its rate limit budget. */
+    private final Object dispatchLock = new Object();
+    /** Set while a delayed dispatch waits for the rate limiter. */
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+    private volatile GptRouter router;
+    private StubGptServer stubServer;
+    private volatile Set<String> hedgedModules = new HashSet<>();
+    private long hedgeDefaultDelayMs;
+    private long hedgeMinDelayMs;
+    private final AtomicLong hedgesSent = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private int expectedCompletionTokens;
+    private int maxRateLimitRetries;
 
-    private BukkitTask task;
+    private final GptResponseCache cache;
+    private final GptTelemetry telemetry;
+    private final GptCassette cassette;
+    private BukkitTask telemetryTask;
+    private final GptWorkQueue workQueue;
+    private final Map<String, DurableHandler> handlers = new ConcurrentHashMap<>();
+    private volatile boolean cacheEnabled;
+    private long defaultCacheTtlMs;
+    private volatile Map<String, Long> moduleCacheTtlMs = new HashMap<>();
+    private volatile Map<String, GptPriority> modulePriorities = new HashMap<>();
+
+    private volatile boolean enabled;
+    private volatile int maxConcurrent;
+    private double temperature;
 
     public GptService(JavaPlugin plugin, Database database, PolicyService policyService) {
         this.plugin = plugin;
         this.database = database;
         this.policyService = policyService;
+        this.cache = new GptResponseCache(database, plugin.getLogger(), 1000);
+        this.workQueue = new GptWorkQueue(database, plugin.getLogger());
+        this.telemetry = new GptTelemetry(database, plugin.getLogger());
+        this.cassette = new GptCassette(plugin.getLogger());
     }
 
     public synchronized void init() {
         File configFile = new File(plugin.getDataFolder(), "gpt.yml");
         FileConfiguration config = YamlConfiguration.loadConfiguration(configFile);
-        this.apiKey = config.getString("api-key", "");
-        this.intervalSeconds = config.getInt("interval-seconds", 60);
         this.enabled = config.getBoolean("enabled", false);
-        this.model = config.getString("model", "gpt-3.5-turbo");
+        this.maxConcurrent = Math.max(1, config.getInt("max-concurrent", 4));
         this.temperature = config.getDouble("temperature", 0.8);
-
-        if (task != null) {
-            task.cancel();
-            task = null;
+        this.expectedCompletionTokens = Math.max(0, config.getInt("rate-limit.expected-completion-tokens", 500));
+        this.maxRateLimitRetries = Math.max(0, config.getInt("rate-limit.max-retries", 10));
+        if (transport == null) {
+            transport = new GptTransport(Math.max(1, config.getInt("transport.response-threads", 4)),
+                    config.getInt("transport.response-queue", 256),
+                    TimeUnit.SECONDS.toMillis(Math.max(1L, config.getLong("transport.connect-timeout-seconds", 10))),
+                    config.getBoolean("transport.gzip-requests", false),
+                    config.getInt("transport.gzip-min-bytes", 1024));
+        }
+        startStubServer(config);
+        this.router = loadRouter(config);
+        this.hedgedModules = new HashSet<>(config.getStringList("hedging.modules"));
+        this.hedgeDefaultDelayMs = Math.max(0L, config.getLong("hedging.default-delay-ms", 5000));
+        this.hedgeMinDelayMs = Math.max(0L, config.getLong("hedging.min-delay-ms", 500));
+        this.cacheEnabled = config.getBoolean("cache.enabled", true);
+        this.cache.setMaxEntries(config.getInt("cache.max-entries", 1000));
+        this.defaultCacheTtlMs = TimeUnit.MINUTES.toMillis(config.getLong("cache.ttl-minutes", 1440));
+        Map<String, Long> ttls = new HashMap<>();
+        if (config.isConfigurationSection("cache.modules")) {
+            for (String module : config.getConfigurationSection("cache.modules").getKeys(false)) {
+                ttls.put(module, TimeUnit.MINUTES.toMillis(config.getLong("cache.modules." + module)));
+            }
+        }
+        this.moduleCacheTtlMs = ttls;
+        Map<String, GptPriority> priorities = new HashMap<>();
+        if (config.isConfigurationSection("scheduler.classes")) {
+            for (String module : config.getConfigurationSection("scheduler.classes").getKeys(false)) {
+                priorities.put(module, GptPriority.parse(config.getString("scheduler.classes." + module), GptPriority.PIPELINE));
+            }
+        }
+        this.modulePriorities = priorities;
+        Map<String, Double> weights = new HashMap<>();
+        if (config.isConfigurationSection("scheduler.weights")) {
+            for (String module : config.getConfigurationSection("scheduler.weights").getKeys(false)) {
+                weights.put(module, config.getDouble("scheduler.weights." + module, 1.0));
+            }
+        }
+        queue.configure(TimeUnit.SECONDS.toMillis(config.getLong("scheduler.aging-seconds", 60)), weights);
+        if (cacheEnabled) {
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, cache::purgeExpired);
+        }
+        Map<String, double[]> prices = new HashMap<>();
+        if (config.isConfigurationSection("pricing")) {
+            for (String name : config.getConfigurationSection("pricing").getKeys(false)) {
+                prices.put(name, new double[]{config.getDouble("pricing." + name + ".input", 0.0),
+                        config.getDouble("pricing." + name + ".output", 0.0)});
+            }
         }
+        telemetry.setPrices(prices);
+        GptCassette.Mode cassetteMode = GptCassette.Mode.parse(config.getString("cassette.mode", "off"));
+        cassette.configure(cassetteMode,
+                new File(plugin.getDataFolder(), config.getString("cassette.file", "cassettes/gpt.cassette")),
+                GptCassette.Latency.parse(config.getString("cassette.latency", "none")),
+                config.getLong("cassette.latency-median-ms", 800), config.getLong("cassette.latency-p95-ms", 3000),
+                config.getLong("cassette.seed", 1L), config.getBoolean("cassette.live-on-miss", false));
+        if (cassetteMode != GptCassette.Mode.OFF) {
+            plugin.getLogger().info("GPT cassette mode " + cassetteMode.name().toLowerCase(Locale.ROOT)
+                    + ", response cache bypassed");
+        }
+        int retentionDays = config.getInt("usage-retention-days", 30);
+        if (telemetryTask != null) {
+            telemetryTask.cancel();
+        }
+        telemetryTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+            telemetry.flush(false);
+            cassette.save();
+        }, 1200L, 1200L);
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> telemetry.purge(retentionDays));
 
         if (enabled) {
-            task = new BukkitRunnable() {
-                @Override
-                public void run() {
-                    processNext();
-                }
-            }.runTaskTimerAsynchronously(plugin, 0L, intervalSeconds * 20L);
+            // a reload may raise the limit or re-enable the service with work pending
+            dispatch();
         } else {
             plugin.getLogger().info("GPT service disabled via configuration.");
         }
     }
 
-    public synchronized void shutdown() {
-        if (task != null) {
-            task.cancel();
-            task = null;
+    /**
+     * Build providers and routes. Without a <code>providers</code> section
+     * the top-level api-key, model and rate-limit describe a single OpenAI
+     * provider. The API key is only inherited by providers on the OpenAI host.
+     */
+    private GptRouter loadRouter(FileConfiguration config) {
+        String apiKey = config.getString("api-key", "");
+        String model = config.getString("model", "gpt-3.5-turbo");
+        long rpm = config.getLong("rate-limit.requests-per-minute", 0);
+        long tpm = config.getLong("rate-limit.tokens-per-minute", 0);
+        boolean structured = config.getBoolean("structured-output", false);
+        Map<String, GptProvider> providers = new LinkedHashMap<>();
+        if (config.isConfigurationSection("providers")) {
+            for (String name : config.getConfigurationSection("providers").getKeys(false)) {
+                String path = "providers." + name + ".";
+                String url = config.getString(path + "url", OPENAI_URL);
+                providers.put(name, new GptProvider(name, url,
+                        config.getString(path + "api-key", url.startsWith(OPENAI_HOST) ? apiKey : ""),
+                        config.getString(path + "model", model), false,
+                        config.getBoolean(path + "structured-output", structured),
+                        new RateLimiter(config.getLong(path + "requests-per-minute", rpm),
+                                config.getLong(path + "tokens-per-minute", tpm)),
+                        newBreaker(config)));
+            }
+        }
+        if (providers.isEmpty()) {
+            providers.put("openai", new GptProvider("openai", OPENAI_URL, apiKey, model, false, structured,
+                    new RateLimiter(rpm, tpm), newBreaker(config)));
+        }
+        if (stubServer != null && !providers.containsKey(STUB_PROVIDER)) {
+            providers.put(STUB_PROVIDER, new GptProvider(STUB_PROVIDER, stubServer.getUrl(), "", STUB_PROVIDER, true, false,
+                    new RateLimiter(0, 0), newBreaker(config)));
+        }
+        Map<String, List<String>> routes = new HashMap<>();
+        if (config.isConfigurationSection("routing.modules")) {
+            for (String module : config.getConfigurationSection("routing.modules").getKeys(false)) {
+                routes.put(module, config.getStringList("routing.modules." + module));
+            }
+        }
+        return new GptRouter(providers, config.getStringList("routing.default"), routes,
+                config.getDouble("routing.min-health", 0.5), plugin.getLogger());
+    }
+
+    private static CircuitBreaker newBreaker(FileConfiguration config) {
+        return new CircuitBreaker(config.getInt("circuit-breaker.window", 20),
+                config.getInt("circuit-breaker.minimum-calls", 10),
+                config.getDouble("circuit-breaker.failure-rate", 0.5),
+                TimeUnit.SECONDS.toMillis(config.getLong("circuit-breaker.open-seconds", 30)),
+                config.getInt("circuit-breaker.half-open-probes", 1));
+    }
+
+    /** Start, restart or stop the bundled stub server as configured. */
+    private void startStubServer(FileConfiguration config) {
+        if (stubServer != null) {
+            stubServer.stop();
+            stubServer = null;
         }
+        if (!config.getBoolean("stub-server.enabled", false)) {
+            return;
+        }
+        int port = config.getInt("stub-server.port", 8964);
+        StubGptServer server = new StubGptServer(new File(plugin.getDataFolder(), "gpt_stub"), port,
+                config.getLong("stub-server.latency-ms", 0), config.getInt("stub-server.fail-every", 0),
+                plugin.getLogger());
+        try {
+            server.start();
+            stubServer = server;
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to start GPT stub server on port " + port + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stop sending and store the usage of the current minute. Durable
+     * requests stay in <code>gpt_queue</code> and are replayed on the next start.
+     */
+    public synchronized void shutdown() {
+        enabled = false;
         queue.clear();
+        if (telemetryTask != null) {
+            telemetryTask.cancel();
+            telemetryTask = null;
+        }
+        telemetry.flush(true);
+        cassette.save();
+        if (stubServer != null) {
+            stubServer.stop();
+            stubServer = null;
+        }
+        if (transport != null) {
+            transport.shutdown();
+        }
     }
 
-    /** Reload configuration and restart the scheduler. */
+    /** Reload configuration; queued requests are kept. */
     public void reload() {
         init();
     }
@@ -104,25 +328,118 @@ public class GptService {
         return lastResponseMs;
     }
 
+    /** @return number of requests waiting for a free slot */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /** @return number of requests currently sent or waiting for a retry */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /** @return milliseconds the oldest queued request has been waiting, 0 if the queue is empty */
+    public long getOldestWaitMs() {
+        long oldest = queue.oldestCreatedAt();
+        return oldest != Long.MAX_VALUE ? System.currentTimeMillis() - oldest : 0L;
+    }
+
+    /** @return queue of pending requests with per-class statistics */
+    public GptScheduler getScheduler() {
+        return queue;
+    }
+
+    /** Class of a request: configured per module, otherwise interactive if a player waits for it. */
+    private GptPriority priorityOf(String module, UUID playerUuid) {
+        GptPriority configured = module != null ? modulePriorities.get(module) : null;
+        if (configured != null) {
+            return configured;
+        }
+        return playerUuid != null ? GptPriority.INTERACTIVE : GptPriority.PIPELINE;
+    }
+
+    /** @return distribution of the time requests spent in the queue */
+    public LatencyHistogram getWaitTimes() {
+        return waitTimes;
+    }
+
+    /** @return distribution of the time spent rendering policy prompts */
+    public LatencyHistogram getRenderTimes() {
+        return policyService.getRenderTimes();
+    }
+
+    /** @return distribution of the time from sending a request until its final answer */
+    public LatencyHistogram getResponseTimes() {
+        return responseTimes;
+    }
+
+    /** @return distribution of the time until a streamed answer begins */
+    public LatencyHistogram getFirstTokenTimes() {
+        return firstTokenTimes;
+    }
+
+    /** @return request and token budgets of the default route's first provider */
+    public RateLimiter getRateLimiter() {
+        return router.primary(null).rateLimiter;
+    }
+
+    /** @return recorded answers used in record and replay mode */
+    public GptCassette getCassette() {
+        return cassette;
+    }
+
+    /** @return HTTP client with its connection and compression counters */
+    public GptTransport getTransport() {
+        return transport;
+    }
+
+    /** @return providers with their routes per module */
+    public GptRouter getRouter() {
+        return router;
+    }
+
+    /** @return usage statistics per policy module */
+    public GptTelemetry getTelemetry() {
+        return telemetry;
+    }
+
+    /** @return number of duplicate requests sent by hedging */
+    public long getHedgesSent() {
+        return hedgesSent.get();
+    }
+
+    /** @return number of hedged duplicates that answered before the original */
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    /** @return cache of answers shared by all modules */
+    public GptResponseCache getCache() {
+        return cache;
+    }
+
+    /** @return cache lifetime for answers of the module in milliseconds, 0 if they are not cached */
+    private long cacheTtlMs(String module) {
+        if (!cacheEnabled) {
+            return 0L;
+        }
+        Long ttl = module != null ? moduleCacheTtlMs.get(module) : null;
+        return Math.max(0L, ttl != null ? ttl : defaultCacheTtlMs);
+    }
+
     /**
      * Build a prompt for the given module using the stored policy text.
      * Placeholders of the form %key% are replaced with the provided values.
      */
     public String buildPrompt(String module, Map<String, String> values) {
-        String policy = policyService.getPolicy(module);
-        if (policy == null) {
-            return null;
-        }
-        String result = policy;
-        if (values != null) {
-            for (Map.Entry<String, String> e : values.entrySet()) {
-                String ph = "%" + e.getKey() + "%";
-                result = result.replace(ph, e.getValue());
-            }
-        }
-        return result;
+        return policyService.render(module, values);
     }
 
+
     /**
      * Convenience to submit a request based on a policy module.
      */
@@ -134,10 +451,143 @@ public class GptService {
             return;
         }
         plugin.getLogger().info("Submitting policy " + module + " for " + (playerUuid != null ? playerUuid : "system"));
-        submitRequest(prompt, playerUuid, callback);
+        submit(module, prompt, playerUuid, null, callback);
+    }
+
+    /**
+     * Like {@link #submitPolicyRequest} but the answer is streamed: the
+     * listener gets every piece of text as soon as it arrives. Answers from
+     * the cache or a cassette come as a single piece.
+     */
+    public void submitPolicyStream(String module, Map<String, String> values, UUID playerUuid,
+                                   GptStreamListener listener) {
+        String prompt = buildPrompt(module, values);
+        if (prompt == null) {
+            plugin.getLogger().warning("No policy found for module " + module);
+            listener.onComplete(null);
+            return;
+        }
+        plugin.getLogger().info("Streaming policy " + module + " for " + (playerUuid != null ? playerUuid : "system"));
+        GptStream stream = new GptStream(listener, transport.getResponseExecutor(), plugin.getLogger());
+        GptRequest request = new GptRequest(UUID.randomUUID(), module, prompt, playerUuid, stream::complete);
+        request.priority = priorityOf(module, playerUuid);
+        request.stream = stream;
+        admit(request);
     }
 
     public void submitRequest(String prompt, UUID playerUuid, Consumer<String> callback) {
+        submit(null, prompt, playerUuid, null, callback);
+    }
+
+    /**
+     * Submit a request in an explicit scheduling class.
+     *
+     * @param module   module for cache lifetime and fair queuing, may be null
+     * @param priority class of the request, null to derive it from module and player
+     */
+    public void submitRequest(String module, String prompt, UUID playerUuid, GptPriority priority,
+                              Consumer<String> callback) {
+        submit(module, prompt, playerUuid, priority, callback);
+    }
+
+    private void submit(String module, String prompt, UUID playerUuid, GptPriority priority, Consumer<String> callback) {
+        GptRequest request = new GptRequest(UUID.randomUUID(), module, prompt, playerUuid, callback);
+        request.priority = priority != null ? priority : priorityOf(module, playerUuid);
+        admit(request);
+    }
+
+    /**
+     * Submit a request that survives restarts. It is stored in
+     * <code>gpt_queue</code> before it is queued, and the answer goes to the
+     * handler registered under <code>handlerName</code> together with the
+     * payload. After a restart unfinished requests are replayed by
+     * {@link #replayPending()}, so the handler may see the same request id
+     * twice and has to ignore work that is already done.
+     */
+    public void submitDurable(String handlerName, JSONObject payload, String module, String prompt, UUID playerUuid) {
+        UUID requestId = UUID.randomUUID();
+        String data = payload != null ? payload.toString() : "{}";
+        GptRequest request = new GptRequest(requestId, module, prompt, playerUuid,
+                answer -> completeDurable(handlerName, requestId, data, answer));
+        request.priority = priorityOf(module, playerUuid);
+        request.durable = true;
+        if (enabled) {
+            workQueue.enqueue(request, handlerName, data);
+        }
+        admit(request);
+    }
+
+    /** Register the handler for answers of durable requests submitted under <code>name</code>. */
+    public void registerHandler(String name, DurableHandler handler) {
+        handlers.put(name, handler);
+    }
+
+    /**
+     * Queue the durable requests left unfinished by the last run. Requests
+     * answered before the restart are handed to their handler again without
+     * contacting the API. Call once after all handlers are registered.
+     */
+    public void replayPending() {
+        if (!enabled) {
+            return;
+        }
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<GptWorkQueue.Entry> entries = workQueue.loadPending();
+            int resent = 0;
+            int answered = 0;
+            for (GptWorkQueue.Entry e : entries) {
+                if (!handlers.containsKey(e.handler)) {
+                    plugin.getLogger().warning("No handler " + e.handler + " for queued GPT request " + e.requestId);
+                    continue;
+                }
+                String data = e.payload != null ? e.payload : "{}";
+                if (e.response != null) {
+                    completeDurable(e.handler, e.requestId, data, e.response);
+                    answered++;
+                    continue;
+                }
+                GptRequest request = new GptRequest(e.requestId, e.module, e.prompt, e.playerUuid,
+                        answer -> completeDurable(e.handler, e.requestId, data, answer));
+                request.priority = e.priority;
+                request.durable = true;
+                route(request);
+                resent++;
+            }
+            if (!entries.isEmpty()) {
+                plugin.getLogger().info("Replayed GPT work queue: " + resent + " requeued, " + answered + " already answered");
+            }
+        });
+    }
+
+    /** Record the answer, run the handler and drop the stored request once it succeeded. */
+    private void completeDurable(String handlerName, UUID requestId, String payload, String answer) {
+        if (answer != null) {
+            workQueue.markAnswered(requestId, answer);
+        }
+        DurableHandler handler = handlers.get(handlerName);
+        if (handler == null) {
+            plugin.getLogger().warning("No handler " + handlerName + " for GPT request " + requestId);
+            return;
+        }
+        try {
+            handler.handle(requestId, new JSONObject(payload), answer);
+        } catch (RuntimeException e) {
+            // left in the queue, the next start hands the stored answer over again
+            plugin.getLogger().severe("GPT handler " + handlerName + " failed for " + requestId + ": " + e.getMessage());
+            return;
+        }
+        workQueue.ack(requestId);
+    }
+
+    /**
+     * Apply the enabled and per-player checks, then answer from the cache or
+     * queue the request. Durable requests skip the per-player checks: they
+     * are already stored, and answering them with null would hand the
+     * handler a failure and drop the stored work.
+     */
+    private void admit(GptRequest request) {
+        Consumer<String> callback = request.callback;
+        UUID playerUuid = request.playerUuid;
         if (!enabled) {
             if (callback != null) {
                 callback.accept(null);
@@ -145,7 +595,7 @@ public class GptService {
             return;
         }
 
-        if (playerUuid != null) {
+        if (playerUuid != null && !request.durable) {
             Long last = cooldowns.get(playerUuid);
             if (last != null && System.currentTimeMillis() - last < COOLDOWN_MS) {
                 plugin.getLogger().warning("GPT cooldown active for " + playerUuid);
@@ -163,54 +613,224 @@ public class GptService {
             }
             activePlayers.add(playerUuid);
         }
+        route(request);
+    }
+
+    private void route(GptRequest request) {
+        GptCassette.Mode mode = cassette.getMode();
+        if (mode == GptCassette.Mode.REPLAY) {
+            replay(request);
+            return;
+        }
+        // while recording, every prompt has to reach the API
+        if (mode == GptCassette.Mode.OFF && cacheTtlMs(request.module) > 0) {
+            // keyed by the primary model; an answer of a fallback provider is cached under it as well
+            request.cacheKey = GptResponseCache.key(router.primary(request.module).model, temperature, request.prompt);
+            String cached = cache.getCached(request.cacheKey);
+            // callbacks always run off the submitting thread, cached or not
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+                String answer = cached != null ? cached : cache.load(request.cacheKey);
+                if (answer != null) {
+                    telemetry.recordCacheHit(request.module);
+                    deliver(request, answer);
+                } else {
+                    enqueue(request);
+                }
+            });
+            return;
+        }
+        enqueue(request);
+    }
 
-        UUID requestId = UUID.randomUUID();
-        GptRequest request = new GptRequest(requestId, prompt, playerUuid, callback);
-        queue.add(request);
-        if (playerUuid != null) {
-            plugin.getLogger().info("Queued GPT request " + requestId + " for " + playerUuid);
+    /**
+     * Answer from the cassette after the simulated latency. Without a
+     * recording the request fails, or goes to the API if live-on-miss is set.
+     */
+    private void replay(GptRequest request) {
+        GptCassette.Entry entry = cassette.next(request.module, request.prompt);
+        if (entry == null && cassette.isLive()) {
+            enqueue(request);
+            return;
+        }
+        long delay = entry != null ? cassette.latencyMs(entry) : 0L;
+        CompletableFuture.runAsync(() -> {
+            if (entry == null) {
+                plugin.getLogger().warning("No cassette answer for GPT request " + request.requestId
+                        + " (" + (request.module != null ? request.module : GptTelemetry.OTHER) + ")");
+                telemetry.recordFailure(request.module, -1);
+                deliver(request, null);
+                return;
+            }
+            telemetry.recordSuccess(request.module, entry.model, delay, entry.promptTokens, entry.completionTokens);
+            deliver(request, entry.answer);
+        }, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, transport.getResponseExecutor()));
+    }
+
+    private void enqueue(GptRequest request) {
+        if (router.isOpen(request.module)) {
+            if (failsFast(request)) {
+                plugin.getLogger().warning("GPT circuit open, rejecting request " + request.requestId);
+                telemetry.recordFailure(request.module, -1);
+                deliver(request, null);
+                return;
+            }
+            plugin.getLogger().info("GPT circuit open, request " + request.requestId + " waits until it closes");
+        }
+        queue.add(request, estimateTokens(request.prompt));
+        if (request.playerUuid != null) {
+            plugin.getLogger().info("Queued GPT request " + request.requestId + " for " + request.playerUuid);
         } else {
-            plugin.getLogger().info("Queued GPT request " + requestId);
+            plugin.getLogger().info("Queued GPT request " + request.requestId);
         }
+        dispatch();
     }
 
-    public void submitTemplate(String category, String data, UUID playerUuid, Consumer<String> callback) {
+    /**
+     * Build a prompt from the stored template of the category, replacing
+     * {data}. Returns null if no template exists.
+     */
+    public String buildTemplate(String category, String data) {
         String template = database.getPrompt(category);
-        if (template == null) {
+        return template != null ? template.replace("{data}", data) : null;
+    }
+
+    public void submitTemplate(String category, String data, UUID playerUuid, Consumer<String> callback) {
+        String prompt = buildTemplate(category, data);
+        if (prompt == null) {
             plugin.getLogger().warning("No GPT prompt found for category " + category);
             if (callback != null) {
                 callback.accept(null);
             }
             return;
         }
-        String prompt = template.replace("{data}", data);
         plugin.getLogger().info("Submitting GPT template " + category + " for " + (playerUuid != null ? playerUuid : "system"));
-        submitRequest(prompt, playerUuid, callback);
+        submit(category, prompt, playerUuid, null, callback);
+    }
+
+    /**
+     * Start queued requests until all slots are taken or the rate limit is
+     * reached. Safe to call from any thread. When the limiter asks to wait, a
+     * single delayed dispatch is scheduled for the time it names.
+     */
+    private void dispatch() {
+        synchronized (dispatchLock) {
+            while (enabled && inFlight.get() < maxConcurrent) {
+                GptRequest head = queue.peek();
+                if (head == null) {
+                    return;
+                }
+                if (router.isOpen(head.module)) {
+                    rejectWaiting();
+                    scheduleWakeup(Math.max(BREAKER_RECHECK_MS, router.getRemainingOpenMs(head.module)));
+                    return;
+                }
+                int tokens = estimateTokens(head.prompt);
+                long[] wait = new long[1];
+                GptProvider provider = router.acquire(head.module, tokens, null, wait);
+                if (provider == null) {
+                    // rate limited, or half-open with all probes out; their answers dispatch again
+                    scheduleWakeup(wait[0] != Long.MAX_VALUE ? Math.max(1L, wait[0]) : BREAKER_RECHECK_MS);
+                    return;
+                }
+                GptRequest request = queue.poll();
+                if (request == null || (request != head && !router.routes(request.module, provider))) {
+                    // a more urgent request for another route arrived since the peek
+                    provider.breaker.onIgnored();
+                    provider.rateLimiter.release(tokens);
+                    if (request == null) {
+                        return;
+                    }
+                    queue.requeue(request);
+                    continue;
+                }
+                if (request != head) {
+                    // a more urgent request arrived since the peek; charge its estimate instead
+                    int actual = estimateTokens(request.prompt);
+                    provider.rateLimiter.correct(tokens, actual);
+                    tokens = actual;
+                }
+                request.reservedTokens = tokens;
+                request.provider = provider;
+                inFlight.incrementAndGet();
+                waitTimes.record(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - request.createdAt));
+                // submitters may be on the main thread; logging and sending happen off it
+                plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> sendRequest(request, 1));
+            }
+        }
     }
 
-    private void processNext() {
-        if (processing) {
+    /** Interactive requests fail while their route is open; durable requests are never dropped. */
+    private static boolean failsFast(GptRequest request) {
+        return request.priority == GptPriority.INTERACTIVE && !request.durable;
+    }
+
+    /** Fail the queued requests nobody should wait for while all providers of their route are open. */
+    private void rejectWaiting() {
+        List<GptRequest> rejected = queue.removeIf(r -> failsFast(r) && router.isOpen(r.module));
+        if (rejected.isEmpty()) {
             return;
         }
-        GptRequest request = queue.poll();
-        if (request == null) {
+        plugin.getLogger().warning("GPT circuit open, rejecting " + rejected.size() + " waiting interactive requests");
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            for (GptRequest request : rejected) {
+                telemetry.recordFailure(request.module, -1);
+                deliver(request, null);
+            }
+        });
+    }
+
+    private void scheduleWakeup(long delayMs) {
+        if (!wakeupPending.compareAndSet(false, true)) {
             return;
         }
-        processing = true;
-        sendRequest(request, 1);
+        long ticks = Math.max(1L, (delayMs + 49) / 50);
+        plugin.getServer().getScheduler().runTaskLaterAsynchronously(plugin, () -> {
+            wakeupPending.set(false);
+            dispatch();
+        }, ticks);
+    }
+
+    /** Estimated token count of a request: the prompt with its message framing plus the expected answer. */
+    private int estimateTokens(String prompt) {
+        return TokenEstimator.estimate(prompt) + TokenEstimator.MESSAGE_OVERHEAD + expectedCompletionTokens;
+    }
+
+    /** Put a rate limited request back at the head of the queue and free its slot. */
+    private void requeue(GptRequest request) {
+        queue.requeue(request);
+        inFlight.decrementAndGet();
+        dispatch();
+    }
+
+    /** Release the slot of a finished request and start the next one. */
+    private void finish(GptRequest request, long sentAt) {
+        responseTimes.record(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - sentAt));
+        inFlight.decrementAndGet();
+        dispatch();
     }
 
     private void sendRequest(GptRequest request, int attempt) {
+        sendRequest(request, attempt, System.currentTimeMillis());
+    }
+
+    private void sendRequest(GptRequest request, int attempt, long firstSentAt) {
+        GptProvider provider = request.provider;
         if (request.playerUuid != null) {
-            plugin.getLogger().info("Processing GPT request " + request.requestId + " for " + request.playerUuid + " (attempt " + attempt + ")");
+            plugin.getLogger().info("Processing GPT request " + request.requestId + " for " + request.playerUuid
+                    + " via " + provider.name + " (attempt " + attempt + ")");
         } else {
-            plugin.getLogger().info("Processing GPT request " + request.requestId + " (attempt " + attempt + ")");
+            plugin.getLogger().info("Processing GPT request " + request.requestId + " via " + provider.name
+                    + " (attempt " + attempt + ")");
         }
         long start = System.currentTimeMillis();
         logRequest(request);
+        GptStream stream = request.stream;
+        if (stream != null) {
+            stream.begin();
+        }
 
         JSONObject payload = new JSONObject();
-        payload.put("model", model);
+        payload.put("model", provider.model);
         JSONArray messages = new JSONArray();
         JSONObject message = new JSONObject();
         message.put("role", "user");
@@ -218,60 +838,293 @@ public class GptService {
         messages.put(message);
         payload.put("messages", messages);
         payload.put("temperature", temperature);
+        if (stream != null) {
+            payload.put("stream", true);
+            payload.put("stream_options", new JSONObject().put("include_usage", true));
+        }
+        String schema = provider.structuredOutput ? GptSchemas.source(request.module) : null;
+        if (schema != null) {
+            // the API then only produces answers matching the schema
+            payload.put("response_format", new JSONObject()
+                    .put("type", "json_schema")
+                    .put("json_schema", new JSONObject()
+                            .put("name", request.module)
+                            .put("schema", new JSONObject(schema))
+                            .put("strict", false)));
+        }
 
-        HttpRequest httpRequest = HttpRequest.newBuilder()
-                .uri(URI.create("https://api.openai.com/v1/chat/completions"))
-                .header("Authorization", "Bearer " + apiKey)
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
-                .build();
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(provider.url))
+                .header("Content-Type", "application/json");
+        if (!provider.apiKey.isEmpty()) {
+            builder.header("Authorization", "Bearer " + provider.apiKey);
+        }
+        if (provider.stub && request.module != null) {
+            builder.header(StubGptServer.MODULE_HEADER, request.module);
+        }
+        HttpRequest httpRequest = transport.post(builder, payload.toString(), stream == null);
 
-        httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofString())
-                .orTimeout(30, TimeUnit.SECONDS)
-                .whenComplete((response, throwable) -> {
+        CompletableFuture<HttpResponse<String>> call;
+        if (stream != null) {
+            // a hedged copy would stream a second answer into the same listener
+            call = transport.stream(httpRequest, stream::event);
+        } else {
+            call = transport.send(httpRequest);
+            if (attempt == 1 && request.module != null && hedgedModules.contains(request.module)) {
+                call = hedge(request, httpRequest, call);
+            }
+        }
+        // logging to the database and the callbacks may block; keep them off the client's threads
+        call.orTimeout(stream != null ? STREAM_TIMEOUT_SECONDS : TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .whenCompleteAsync((response, throwable) -> {
                     String answer = null;
                     boolean success = false;
+                    boolean retryable = true;
+                    int promptTokens = -1;
+                    int completionTokens = -1;
                     if (throwable != null) {
+                        provider.breaker.onFailure();
+                        provider.recordFailure();
                         plugin.getLogger().severe("GPT request " + request.requestId + " failed: " + throwable.getMessage());
+                    } else if (response.statusCode() == 429 && !isQuotaExhausted(response.body())
+                            && request.rateLimitRetries < maxRateLimitRetries) {
+                        provider.breaker.onIgnored();
+                        // the next dispatch reserves the estimate again
+                        provider.rateLimiter.correct(request.reservedTokens, 0);
+                        request.rateLimitRetries++;
+                        telemetry.recordRateLimited(request.module);
+                        long wait = provider.rateLimiter.onRateLimited(response.headers());
+                        plugin.getLogger().warning("GPT request " + request.requestId + " rate limited by " + provider.name
+                                + ", sending paused for " + wait + "ms");
+                        requeue(request);
+                        return;
                     } else if (response.statusCode() == 200) {
-                        try {
-                            JSONObject json = new JSONObject(response.body());
-                            JSONArray choices = json.getJSONArray("choices");
-                            if (!choices.isEmpty()) {
-                                JSONObject first = choices.getJSONObject(0);
-                                JSONObject msg = first.getJSONObject("message");
-                                answer = msg.getString("content");
-                                success = true;
+                        provider.breaker.onSuccess();
+                        provider.recordSuccess(System.currentTimeMillis() - start);
+                        attemptTimes.record(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - start));
+                        provider.rateLimiter.update(response.headers());
+                        if (stream != null) {
+                            promptTokens = stream.getPromptTokens();
+                            completionTokens = stream.getCompletionTokens();
+                            if (promptTokens >= 0 && completionTokens >= 0) {
+                                provider.rateLimiter.correct(request.reservedTokens, promptTokens + completionTokens);
+                                request.reservedTokens = promptTokens + completionTokens;
+                            }
+                            if (stream.getFirstTokenMs() >= 0) {
+                                firstTokenTimes.record(TimeUnit.MILLISECONDS.toNanos(stream.getFirstTokenMs()));
+                            }
+                            success = stream.isFinished();
+                            if (success) {
+                                answer = stream.getContent();
+                            } else {
+                                plugin.getLogger().severe("GPT stream " + request.requestId + " from " + provider.name
+                                        + " ended early");
+                            }
+                        } else {
+                            try {
+                                JSONObject json = new JSONObject(response.body());
+                                JSONObject usage = json.optJSONObject("usage");
+                                if (usage != null && usage.has("total_tokens")) {
+                                    provider.rateLimiter.correct(request.reservedTokens, usage.getInt("total_tokens"));
+                                    request.reservedTokens = usage.getInt("total_tokens");
+                                }
+                                if (usage != null) {
+                                    promptTokens = usage.optInt("prompt_tokens", -1);
+                                    completionTokens = usage.optInt("completion_tokens", -1);
+                                }
+                                JSONArray choices = json.getJSONArray("choices");
+                                if (!choices.isEmpty()) {
+                                    JSONObject first = choices.getJSONObject(0);
+                                    JSONObject msg = first.getJSONObject("message");
+                                    answer = msg.getString("content");
+                                    success = true;
+                                }
+                            } catch (Exception e) {
+                                plugin.getLogger().severe("Error parsing GPT response: " + e.getMessage());
                             }
-                        } catch (Exception e) {
-                            plugin.getLogger().severe("Error parsing GPT response: " + e.getMessage());
                         }
                     } else {
-                        plugin.getLogger().severe("GPT request returned status " + response.statusCode());
+                        provider.rateLimiter.update(response.headers());
+                        int status = response.statusCode();
+                        // other client errors come back the same on every attempt
+                        retryable = status >= 500 || status == 408 || status == 409;
+                        if (status >= 500 || status == 408) {
+                            provider.breaker.onFailure();
+                            provider.recordFailure();
+                        } else {
+                            // the API is up, the request itself was refused
+                            provider.breaker.onSuccess();
+                        }
+                        plugin.getLogger().severe("GPT request returned status " + status + " from " + provider.name);
                     }
 
-                    if (!success && attempt < 3) {
+                    if (!success && retryable && attempt < MAX_ATTEMPTS) {
+                        // with a fallback provider in the route there is nothing to wait for
+                        boolean failover = router.route(request.module).size() > 1;
                         int delay = (int) Math.pow(2, attempt - 1);
-                        plugin.getLogger().warning("Retrying GPT request " + request.requestId + " in " + delay + "s (attempt " + (attempt + 1) + ")");
+                        plugin.getLogger().warning("Retrying GPT request " + request.requestId
+                                + (failover ? "" : " in " + delay + "s") + " (attempt " + (attempt + 1) + ")");
+                        telemetry.recordRetry(request.module);
                         plugin.getServer().getScheduler().runTaskLaterAsynchronously(plugin,
-                                () -> sendRequest(request, attempt + 1), delay * 20L);
+                                () -> retry(request, attempt + 1, firstSentAt), failover ? 1L : delay * 20L);
                         return;
                     }
 
                     logResponse(request.requestId, answer);
                     if (success) {
                         plugin.getLogger().info("GPT request " + request.requestId + " answered in " + (System.currentTimeMillis() - start) + "ms");
+                        if (request.cacheKey != null) {
+                            cache.put(request.cacheKey, request.module, router.primary(request.module).model, answer,
+                                    cacheTtlMs(request.module));
+                        }
+                        // without a usage field the tokens are estimated locally
+                        int prompt = promptTokens >= 0 ? promptTokens
+                                : TokenEstimator.estimate(request.prompt) + TokenEstimator.MESSAGE_OVERHEAD;
+                        int completion = completionTokens >= 0 ? completionTokens : TokenEstimator.estimate(answer);
+                        cassette.record(request.module, request.prompt, provider.model, answer,
+                                System.currentTimeMillis() - start, prompt, completion);
+                        telemetry.recordSuccess(request.module, provider.model, System.currentTimeMillis() - firstSentAt,
+                                prompt, completion);
+                    } else {
+                        telemetry.recordFailure(request.module, System.currentTimeMillis() - firstSentAt);
                     }
                     lastResponseMs = System.currentTimeMillis() - start;
-                    if (request.callback != null) {
-                        request.callback.accept(answer);
-                    }
-                    if (request.playerUuid != null) {
-                        activePlayers.remove(request.playerUuid);
-                        cooldowns.put(request.playerUuid, System.currentTimeMillis());
+                    try {
+                        deliver(request, answer);
+                    } finally {
+                        finish(request, firstSentAt);
                     }
-                    processing = false;
-                });
+                }, transport.getResponseExecutor());
+    }
+
+    /**
+     * Send a retry, preferably to another provider of the route. If none can
+     * take it because all breakers are open, the request fails if it is
+     * interactive; otherwise it goes back to the queue.
+     */
+    private void retry(GptRequest request, int attempt, long firstSentAt) {
+        GptProvider previous = request.provider;
+        long[] wait = new long[1];
+        GptProvider provider = router.acquire(request.module, request.reservedTokens, previous, wait);
+        if (provider != null) {
+            if (provider != previous) {
+                plugin.getLogger().warning("GPT request " + request.requestId + " failing over from "
+                        + previous.name + " to " + provider.name);
+            }
+            request.provider = provider;
+            sendRequest(request, attempt, firstSentAt);
+            return;
+        }
+        if (!failsFast(request) || !router.isOpen(request.module)) {
+            plugin.getLogger().warning("No GPT provider available for request " + request.requestId + ", requeueing");
+            requeue(request);
+            return;
+        }
+        plugin.getLogger().warning("GPT circuit open, giving up on request " + request.requestId);
+        telemetry.recordFailure(request.module, System.currentTimeMillis() - firstSentAt);
+        logResponse(request.requestId, null);
+        try {
+            deliver(request, null);
+        } finally {
+            finish(request, firstSentAt);
+        }
+    }
+
+    /**
+     * Send a second copy of the request if the first has not been answered
+     * after the hedge delay. The first successful answer completes the
+     * returned future and the other call is cancelled; if both fail, the
+     * failure of the one finishing last is reported. The copy goes to the
+     * same provider; none is sent while its breaker is not closed or its
+     * rate limit has no budget left. The copy's token estimate is given
+     * back once it ends, since the answer that is used is charged with its
+     * real usage by the caller.
+     */
+    private CompletableFuture<HttpResponse<String>> hedge(GptRequest request, HttpRequest httpRequest,
+                                                          CompletableFuture<HttpResponse<String>> primary) {
+        CompletableFuture<HttpResponse<String>> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<HttpResponse<String>>> backup = new AtomicReference<>();
+        AtomicInteger running = new AtomicInteger(1);
+        primary.whenComplete((response, error) -> settle(result, running, response, error, false));
+        long delay = hedgeDelayMs();
+        GptProvider provider = request.provider;
+        plugin.getServer().getScheduler().runTaskLaterAsynchronously(plugin, () -> {
+            int tokens = request.reservedTokens;
+            if (result.isDone() || provider.breaker.getState() != CircuitBreaker.State.CLOSED
+                    || provider.rateLimiter.acquire(tokens) > 0) {
+                return;
+            }
+            running.incrementAndGet();
+            hedgesSent.incrementAndGet();
+            plugin.getLogger().info("Hedging GPT request " + request.requestId + " after " + delay + "ms");
+            CompletableFuture<HttpResponse<String>> second = transport.send(httpRequest);
+            backup.set(second);
+            second.whenComplete((response, error) -> {
+                settle(result, running, response, error, true);
+                provider.rateLimiter.correct(tokens, 0);
+            });
+            if (result.isDone()) {
+                second.cancel(true);
+            }
+        }, Math.max(1L, (delay + 49) / 50));
+        result.whenComplete((response, error) -> {
+            primary.cancel(true);
+            CompletableFuture<HttpResponse<String>> second = backup.get();
+            if (second != null) {
+                second.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private void settle(CompletableFuture<HttpResponse<String>> result, AtomicInteger running,
+                        HttpResponse<String> response, Throwable error, boolean backup) {
+        boolean last = running.decrementAndGet() == 0;
+        if (response != null && response.statusCode() == 200) {
+            if (result.complete(response) && backup) {
+                hedgeWins.incrementAndGet();
+            }
+        } else if (last) {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(response);
+            }
+        }
+    }
+
+    /** Delay before a hedged copy: p95 of successful answers once enough are known. */
+    private long hedgeDelayMs() {
+        if (attemptTimes.getCount() < HEDGE_MIN_SAMPLES) {
+            return hedgeDefaultDelayMs;
+        }
+        return Math.max(hedgeMinDelayMs, (long) attemptTimes.percentile(0.95));
+    }
+
+    /** Run the callback and release the player's request lock. */
+    private void deliver(GptRequest request, String answer) {
+        try {
+            if (request.callback != null) {
+                request.callback.accept(answer);
+            }
+        } catch (RuntimeException e) {
+            plugin.getLogger().severe("GPT callback for " + request.requestId + " failed: " + e.getMessage());
+        } finally {
+            if (request.playerUuid != null && !request.durable) {
+                activePlayers.remove(request.playerUuid);
+                cooldowns.put(request.playerUuid, System.currentTimeMillis());
+            }
+        }
+    }
+
+    /** A 429 caused by an exhausted account quota does not go away by waiting. */
+    private static boolean isQuotaExhausted(String body) {
+        try {
+            JSONObject error = new JSONObject(body).optJSONObject("error");
+            return error != null && "insufficient_quota".equals(error.optString("code", null));
+        } catch (Exception e) {
+            return false;
+        }
     }
 
     private void logRequest(GptRequest request) {
@@ -279,17 +1132,20 @@ public class GptService {
             return;
         }
         String sql = "INSERT INTO gpt_log (request_uuid, player_uuid, request_time, prompt) VALUES (?, ?, ?, ?)";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, request.requestId.toString());
-            if (request.playerUuid != null) {
-                ps.setString(2, request.playerUuid.toString());
-            } else {
-                ps.setNull(2, Types.VARCHAR);
-            }
-            ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
-            ps.setString(4, request.prompt);
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, request.requestId.toString());
+                    if (request.playerUuid != null) {
+                        ps.setString(2, request.playerUuid.toString());
+                    } else {
+                        ps.setNull(2, Types.VARCHAR);
+                    }
+                    ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+                    ps.setString(4, request.prompt);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             plugin.getLogger().severe("Failed to log GPT request: " + e.getMessage());
         }
@@ -300,16 +1156,19 @@ public class GptService {
             return;
         }
         String sql = "UPDATE gpt_log SET response = ?, response_time = ? WHERE request_uuid = ?";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            if (response != null) {
-                ps.setString(1, response);
-            } else {
-                ps.setNull(1, Types.LONGVARCHAR);
-            }
-            ps.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
-            ps.setString(3, requestId.toString());
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    if (response != null) {
+                        ps.setString(1, response);
+                    } else {
+                        ps.setNull(1, Types.LONGVARCHAR);
+                    }
+                    ps.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+                    ps.setString(3, requestId.toString());
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             plugin.getLogger().severe("Failed to log GPT response: " + e.getMessage());
         }
@@ -0,0 +1,158 @@
+package com.illusioncis7.opencore.gpt;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+/**
+ * State of a streamed request: the text of the current attempt, the usage
+ * reported at its end and an ordered queue handing the pieces to the
+ * {@link GptStreamListener} on the response threads. Server-sent events are
+ * parsed on the HTTP client's thread, which only appends and enqueues.
+ */
+class GptStream {
+
+    private final GptStreamListener listener;
+    private final Executor executor;
+    private final Logger logger;
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private boolean running;
+
+    private StringBuilder content = new StringBuilder();
+    private volatile boolean finished;
+    /** Pieces of the current attempt were handed to the listener. */
+    private volatile boolean started;
+    /** Pieces of any attempt were handed to the listener. */
+    private volatile boolean delivered;
+    private volatile int promptTokens = -1;
+    private volatile int completionTokens = -1;
+    /** Milliseconds from sending until the first piece, -1 before it arrived. */
+    private volatile long firstTokenMs = -1;
+    private long sentAt;
+
+    GptStream(GptStreamListener listener, Executor executor, Logger logger) {
+        this.listener = listener;
+        this.executor = executor;
+        this.logger = logger;
+    }
+
+    /** Start a new attempt; a listener that already got pieces is told to start over. */
+    synchronized void begin() {
+        content = new StringBuilder();
+        finished = false;
+        promptTokens = -1;
+        completionTokens = -1;
+        firstTokenMs = -1;
+        sentAt = System.currentTimeMillis();
+        if (started) {
+            started = false;
+            execute(listener::onRestart);
+        }
+    }
+
+    /** Handle the data of one server-sent event. */
+    void event(String data) {
+        if ("[DONE]".equals(data)) {
+            finished = true;
+            return;
+        }
+        try {
+            JSONObject json = new JSONObject(data);
+            JSONArray choices = json.optJSONArray("choices");
+            if (choices != null && !choices.isEmpty()) {
+                JSONObject choice = choices.getJSONObject(0);
+                JSONObject delta = choice.optJSONObject("delta");
+                String text = delta != null ? delta.optString("content", "") : "";
+                if (!text.isEmpty()) {
+                    append(text);
+                }
+                if (!choice.isNull("finish_reason")) {
+                    finished = true;
+                }
+            }
+            JSONObject usage = json.optJSONObject("usage");
+            if (usage != null) {
+                promptTokens = usage.optInt("prompt_tokens", -1);
+                completionTokens = usage.optInt("completion_tokens", -1);
+            }
+        } catch (Exception e) {
+            logger.warning("Invalid GPT stream event: " + e.getMessage());
+        }
+    }
+
+    private synchronized void append(String text) {
+        if (firstTokenMs < 0) {
+            firstTokenMs = System.currentTimeMillis() - sentAt;
+        }
+        content.append(text);
+        started = true;
+        delivered = true;
+        execute(() -> listener.onDelta(text));
+    }
+
+    /** Hand the final answer over; without streamed pieces it arrives as one. */
+    void complete(String answer) {
+        boolean whole = !delivered && answer != null;
+        execute(() -> {
+            if (whole) {
+                listener.onDelta(answer);
+            }
+            listener.onComplete(answer);
+        });
+    }
+
+    synchronized String getContent() {
+        return content.toString();
+    }
+
+    /** @return true if the stream ended regularly */
+    boolean isFinished() {
+        return finished;
+    }
+
+    int getPromptTokens() {
+        return promptTokens;
+    }
+
+    int getCompletionTokens() {
+        return completionTokens;
+    }
+
+    long getFirstTokenMs() {
+        return firstTokenMs;
+    }
+
+    /** Run tasks one after another in submission order. */
+    private void execute(Runnable task) {
+        synchronized (tasks) {
+            tasks.add(task);
+            if (running) {
+                return;
+            }
+            running = true;
+        }
+        executor.execute(this::drain);
+    }
+
+    private void drain() {
+        while (true) {
+            Runnable task;
+            synchronized (tasks) {
+                task = tasks.poll();
+                if (task == null) {
+                    running = false;
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.severe("GPT stream listener failed: " + e.getMessage());
+            }
+        }
+    }
+}
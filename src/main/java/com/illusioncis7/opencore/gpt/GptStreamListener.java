@@ -0,0 +1,25 @@
+package com.illusioncis7.opencore.gpt;
+
+/**
+ * Receives an answer while it is being generated. Calls for one request
+ * come in order and never overlap; they run on the GPT response threads and
+ * may block.
+ */
+public interface GptStreamListener {
+
+    /** Next piece of the answer text. */
+    void onDelta(String text);
+
+    /**
+     * The attempt failed and the answer starts over on a retry; the text
+     * received so far is void.
+     */
+    default void onRestart() {
+    }
+
+    /**
+     * @param answer complete answer, null if the request failed; already
+     *               streamed pieces stay valid
+     */
+    void onComplete(String answer);
+}
@@ -0,0 +1,345 @@
+package com.illusioncis7.opencore.gpt;
+
+import com.illusioncis7.opencore.database.Database;
+import com.illusioncis7.opencore.database.SqlDialect;
+import com.illusioncis7.opencore.metrics.LatencyHistogram;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Usage statistics of the GPT service per policy module: latency, outcome
+ * counts, tokens from the <code>usage</code> field of the answers and the
+ * cost estimated from the configured prices. Totals since startup are kept
+ * in memory; the same numbers are also collected per minute and written to
+ * <code>gpt_usage</code> once the minute is over.
+ */
+public class GptTelemetry {
+
+    /** Module name used for requests without a policy module. */
+    public static final String OTHER = "other";
+
+    private static final String[] COLUMNS = {"bucket_start", "module", "successes", "failures", "retries",
+            "rate_limited", "cache_hits", "prompt_tokens", "completion_tokens", "cost_usd",
+            "latency_avg_ms", "latency_p95_ms", "latency_max_ms"};
+    private static final long MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
+
+    /** Counters of one module, either since startup or for one minute. */
+    public static final class Stats {
+        /** Time from sending until the final answer, retries included. */
+        public final LatencyHistogram latency = new LatencyHistogram();
+        private long successes;
+        private long failures;
+        private long retries;
+        private long rateLimited;
+        private long cacheHits;
+        private long promptTokens;
+        private long completionTokens;
+        private double cost;
+
+        synchronized void success(long latencyMs, int prompt, int completion, double price) {
+            successes++;
+            promptTokens += prompt;
+            completionTokens += completion;
+            cost += price;
+            latency.record(TimeUnit.MILLISECONDS.toNanos(latencyMs));
+        }
+
+        synchronized void failure(long latencyMs) {
+            failures++;
+            if (latencyMs >= 0) {
+                latency.record(TimeUnit.MILLISECONDS.toNanos(latencyMs));
+            }
+        }
+
+        synchronized void retry() {
+            retries++;
+        }
+
+        synchronized void rateLimited() {
+            rateLimited++;
+        }
+
+        synchronized void cacheHit() {
+            cacheHits++;
+        }
+
+        public synchronized long getSuccesses() {
+            return successes;
+        }
+
+        public synchronized long getFailures() {
+            return failures;
+        }
+
+        public synchronized long getRetries() {
+            return retries;
+        }
+
+        public synchronized long getRateLimited() {
+            return rateLimited;
+        }
+
+        public synchronized long getCacheHits() {
+            return cacheHits;
+        }
+
+        public synchronized long getPromptTokens() {
+            return promptTokens;
+        }
+
+        public synchronized long getCompletionTokens() {
+            return completionTokens;
+        }
+
+        /** @return estimated cost in USD */
+        public synchronized double getCost() {
+            return cost;
+        }
+
+        public synchronized JSONObject toJson() {
+            JSONObject obj = new JSONObject();
+            obj.put("successes", successes);
+            obj.put("failures", failures);
+            obj.put("retries", retries);
+            obj.put("rate_limited", rateLimited);
+            obj.put("cache_hits", cacheHits);
+            obj.put("prompt_tokens", promptTokens);
+            obj.put("completion_tokens", completionTokens);
+            obj.put("cost_usd", cost);
+            obj.put("latency_avg_ms", latency.getMeanMillis());
+            obj.put("latency_p95_ms", latency.percentile(0.95));
+            obj.put("latency_max_ms", latency.getMaxMillis());
+            return obj;
+        }
+    }
+
+    private final Database database;
+    private final Logger logger;
+    private final Map<String, Stats> totals = new ConcurrentHashMap<>();
+    /** Start of the minute in epoch milliseconds to the statistics of that minute. */
+    private final Map<Long, Map<String, Stats>> minutes = new ConcurrentHashMap<>();
+    /** USD per million prompt and completion tokens by model. */
+    private volatile Map<String, double[]> prices = new HashMap<>();
+
+    public GptTelemetry(Database database, Logger logger) {
+        this.database = database;
+        this.logger = logger;
+    }
+
+    /** @param prices USD per million prompt and completion tokens by model */
+    public void setPrices(Map<String, double[]> prices) {
+        this.prices = new HashMap<>(prices);
+    }
+
+    /** @return estimated cost in USD, 0 if no price is configured for the model */
+    public double cost(String model, int promptTokens, int completionTokens) {
+        double[] price = model != null ? prices.get(model) : null;
+        if (price == null) {
+            return 0.0;
+        }
+        return (promptTokens * price[0] + completionTokens * price[1]) / 1_000_000.0;
+    }
+
+    public void recordSuccess(String module, String model, long latencyMs, int promptTokens, int completionTokens) {
+        double price = cost(model, promptTokens, completionTokens);
+        for (Stats stats : stats(module)) {
+            stats.success(latencyMs, promptTokens, completionTokens, price);
+        }
+    }
+
+    /** @param latencyMs time until giving up, negative if the request was never sent */
+    public void recordFailure(String module, long latencyMs) {
+        for (Stats stats : stats(module)) {
+            stats.failure(latencyMs);
+        }
+    }
+
+    public void recordRetry(String module) {
+        for (Stats stats : stats(module)) {
+            stats.retry();
+        }
+    }
+
+    public void recordRateLimited(String module) {
+        for (Stats stats : stats(module)) {
+            stats.rateLimited();
+        }
+    }
+
+    public void recordCacheHit(String module) {
+        for (Stats stats : stats(module)) {
+            stats.cacheHit();
+        }
+    }
+
+    /** @return the running total and the current minute of the module */
+    private Stats[] stats(String module) {
+        String key = module != null ? module : OTHER;
+        long minute = System.currentTimeMillis() / MINUTE_MS * MINUTE_MS;
+        Map<String, Stats> current = minutes.computeIfAbsent(minute, m -> new ConcurrentHashMap<>());
+        return new Stats[]{totals.computeIfAbsent(key, k -> new Stats()),
+                current.computeIfAbsent(key, k -> new Stats())};
+    }
+
+    /** @return statistics since startup by module name */
+    public Map<String, Stats> getTotals() {
+        return new TreeMap<>(totals);
+    }
+
+    /**
+     * Add finished minutes to <code>gpt_usage</code>. A minute written in
+     * parts, such as the current minute on shutdown and its rest after a
+     * restart, adds up to the same row; the average latency is weighted by
+     * the requests of each part and p95 keeps the higher value. Minutes that
+     * fail to write are kept for the next flush.
+     *
+     * @param all also write the current minute, used on shutdown
+     * @return number of rows written
+     */
+    public int flush(boolean all) {
+        long current = System.currentTimeMillis() / MINUTE_MS * MINUTE_MS;
+        List<Map.Entry<Long, Map<String, Stats>>> done = new ArrayList<>();
+        Iterator<Map.Entry<Long, Map<String, Stats>>> it = minutes.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Map<String, Stats>> e = it.next();
+            if (all || e.getKey() < current) {
+                done.add(e);
+                it.remove();
+            }
+        }
+        if (done.isEmpty() || !database.isConnected()) {
+            return 0;
+        }
+        String sql = usageUpsert(database.getDialect());
+        try {
+            return database.executeWrite(conn -> {
+                int rows = 0;
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    for (Map.Entry<Long, Map<String, Stats>> e : done) {
+                        for (Map.Entry<String, Stats> m : e.getValue().entrySet()) {
+                            Stats s = m.getValue();
+                            synchronized (s) {
+                                ps.setTimestamp(1, new Timestamp(e.getKey()));
+                                ps.setString(2, m.getKey());
+                                ps.setLong(3, s.successes);
+                                ps.setLong(4, s.failures);
+                                ps.setLong(5, s.retries);
+                                ps.setLong(6, s.rateLimited);
+                                ps.setLong(7, s.cacheHits);
+                                ps.setLong(8, s.promptTokens);
+                                ps.setLong(9, s.completionTokens);
+                                ps.setDouble(10, s.cost);
+                                ps.setDouble(11, s.latency.getMeanMillis());
+                                ps.setDouble(12, s.latency.percentile(0.95));
+                                ps.setDouble(13, s.latency.getMaxMillis());
+                            }
+                            ps.addBatch();
+                            rows++;
+                        }
+                    }
+                    ps.executeBatch();
+                }
+                return rows;
+            });
+        } catch (SQLException e) {
+            logger.warning("Failed to store GPT usage: " + e.getMessage());
+            for (Map.Entry<Long, Map<String, Stats>> minute : done) {
+                restore(minute.getKey(), minute.getValue());
+            }
+            return 0;
+        }
+    }
+
+    /** Put an unwritten minute back; modules recorded again in the meantime keep their newer counters. */
+    private void restore(long minute, Map<String, Stats> stats) {
+        Map<String, Stats> existing = minutes.putIfAbsent(minute, stats);
+        if (existing != null) {
+            for (Map.Entry<String, Stats> m : stats.entrySet()) {
+                existing.putIfAbsent(m.getKey(), m.getValue());
+            }
+        }
+    }
+
+    private static String usageUpsert(SqlDialect dialect) {
+        // latency first: MariaDB evaluates later assignments against the already updated counters
+        String weight = "(successes + failures)";
+        String newWeight = "(" + dialect.inserted("successes") + " + " + dialect.inserted("failures") + ")";
+        String max = dialect == SqlDialect.SQLITE ? "MAX" : "GREATEST";
+        List<String> set = new ArrayList<>();
+        set.add("latency_avg_ms = CASE WHEN " + weight + " + " + newWeight + " = 0 THEN 0 ELSE (latency_avg_ms * "
+                + weight + " + " + dialect.inserted("latency_avg_ms") + " * " + newWeight + ") / ("
+                + weight + " + " + newWeight + ") END");
+        set.add("latency_p95_ms = " + max + "(latency_p95_ms, " + dialect.inserted("latency_p95_ms") + ")");
+        set.add("latency_max_ms = " + max + "(latency_max_ms, " + dialect.inserted("latency_max_ms") + ")");
+        for (int i = 2; i < COLUMNS.length - 3; i++) {
+            set.add(COLUMNS[i] + " = " + COLUMNS[i] + " + " + dialect.inserted(COLUMNS[i]));
+        }
+        return dialect.upsertSet("gpt_usage", COLUMNS, new String[]{"bucket_start", "module"}, set.toArray(new String[0]));
+    }
+
+    /** Delete minutes older than the retention period. */
+    public int purge(int retentionDays) {
+        if (retentionDays <= 0 || !database.isConnected()) {
+            return 0;
+        }
+        try {
+            return database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM gpt_usage WHERE bucket_start < ?")) {
+                    ps.setTimestamp(1, new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays)));
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            logger.warning("Failed to purge GPT usage: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Read the stored minutes since the given time, oldest first. Blocks on
+     * the database.
+     */
+    public JSONArray loadUsage(long sinceMs) {
+        JSONArray arr = new JSONArray();
+        if (!database.isConnected()) {
+            return arr;
+        }
+        String sql = "SELECT " + String.join(", ", COLUMNS) + " FROM gpt_usage WHERE bucket_start >= ? ORDER BY bucket_start, module";
+        try (Connection conn = database.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setTimestamp(1, new Timestamp(sinceMs));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    JSONObject obj = new JSONObject();
+                    obj.put("minute", rs.getTimestamp(1).toInstant().toString());
+                    obj.put("module", rs.getString(2));
+                    for (int i = 3; i <= 9; i++) {
+                        obj.put(COLUMNS[i - 1], rs.getLong(i));
+                    }
+                    for (int i = 10; i <= COLUMNS.length; i++) {
+                        obj.put(COLUMNS[i - 1], rs.getDouble(i));
+                    }
+                    arr.put(obj);
+                }
+            }
+        } catch (SQLException e) {
+            logger.warning("Failed to read GPT usage: " + e.getMessage());
+        }
+        return arr;
+    }
+}
@@ -0,0 +1,296 @@
+package com.illusioncis7.opencore.gpt;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP side of the GPT service. One HTTP/2 client keeps its connections
+ * open and multiplexes all requests to a host over them; plain http
+ * endpoints such as local models are spoken to with HTTP/1.1. The client's
+ * own threads only move bytes: answers are handed to a small bounded pool,
+ * so a callback blocking on the database does not hold up other responses.
+ * Responses may come gzip compressed; request bodies are compressed when
+ * enabled and large enough. Streamed answers arrive as server-sent events
+ * and are handed over event by event.
+ */
+public class GptTransport {
+
+    private final HttpClient client;
+    private final ExecutorService ioExecutor;
+    private final ThreadPoolExecutor responseExecutor;
+    private final boolean gzipRequests;
+    private final int gzipMinBytes;
+
+    private final AtomicLong exchanges = new AtomicLong();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong http2 = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesSentPlain = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong bytesReceivedPlain = new AtomicLong();
+    private final AtomicLong overflow = new AtomicLong();
+
+    /**
+     * @param responseThreads threads running response callbacks
+     * @param queueCapacity   callbacks waiting for a thread; beyond that they run on the I/O thread
+     * @param gzipMinBytes    smallest request body that is compressed if <code>gzipRequests</code> is set
+     */
+    public GptTransport(int responseThreads, int queueCapacity, long connectTimeoutMs,
+                        boolean gzipRequests, int gzipMinBytes) {
+        this.ioExecutor = Executors.newCachedThreadPool(threads("OpenCore-GPT-io"));
+        this.responseExecutor = new ThreadPoolExecutor(responseThreads, responseThreads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), threads("OpenCore-GPT-response"),
+                (task, executor) -> {
+                    overflow.incrementAndGet();
+                    task.run();
+                });
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(ioExecutor)
+                .build();
+        this.gzipRequests = gzipRequests;
+        this.gzipMinBytes = Math.max(0, gzipMinBytes);
+    }
+
+    private static ThreadFactory threads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Finish a POST request with the JSON body. The request can be sent
+     * more than once, e.g. as a hedged copy.
+     */
+    public HttpRequest post(HttpRequest.Builder builder, String json) {
+        return post(builder, json, true);
+    }
+
+    /**
+     * @param compressedAnswer false for streamed answers; gzip would hold
+     *                         events back until a compression block is full
+     */
+    public HttpRequest post(HttpRequest.Builder builder, String json, boolean compressedAnswer) {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        int plain = body.length;
+        if (gzipRequests && body.length >= gzipMinBytes) {
+            body = gzip(body);
+            builder.header("Content-Encoding", "gzip");
+        }
+        if (compressedAnswer) {
+            builder.header("Accept-Encoding", "gzip");
+        }
+        HttpRequest request = builder.POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+        if ("http".equalsIgnoreCase(request.uri().getScheme())) {
+            // no TLS to negotiate HTTP/2 with; skip the h2c upgrade attempt
+            request = builder.version(HttpClient.Version.HTTP_1_1).build();
+        }
+        bytesSentPlain.addAndGet(plain);
+        bytesSent.addAndGet(body.length);
+        return request;
+    }
+
+    /** Send the request; the body is decompressed and decoded as UTF-8. */
+    public CompletableFuture<HttpResponse<String>> send(HttpRequest request) {
+        exchanges.incrementAndGet();
+        active.incrementAndGet();
+        return client.sendAsync(request, this::decoding).whenComplete((response, error) -> {
+            active.decrementAndGet();
+            if (error != null) {
+                errors.incrementAndGet();
+            } else if (response.version() == HttpClient.Version.HTTP_2) {
+                http2.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Send a request for a streamed answer. With status 200 the data of every
+     * server-sent event goes to <code>onEvent</code> on the client's thread as
+     * soon as it is complete, and the response body is empty; other answers
+     * are read whole like in {@link #send(HttpRequest)}.
+     */
+    public CompletableFuture<HttpResponse<String>> stream(HttpRequest request, Consumer<String> onEvent) {
+        exchanges.incrementAndGet();
+        active.incrementAndGet();
+        return client.sendAsync(request, info -> info.statusCode() == 200
+                ? HttpResponse.BodySubscribers.fromLineSubscriber(new EventSubscriber(onEvent), s -> "",
+                StandardCharsets.UTF_8, null)
+                : decoding(info)).whenComplete((response, error) -> {
+                    active.decrementAndGet();
+                    if (error != null) {
+                        errors.incrementAndGet();
+                    } else if (response.version() == HttpClient.Version.HTTP_2) {
+                        http2.incrementAndGet();
+                    }
+                });
+    }
+
+    private HttpResponse.BodySubscriber<String> decoding(HttpResponse.ResponseInfo info) {
+        boolean gzip = info.headers().firstValue("Content-Encoding")
+                .map(v -> v.trim().equalsIgnoreCase("gzip")).orElse(false);
+        return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), bytes -> {
+            bytesReceived.addAndGet(bytes.length);
+            byte[] plain = gzip ? gunzip(bytes) : bytes;
+            bytesReceivedPlain.addAndGet(plain.length);
+            return new String(plain, StandardCharsets.UTF_8);
+        });
+    }
+
+    /**
+     * Joins the lines of a <code>text/event-stream</code> into events. Only
+     * <code>data</code> fields are used; an empty line ends an event.
+     */
+    private final class EventSubscriber implements Flow.Subscriber<String> {
+        private final Consumer<String> onEvent;
+        private final StringBuilder data = new StringBuilder();
+        private boolean pending;
+
+        EventSubscriber(Consumer<String> onEvent) {
+            this.onEvent = onEvent;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            int bytes = line.getBytes(StandardCharsets.UTF_8).length + 1;
+            bytesReceived.addAndGet(bytes);
+            bytesReceivedPlain.addAndGet(bytes);
+            if (line.isEmpty()) {
+                dispatch();
+            } else if (line.startsWith("data:")) {
+                if (pending) {
+                    data.append('\n');
+                }
+                data.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+                pending = true;
+            }
+        }
+
+        private void dispatch() {
+            if (!pending) {
+                return;
+            }
+            String event = data.toString();
+            data.setLength(0);
+            pending = false;
+            onEvent.accept(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+            dispatch();
+        }
+    }
+
+    static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 32);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] gunzip(byte[] data) {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** @return pool for response callbacks; they may block */
+    public Executor getResponseExecutor() {
+        return responseExecutor;
+    }
+
+    /** Stop the pools; callbacks still arriving run on the I/O thread. */
+    public void shutdown() {
+        responseExecutor.shutdown();
+        ioExecutor.shutdown();
+    }
+
+    /** @return exchanges started since startup */
+    public long getExchanges() {
+        return exchanges.get();
+    }
+
+    /** @return exchanges waiting for their response right now */
+    public int getActive() {
+        return active.get();
+    }
+
+    /** @return responses received over HTTP/2 */
+    public long getHttp2Responses() {
+        return http2.get();
+    }
+
+    /** @return exchanges ending without a response: connect failures, resets, cancelled hedges */
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /** @return request bytes before compression */
+    public long getBytesSentPlain() {
+        return bytesSentPlain.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /** @return response bytes after decompression */
+    public long getBytesReceivedPlain() {
+        return bytesReceivedPlain.get();
+    }
+
+    /** @return callbacks waiting for a response thread */
+    public int getQueuedCallbacks() {
+        return responseExecutor.getQueue().size();
+    }
+
+    /** @return callbacks that found the queue full and ran on the I/O thread */
+    public long getOverflow() {
+        return overflow.get();
+    }
+}
@@ -0,0 +1,156 @@
+package com.illusioncis7.opencore.gpt;
+
+import com.illusioncis7.opencore.database.Database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Persistent record of durable GPT requests in <code>gpt_queue</code>.
+ * A row is written before the request is queued, gets the answer once it
+ * arrives and is deleted after the handler has processed it. Rows left over
+ * after a restart are work that has to be replayed.
+ */
+public class GptWorkQueue {
+
+    private final Database database;
+    private final Logger logger;
+
+    /** Stored request. */
+    public static class Entry {
+        public final UUID requestId;
+        public final String handler;
+        public final String payload;
+        public final String module;
+        public final GptPriority priority;
+        public final UUID playerUuid;
+        public final String prompt;
+        /** Answer received before the restart, {@code null} if it has to be sent again. */
+        public final String response;
+        public final long createdAt;
+
+        Entry(UUID requestId, String handler, String payload, String module, GptPriority priority,
+              UUID playerUuid, String prompt, String response, long createdAt) {
+            this.requestId = requestId;
+            this.handler = handler;
+            this.payload = payload;
+            this.module = module;
+            this.priority = priority;
+            this.playerUuid = playerUuid;
+            this.prompt = prompt;
+            this.response = response;
+            this.createdAt = createdAt;
+        }
+    }
+
+    public GptWorkQueue(Database database, Logger logger) {
+        this.database = database;
+        this.logger = logger;
+    }
+
+    /**
+     * Persist a request before it is queued.
+     *
+     * @return false if the request could not be stored and is only kept in memory
+     */
+    public boolean enqueue(GptRequest request, String handler, String payload) {
+        if (!database.isConnected()) {
+            return false;
+        }
+        String sql = "INSERT INTO gpt_queue (request_uuid, handler, payload, module, priority, player_uuid, prompt, created_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, request.requestId.toString());
+                    ps.setString(2, handler);
+                    ps.setString(3, payload);
+                    if (request.module != null) {
+                        ps.setString(4, request.module);
+                    } else {
+                        ps.setNull(4, Types.VARCHAR);
+                    }
+                    ps.setString(5, request.priority.name());
+                    if (request.playerUuid != null) {
+                        ps.setString(6, request.playerUuid.toString());
+                    } else {
+                        ps.setNull(6, Types.VARCHAR);
+                    }
+                    ps.setString(7, request.prompt);
+                    ps.setTimestamp(8, new Timestamp(request.createdAt));
+                    return ps.executeUpdate();
+                }
+            });
+            return true;
+        } catch (SQLException e) {
+            logger.warning("Failed to persist GPT request " + request.requestId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Store the answer so a restart before {@link #ack(UUID)} does not send the request again. */
+    public void markAnswered(UUID requestId, String response) {
+        update("UPDATE gpt_queue SET response = ?, answered_at = ? WHERE request_uuid = ?", requestId, response);
+    }
+
+    /** Remove a request whose answer has been processed. */
+    public void ack(UUID requestId) {
+        update("DELETE FROM gpt_queue WHERE request_uuid = ?", requestId, null);
+    }
+
+    private void update(String sql, UUID requestId, String response) {
+        if (!database.isConnected()) {
+            return;
+        }
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    int i = 1;
+                    if (response != null) {
+                        ps.setString(i++, response);
+                        ps.setTimestamp(i++, new Timestamp(System.currentTimeMillis()));
+                    }
+                    ps.setString(i, requestId.toString());
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            logger.warning("Failed to update GPT work queue for " + requestId + ": " + e.getMessage());
+        }
+    }
+
+    /** @return all unfinished requests, most urgent class first and oldest first within a class */
+    public List<Entry> loadPending() {
+        List<Entry> entries = new ArrayList<>();
+        if (!database.isConnected()) {
+            return entries;
+        }
+        String sql = "SELECT request_uuid, handler, payload, module, priority, player_uuid, prompt, response, created_at "
+                + "FROM gpt_queue ORDER BY created_at";
+        try (Connection conn = database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                String player = rs.getString(6);
+                Timestamp created = rs.getTimestamp(9);
+                entries.add(new Entry(UUID.fromString(rs.getString(1)), rs.getString(2), rs.getString(3),
+                        rs.getString(4), GptPriority.parse(rs.getString(5), GptPriority.PIPELINE),
+                        player != null ? UUID.fromString(player) : null, rs.getString(7), rs.getString(8),
+                        created != null ? created.getTime() : 0L));
+            }
+        } catch (SQLException e) {
+            logger.warning("Failed to load GPT work queue: " + e.getMessage());
+        }
+        entries.sort(Comparator.comparing((Entry e) -> e.priority).thenComparingLong(e -> e.createdAt));
+        return entries;
+    }
+}
@@ -0,0 +1,342 @@
+package com.illusioncis7.opencore.gpt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Push parser for a single JSON document. Text may arrive in pieces of any
+ * size through {@link #feed(CharSequence)}; every structural element is
+ * reported to the {@link Handler} as soon as it is complete, so a consumer
+ * sees an array element the moment it closes. Nothing is buffered except the
+ * token currently being read.
+ */
+public class JsonStreamParser {
+
+    /** Receives the parsed document as a sequence of events. */
+    public interface Handler {
+        void startObject() throws GptFormatException;
+
+        void endObject() throws GptFormatException;
+
+        void startArray() throws GptFormatException;
+
+        void endArray() throws GptFormatException;
+
+        void key(String name) throws GptFormatException;
+
+        /** @param value String, Long, Double, Boolean or null */
+        void value(Object value) throws GptFormatException;
+    }
+
+    private enum Expect { VALUE, FIRST_VALUE, KEY, FIRST_KEY, COLON, AFTER_VALUE, DONE }
+
+    private enum Token { NONE, STRING, NUMBER, LITERAL }
+
+    private static final int MAX_DEPTH = 64;
+
+    private final Handler handler;
+    private final Deque<Character> containers = new ArrayDeque<>();
+    private final StringBuilder buf = new StringBuilder();
+    private Expect expect = Expect.VALUE;
+    private Token token = Token.NONE;
+    private boolean keyString;
+    /** 0 outside an escape, 1 after a backslash, 2 to 5 while reading the hex digits of \\u. */
+    private int escape;
+    private int unicode;
+    private long offset;
+
+    public JsonStreamParser(Handler handler) {
+        this.handler = handler;
+    }
+
+    /** Parse the next piece of the document. */
+    public void feed(CharSequence chunk) throws GptFormatException {
+        for (int i = 0; i < chunk.length(); i++) {
+            accept(chunk.charAt(i));
+            offset++;
+        }
+    }
+
+    /** Finish the document; fails if it is incomplete. */
+    public void end() throws GptFormatException {
+        if (token == Token.NUMBER) {
+            finishNumber();
+        } else if (token == Token.LITERAL) {
+            finishLiteral();
+        } else if (token == Token.STRING) {
+            throw error("unterminated string");
+        }
+        if (expect != Expect.DONE) {
+            throw error("unexpected end of input");
+        }
+    }
+
+    /** @return true once the top-level value is complete */
+    public boolean isDone() {
+        return expect == Expect.DONE && token == Token.NONE;
+    }
+
+    private void accept(char c) throws GptFormatException {
+        switch (token) {
+            case STRING:
+                string(c);
+                return;
+            case NUMBER:
+                if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                    buf.append(c);
+                    return;
+                }
+                finishNumber();
+                break;
+            case LITERAL:
+                if (c >= 'a' && c <= 'z') {
+                    buf.append(c);
+                    return;
+                }
+                finishLiteral();
+                break;
+            default:
+                break;
+        }
+        if (c == ' ' || c == '\n' || c == '\r' || c == '\t' || (c == '\uFEFF' && offset == 0)) {
+            return;
+        }
+        switch (expect) {
+            case VALUE:
+            case FIRST_VALUE:
+                if (c == ']' && expect == Expect.FIRST_VALUE) {
+                    close('[');
+                } else {
+                    startValue(c);
+                }
+                return;
+            case KEY:
+            case FIRST_KEY:
+                if (c == '"') {
+                    token = Token.STRING;
+                    keyString = true;
+                } else if (c == '}' && expect == Expect.FIRST_KEY) {
+                    close('{');
+                } else {
+                    throw error("expected a property name");
+                }
+                return;
+            case COLON:
+                if (c != ':') {
+                    throw error("expected ':'");
+                }
+                expect = Expect.VALUE;
+                return;
+            case AFTER_VALUE:
+                char top = containers.peek();
+                if (c == ',') {
+                    expect = top == '{' ? Expect.KEY : Expect.VALUE;
+                } else if (c == '}' || c == ']') {
+                    close(c == '}' ? '{' : '[');
+                } else {
+                    throw error("expected ',' or '" + (top == '{' ? '}' : ']') + "'");
+                }
+                return;
+            default:
+                throw error("unexpected content after the document");
+        }
+    }
+
+    private void startValue(char c) throws GptFormatException {
+        if (c == '{' || c == '[') {
+            if (containers.size() >= MAX_DEPTH) {
+                throw error("nested too deeply");
+            }
+            containers.push(c);
+            if (c == '{') {
+                handler.startObject();
+                expect = Expect.FIRST_KEY;
+            } else {
+                handler.startArray();
+                expect = Expect.FIRST_VALUE;
+            }
+        } else if (c == '"') {
+            token = Token.STRING;
+            keyString = false;
+        } else if (c == '-' || (c >= '0' && c <= '9')) {
+            token = Token.NUMBER;
+            buf.append(c);
+        } else if (c == 't' || c == 'f' || c == 'n') {
+            token = Token.LITERAL;
+            buf.append(c);
+        } else {
+            throw error("unexpected character '" + c + "'");
+        }
+    }
+
+    private void close(char open) throws GptFormatException {
+        if (containers.isEmpty() || containers.peek() != open) {
+            throw error("mismatched bracket");
+        }
+        containers.pop();
+        if (open == '{') {
+            handler.endObject();
+        } else {
+            handler.endArray();
+        }
+        afterValue();
+    }
+
+    private void afterValue() {
+        expect = containers.isEmpty() ? Expect.DONE : Expect.AFTER_VALUE;
+    }
+
+    private void string(char c) throws GptFormatException {
+        if (escape == 1) {
+            escape = 0;
+            switch (c) {
+                case '"': case '\\': case '/': buf.append(c); break;
+                case 'b': buf.append('\b'); break;
+                case 'f': buf.append('\f'); break;
+                case 'n': buf.append('\n'); break;
+                case 'r': buf.append('\r'); break;
+                case 't': buf.append('\t'); break;
+                case 'u': escape = 2; unicode = 0; break;
+                default: throw error("invalid escape '\\" + c + "'");
+            }
+            return;
+        }
+        if (escape >= 2) {
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                throw error("invalid unicode escape");
+            }
+            unicode = unicode * 16 + digit;
+            if (++escape == 6) {
+                buf.append((char) unicode);
+                escape = 0;
+            }
+            return;
+        }
+        if (c == '\\') {
+            escape = 1;
+        } else if (c == '"') {
+            String s = buf.toString();
+            buf.setLength(0);
+            token = Token.NONE;
+            if (keyString) {
+                handler.key(s);
+                expect = Expect.COLON;
+            } else {
+                handler.value(s);
+                afterValue();
+            }
+        } else if (c < 0x20) {
+            throw error("control character in string");
+        } else {
+            buf.append(c);
+        }
+    }
+
+    private void finishNumber() throws GptFormatException {
+        String s = buf.toString();
+        buf.setLength(0);
+        token = Token.NONE;
+        if (!s.matches("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?")) {
+            throw error("invalid number " + s);
+        }
+        Object value;
+        if (s.indexOf('.') < 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0) {
+            try {
+                value = Long.parseLong(s);
+            } catch (NumberFormatException e) {
+                value = Double.parseDouble(s);
+            }
+        } else {
+            value = Double.parseDouble(s);
+        }
+        handler.value(value);
+        afterValue();
+    }
+
+    private void finishLiteral() throws GptFormatException {
+        String s = buf.toString();
+        buf.setLength(0);
+        token = Token.NONE;
+        switch (s) {
+            case "true": handler.value(Boolean.TRUE); break;
+            case "false": handler.value(Boolean.FALSE); break;
+            case "null": handler.value(null); break;
+            default: throw error("invalid literal " + s);
+        }
+        afterValue();
+    }
+
+    private GptFormatException error(String message) {
+        return new GptFormatException(message + " at offset " + offset);
+    }
+
+    /**
+     * Parse a complete document into maps, lists and scalar values.
+     *
+     * @return Map, List, String, Long, Double, Boolean or null
+     */
+    public static Object parse(String json) throws GptFormatException {
+        TreeBuilder builder = new TreeBuilder();
+        JsonStreamParser parser = new JsonStreamParser(builder);
+        parser.feed(json);
+        parser.end();
+        return builder.root;
+    }
+
+    private static final class TreeBuilder implements Handler {
+        private final Deque<Object> stack = new ArrayDeque<>();
+        private final Deque<String> keys = new ArrayDeque<>();
+        private Object root;
+
+        @Override
+        public void startObject() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            add(map);
+            stack.push(map);
+        }
+
+        @Override
+        public void endObject() {
+            stack.pop();
+        }
+
+        @Override
+        public void startArray() {
+            List<Object> list = new ArrayList<>();
+            add(list);
+            stack.push(list);
+        }
+
+        @Override
+        public void endArray() {
+            stack.pop();
+        }
+
+        @Override
+        public void key(String name) {
+            keys.push(name);
+        }
+
+        @Override
+        public void value(Object value) {
+            add(value);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void add(Object value) {
+            Object parent = stack.peek();
+            if (parent == null) {
+                root = value;
+            } else if (parent instanceof Map) {
+                ((Map<String, Object>) parent).put(keys.pop(), value);
+            } else {
+                ((List<Object>) parent).add(value);
+            }
+        }
+    }
+}
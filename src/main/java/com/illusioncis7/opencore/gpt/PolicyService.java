@@ -1,5 +1,6 @@
 package com.illusioncis7.opencore.gpt;
 
+import com.illusioncis7.opencore.metrics.LatencyHistogram;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
@@ -12,11 +13,18 @@ import java.util.*;
  * The directory <code>gpt_policies</code> contains one <code>.txt</code> file per
  * policy. The filename without extension is used as policy name.
  * Missing files are created empty during plugin startup.
+ * <p>
+ * Every policy is compiled into a {@link PolicyTemplate} when it is loaded,
+ * and its placeholders are checked against the values the code supplies for
+ * it.
  */
 public class PolicyService {
     private final JavaPlugin plugin;
     private final File policyDir;
-    private final Map<String, String> policies = new HashMap<>();
+    /** Replaced as a whole on reload so readers on other threads never see a partial load. */
+    private volatile Map<String, String> policies = Collections.emptyMap();
+    private volatile Map<String, PolicyTemplate> templates = Collections.emptyMap();
+    private final LatencyHistogram renderTimes = new LatencyHistogram();
 
     // policies referenced in the code base
     private static final Set<String> REQUIRED = Set.of(
@@ -25,6 +33,14 @@ public class PolicyService {
             "rule_map"
     );
 
+    // placeholders each policy is rendered with
+    private static final Map<String, Set<String>> PLACEHOLDERS = Map.of(
+            "chat_analysis", Set.of("message", "rules", "flags"),
+            "suggest_classify", Set.of("s", "rules"),
+            "suggest_classify_batch", Set.of("suggestions", "rules"),
+            "rule_map", Set.of("s", "rules")
+    );
+
     public PolicyService(JavaPlugin plugin) {
         this.plugin = plugin;
         this.policyDir = new File(plugin.getDataFolder(), "gpt_policies");
@@ -46,6 +62,32 @@ public class PolicyService {
         return policies.get(name);
     }
 
+    /** Get the compiled policy or {@code null} if unavailable. */
+    public PolicyTemplate getTemplate(String name) {
+        return templates.get(name);
+    }
+
+    /**
+     * Render a policy with the given placeholder values.
+     *
+     * @return the prompt or {@code null} if the policy is unavailable
+     */
+    public String render(String name, Map<String, String> values) {
+        PolicyTemplate template = templates.get(name);
+        if (template == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        String prompt = template.render(values);
+        renderTimes.record(System.nanoTime() - start);
+        return prompt;
+    }
+
+    /** @return distribution of policy render times */
+    public LatencyHistogram getRenderTimes() {
+        return renderTimes;
+    }
+
     /** List the names of all loaded policies. */
     public List<String> listPolicies() {
         return new ArrayList<>(policies.keySet());
@@ -73,9 +115,12 @@ public class PolicyService {
     }
 
     private void load() {
-        policies.clear();
+        Map<String, String> policies = new HashMap<>();
+        Map<String, PolicyTemplate> templates = new HashMap<>();
         File[] files = policyDir.listFiles((dir, name) -> name.endsWith(".txt"));
         if (files == null) {
+            this.policies = policies;
+            this.templates = templates;
             return;
         }
         for (File f : files) {
@@ -86,10 +131,33 @@ public class PolicyService {
                     continue;
                 }
                 String name = f.getName().substring(0, f.getName().length() - 4);
+                PolicyTemplate template = PolicyTemplate.compile(text);
+                validate(name, template);
                 policies.put(name, text);
+                templates.put(name, template);
             } catch (Exception e) {
                 plugin.getLogger().warning("Failed to load policy " + f.getName() + ": " + e.getMessage());
             }
         }
+        this.policies = policies;
+        this.templates = templates;
+    }
+
+    /** Warn about placeholders the code never fills and values the policy never uses. */
+    private void validate(String name, PolicyTemplate template) {
+        Set<String> supplied = PLACEHOLDERS.get(name);
+        if (supplied == null) {
+            return;
+        }
+        for (String key : template.getPlaceholders()) {
+            if (!supplied.contains(key)) {
+                plugin.getLogger().warning("Policy " + name + " uses unknown placeholder %" + key + "%");
+            }
+        }
+        for (String key : supplied) {
+            if (!template.getPlaceholders().contains(key)) {
+                plugin.getLogger().warning("Policy " + name + " does not contain %" + key + "%");
+            }
+        }
     }
 }
@@ -0,0 +1,115 @@
+package com.illusioncis7.opencore.gpt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Policy text compiled into literal segments and <code>%key%</code> slots.
+ * Keys consist of letters, digits and underscores; any other text between
+ * percent signs stays literal. Rendering walks the parts once and appends
+ * into a builder sized for the literals plus the values.
+ */
+public final class PolicyTemplate {
+
+    /** Literal text, or the name of a slot when {@link #slot} is set. */
+    private static final class Part {
+        final String text;
+        final boolean slot;
+
+        Part(String text, boolean slot) {
+            this.text = text;
+            this.slot = slot;
+        }
+    }
+
+    private final Part[] parts;
+    private final int literalLength;
+    private final Set<String> placeholders;
+
+    private PolicyTemplate(Part[] parts, int literalLength, Set<String> placeholders) {
+        this.parts = parts;
+        this.literalLength = literalLength;
+        this.placeholders = placeholders;
+    }
+
+    /** Parse the policy text. */
+    public static PolicyTemplate compile(String text) {
+        List<Part> parts = new ArrayList<>();
+        Set<String> placeholders = new LinkedHashSet<>();
+        int literal = 0;
+        int start = 0;
+        int i = 0;
+        while (i < text.length()) {
+            if (text.charAt(i) != '%') {
+                i++;
+                continue;
+            }
+            int end = i + 1;
+            while (end < text.length() && isKeyChar(text.charAt(end))) {
+                end++;
+            }
+            if (end == i + 1 || end >= text.length() || text.charAt(end) != '%') {
+                // not a placeholder; the percent sign is literal
+                i++;
+                continue;
+            }
+            if (i > start) {
+                parts.add(new Part(text.substring(start, i), false));
+                literal += i - start;
+            }
+            String key = text.substring(i + 1, end);
+            parts.add(new Part(key, true));
+            placeholders.add(key);
+            i = end + 1;
+            start = i;
+        }
+        if (start < text.length()) {
+            parts.add(new Part(text.substring(start), false));
+            literal += text.length() - start;
+        }
+        return new PolicyTemplate(parts.toArray(new Part[0]), literal, Collections.unmodifiableSet(placeholders));
+    }
+
+    private static boolean isKeyChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /** @return names of all slots in order of first appearance */
+    public Set<String> getPlaceholders() {
+        return placeholders;
+    }
+
+    /**
+     * Fill the slots. Slots without a value are kept as <code>%key%</code>,
+     * values for unknown keys are ignored.
+     */
+    public String render(Map<String, String> values) {
+        int size = literalLength;
+        if (values != null) {
+            for (Part part : parts) {
+                if (part.slot) {
+                    String value = values.get(part.text);
+                    size += value != null ? value.length() : part.text.length() + 2;
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder(size);
+        for (Part part : parts) {
+            if (!part.slot) {
+                sb.append(part.text);
+                continue;
+            }
+            String value = values != null ? values.get(part.text) : null;
+            if (value != null) {
+                sb.append(value);
+            } else {
+                sb.append('%').append(part.text).append('%');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,220 @@
+package com.illusioncis7.opencore.gpt;
+
+import java.net.http.HttpHeaders;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Request and token budgets for the GPT API. Both budgets are token buckets
+ * refilling continuously at their per-minute limit. Limits and remaining
+ * budgets are corrected from the <code>x-ratelimit-*</code> headers of every
+ * response, and a 429 pauses all sending until <code>retry-after</code> has
+ * passed. A limit of 0 means unknown; that budget is not enforced until a
+ * response reports it.
+ */
+public class RateLimiter {
+
+    private static final Pattern DURATION = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|s|m|h)");
+    private static final long DEFAULT_PAUSE_MS = 2000L;
+
+    /** Continuously refilling budget. */
+    private static final class Bucket {
+        double capacity;
+        double available;
+        double refillPerMs;
+        long last;
+
+        Bucket(long perMinute, long now) {
+            setLimit(perMinute);
+            available = capacity;
+            last = now;
+        }
+
+        void setLimit(long perMinute) {
+            capacity = Math.max(0, perMinute);
+            refillPerMs = capacity / 60_000.0;
+            available = Math.min(available, capacity);
+        }
+
+        void refill(long now) {
+            if (now > last) {
+                available = Math.min(capacity, available + (now - last) * refillPerMs);
+                last = now;
+            }
+        }
+
+        long waitFor(double amount) {
+            if (capacity <= 0) return 0;
+            // a single request larger than the whole budget waits for a full bucket
+            double needed = Math.min(amount, capacity);
+            if (available >= needed) return 0;
+            return (long) Math.ceil((needed - available) / refillPerMs);
+        }
+
+        void take(double amount) {
+            if (capacity > 0) {
+                available -= amount;
+            }
+        }
+    }
+
+    private final Bucket requests;
+    private final Bucket tokens;
+    private long pausedUntil;
+    private long rateLimited;
+
+    public RateLimiter(long requestsPerMinute, long tokensPerMinute) {
+        long now = System.currentTimeMillis();
+        this.requests = new Bucket(requestsPerMinute, now);
+        this.tokens = new Bucket(tokensPerMinute, now);
+    }
+
+    /**
+     * Take one request and the estimated tokens from the budgets.
+     *
+     * @return 0 if the request may be sent now, otherwise the milliseconds
+     *         to wait before asking again; nothing is taken in that case
+     */
+    public synchronized long acquire(int estimatedTokens) {
+        long now = System.currentTimeMillis();
+        if (now < pausedUntil) {
+            return pausedUntil - now;
+        }
+        requests.refill(now);
+        tokens.refill(now);
+        long wait = Math.max(requests.waitFor(1), tokens.waitFor(estimatedTokens));
+        if (wait > 0) {
+            return wait;
+        }
+        requests.take(1);
+        tokens.take(estimatedTokens);
+        return 0;
+    }
+
+    /** Replace the estimate taken in {@link #acquire} with the tokens actually used. */
+    public synchronized void correct(int estimatedTokens, int actualTokens) {
+        tokens.refill(System.currentTimeMillis());
+        tokens.take(actualTokens - estimatedTokens);
+    }
+
+    /** Give back request and tokens taken in {@link #acquire} for a request that was not sent. */
+    public synchronized void release(int estimatedTokens) {
+        long now = System.currentTimeMillis();
+        requests.refill(now);
+        tokens.refill(now);
+        requests.take(-1);
+        tokens.take(-estimatedTokens);
+    }
+
+    /** Apply the limits and remaining budgets reported by the API. */
+    public synchronized void update(HttpHeaders headers) {
+        long now = System.currentTimeMillis();
+        apply(requests, headers, "requests", now);
+        apply(tokens, headers, "tokens", now);
+    }
+
+    private static void apply(Bucket bucket, HttpHeaders headers, String kind, long now) {
+        bucket.refill(now);
+        Optional<String> limit = headers.firstValue("x-ratelimit-limit-" + kind);
+        if (limit.isPresent()) {
+            long value = parseLong(limit.get());
+            if (value > 0 && value != (long) bucket.capacity) {
+                bucket.setLimit(value);
+            }
+        }
+        Optional<String> remaining = headers.firstValue("x-ratelimit-remaining-" + kind);
+        if (remaining.isPresent() && bucket.capacity > 0) {
+            long value = parseLong(remaining.get());
+            // requests sent after this one are not in the server's number yet, so never raise it
+            if (value >= 0 && value < bucket.available) {
+                bucket.available = value;
+            }
+        }
+    }
+
+    /**
+     * Pause sending after a 429.
+     *
+     * @return milliseconds until requests are sent again
+     */
+    public synchronized long onRateLimited(HttpHeaders headers) {
+        rateLimited++;
+        long now = System.currentTimeMillis();
+        long wait = -1;
+        Optional<String> ms = headers.firstValue("retry-after-ms");
+        if (ms.isPresent()) {
+            wait = parseLong(ms.get());
+        }
+        if (wait < 0) {
+            Optional<String> seconds = headers.firstValue("retry-after");
+            if (seconds.isPresent()) {
+                long value = parseLong(seconds.get());
+                wait = value >= 0 ? value * 1000L : -1;
+            }
+        }
+        if (wait < 0) {
+            wait = Math.max(parseDuration(headers.firstValue("x-ratelimit-reset-requests").orElse(null)),
+                    parseDuration(headers.firstValue("x-ratelimit-reset-tokens").orElse(null)));
+        }
+        if (wait <= 0) {
+            wait = DEFAULT_PAUSE_MS;
+        }
+        pausedUntil = Math.max(pausedUntil, now + wait);
+        update(headers);
+        return pausedUntil - now;
+    }
+
+    public synchronized long getRequestLimit() {
+        return (long) requests.capacity;
+    }
+
+    public synchronized long getRemainingRequests() {
+        requests.refill(System.currentTimeMillis());
+        return (long) Math.max(0, requests.available);
+    }
+
+    public synchronized long getTokenLimit() {
+        return (long) tokens.capacity;
+    }
+
+    public synchronized long getRemainingTokens() {
+        tokens.refill(System.currentTimeMillis());
+        return (long) Math.max(0, tokens.available);
+    }
+
+    /** @return milliseconds until sending resumes after a 429, 0 if not paused */
+    public synchronized long getPausedMs() {
+        return Math.max(0, pausedUntil - System.currentTimeMillis());
+    }
+
+    /** @return number of 429 responses seen */
+    public synchronized long getRateLimitedCount() {
+        return rateLimited;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Parse reset values such as <code>20ms</code>, <code>1s</code> or <code>6m0s</code>. */
+    static long parseDuration(String value) {
+        if (value == null) return 0;
+        Matcher m = DURATION.matcher(value);
+        double total = 0;
+        while (m.find()) {
+            double n = Double.parseDouble(m.group(1));
+            switch (m.group(2)) {
+                case "ms": total += n; break;
+                case "s": total += n * 1000; break;
+                case "m": total += n * 60_000; break;
+                default: total += n * 3_600_000; break;
+            }
+        }
+        return (long) Math.ceil(total);
+    }
+}
@@ -0,0 +1,242 @@
+package com.illusioncis7.opencore.gpt;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deterministic OpenAI-compatible chat completions endpoint on localhost for
+ * offline tests and load tests. The answer depends only on the module named
+ * in the <code>X-OpenCore-Module</code> header: the content of
+ * <code>gpt_stub/&lt;module&gt;.json</code> in the data folder if present,
+ * otherwise a minimal answer that passes the module's schema. Token usage is
+ * estimated locally. A fixed latency and a failure of every n-th request can
+ * be configured to exercise timeouts, retries and failover. Requests with
+ * <code>"stream": true</code> get the answer as server-sent events in small
+ * pieces.
+ */
+public class StubGptServer {
+
+    /** Header the service uses to tell the stub which module a request belongs to. */
+    public static final String MODULE_HEADER = "X-OpenCore-Module";
+
+    /** Characters per streamed piece. */
+    private static final int STREAM_PIECE = 16;
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final Map<String, String> DEFAULTS = new HashMap<>();
+
+    static {
+        DEFAULTS.put("chat_analysis", "{\"evaluations\":[]}");
+        DEFAULTS.put("suggest_classify",
+                "{\"suggestion_type\":\"OTHER\",\"reasoning\":\"stub\",\"confidence\":0.5}");
+        DEFAULTS.put("suggest_map", "{\"id\":0,\"value\":\"\"}");
+        DEFAULTS.put("rule_map", "{\"id\":0,\"text\":\"\",\"summary\":\"stub\",\"impact\":0}");
+    }
+
+    private final File folder;
+    private final int port;
+    private final long latencyMs;
+    private final int failEvery;
+    private final Logger logger;
+    private final AtomicLong requests = new AtomicLong();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param folder    directory with canned answers per module, may not exist
+     * @param latencyMs delay before every answer
+     * @param failEvery answer every n-th request with 500, 0 to never fail
+     */
+    public StubGptServer(File folder, int port, long latencyMs, int failEvery, Logger logger) {
+        this.folder = folder;
+        this.port = port;
+        this.latencyMs = Math.max(0, latencyMs);
+        this.failEvery = Math.max(0, failEvery);
+        this.logger = logger;
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = Executors.newFixedThreadPool(8);
+        server.setExecutor(executor);
+        server.createContext("/v1/chat/completions", this::handle);
+        server.start();
+        logger.info("GPT stub server listening on 127.0.0.1:" + getPort());
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /** @return URL of the chat completions endpoint */
+    public String getUrl() {
+        return "http://127.0.0.1:" + getPort() + "/v1/chat/completions";
+    }
+
+    /** @return bound port, which differs from the configured one if that was 0 */
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) {
+            ex.sendResponseHeaders(405, -1);
+            ex.close();
+            return;
+        }
+        String body;
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] raw = in.readAllBytes();
+            if ("gzip".equalsIgnoreCase(ex.getRequestHeaders().getFirst("Content-Encoding"))) {
+                raw = GptTransport.gunzip(raw);
+            }
+            body = new String(raw, StandardCharsets.UTF_8);
+        }
+        long n = requests.incrementAndGet();
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failEvery > 0 && n % failEvery == 0) {
+            send(ex, 500, new JSONObject().put("error", new JSONObject()
+                    .put("message", "stub failure").put("type", "server_error")).toString());
+            return;
+        }
+        String prompt = "";
+        String model = "stub";
+        boolean stream;
+        try {
+            JSONObject request = new JSONObject(body);
+            model = request.optString("model", model);
+            stream = request.optBoolean("stream", false);
+            JSONArray messages = request.optJSONArray("messages");
+            if (messages != null && !messages.isEmpty()) {
+                prompt = messages.getJSONObject(messages.length() - 1).optString("content", "");
+            }
+        } catch (Exception e) {
+            send(ex, 400, new JSONObject().put("error", new JSONObject()
+                    .put("message", "invalid JSON").put("type", "invalid_request_error")).toString());
+            return;
+        }
+        String content = answer(ex.getRequestHeaders().getFirst(MODULE_HEADER), prompt);
+        int promptTokens = TokenEstimator.estimate(prompt) + TokenEstimator.MESSAGE_OVERHEAD;
+        int completionTokens = TokenEstimator.estimate(content);
+        if (stream) {
+            stream(ex, "chatcmpl-stub-" + n, model, content, promptTokens, completionTokens);
+            return;
+        }
+        JSONObject response = new JSONObject();
+        response.put("id", "chatcmpl-stub-" + n);
+        response.put("object", "chat.completion");
+        response.put("model", model);
+        JSONObject message = new JSONObject().put("role", "assistant").put("content", content);
+        JSONArray choices = new JSONArray();
+        choices.put(new JSONObject().put("index", 0).put("message", message).put("finish_reason", "stop"));
+        response.put("choices", choices);
+        response.put("usage", new JSONObject()
+                .put("prompt_tokens", promptTokens)
+                .put("completion_tokens", completionTokens)
+                .put("total_tokens", promptTokens + completionTokens));
+        send(ex, 200, response.toString());
+    }
+
+    /** Canned answer of the module; batch classifications echo the ids found in the prompt. */
+    String answer(String module, String prompt) {
+        if (module != null && module.matches("[A-Za-z0-9_]+")) {
+            File file = new File(folder, module + ".json");
+            if (file.isFile()) {
+                try {
+                    return Files.readString(file.toPath(), StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    logger.warning("Failed to read stub answer " + file + ": " + e.getMessage());
+                }
+            }
+        }
+        if ("suggest_classify_batch".equals(module)) {
+            JSONArray classifications = new JSONArray();
+            Matcher m = ID.matcher(prompt);
+            while (m.find()) {
+                classifications.put(new JSONObject()
+                        .put("id", Long.parseLong(m.group(1)))
+                        .put("suggestion_type", "OTHER")
+                        .put("reasoning", "stub")
+                        .put("confidence", 0.5));
+            }
+            return new JSONObject().put("classifications", classifications).toString();
+        }
+        String canned = module != null ? DEFAULTS.get(module) : null;
+        return canned != null ? canned : "OK";
+    }
+
+    private static void stream(HttpExchange ex, String id, String model, String content,
+                               int promptTokens, int completionTokens) throws IOException {
+        ex.getResponseHeaders().add("Content-Type", "text/event-stream");
+        ex.sendResponseHeaders(200, 0);
+        try (OutputStream os = ex.getResponseBody()) {
+            for (int i = 0; i < content.length(); i += STREAM_PIECE) {
+                JSONObject delta = new JSONObject().put("content",
+                        content.substring(i, Math.min(content.length(), i + STREAM_PIECE)));
+                event(os, chunk(id, model).put("choices", new JSONArray().put(new JSONObject()
+                        .put("index", 0).put("delta", delta).put("finish_reason", JSONObject.NULL))).toString());
+            }
+            event(os, chunk(id, model).put("choices", new JSONArray().put(new JSONObject()
+                    .put("index", 0).put("delta", new JSONObject()).put("finish_reason", "stop"))).toString());
+            event(os, chunk(id, model).put("choices", new JSONArray()).put("usage", new JSONObject()
+                    .put("prompt_tokens", promptTokens)
+                    .put("completion_tokens", completionTokens)
+                    .put("total_tokens", promptTokens + completionTokens)).toString());
+            event(os, "[DONE]");
+        }
+    }
+
+    private static JSONObject chunk(String id, String model) {
+        return new JSONObject().put("id", id).put("object", "chat.completion.chunk").put("model", model);
+    }
+
+    private static void event(OutputStream os, String data) throws IOException {
+        os.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        os.flush();
+    }
+
+    private static void send(HttpExchange ex, int status, String json) throws IOException {
+        byte[] data = json.getBytes(StandardCharsets.UTF_8);
+        String accept = ex.getRequestHeaders().getFirst("Accept-Encoding");
+        if (accept != null && accept.contains("gzip")) {
+            data = GptTransport.gzip(data);
+            ex.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, data.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(data);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.illusioncis7.opencore.gpt;
+
+/**
+ * Local approximation of the BPE token count of a text. The text is split the
+ * way the OpenAI tokenizers pre-tokenize it (words with their leading space,
+ * digit groups of up to three, punctuation runs, line breaks) and each piece
+ * is charged by length. Short common words cost one token, long and
+ * non-ASCII words more. The estimate is meant for budgeting and rather
+ * overcounts German chat than undercounting it.
+ */
+public final class TokenEstimator {
+
+    /** Tokens the chat format adds around a single user message and the reply. */
+    public static final int MESSAGE_OVERHEAD = 7;
+
+    private TokenEstimator() {
+    }
+
+    /** @return estimated number of tokens of the text, 0 for null or empty */
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int tokens = 0;
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            char c = text.charAt(i);
+            if (c == ' ' && i + 1 < n && Character.isLetter(text.charAt(i + 1))) {
+                // a single space is part of the following word
+                i++;
+                continue;
+            }
+            int start = i;
+            if (Character.isLetter(c)) {
+                int nonAscii = 0;
+                while (i < n && Character.isLetter(text.charAt(i))) {
+                    if (text.charAt(i) > 0x7F) {
+                        nonAscii++;
+                    }
+                    i++;
+                }
+                tokens += wordTokens(i - start) + nonAscii;
+            } else if (Character.isDigit(c)) {
+                while (i < n && Character.isDigit(text.charAt(i))) {
+                    i++;
+                }
+                tokens += (i - start + 2) / 3;
+            } else if (c == '\n' || c == '\r') {
+                while (i < n && (text.charAt(i) == '\n' || text.charAt(i) == '\r')) {
+                    i++;
+                }
+                tokens++;
+            } else if (Character.isWhitespace(c)) {
+                while (i < n && Character.isWhitespace(text.charAt(i))
+                        && text.charAt(i) != '\n' && text.charAt(i) != '\r') {
+                    i++;
+                }
+                if (i < n && Character.isLetter(text.charAt(i))) {
+                    // the last space goes with the word
+                    if (i - start > 1) {
+                        tokens++;
+                    }
+                } else {
+                    tokens++;
+                }
+            } else if (Character.isHighSurrogate(c) || c > 0x2000) {
+                // emoji and other symbols take one to three byte tokens each
+                i += Character.charCount(text.codePointAt(i));
+                tokens += 2;
+            } else {
+                while (i < n && isPunctuation(text.charAt(i))) {
+                    i++;
+                }
+                tokens += (i - start + 1) / 2;
+            }
+        }
+        return tokens;
+    }
+
+    /** Tokens of a word: up to six letters are usually one token, longer words about four letters per token. */
+    private static int wordTokens(int length) {
+        return length <= 6 ? 1 : (length + 3) / 4;
+    }
+
+    private static boolean isPunctuation(char c) {
+        return !Character.isLetterOrDigit(c) && !Character.isWhitespace(c)
+                && !Character.isHighSurrogate(c) && c <= 0x2000;
+    }
+
+    /**
+     * Cut the text so that its estimate stays within the given budget.
+     *
+     * @return the text itself if it already fits
+     */
+    public static String truncate(String text, int maxTokens) {
+        int tokens = estimate(text);
+        if (tokens <= maxTokens) {
+            return text;
+        }
+        int end = (int) ((long) text.length() * Math.max(0, maxTokens) / tokens);
+        while (end > 0 && estimate(text.substring(0, end)) > maxTokens) {
+            end = end * 9 / 10;
+        }
+        if (end > 0 && Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+}
@@ -0,0 +1,408 @@
+package com.illusioncis7.opencore.logging;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only archive for chat messages removed from <code>chat_log</code>.
+ * Each UTC day is stored in <code>&lt;day&gt;.seg</code> as a sequence of
+ * deflate-compressed blocks; <code>&lt;day&gt;.idx</code> lists the offset,
+ * time range and id range of every block so readers only inflate blocks
+ * overlapping the requested window. The index is rebuilt from the block
+ * headers if it is missing or behind the segment file.
+ */
+public class ChatArchive {
+
+    private static final int BLOCK_MAGIC = 0x4F43424C; // "OCBL"
+    /** magic, count, firstTime, lastTime, minId, maxId, rawLen, compLen */
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 8 + 4 + 4;
+    /** offset, firstTime, lastTime, minId, maxId, count, compLen */
+    private static final int INDEX_ENTRY_SIZE = 8 + 8 + 8 + 8 + 8 + 4 + 4;
+
+    private final Logger logger;
+    private final File directory;
+    private final boolean enabled;
+    private final int retainDays;
+    private final int blockSize;
+
+    /** Message read back from the archive. */
+    public static class ArchivedMessage {
+        public final long id;
+        public final UUID player;
+        public final long time;
+        public final String message;
+
+        public ArchivedMessage(long id, UUID player, long time, String message) {
+            this.id = id;
+            this.player = player;
+            this.time = time;
+            this.message = message;
+        }
+    }
+
+    /** Index entry describing one compressed block. */
+    static class BlockInfo {
+        final long offset;
+        final long firstTime;
+        final long lastTime;
+        final long minId;
+        final long maxId;
+        final int count;
+        final int compLen;
+
+        BlockInfo(long offset, long firstTime, long lastTime, long minId, long maxId, int count, int compLen) {
+            this.offset = offset;
+            this.firstTime = firstTime;
+            this.lastTime = lastTime;
+            this.minId = minId;
+            this.maxId = maxId;
+            this.count = count;
+            this.compLen = compLen;
+        }
+    }
+
+    public ChatArchive(JavaPlugin plugin) {
+        this.logger = plugin.getLogger();
+        File configFile = new File(plugin.getDataFolder(), "database.yml");
+        FileConfiguration config = YamlConfiguration.loadConfiguration(configFile);
+        ConfigurationSection sec = config.getConfigurationSection("chat-retention");
+        boolean en = true;
+        int days = 14;
+        int block = 512;
+        String dir = "chat-archive";
+        if (sec != null) {
+            en = sec.getBoolean("enabled", en);
+            days = sec.getInt("retain-days", days);
+            block = sec.getInt("block-size", block);
+            dir = sec.getString("directory", dir);
+        }
+        this.enabled = en;
+        this.retainDays = Math.max(1, days);
+        this.blockSize = Math.max(16, block);
+        this.directory = new File(plugin.getDataFolder(), dir);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getRetainDays() {
+        return retainDays;
+    }
+
+    /** Messages older than this instant are moved into the archive. */
+    public Instant getCutoff() {
+        return Instant.now().minus(Duration.ofDays(retainDays));
+    }
+
+    /**
+     * Append messages to the segment of their day. Messages must be ordered by id;
+     * ids already stored in the day's segment are skipped so a batch can be
+     * re-archived safely after a crash before the live rows were deleted. Once
+     * this returns, every given message is in the archive.
+     */
+    public synchronized void append(List<ArchivedMessage> messages) throws IOException {
+        if (messages.isEmpty()) return;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        LocalDate currentDay = null;
+        List<ArchivedMessage> dayBatch = new ArrayList<>();
+        for (ArchivedMessage msg : messages) {
+            LocalDate day = dayOf(msg.time);
+            if (currentDay != null && !day.equals(currentDay)) {
+                appendDay(currentDay, dayBatch);
+                dayBatch.clear();
+            }
+            currentDay = day;
+            dayBatch.add(msg);
+        }
+        appendDay(currentDay, dayBatch);
+    }
+
+    private void appendDay(LocalDate day, List<ArchivedMessage> messages) throws IOException {
+        List<BlockInfo> index = loadIndex(day);
+        File seg = segmentFile(day);
+        Set<Long> stored = storedIds(seg, index, messages.get(0).id, last(messages).id);
+        List<ArchivedMessage> pending = new ArrayList<>();
+        for (ArchivedMessage msg : messages) {
+            if (!stored.contains(msg.id)) {
+                pending.add(msg);
+            }
+        }
+        if (pending.isEmpty()) return;
+
+        File idx = indexFile(day);
+        try (FileChannel segCh = FileChannel.open(seg.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileChannel idxCh = FileChannel.open(idx.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // drop a torn block left behind by an interrupted write
+            long end = index.isEmpty() ? 0 : last(index).offset + HEADER_SIZE + last(index).compLen;
+            segCh.truncate(end);
+            // entries recovered from block headers are not in the index file yet
+            int persisted = (int) Math.min(index.size(), idx.length() / INDEX_ENTRY_SIZE);
+            long offset = end;
+            for (int i = 0; i < pending.size(); i += blockSize) {
+                List<ArchivedMessage> block = pending.subList(i, Math.min(pending.size(), i + blockSize));
+                BlockInfo info = writeBlock(segCh, offset, block);
+                offset += HEADER_SIZE + info.compLen;
+                index.add(info);
+            }
+            segCh.force(false);
+            idxCh.truncate((long) persisted * INDEX_ENTRY_SIZE);
+            for (int i = persisted; i < index.size(); i++) {
+                BlockInfo b = index.get(i);
+                ByteBuffer buf = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+                buf.putLong(b.offset).putLong(b.firstTime).putLong(b.lastTime)
+                        .putLong(b.minId).putLong(b.maxId).putInt(b.count).putInt(b.compLen).flip();
+                idxCh.write(buf, (long) i * INDEX_ENTRY_SIZE);
+            }
+            idxCh.force(false);
+        }
+    }
+
+    /**
+     * Ids stored in the blocks whose id range overlaps <code>minId..maxId</code>.
+     * Rows can age out after rows with a higher id, so the ranges alone do not
+     * tell whether an id was archived.
+     */
+    private Set<Long> storedIds(File seg, List<BlockInfo> index, long minId, long maxId) throws IOException {
+        Set<Long> ids = new HashSet<>();
+        if (index.isEmpty()) return ids;
+        try (RandomAccessFile raf = new RandomAccessFile(seg, "r")) {
+            for (BlockInfo b : index) {
+                if (b.maxId < minId || b.minId > maxId) continue;
+                for (ArchivedMessage m : readBlock(raf, b)) {
+                    ids.add(m.id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private BlockInfo writeBlock(FileChannel ch, long offset, List<ArchivedMessage> block) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(block.size() * 64);
+        long first = Long.MAX_VALUE, lastTime = Long.MIN_VALUE, minId = Long.MAX_VALUE, maxId = Long.MIN_VALUE;
+        try (DataOutputStream out = new DataOutputStream(raw)) {
+            for (ArchivedMessage m : block) {
+                byte[] text = m.message.getBytes(StandardCharsets.UTF_8);
+                out.writeLong(m.id);
+                out.writeLong(m.time);
+                out.writeLong(m.player.getMostSignificantBits());
+                out.writeLong(m.player.getLeastSignificantBits());
+                out.writeInt(text.length);
+                out.write(text);
+                first = Math.min(first, m.time);
+                lastTime = Math.max(lastTime, m.time);
+                minId = Math.min(minId, m.id);
+                maxId = Math.max(maxId, m.id);
+            }
+        }
+        byte[] input = raw.toByteArray();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        byte[] compressed;
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream comp = new ByteArrayOutputStream(input.length / 3 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                comp.write(chunk, 0, n);
+            }
+            compressed = comp.toByteArray();
+        } finally {
+            deflater.end();
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(BLOCK_MAGIC).putInt(block.size()).putLong(first).putLong(lastTime)
+                .putLong(minId).putLong(maxId).putInt(input.length).putInt(compressed.length).flip();
+        long pos = offset;
+        while (header.hasRemaining()) {
+            pos += ch.write(header, pos);
+        }
+        ByteBuffer body = ByteBuffer.wrap(compressed);
+        while (body.hasRemaining()) {
+            pos += ch.write(body, pos);
+        }
+        return new BlockInfo(offset, first, lastTime, minId, maxId, block.size(), compressed.length);
+    }
+
+    /**
+     * Stream archived messages with <code>from &lt; time &lt; to</code> in
+     * chronological block order.
+     *
+     * @param player   only messages of this player, or null for all
+     * @param consumer receives each matching message
+     */
+    public void stream(Instant from, Instant to, UUID player, Consumer<ArchivedMessage> consumer) throws IOException {
+        long fromMs = from.toEpochMilli();
+        long toMs = to.toEpochMilli();
+        for (LocalDate day : listDays(dayOf(fromMs), dayOf(toMs))) {
+            File seg = segmentFile(day);
+            List<BlockInfo> index;
+            synchronized (this) {
+                index = loadIndex(day);
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(seg, "r")) {
+                for (BlockInfo b : index) {
+                    if (b.lastTime <= fromMs || b.firstTime >= toMs) continue;
+                    for (ArchivedMessage m : readBlock(raf, b)) {
+                        if (m.time > fromMs && m.time < toMs && (player == null || player.equals(m.player))) {
+                            consumer.accept(m);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private List<ArchivedMessage> readBlock(RandomAccessFile raf, BlockInfo b) throws IOException {
+        raf.seek(b.offset);
+        if (raf.readInt() != BLOCK_MAGIC) {
+            throw new IOException("Corrupt chat archive block at " + b.offset);
+        }
+        raf.skipBytes(HEADER_SIZE - 4 - 8);
+        int rawLen = raf.readInt();
+        int compLen = raf.readInt();
+        byte[] compressed = new byte[compLen];
+        raf.readFully(compressed);
+        byte[] raw = new byte[rawLen];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int n = 0;
+            while (n < rawLen && !inflater.finished()) {
+                n += inflater.inflate(raw, n, rawLen - n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt chat archive block at " + b.offset + ": " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+        List<ArchivedMessage> list = new ArrayList<>(b.count);
+        try (DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(raw))) {
+            for (int i = 0; i < b.count; i++) {
+                long id = in.readLong();
+                long time = in.readLong();
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                byte[] text = new byte[in.readInt()];
+                in.readFully(text);
+                list.add(new ArchivedMessage(id, uuid, time, new String(text, StandardCharsets.UTF_8)));
+            }
+        }
+        return list;
+    }
+
+    /** Read the block index of a day, rebuilding it from the segment when needed. */
+    private List<BlockInfo> loadIndex(LocalDate day) throws IOException {
+        File seg = segmentFile(day);
+        File idx = indexFile(day);
+        List<BlockInfo> list = new ArrayList<>();
+        if (!seg.exists()) return list;
+        if (idx.exists()) {
+            try (DataInputStream in = new DataInputStream(new java.io.BufferedInputStream(new java.io.FileInputStream(idx)))) {
+                long entries = idx.length() / INDEX_ENTRY_SIZE;
+                for (long i = 0; i < entries; i++) {
+                    list.add(new BlockInfo(in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                            in.readLong(), in.readInt(), in.readInt()));
+                }
+            }
+        }
+        long indexed = list.isEmpty() ? 0 : last(list).offset + HEADER_SIZE + last(list).compLen;
+        if (indexed < seg.length()) {
+            scanSegment(seg, indexed, list);
+        }
+        return list;
+    }
+
+    /** Add index entries for complete blocks found after <code>start</code>. */
+    private void scanSegment(File seg, long start, List<BlockInfo> list) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(seg, "r")) {
+            long pos = start;
+            long length = raf.length();
+            while (pos + HEADER_SIZE <= length) {
+                raf.seek(pos);
+                try {
+                    if (raf.readInt() != BLOCK_MAGIC) break;
+                    int count = raf.readInt();
+                    long first = raf.readLong();
+                    long lastTime = raf.readLong();
+                    long minId = raf.readLong();
+                    long maxId = raf.readLong();
+                    raf.readInt();
+                    int compLen = raf.readInt();
+                    if (pos + HEADER_SIZE + compLen > length) break;
+                    list.add(new BlockInfo(pos, first, lastTime, minId, maxId, count, compLen));
+                    pos += HEADER_SIZE + compLen;
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        }
+        logger.info("Rebuilt chat archive index for " + seg.getName() + " (" + list.size() + " blocks)");
+    }
+
+    /** Days with a segment file between the given days, inclusive and sorted. */
+    private List<LocalDate> listDays(LocalDate first, LocalDate lastDay) {
+        List<LocalDate> days = new ArrayList<>();
+        String[] names = directory.list();
+        if (names == null) return days;
+        for (String name : names) {
+            if (!name.endsWith(".seg")) continue;
+            try {
+                LocalDate day = LocalDate.parse(name.substring(0, name.length() - 4));
+                if (!day.isBefore(first) && !day.isAfter(lastDay)) {
+                    days.add(day);
+                }
+            } catch (java.time.format.DateTimeParseException ignored) {
+                // foreign file in the archive directory
+            }
+        }
+        days.sort(null);
+        return days;
+    }
+
+    private static <T> T last(List<T> list) {
+        return list.get(list.size() - 1);
+    }
+
+    private static LocalDate dayOf(long epochMs) {
+        return Instant.ofEpochMilli(epochMs).atZone(ZoneOffset.UTC).toLocalDate();
+    }
+
+    private File segmentFile(LocalDate day) {
+        return new File(directory, day + ".seg");
+    }
+
+    private File indexFile(LocalDate day) {
+        return new File(directory, day + ".idx");
+    }
+}
@@ -1,40 +1,204 @@
 package com.illusioncis7.opencore.logging;
 
-import com.illusioncis7.opencore.database.Database;
+import com.illusioncis7.opencore.database.repository.ChatLogRepository.Entry;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.plugin.java.JavaPlugin;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.sql.Timestamp;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
+/**
+ * Buffers chat messages in memory and writes them to the configured
+ * {@link ChatStore} in batches from a dedicated flusher thread. A batch is written once
+ * <code>batch-size</code> messages are pending or <code>flush-interval-ms</code>
+ * has elapsed, whichever comes first.
+ */
 public class ChatLogger implements Listener {
 
-    private final Database database;
+    /** Behaviour when the buffer is full. */
+    public enum OverflowPolicy { DROP_OLDEST, DROP_NEWEST, BLOCK }
+
+    private final ChatStore store;
     private final Logger logger;
 
-    public ChatLogger(Database database, Logger logger) {
-        this.database = database;
-        this.logger = logger;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final OverflowPolicy overflowPolicy;
+    private final ArrayBlockingQueue<Entry> buffer;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private Thread flusher;
+    private volatile boolean running;
+
+    public ChatLogger(JavaPlugin plugin, ChatStore store) {
+        this.store = store;
+        this.logger = plugin.getLogger();
+
+        File configFile = new File(plugin.getDataFolder(), "database.yml");
+        FileConfiguration config = YamlConfiguration.loadConfiguration(configFile);
+        ConfigurationSection sec = config.getConfigurationSection("chat-buffer");
+        int cap = 4096;
+        int batch = 256;
+        long interval = 2000L;
+        String policy = "drop-oldest";
+        if (sec != null) {
+            cap = sec.getInt("capacity", cap);
+            batch = sec.getInt("batch-size", batch);
+            interval = sec.getLong("flush-interval-ms", interval);
+            policy = sec.getString("overflow-policy", policy);
+        }
+        this.capacity = Math.max(16, cap);
+        this.batchSize = Math.max(1, Math.min(batch, capacity));
+        this.flushIntervalMs = Math.max(100L, interval);
+        this.overflowPolicy = parsePolicy(policy);
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+    }
+
+    private OverflowPolicy parsePolicy(String value) {
+        try {
+            return OverflowPolicy.valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (Exception e) {
+            logger.warning("Unknown chat-buffer overflow-policy '" + value + "', using drop-oldest");
+            return OverflowPolicy.DROP_OLDEST;
+        }
+    }
+
+    /** Start the flusher thread. */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::flushLoop, "OpenCore-ChatFlusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Stop the flusher thread and write all pending messages.
+     * Must be called before the chat store or database is closed.
+     */
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            // the flusher wakes up at least once per interval and writes its partial batch
+            flusher.join(flushIntervalMs + TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // flush anything the thread did not get to
+        List<Entry> rest = new ArrayList<>();
+        buffer.drainTo(rest);
+        if (!rest.isEmpty()) {
+            writeBatch(rest);
+        }
+        long lost = dropped.get();
+        if (lost > 0) {
+            logger.warning("Chat buffer dropped " + lost + " messages due to overflow");
+        }
+    }
+
+    /** Number of messages waiting to be written. */
+    public int getPendingCount() {
+        return buffer.size();
+    }
+
+    /** Number of messages dropped because the buffer was full. */
+    public long getDroppedCount() {
+        return dropped.get();
     }
 
     @EventHandler
     public void onPlayerChat(AsyncPlayerChatEvent event) {
-        if (!database.isConnected()) {
+        if (!store.isAvailable()) {
+            return;
+        }
+        Entry entry = new Entry(event.getPlayer().getUniqueId(), System.currentTimeMillis(), event.getMessage());
+        if (buffer.offer(entry)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+                dropped.incrementAndGet();
+                break;
+            case BLOCK:
+                try {
+                    // chat events are async, so waiting here does not stall the main thread
+                    if (!buffer.offer(entry, flushIntervalMs, TimeUnit.MILLISECONDS)) {
+                        dropped.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                }
+                break;
+            case DROP_OLDEST:
+            default:
+                while (!buffer.offer(entry)) {
+                    if (buffer.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                break;
+        }
+    }
+
+    private void flushLoop() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        long lastFlush = System.currentTimeMillis();
+        while (running) {
+            try {
+                long wait = flushIntervalMs - (System.currentTimeMillis() - lastFlush);
+                Entry first = wait > 0 ? buffer.poll(wait, TimeUnit.MILLISECONDS) : buffer.poll();
+                if (first != null) {
+                    batch.add(first);
+                    buffer.drainTo(batch, batchSize - batch.size());
+                }
+                boolean full = batch.size() >= batchSize;
+                boolean due = System.currentTimeMillis() - lastFlush >= flushIntervalMs;
+                if (!batch.isEmpty() && (full || due)) {
+                    writeBatch(batch);
+                    batch.clear();
+                }
+                if (due || full) {
+                    lastFlush = System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                logger.severe("Chat flusher error: " + e.getMessage());
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    private void writeBatch(List<Entry> batch) {
+        if (!store.isAvailable()) {
+            logger.warning("Chat store unavailable – discarding " + batch.size() + " chat messages");
             return;
         }
-        String sql = "INSERT INTO chat_log (player_uuid, message_time, message) VALUES (?, ?, ?)";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, event.getPlayer().getUniqueId().toString());
-            ps.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
-            ps.setString(3, event.getMessage());
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            logger.severe("Failed to log chat message: " + e.getMessage());
+        try {
+            store.append(batch);
+        } catch (IOException e) {
+            logger.severe("Failed to log " + batch.size() + " chat messages: " + e.getMessage());
         }
     }
 }
@@ -0,0 +1,112 @@
+package com.illusioncis7.opencore.logging;
+
+import com.illusioncis7.opencore.database.Database;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Moves chat messages older than the retention period from <code>chat_log</code>
+ * into the {@link ChatArchive}. Rows are deleted only after their block has
+ * been written and synced.
+ */
+public class ChatRetentionTask extends BukkitRunnable {
+
+    private static final String SELECT_SQL =
+            "SELECT id, player_uuid, message_time, message FROM chat_log WHERE message_time < ? ORDER BY id LIMIT ?";
+    private static final String DELETE_SQL = "DELETE FROM chat_log WHERE id = ?";
+
+    private final Database database;
+    private final ChatArchive archive;
+    private final Logger logger;
+    private final int batchSize;
+    private final long intervalTicks;
+    private final AtomicBoolean active = new AtomicBoolean();
+
+    public ChatRetentionTask(JavaPlugin plugin, Database database, ChatArchive archive) {
+        this.database = database;
+        this.archive = archive;
+        this.logger = plugin.getLogger();
+        File configFile = new File(plugin.getDataFolder(), "database.yml");
+        ConfigurationSection sec = YamlConfiguration.loadConfiguration(configFile).getConfigurationSection("chat-retention");
+        int batch = sec != null ? sec.getInt("batch-size", 5000) : 5000;
+        int interval = sec != null ? sec.getInt("interval-minutes", 60) : 60;
+        this.batchSize = Math.max(100, batch);
+        this.intervalTicks = Math.max(1, interval) * 60L * 20L;
+    }
+
+    /** Schedule the task asynchronously using the configured interval. */
+    public void start(JavaPlugin plugin) {
+        runTaskTimerAsynchronously(plugin, 20L * 60, intervalTicks);
+    }
+
+    @Override
+    public void run() {
+        if (!database.isConnected() || !active.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Timestamp cutoff = Timestamp.from(archive.getCutoff());
+            long total = 0;
+            while (true) {
+                List<ChatArchive.ArchivedMessage> batch = loadBatch(cutoff);
+                if (batch.isEmpty()) break;
+                archive.append(batch);
+                // only the rows just confirmed in the archive
+                database.executeWrite(conn -> {
+                    try (PreparedStatement ps = conn.prepareStatement(DELETE_SQL)) {
+                        for (ChatArchive.ArchivedMessage m : batch) {
+                            ps.setLong(1, m.id);
+                            ps.addBatch();
+                        }
+                        return ps.executeBatch();
+                    }
+                });
+                total += batch.size();
+                if (batch.size() < batchSize) break;
+            }
+            if (total > 0) {
+                logger.info("Archived " + total + " chat messages older than " + archive.getRetainDays() + " days");
+            }
+        } catch (IOException | SQLException e) {
+            logger.severe("Chat retention failed: " + e.getMessage());
+        } finally {
+            active.set(false);
+        }
+    }
+
+    private List<ChatArchive.ArchivedMessage> loadBatch(Timestamp cutoff) throws SQLException {
+        List<ChatArchive.ArchivedMessage> list = new ArrayList<>();
+        try (Connection conn = database.getConnection()) {
+            if (conn == null) {
+                throw new SQLException("No database connection available");
+            }
+            try (PreparedStatement ps = conn.prepareStatement(SELECT_SQL)) {
+                ps.setTimestamp(1, cutoff);
+                ps.setInt(2, batchSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        list.add(new ChatArchive.ArchivedMessage(rs.getLong(1), UUID.fromString(rs.getString(2)),
+                                rs.getTimestamp(3).getTime(), rs.getString(4)));
+                    }
+                }
+            }
+        }
+        return list;
+    }
+}
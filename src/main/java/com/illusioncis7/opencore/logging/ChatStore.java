@@ -0,0 +1,55 @@
+package com.illusioncis7.opencore.logging;
+
+import com.illusioncis7.opencore.database.repository.ChatLogRepository.Entry;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Storage backend for logged chat messages. Selected with
+ * <code>chat-store</code> in modules.yml.
+ */
+public interface ChatStore {
+
+    /** Message read back from a store. */
+    class StoredMessage {
+        public final long id;
+        public final UUID player;
+        /** alias from player_registry, null if the store does not know it */
+        public final String alias;
+        public final long time;
+        public final String message;
+
+        public StoredMessage(long id, UUID player, String alias, long time, String message) {
+            this.id = id;
+            this.player = player;
+            this.alias = alias;
+            this.time = time;
+            this.message = message;
+        }
+    }
+
+    /** @return false while messages cannot be stored */
+    boolean isAvailable();
+
+    /** Persist a batch of messages in order. */
+    void append(List<Entry> entries) throws IOException;
+
+    /**
+     * Stream all messages with <code>from &lt; time</code> and, if given,
+     * <code>time &lt;= to</code> in ascending time order.
+     */
+    void read(Instant from, Instant to, Consumer<StoredMessage> consumer) throws IOException;
+
+    /**
+     * Replace the stored text of a message, e.g. after pseudonymization.
+     * Append-only stores may ignore this.
+     */
+    void rewrite(long id, String message) throws IOException;
+
+    /** Flush and release all resources. */
+    void close();
+}
@@ -0,0 +1,117 @@
+package com.illusioncis7.opencore.logging;
+
+import com.illusioncis7.opencore.database.Database;
+import com.illusioncis7.opencore.database.repository.ChatLogRepository;
+import com.illusioncis7.opencore.database.repository.ChatLogRepository.Entry;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Default chat store backed by the <code>chat_log</code> table. Windows
+ * reaching past the retention period continue in the {@link ChatArchive}.
+ */
+public class JdbcChatStore implements ChatStore {
+
+    private static final String SELECT_SQL =
+            "SELECT c.id, c.player_uuid, p.alias_id, c.message, c.message_time " +
+            "FROM chat_log c LEFT JOIN player_registry p ON c.player_uuid = p.uuid " +
+            "WHERE c.message_time > ?";
+    private static final String UPDATE_SQL = "UPDATE chat_log SET message = ? WHERE id = ?";
+
+    private final Database database;
+    private final ChatArchive archive;
+    private final ChatLogRepository repository;
+
+    public JdbcChatStore(Database database, ChatArchive archive) {
+        this.database = database;
+        this.archive = archive;
+        this.repository = new ChatLogRepository(database);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return database.isConnected();
+    }
+
+    @Override
+    public void append(List<Entry> entries) throws IOException {
+        try {
+            repository.insertBatch(entries);
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void read(Instant from, Instant to, Consumer<StoredMessage> consumer) throws IOException {
+        if (!database.isConnected()) {
+            return;
+        }
+        Set<Long> archivedIds = new HashSet<>();
+        if (archive != null && archive.isEnabled() && from.isBefore(archive.getCutoff())) {
+            archive.stream(from, to != null ? to : Instant.now(), null, m -> {
+                archivedIds.add(m.id);
+                consumer.accept(new StoredMessage(m.id, m.player, null, m.time, m.message));
+            });
+        }
+        String sql = selectSql(to != null);
+        try (Connection conn = database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setTimestamp(1, Timestamp.from(from));
+            if (to != null) {
+                ps.setTimestamp(2, Timestamp.from(to));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long id = rs.getLong(1);
+                    // rows archived while we were reading show up twice
+                    if (archivedIds.contains(id)) continue;
+                    consumer.accept(new StoredMessage(id, UUID.fromString(rs.getString(2)), rs.getString(3),
+                            rs.getTimestamp(5).getTime(), rs.getString(4)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /** Window query shared with the chat store benchmark. */
+    static String selectSql(boolean bounded) {
+        return SELECT_SQL + (bounded ? " AND c.message_time <= ?" : "") + " ORDER BY c.message_time, c.id";
+    }
+
+    @Override
+    public void rewrite(long id, String message) throws IOException {
+        if (!database.isConnected()) {
+            return;
+        }
+        try {
+            // keep the original time so the row still ages out of chat_log
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(UPDATE_SQL)) {
+                    ps.setString(1, message);
+                    ps.setLong(2, id);
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        // the connection pool is owned by Database
+    }
+}
@@ -0,0 +1,468 @@
+package com.illusioncis7.opencore.logging;
+
+import com.illusioncis7.opencore.database.repository.ChatLogRepository.Entry;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Chat store that keeps messages in memory-mapped, append-only journal
+ * segments instead of the database.
+ * <p>
+ * Each segment <code>&lt;baseId&gt;.jrn</code> is a 64 byte header followed by
+ * fixed-size 256 byte records (time, player, length, text). Texts longer than
+ * {@link #INLINE_CAPACITY} bytes go to the overflow file
+ * <code>&lt;baseId&gt;.ovf</code> and the record keeps their offset. Times are
+ * stored non-decreasing, so an in-memory sparse index holding the time of
+ * every <code>index-interval</code>-th record turns a time window into a
+ * starting offset; the rest is a sequential scan of the mapping.
+ * <p>
+ * The header's record count is written after the records of a batch, so a
+ * crashed process leaves at most a partial batch behind that is ignored on
+ * the next start. With <code>sync</code> enabled every batch is also forced
+ * to disk, which protects against power loss at the cost of one fsync per
+ * batch.
+ */
+public class JournalChatStore implements ChatStore {
+
+    private static final int MAGIC = 0x4F434A52; // "OCJR"
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 256;
+    /** time, uuid msb, uuid lsb, text length, kind */
+    private static final int RECORD_HEADER = 8 + 8 + 8 + 4 + 4;
+    static final int INLINE_CAPACITY = RECORD_SIZE - RECORD_HEADER;
+    private static final int KIND_INLINE = 0;
+    private static final int KIND_OVERFLOW = 1;
+
+    // header layout
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_RECORD_SIZE = 8;
+    private static final int H_CAPACITY = 12;
+    private static final int H_BASE_ID = 16;
+    private static final int H_COUNT = 24;
+    private static final int H_OVERFLOW = 32;
+
+    private static final int MAX_SEGMENT_RECORDS = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+    private final File directory;
+    private final int segmentRecords;
+    private final int indexInterval;
+    private final int retainDays;
+    private final boolean sync;
+    private final Logger logger;
+
+    /** Open segments in id order; the last one receives appends. Guarded by this. */
+    private final List<Segment> segments = new ArrayList<>();
+    private long lastTime;
+    private boolean closed;
+
+    /** One journal file plus its overflow file and sparse index. */
+    private static final class Segment {
+        final File file;
+        final File overflowFile;
+        final long baseId;
+        final int capacity;
+        final FileChannel channel;
+        final FileChannel overflow;
+        final MappedByteBuffer map;
+        int count;
+        long overflowLength;
+        long firstTime;
+        long lastTime;
+        long[] sparse = new long[16];
+        int sparseSize;
+
+        Segment(File file, File overflowFile, long baseId, int capacity, FileChannel channel,
+                FileChannel overflow, MappedByteBuffer map) {
+            this.file = file;
+            this.overflowFile = overflowFile;
+            this.baseId = baseId;
+            this.capacity = capacity;
+            this.channel = channel;
+            this.overflow = overflow;
+            this.map = map;
+        }
+
+        void addSparse(long time) {
+            if (sparseSize == sparse.length) {
+                sparse = Arrays.copyOf(sparse, sparseSize * 2);
+            }
+            sparse[sparseSize++] = time;
+        }
+
+        long timeAt(int record) {
+            return map.getLong(HEADER_SIZE + record * RECORD_SIZE);
+        }
+
+        void close() {
+            try {
+                channel.close();
+                overflow.close();
+            } catch (IOException ignore) {
+                // nothing left to release
+            }
+        }
+    }
+
+    /** Immutable view of a segment taken under the lock. */
+    private static final class Snapshot {
+        final Segment segment;
+        final int count;
+        final long firstTime;
+        final long lastTime;
+        final long[] sparse;
+        final int sparseSize;
+
+        Snapshot(Segment s) {
+            this.segment = s;
+            this.count = s.count;
+            this.firstTime = s.firstTime;
+            this.lastTime = s.lastTime;
+            this.sparse = s.sparse;
+            this.sparseSize = s.sparseSize;
+        }
+    }
+
+    public JournalChatStore(File directory, int segmentRecords, int indexInterval, int retainDays,
+                            boolean sync, Logger logger) throws IOException {
+        this.directory = directory;
+        this.segmentRecords = Math.max(1024, Math.min(segmentRecords, MAX_SEGMENT_RECORDS));
+        this.indexInterval = Math.max(1, indexInterval);
+        this.retainDays = retainDays;
+        this.sync = sync;
+        this.logger = logger;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create chat journal directory " + directory);
+        }
+        open();
+    }
+
+    /** Create a journal from the <code>chat-journal</code> section of database.yml. */
+    public static JournalChatStore fromConfig(JavaPlugin plugin) throws IOException {
+        File configFile = new File(plugin.getDataFolder(), "database.yml");
+        FileConfiguration config = YamlConfiguration.loadConfiguration(configFile);
+        ConfigurationSection sec = config.getConfigurationSection("chat-journal");
+        String dir = "chat-journal";
+        int segmentRecords = 65536;
+        int indexInterval = 64;
+        int retainDays = 30;
+        boolean sync = false;
+        if (sec != null) {
+            dir = sec.getString("directory", dir);
+            segmentRecords = sec.getInt("segment-records", segmentRecords);
+            indexInterval = sec.getInt("index-interval", indexInterval);
+            retainDays = sec.getInt("retain-days", retainDays);
+            sync = sec.getBoolean("sync", sync);
+        }
+        return new JournalChatStore(new File(plugin.getDataFolder(), dir), segmentRecords, indexInterval,
+                retainDays, sync, plugin.getLogger());
+    }
+
+    private void open() throws IOException {
+        File[] files = directory.listFiles((d, name) -> name.endsWith(".jrn"));
+        if (files != null) {
+            // names are zero-padded base ids, so name order is id order
+            Arrays.sort(files);
+            for (int i = 0; i < files.length; i++) {
+                Segment s = openSegment(files[i], i == files.length - 1);
+                if (s != null) {
+                    segments.add(s);
+                    lastTime = Math.max(lastTime, s.lastTime);
+                }
+            }
+        }
+        deleteExpired();
+    }
+
+    private Segment openSegment(File file, boolean writable) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), writable
+                ? new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ});
+        if (channel.size() < HEADER_SIZE) {
+            channel.close();
+            logger.warning("Ignoring truncated chat journal " + file.getName());
+            return null;
+        }
+        MappedByteBuffer map = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                0, channel.size());
+        int capacity = map.getInt(H_CAPACITY);
+        if (map.getInt(H_MAGIC) != MAGIC || map.getInt(H_VERSION) != VERSION
+                || map.getInt(H_RECORD_SIZE) != RECORD_SIZE
+                || channel.size() < HEADER_SIZE + (long) capacity * RECORD_SIZE) {
+            channel.close();
+            logger.warning("Ignoring unreadable chat journal " + file.getName());
+            return null;
+        }
+        File overflowFile = new File(directory, file.getName().replace(".jrn", ".ovf"));
+        FileChannel overflow = FileChannel.open(overflowFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment s = new Segment(file, overflowFile, map.getLong(H_BASE_ID), capacity, channel, overflow, map);
+        s.count = (int) Math.min(capacity, Math.max(0, map.getLong(H_COUNT)));
+        s.overflowLength = map.getLong(H_OVERFLOW);
+        for (int r = 0; r < s.count; r += indexInterval) {
+            s.addSparse(s.timeAt(r));
+        }
+        if (s.count > 0) {
+            s.firstTime = s.timeAt(0);
+            s.lastTime = s.timeAt(s.count - 1);
+        }
+        return s;
+    }
+
+    private Segment createSegment(long baseId) throws IOException {
+        String name = String.format("%016d", baseId);
+        File file = new File(directory, name + ".jrn");
+        long size = HEADER_SIZE + (long) segmentRecords * RECORD_SIZE;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        map.putInt(H_MAGIC, MAGIC);
+        map.putInt(H_VERSION, VERSION);
+        map.putInt(H_RECORD_SIZE, RECORD_SIZE);
+        map.putInt(H_CAPACITY, segmentRecords);
+        map.putLong(H_BASE_ID, baseId);
+        map.putLong(H_COUNT, 0L);
+        map.putLong(H_OVERFLOW, 0L);
+        File overflowFile = new File(directory, name + ".ovf");
+        FileChannel overflow = FileChannel.open(overflowFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(file, overflowFile, baseId, segmentRecords, channel, overflow, map);
+    }
+
+    @Override
+    public synchronized boolean isAvailable() {
+        return !closed;
+    }
+
+    @Override
+    public synchronized void append(List<Entry> entries) throws IOException {
+        if (closed) {
+            throw new IOException("Chat journal is closed");
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        Segment s = activeSegment();
+        for (Entry e : entries) {
+            if (s.count == s.capacity) {
+                commit(s);
+                s = roll(s);
+            }
+            // keep times non-decreasing so the sparse index stays sorted
+            long time = Math.max(e.time, lastTime);
+            lastTime = time;
+            byte[] text = e.message.getBytes(StandardCharsets.UTF_8);
+            int pos = HEADER_SIZE + s.count * RECORD_SIZE;
+            s.map.putLong(pos, time);
+            s.map.putLong(pos + 8, e.player.getMostSignificantBits());
+            s.map.putLong(pos + 16, e.player.getLeastSignificantBits());
+            s.map.putInt(pos + 24, text.length);
+            if (text.length <= INLINE_CAPACITY) {
+                s.map.putInt(pos + 28, KIND_INLINE);
+                s.map.put(pos + RECORD_HEADER, text);
+            } else {
+                writeFully(s.overflow, ByteBuffer.wrap(text), s.overflowLength);
+                s.map.putInt(pos + 28, KIND_OVERFLOW);
+                s.map.putLong(pos + RECORD_HEADER, s.overflowLength);
+                s.overflowLength += text.length;
+            }
+            if (s.count % indexInterval == 0) {
+                s.addSparse(time);
+            }
+            if (s.count == 0) {
+                s.firstTime = time;
+            }
+            s.lastTime = time;
+            s.count++;
+        }
+        commit(s);
+    }
+
+    private Segment activeSegment() throws IOException {
+        if (segments.isEmpty()) {
+            Segment s = createSegment(1L);
+            segments.add(s);
+            return s;
+        }
+        Segment last = segments.get(segments.size() - 1);
+        if (!last.map.isReadOnly()) {
+            return last;
+        }
+        // the newest segment was opened read-only because it could not be mapped for writing
+        return roll(last);
+    }
+
+    private Segment roll(Segment full) throws IOException {
+        Segment next = createSegment(full.baseId + full.capacity);
+        segments.add(next);
+        deleteExpired();
+        return next;
+    }
+
+    /** Publish the records written so far by updating the header. */
+    private void commit(Segment s) throws IOException {
+        if (sync) {
+            s.overflow.force(false);
+            s.map.force();
+        }
+        s.map.putLong(H_OVERFLOW, s.overflowLength);
+        s.map.putLong(H_COUNT, s.count);
+        if (sync) {
+            s.map.force();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+
+    /** Drop whole segments whose newest message is older than retain-days. */
+    private void deleteExpired() {
+        if (retainDays <= 0) {
+            return;
+        }
+        long cutoff = Instant.now().minus(Duration.ofDays(retainDays)).toEpochMilli();
+        // never drop the newest segment, it receives the next appends
+        while (segments.size() > 1) {
+            Segment s = segments.get(0);
+            if (s.count > 0 && s.lastTime >= cutoff) {
+                break;
+            }
+            segments.remove(0);
+            s.close();
+            if (!s.file.delete() || !s.overflowFile.delete()) {
+                logger.warning("Could not delete expired chat journal " + s.file.getName());
+            }
+        }
+    }
+
+    @Override
+    public void read(Instant from, Instant to, Consumer<StoredMessage> consumer) throws IOException {
+        List<Snapshot> snapshot = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            for (Segment s : segments) {
+                snapshot.add(new Snapshot(s));
+            }
+        }
+        long fromMs = from.toEpochMilli();
+        long toMs = to != null ? to.toEpochMilli() : Long.MAX_VALUE;
+        for (Snapshot snap : snapshot) {
+            if (snap.count == 0 || snap.lastTime <= fromMs) {
+                continue;
+            }
+            if (snap.firstTime > toMs) {
+                return;
+            }
+            Segment s = snap.segment;
+            ByteBuffer view = s.map.duplicate();
+            for (int r = startRecord(snap, fromMs); r < snap.count; r++) {
+                int pos = HEADER_SIZE + r * RECORD_SIZE;
+                long time = view.getLong(pos);
+                if (time <= fromMs) {
+                    continue;
+                }
+                if (time > toMs) {
+                    return;
+                }
+                UUID player = new UUID(view.getLong(pos + 8), view.getLong(pos + 16));
+                byte[] text = new byte[view.getInt(pos + 24)];
+                if (view.getInt(pos + 28) == KIND_INLINE) {
+                    view.get(pos + RECORD_HEADER, text);
+                } else {
+                    readFully(s.overflow, ByteBuffer.wrap(text), view.getLong(pos + RECORD_HEADER));
+                }
+                consumer.accept(new StoredMessage(s.baseId + r, player, null, time,
+                        new String(text, StandardCharsets.UTF_8)));
+            }
+        }
+    }
+
+    /** @return first record that may be newer than fromMs according to the sparse index */
+    private int startRecord(Snapshot snap, long fromMs) {
+        int lo = 0;
+        int hi = snap.sparseSize - 1;
+        int found = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (snap.sparse[mid] <= fromMs) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found * indexInterval;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position);
+            if (n < 0) {
+                throw new IOException("Chat journal overflow file is truncated");
+            }
+            position += n;
+        }
+    }
+
+    /** Journal records are never modified; pseudonymized text only goes into the prompt. */
+    @Override
+    public void rewrite(long id, String message) {
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Segment s : segments) {
+            if (!s.map.isReadOnly()) {
+                try {
+                    commit(s);
+                    s.overflow.force(false);
+                    s.map.force();
+                } catch (IOException e) {
+                    logger.warning("Failed to flush chat journal " + s.file.getName() + ": " + e.getMessage());
+                }
+            }
+            s.close();
+        }
+        segments.clear();
+    }
+
+    /** @return total number of stored messages */
+    public synchronized long getMessageCount() {
+        long total = 0;
+        for (Segment s : segments) {
+            total += s.count;
+        }
+        return total;
+    }
+}
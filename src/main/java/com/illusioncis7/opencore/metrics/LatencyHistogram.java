@@ -0,0 +1,85 @@
+package com.illusioncis7.opencore.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with logarithmic buckets (four per power of two)
+ * from 10 us up to roughly 100 s. Percentiles are reported as the upper bound
+ * of the bucket they fall into, which keeps the error below 20 %.
+ */
+public class LatencyHistogram {
+
+    private static final double MIN_MICROS = 10.0;
+    private static final int BUCKETS_PER_DOUBLING = 4;
+    private static final int BUCKETS = 96;
+    private static final double[] UPPER_MICROS = new double[BUCKETS];
+
+    static {
+        for (int i = 0; i < BUCKETS; i++) {
+            UPPER_MICROS[i] = MIN_MICROS * Math.pow(2.0, (double) i / BUCKETS_PER_DOUBLING);
+        }
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        double micros = nanos / 1000.0;
+        int bucket;
+        if (micros <= MIN_MICROS) {
+            bucket = 0;
+        } else {
+            bucket = (int) Math.ceil(Math.log(micros / MIN_MICROS) / Math.log(2.0) * BUCKETS_PER_DOUBLING);
+            if (bucket > BUCKETS) bucket = BUCKETS;
+        }
+        counts.incrementAndGet(bucket);
+        count.increment();
+        sumNanos.add(nanos);
+        long prev;
+        while (nanos > (prev = maxNanos.get()) && !maxNanos.compareAndSet(prev, nanos)) {
+            // retry
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** @return mean latency in milliseconds */
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : sumNanos.sum() / 1_000_000.0 / n;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * @param quantile value between 0 and 1, e.g. 0.95
+     * @return latency in milliseconds
+     */
+    public double percentile(double quantile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS + 1];
+        for (int i = 0; i <= BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0.0;
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(UPPER_MICROS[i] / 1000.0, getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+}
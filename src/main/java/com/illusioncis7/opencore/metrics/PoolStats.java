@@ -0,0 +1,24 @@
+package com.illusioncis7.opencore.metrics;
+
+/**
+ * Snapshot of one connection pool.
+ */
+public class PoolStats {
+    public final String name;
+    public final int active;
+    public final int idle;
+    public final int total;
+    public final int max;
+    public final int waiting;
+    public final LatencyHistogram waitTime;
+
+    public PoolStats(String name, int active, int idle, int total, int max, int waiting, LatencyHistogram waitTime) {
+        this.name = name;
+        this.active = active;
+        this.idle = idle;
+        this.total = total;
+        this.max = max;
+        this.waiting = waiting;
+        this.waitTime = waitTime;
+    }
+}
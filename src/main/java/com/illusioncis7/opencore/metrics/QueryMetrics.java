@@ -0,0 +1,257 @@
+package com.illusioncis7.opencore.metrics;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Collects query latencies keyed by the service method that issued them.
+ * Connections handed out by {@code Database} are wrapped in a proxy that
+ * times every <code>execute*</code> call on the statements it creates.
+ */
+public class QueryMetrics {
+
+    private static final String BASE_PACKAGE = "com.illusioncis7.opencore.";
+    private static final String[] INTERNAL_PACKAGES = {
+            BASE_PACKAGE + "database.",
+            BASE_PACKAGE + "metrics."
+    };
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    private final long slowThresholdNanos;
+    private final boolean logSlow;
+    private final Logger logger;
+    private final Map<String, QueryStats> queries = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> poolWait = new ConcurrentHashMap<>();
+
+    /** Latency statistics of one query type. */
+    public static class QueryStats {
+        public final String key;
+        public final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder slow = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        QueryStats(String key) {
+            this.key = key;
+        }
+
+        public long getSlowCount() {
+            return slow.sum();
+        }
+
+        public long getErrorCount() {
+            return errors.sum();
+        }
+    }
+
+    public QueryMetrics(long slowThresholdMs, boolean logSlow, Logger logger) {
+        this.slowThresholdNanos = Math.max(1, slowThresholdMs) * 1_000_000L;
+        this.logSlow = logSlow;
+        this.logger = logger;
+    }
+
+    public long getSlowThresholdMs() {
+        return slowThresholdNanos / 1_000_000L;
+    }
+
+    /** @return "Class.method" of the first plugin frame outside the database layer */
+    public String callerKey() {
+        return WALKER.walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith(BASE_PACKAGE) && !isInternal(f.getClassName()))
+                .findFirst()
+                .map(f -> simpleName(f.getClassName()) + "." + methodName(f.getMethodName()))
+                .orElse("unknown"));
+    }
+
+    private static boolean isInternal(String className) {
+        for (String p : INTERNAL_PACKAGES) {
+            if (className.startsWith(p)) return true;
+        }
+        return false;
+    }
+
+    private static String simpleName(String className) {
+        String name = className.substring(className.lastIndexOf('.') + 1);
+        int inner = name.indexOf('$');
+        return inner > 0 ? name.substring(0, inner) : name;
+    }
+
+    /** Strip the synthetic lambda prefix/suffix so lambdas count towards their method. */
+    private static String methodName(String method) {
+        if (method.startsWith("lambda$")) {
+            int end = method.indexOf('$', 7);
+            return end > 7 ? method.substring(7, end) : method.substring(7);
+        }
+        return method;
+    }
+
+    /** Record the time spent waiting for a connection from a pool. */
+    public void recordWait(String pool, long nanos) {
+        poolWait.computeIfAbsent(pool, k -> new LatencyHistogram()).record(nanos);
+    }
+
+    public LatencyHistogram getWaitHistogram(String pool) {
+        return poolWait.computeIfAbsent(pool, k -> new LatencyHistogram());
+    }
+
+    void record(String key, String sql, long nanos, boolean failed) {
+        QueryStats stats = queries.computeIfAbsent(key, QueryStats::new);
+        stats.latency.record(nanos);
+        if (failed) {
+            stats.errors.increment();
+        }
+        if (nanos >= slowThresholdNanos) {
+            stats.slow.increment();
+            if (logSlow) {
+                String text = sql != null && sql.length() > 200 ? sql.substring(0, 200) + "..." : sql;
+                logger.info("Slow query (" + nanos / 1_000_000L + " ms) from " + key + ": " + text);
+            }
+        }
+    }
+
+    /** @return all query types, slowest p95 first */
+    public List<QueryStats> getQueries() {
+        List<QueryStats> list = new ArrayList<>(queries.values());
+        list.sort(Comparator.comparingDouble((QueryStats q) -> q.latency.percentile(0.95)).reversed());
+        return list;
+    }
+
+    /** Wrap a connection so statements created from it are timed for the given caller. */
+    public Connection wrap(Connection conn, String caller) {
+        if (conn == null) return null;
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(conn, caller));
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private final String caller;
+
+        ConnectionHandler(Connection target, String caller) {
+            this.target = target;
+            this.caller = caller;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = forward(target, method, args);
+            String name = method.getName();
+            if (result instanceof Statement
+                    && (name.equals("createStatement") || name.equals("prepareStatement") || name.equals("prepareCall"))) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                        : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{type},
+                        new StatementHandler((Statement) result, caller, sql));
+            }
+            return result;
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String caller;
+        private final String sql;
+
+        StatementHandler(Statement target, String caller, String sql) {
+            this.target = target;
+            this.caller = caller;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().startsWith("execute")) {
+                return forward(target, method, args);
+            }
+            String text = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = forward(target, method, args);
+                failed = false;
+                return result;
+            } finally {
+                record(caller + ":" + verb(text, method.getName()), text, System.nanoTime() - start, failed);
+            }
+        }
+    }
+
+    private static String verb(String sql, String method) {
+        if (method.equals("executeBatch")) return "batch";
+        if (sql == null) return "sql";
+        String trimmed = sql.trim();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) end++;
+        return end == 0 ? "sql" : trimmed.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Build the JSON document served by the metrics endpoint. */
+    public JSONObject toJson(List<PoolStats> pools) {
+        JSONObject root = new JSONObject();
+        JSONArray poolArr = new JSONArray();
+        for (PoolStats p : pools) {
+            JSONObject o = new JSONObject();
+            o.put("name", p.name);
+            o.put("active", p.active);
+            o.put("idle", p.idle);
+            o.put("total", p.total);
+            o.put("max", p.max);
+            o.put("waiting", p.waiting);
+            if (p.waitTime != null) {
+                o.put("wait_ms", histogramJson(p.waitTime));
+            }
+            poolArr.put(o);
+        }
+        root.put("pools", poolArr);
+        JSONObject q = new JSONObject();
+        for (QueryStats s : getQueries()) {
+            JSONObject o = histogramJson(s.latency);
+            o.put("slow", s.getSlowCount());
+            o.put("errors", s.getErrorCount());
+            q.put(s.key, o);
+        }
+        root.put("queries", q);
+        root.put("slow_threshold_ms", getSlowThresholdMs());
+        return root;
+    }
+
+    private static JSONObject histogramJson(LatencyHistogram h) {
+        JSONObject o = new JSONObject();
+        o.put("count", h.getCount());
+        o.put("mean", round(h.getMeanMillis()));
+        o.put("p50", round(h.percentile(0.50)));
+        o.put("p95", round(h.percentile(0.95)));
+        o.put("p99", round(h.percentile(0.99)));
+        o.put("max", round(h.getMaxMillis()));
+        return o;
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 1000.0) / 1000.0;
+    }
+}
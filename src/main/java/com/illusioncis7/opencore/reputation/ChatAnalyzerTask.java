@@ -1,7 +1,12 @@
 package com.illusioncis7.opencore.reputation;
 
 import com.illusioncis7.opencore.database.Database;
+import com.illusioncis7.opencore.gpt.GptBinder;
+import com.illusioncis7.opencore.gpt.GptEvaluation;
+import com.illusioncis7.opencore.gpt.GptFormatException;
 import com.illusioncis7.opencore.gpt.GptService;
+import com.illusioncis7.opencore.gpt.TokenEstimator;
+import com.illusioncis7.opencore.logging.ChatStore;
 import com.illusioncis7.opencore.rules.RuleService;
 import java.util.Map;
 
@@ -15,14 +20,21 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 public class ChatAnalyzerTask extends BukkitRunnable {
+    /** Smallest chat share of a prompt, even if rules and flags use up the budget. */
+    private static final int MIN_CHUNK_TOKENS = 500;
+
     private final Database database;
+    private final ChatStore chatStore;
     private final GptService gptService;
     private final ReputationService reputationService;
     private final ChatReputationFlagService flagService;
@@ -30,9 +42,10 @@ public class ChatAnalyzerTask extends BukkitRunnable {
     private final Logger logger;
     private Instant lastRun;
 
-    public ChatAnalyzerTask(Database database, GptService gptService, ReputationService reputationService,
+    public ChatAnalyzerTask(Database database, ChatStore chatStore, GptService gptService, ReputationService reputationService,
                            ChatReputationFlagService flagService, RuleService ruleService, Logger logger) {
         this.database = database;
+        this.chatStore = chatStore;
         this.gptService = gptService;
         this.reputationService = reputationService;
         this.flagService = flagService;
@@ -50,71 +63,224 @@ public class ChatAnalyzerTask extends BukkitRunnable {
             return;
         }
         // Apply heuristic pseudonymization before building the GPT prompt
-        HeuristicPreprocessor pre = new HeuristicPreprocessor(database, logger);
+        HeuristicPreprocessor pre = new HeuristicPreprocessor(database, chatStore, logger);
         messages = pre.preprocess(messages);
-        StringBuilder data = new StringBuilder();
-        for (ChatMessage msg : messages) {
-            data.append("[" + msg.aliasId + "]" + ": " + msg.message + "\n");
-        }
         java.util.Map<String, String> vars = new java.util.HashMap<>();
-        vars.put("message", data.toString());
-        vars.put("rules", joinRules());
-        vars.put("flags", formatFlags());
-        gptService.submitPolicyRequest("chat_analysis", vars, null, response -> {
-            if (response == null || response.isEmpty()) {
-                return;
+        vars.put("message", "");
+        vars.put("rules", ruleService.getRulesText());
+        vars.put("flags", flagService.getPromptText());
+        String frame = gptService.buildPrompt("chat_analysis", vars);
+        if (frame == null) {
+            logger.warning("No policy found for module chat_analysis");
+            return;
+        }
+        int budget = Math.max(MIN_CHUNK_TOKENS, reputationService.getAnalysisPromptTokens() - TokenEstimator.estimate(frame));
+        ChatChunkPlanner planner = new ChatChunkPlanner(budget,
+                Duration.ofSeconds(reputationService.getAnalysisThreadGapSeconds()));
+        List<List<ChatMessage>> chunks = planner.plan(messages);
+        if (chunks.size() > 1) {
+            logger.info("Chat analysis of " + messages.size() + " messages split into " + chunks.size() + " chunks");
+        }
+        String[] chatlogs = new String[chunks.size()];
+        for (int i = 0; i < chunks.size(); i++) {
+            StringBuilder data = new StringBuilder();
+            for (ChatMessage msg : chunks.get(i)) {
+                data.append(ChatChunkPlanner.line(msg));
+            }
+            chatlogs[i] = data.toString();
+        }
+        if (reputationService.isAnalysisStreaming()) {
+            streamAnalysis(chatlogs, vars);
+            return;
+        }
+        String[] responses = new String[chunks.size()];
+        AtomicInteger remaining = new AtomicInteger(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            java.util.Map<String, String> chunkVars = new java.util.HashMap<>(vars);
+            chunkVars.put("message", chatlogs[i]);
+            int index = i;
+            gptService.submitPolicyRequest("chat_analysis", chunkVars, null, response -> {
+                responses[index] = response;
+                if (remaining.decrementAndGet() == 0) {
+                    applyEvaluations(chatlogs, responses);
+                }
+            });
+        }
+    }
+
+    /**
+     * Streamed variant: every evaluation is applied as soon as it is
+     * complete. The tally keeps the per-analysis cap over all chunks, and a
+     * chunk whose answer starts over, fails or turns out invalid takes back
+     * what it applied, so the same chunks count as in
+     * {@link #applyEvaluations}. Unlike there, each evaluation is its own
+     * reputation event, and because every event is clamped to the score
+     * bounds on its own, the result can differ for players close to them.
+     */
+    private void streamAnalysis(String[] chatlogs, Map<String, String> vars) {
+        Map<String, ReputationFlag> flags = flagService.getFlagMap();
+        ReputationTally tally = new ReputationTally(reputationService.getMaxGainPerAnalysis());
+        List<List<JSONObject>> items = new ArrayList<>();
+        AtomicInteger remaining = new AtomicInteger(chatlogs.length);
+        AtomicInteger answered = new AtomicInteger();
+        for (int i = 0; i < chatlogs.length; i++) {
+            List<JSONObject> chunkItems = Collections.synchronizedList(new ArrayList<>());
+            items.add(chunkItems);
+            java.util.Map<String, String> chunkVars = new java.util.HashMap<>(vars);
+            chunkVars.put("message", chatlogs[i]);
+            int index = i;
+            gptService.submitPolicyStream("chat_analysis", chunkVars, null,
+                    GptBinder.evaluationStream(new GptBinder.Elements<GptEvaluation>() {
+                        @Override
+                        public void element(GptEvaluation evaluation) {
+                            Integer change = checkedChange(evaluation, flags);
+                            JSONObject item = evaluation.toJson(change != null ? change : evaluation.change);
+                            chunkItems.add(item);
+                            if (change == null) return;
+                            UUID playerUuid = resolveAlias(evaluation.player);
+                            if (playerUuid == null) return;
+                            adjust(playerUuid, tally.add(index, playerUuid, change), new JSONArray().put(item).toString());
+                        }
+
+                        @Override
+                        public void restart() {
+                            retract(tally, index, chunkItems);
+                        }
+
+                        @Override
+                        public void complete(String error) {
+                            if (error != null) {
+                                logger.warning("Invalid chat_analysis answer (chunk " + (index + 1) + "/" + chatlogs.length
+                                        + "): " + error);
+                                retract(tally, index, chunkItems);
+                            } else {
+                                answered.incrementAndGet();
+                            }
+                            if (remaining.decrementAndGet() == 0) {
+                                finishStream(chatlogs, items, answered.get(), tally);
+                            }
+                        }
+                    }));
+        }
+    }
+
+    private void finishStream(String[] chatlogs, List<List<JSONObject>> items, int answered, ReputationTally tally) {
+        JSONArray arr = new JSONArray();
+        for (List<JSONObject> chunkItems : items) {
+            synchronized (chunkItems) {
+                for (JSONObject item : chunkItems) {
+                    arr.put(item);
+                }
             }
-            if (!com.illusioncis7.opencore.gpt.GptSchemas.validate("chat_analysis", response)) {
-                logger.warning("Invalid chat_analysis schema for GPT response");
-                return;
+        }
+        if (answered == 0 && arr.isEmpty()) {
+            return;
+        }
+        if (answered < chatlogs.length) {
+            logger.warning("Chat analysis: only " + answered + " of " + chatlogs.length + " chunks answered");
+        }
+        logAnalysis(String.join("", chatlogs), new JSONObject().put("evaluations", arr).toString(), tally.players());
+    }
+
+    /** Take back what a chunk has applied so far. */
+    private void retract(ReputationTally tally, int index, List<JSONObject> chunkItems) {
+        String details;
+        synchronized (chunkItems) {
+            details = new JSONArray(chunkItems).toString();
+            chunkItems.clear();
+        }
+        for (Map.Entry<UUID, Integer> e : tally.reset(index).entrySet()) {
+            reputationService.adjustReputation(e.getKey(), e.getValue(), "chat analysis retracted", "chat", details);
+        }
+    }
+
+    private void adjust(UUID playerUuid, int delta, String details) {
+        if (delta != 0) {
+            reputationService.adjustReputation(playerUuid, delta, "chat analysis", "chat", details);
+        }
+    }
+
+    /**
+     * @return the evaluation's change clamped to its flag's bounds, null if
+     * the flag is unknown
+     */
+    private Integer checkedChange(GptEvaluation evaluation, Map<String, ReputationFlag> flags) {
+        ReputationFlag def = flags.get(evaluation.flag);
+        if (def == null) {
+            logger.warning("Unknown flag " + evaluation.flag);
+            return null;
+        }
+        int change = evaluation.change;
+        if (change < def.minChange || change > def.maxChange) {
+            int clamped = Math.min(def.maxChange, Math.max(def.minChange, change));
+            logger.warning("Change out of bounds for flag " + evaluation.flag + ": " + change + " | Clamped to " + clamped);
+            change = clamped;
+        }
+        return change;
+    }
+
+    /**
+     * Merge the evaluations of all chunks and apply them per player, so the
+     * per-analysis limits hold no matter how the chat was split. Chunks
+     * without a valid answer are skipped.
+     */
+    private void applyEvaluations(String[] chatlogs, String[] responses) {
+        List<GptEvaluation> evaluations = new ArrayList<>();
+        int answered = 0;
+        for (int i = 0; i < responses.length; i++) {
+            String response = responses[i];
+            if (response == null || response.isEmpty()) {
+                continue;
             }
             try {
-                JSONObject obj = new JSONObject(response);
-                JSONArray arr = obj.optJSONArray("evaluations");
-                if (arr == null) return;
-                Map<String, ReputationFlag> map = flagService.getFlagMap();
-                java.util.Map<UUID, java.util.List<JSONObject>> perPlayer = new java.util.HashMap<>();
-                for (int i = 0; i < arr.length(); i++) {
-                    JSONObject item = arr.getJSONObject(i);
-                    String alias = item.getString("player");
-                    String flag = item.getString("flag");
-                    int change = item.getInt("change");
-                    ReputationFlag def = map.get(flag);
-                    if (def == null) {
-                        logger.warning("Unknown flag " + flag);
-                        continue;
-                    }
-                    if (change < def.minChange || change > def.maxChange) {
-                        int clamped = Math.min(def.maxChange, Math.max(def.minChange, change));
-                        logger.warning("Change out of bounds for flag " + flag + ": " + change + " | Clamped to " + clamped);
-                        change = clamped;
-                    }
-                    item.put("change", change);
-                    UUID playerUuid = resolveAlias(alias);
-                    if (playerUuid == null) continue;
-                    perPlayer.computeIfAbsent(playerUuid, k -> new java.util.ArrayList<>()).add(item);
+                evaluations.addAll(GptBinder.evaluations(response));
+                answered++;
+            } catch (GptFormatException e) {
+                logger.warning("Invalid chat_analysis answer (chunk " + (i + 1) + "/" + responses.length + "): " + e.getMessage());
+            }
+        }
+        if (answered == 0) {
+            return;
+        }
+        if (answered < responses.length) {
+            logger.warning("Chat analysis: only " + answered + " of " + responses.length + " chunks answered");
+        }
+        try {
+            Map<String, ReputationFlag> map = flagService.getFlagMap();
+            JSONArray arr = new JSONArray();
+            java.util.Map<UUID, java.util.List<JSONObject>> perPlayer = new java.util.HashMap<>();
+            for (GptEvaluation evaluation : evaluations) {
+                Integer change = checkedChange(evaluation, map);
+                if (change == null) {
+                    arr.put(evaluation.toJson(evaluation.change));
+                    continue;
                 }
+                JSONObject item = evaluation.toJson(change);
+                arr.put(item);
+                UUID playerUuid = resolveAlias(evaluation.player);
+                if (playerUuid == null) continue;
+                perPlayer.computeIfAbsent(playerUuid, k -> new java.util.ArrayList<>()).add(item);
+            }
+
+            java.util.Set<UUID> affected = perPlayer.keySet();
+            logAnalysis(String.join("", chatlogs), new JSONObject().put("evaluations", arr).toString(), affected);
 
-                java.util.Set<UUID> affected = perPlayer.keySet();
-                logAnalysis(data.toString(), response, affected);
-
-                for (UUID uuid : perPlayer.keySet()) {
-                    int total = 0;
-                    for (JSONObject it : perPlayer.get(uuid)) {
-                        total += it.getInt("change");
-                    }
-                    int maxGain = reputationService.getMaxGainPerAnalysis();
-                    if (total > 0 && total > maxGain) {
-                        total = maxGain;
-                    }
-                    total = Math.max(-100, Math.min(100, total));
-                    reputationService.adjustReputation(uuid, total, "chat analysis", "chat",
-                            new JSONArray(perPlayer.get(uuid)).toString());
+            for (UUID uuid : perPlayer.keySet()) {
+                int total = 0;
+                for (JSONObject it : perPlayer.get(uuid)) {
+                    total += it.getInt("change");
                 }
-            } catch (Exception e) {
-                logger.warning("Failed to parse GPT chat analysis: " + e.getMessage());
+                int maxGain = reputationService.getMaxGainPerAnalysis();
+                if (total > 0 && total > maxGain) {
+                    total = maxGain;
+                }
+                total = Math.max(-100, Math.min(100, total));
+                reputationService.adjustReputation(uuid, total, "chat analysis", "chat",
+                        new JSONArray(perPlayer.get(uuid)).toString());
             }
-        });
+        } catch (Exception e) {
+            logger.warning("Failed to apply GPT chat analysis: " + e.getMessage());
+        }
     }
 
     /**
@@ -157,46 +323,17 @@ public class ChatAnalyzerTask extends BukkitRunnable {
         return null;
     }
 
-    private String joinRules() {
-        StringBuilder sb = new StringBuilder();
-        for (com.illusioncis7.opencore.rules.Rule r : ruleService.getRules()) {
-            sb.append(r.text).append("\n");
-        }
-        return sb.toString();
-    }
-
-    private String formatFlags() {
-        StringBuilder sb = new StringBuilder();
-        for (ReputationFlag f : flagService.getActiveFlags()) {
-            sb.append("[").append(f.code).append("]: ")
-                    .append(f.minChange).append(" bis ")
-                    .append(f.maxChange).append(" Punkte, ")
-                    .append(f.description).append("\n");
-        }
-        return sb.toString();
-    }
-
     private List<ChatMessage> loadMessages(Instant since) {
         List<ChatMessage> list = new ArrayList<>();
-        if (!database.isConnected()) {
+        if (!chatStore.isAvailable()) {
             return list;
         }
-        String sql = "SELECT c.id, c.player_uuid, p.alias_id, c.message, c.message_time " +
-                     "FROM chat_log c LEFT JOIN player_registry p ON c.player_uuid = p.uuid " +
-                     "WHERE c.message_time > ?";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setTimestamp(1, Timestamp.from(since));
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    long id = rs.getLong(1);
-                    UUID player = UUID.fromString(rs.getString(2));
-                    String alias = rs.getString(3);
-                    String message = rs.getString(4);
-                    Timestamp time = rs.getTimestamp(5);
-                    list.add(new ChatMessage(id, player, alias, message, time.toInstant()));
-                }
-            }
+        Map<UUID, String> aliases = new java.util.HashMap<>();
+        try {
+            chatStore.read(since, null, m -> {
+                String alias = m.alias != null ? m.alias : aliases.computeIfAbsent(m.player, this::getAlias);
+                list.add(new ChatMessage(m.id, m.player, alias, m.message, Instant.ofEpochMilli(m.time)));
+            });
         } catch (Exception e) {
             logger.warning("Failed to load chat messages: " + e.getMessage());
         }
@@ -223,14 +360,17 @@ public class ChatAnalyzerTask extends BukkitRunnable {
     private void logAnalysis(String chatlog, String json, java.util.Set<UUID> players) {
         if (!database.isConnected()) return;
         String sql = "INSERT INTO chat_analysis_log (timestamp, chatlog, json, betroffene_spieler) VALUES (?, ?, ?, ?)";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
-            ps.setString(2, chatlog);
-            ps.setString(3, json);
-            String joined = String.join(",", players.stream().map(UUID::toString).toList());
-            ps.setString(4, joined);
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+                    ps.setString(2, chatlog);
+                    ps.setString(3, json);
+                    String joined = String.join(",", players.stream().map(UUID::toString).toList());
+                    ps.setString(4, joined);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (Exception e) {
             logger.warning("Failed to log chat analysis: " + e.getMessage());
         }
@@ -0,0 +1,102 @@
+package com.illusioncis7.opencore.reputation;
+
+import com.illusioncis7.opencore.gpt.TokenEstimator;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a chat window into chunks whose prompt lines fit a token budget.
+ * Messages are first grouped into threads: a thread ends when nobody wrote
+ * for <code>threadGap</code>. Whole threads are packed into chunks in
+ * chronological order; only a thread that exceeds the budget on its own is
+ * split between messages, and a single message above the budget is cut.
+ */
+class ChatChunkPlanner {
+
+    private final int budgetTokens;
+    private final Duration threadGap;
+
+    /**
+     * @param budgetTokens tokens available for the chat lines of one prompt
+     * @param threadGap    silence that separates two threads
+     */
+    ChatChunkPlanner(int budgetTokens, Duration threadGap) {
+        this.budgetTokens = Math.max(1, budgetTokens);
+        this.threadGap = threadGap;
+    }
+
+    /** Prompt line of a message as sent to GPT. */
+    static String line(ChatAnalyzerTask.ChatMessage msg) {
+        return "[" + msg.aliasId + "]: " + msg.message + "\n";
+    }
+
+    /** @return the chunks in chronological order, empty if there are no messages */
+    List<List<ChatAnalyzerTask.ChatMessage>> plan(List<ChatAnalyzerTask.ChatMessage> messages) {
+        List<List<ChatAnalyzerTask.ChatMessage>> chunks = new ArrayList<>();
+        List<ChatAnalyzerTask.ChatMessage> current = new ArrayList<>();
+        int used = 0;
+        for (List<ChatAnalyzerTask.ChatMessage> thread : threads(messages)) {
+            int size = 0;
+            for (ChatAnalyzerTask.ChatMessage msg : thread) {
+                size += TokenEstimator.estimate(line(msg));
+            }
+            if (used + size <= budgetTokens) {
+                current.addAll(thread);
+                used += size;
+                continue;
+            }
+            if (!current.isEmpty()) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                used = 0;
+            }
+            if (size <= budgetTokens) {
+                current.addAll(thread);
+                used = size;
+                continue;
+            }
+            // the thread alone is too large: fill chunks message by message
+            for (ChatAnalyzerTask.ChatMessage msg : thread) {
+                int tokens = TokenEstimator.estimate(line(msg));
+                if (tokens > budgetTokens) {
+                    msg = cut(msg);
+                    tokens = TokenEstimator.estimate(line(msg));
+                }
+                if (used + tokens > budgetTokens && !current.isEmpty()) {
+                    chunks.add(current);
+                    current = new ArrayList<>();
+                    used = 0;
+                }
+                current.add(msg);
+                used += tokens;
+            }
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    private List<List<ChatAnalyzerTask.ChatMessage>> threads(List<ChatAnalyzerTask.ChatMessage> messages) {
+        List<List<ChatAnalyzerTask.ChatMessage>> threads = new ArrayList<>();
+        List<ChatAnalyzerTask.ChatMessage> thread = null;
+        ChatAnalyzerTask.ChatMessage previous = null;
+        for (ChatAnalyzerTask.ChatMessage msg : messages) {
+            if (thread == null || Duration.between(previous.time, msg.time).compareTo(threadGap) > 0) {
+                thread = new ArrayList<>();
+                threads.add(thread);
+            }
+            thread.add(msg);
+            previous = msg;
+        }
+        return threads;
+    }
+
+    private ChatAnalyzerTask.ChatMessage cut(ChatAnalyzerTask.ChatMessage msg) {
+        int frame = TokenEstimator.estimate(line(new ChatAnalyzerTask.ChatMessage(msg.id, msg.uuid, msg.aliasId, "", msg.time)));
+        String text = TokenEstimator.truncate(msg.message, Math.max(0, budgetTokens - frame - 1));
+        return new ChatAnalyzerTask.ChatMessage(msg.id, msg.uuid, msg.aliasId, text, msg.time);
+    }
+}
@@ -20,6 +20,8 @@ public class ChatReputationFlagService {
 
     private final Map<String, ReputationFlag> allFlags = new HashMap<>();
     private final Map<String, ReputationFlag> activeFlags = new HashMap<>();
+    /** Active flags formatted for the chat analysis prompt, rebuilt on reload. */
+    private volatile String promptText = "";
 
     public ChatReputationFlagService(JavaPlugin plugin) {
         this.plugin = plugin;
@@ -58,6 +60,21 @@ public class ChatReputationFlagService {
                 activeFlags.put(key, f);
             }
         }
+        StringBuilder sb = new StringBuilder();
+        for (ReputationFlag f : activeFlags.values()) {
+            sb.append("[").append(f.code).append("]: ")
+                    .append(f.minChange).append(" bis ")
+                    .append(f.maxChange).append(" Punkte, ")
+                    .append(f.description).append("\n");
+        }
+        promptText = sb.toString();
+    }
+
+    /**
+     * @return active flags, one per line, as used for %flags% in the chat analysis policy.
+     */
+    public String getPromptText() {
+        return promptText;
     }
 
     /**
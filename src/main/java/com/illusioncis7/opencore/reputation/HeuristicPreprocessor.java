@@ -1,6 +1,7 @@
 package com.illusioncis7.opencore.reputation;
 
 import com.illusioncis7.opencore.database.Database;
+import com.illusioncis7.opencore.logging.ChatStore;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 
@@ -18,16 +19,18 @@ import java.util.regex.Pattern;
  */
 public class HeuristicPreprocessor {
     private final Database database;
+    private final ChatStore chatStore;
     private final Logger logger;
 
-    public HeuristicPreprocessor(Database database, Logger logger) {
+    public HeuristicPreprocessor(Database database, ChatStore chatStore, Logger logger) {
         this.database = database;
+        this.chatStore = chatStore;
         this.logger = logger;
     }
 
     /**
      * Apply heuristic pseudonymization for a list of chat messages.
-     * Updates the underlying chat_log table if replacements are made.
+     * Updates the stored message if replacements are made and the chat store supports it.
      */
     public List<ChatAnalyzerTask.ChatMessage> preprocess(List<ChatAnalyzerTask.ChatMessage> chatLog) {
         Map<String, String> map = buildAliasMap(chatLog);
@@ -118,14 +121,8 @@ public class HeuristicPreprocessor {
     }
 
     private void updateMessage(long id, String newText) {
-        if (!database.isConnected()) return;
-        String sql = "UPDATE chat_log SET message = ?, message_time = ? WHERE id = ?";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, newText);
-            ps.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
-            ps.setLong(3, id);
-            ps.executeUpdate();
+        try {
+            chatStore.rewrite(id, newText);
         } catch (Exception e) {
             logger.warning("Failed to update chat message: " + e.getMessage());
         }
@@ -1,6 +1,7 @@
 package com.illusioncis7.opencore.reputation;
 
 import com.illusioncis7.opencore.database.Database;
+import com.illusioncis7.opencore.database.repository.ReputationRepository;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
@@ -18,12 +19,16 @@ import java.util.logging.Logger;
 public class ReputationService {
     private final JavaPlugin plugin;
     private final Database database;
+    private final ReputationRepository repository;
     private final Logger logger;
 
     private int minScore = -500;
     private int maxScore = 500;
     private int maxGainPerAnalysis = 10;
     private int analysisIntervalMinutes = 30;
+    private int analysisPromptTokens = 12000;
+    private int analysisThreadGapSeconds = 120;
+    private boolean analysisStreaming = false;
 
     private static class Range {
         final int min;
@@ -47,6 +52,7 @@ public class ReputationService {
     public ReputationService(JavaPlugin plugin, Database database) {
         this.plugin = plugin;
         this.database = database;
+        this.repository = new ReputationRepository(database);
         this.logger = plugin.getLogger();
         loadConfig();
     }
@@ -60,6 +66,9 @@ public class ReputationService {
             maxScore = rep.getInt("max-score", 500);
             maxGainPerAnalysis = rep.getInt("maxReputationPerAnalysis", 10);
             analysisIntervalMinutes = rep.getInt("analysis-interval-minutes", 30);
+            analysisPromptTokens = rep.getInt("analysis-prompt-tokens", 12000);
+            analysisThreadGapSeconds = rep.getInt("analysis-thread-gap-seconds", 120);
+            analysisStreaming = rep.getBoolean("analysis-streaming", false);
             ConfigurationSection changes = rep.getConfigurationSection("changes");
             if (changes != null) {
                 for (String key : changes.getKeys(false)) {
@@ -96,6 +105,21 @@ public class ReputationService {
         return analysisIntervalMinutes;
     }
 
+    /** Token budget of one chat analysis prompt, policy text included. */
+    public int getAnalysisPromptTokens() {
+        return analysisPromptTokens;
+    }
+
+    /** Silence in seconds that ends a conversation thread when chunking the chat. */
+    public int getAnalysisThreadGapSeconds() {
+        return analysisThreadGapSeconds;
+    }
+
+    /** Whether chat analysis answers are streamed and applied while they arrive. */
+    public boolean isAnalysisStreaming() {
+        return analysisStreaming;
+    }
+
     public boolean hasRange(String key) {
         return ranges.containsKey(key);
     }
@@ -107,24 +131,11 @@ public class ReputationService {
         if (delta == 0) {
             return;
         }
-        delta = Math.max(-100, Math.min(100, delta));
-        try (Connection conn = database.getConnection()) {
-            ensurePlayer(conn, playerUuid);
-            String updateSql;
-            if (database.isSQLite()) {
-                updateSql = "UPDATE player_registry SET reputation_score = MAX(?, MIN(?, reputation_score + ?)) WHERE uuid = ?";
-            } else {
-                updateSql = "UPDATE player_registry SET reputation_score = GREATEST(?, LEAST(?, reputation_score + ?)) WHERE uuid = ?";
-            }
-            try (PreparedStatement ps = conn.prepareStatement(updateSql)) {
-                ps.setInt(1, minScore);
-                ps.setInt(2, maxScore);
-                ps.setInt(3, delta);
-                ps.setString(4, playerUuid.toString());
-                ps.executeUpdate();
-            }
-            insertEvent(conn, playerUuid, delta, reason, source, detailsJson);
-            logger.info("Reputation for " + playerUuid + " adjusted by " + delta + " due to " + reason + " from " + source);
+        int change = Math.max(-100, Math.min(100, delta));
+        try {
+            repository.adjust(new ReputationRepository.ScoreChange(playerUuid, change, reason, source, detailsJson),
+                    minScore, maxScore);
+            logger.info("Reputation for " + playerUuid + " adjusted by " + change + " due to " + reason + " from " + source);
         } catch (SQLException e) {
             logger.severe("Failed to adjust reputation: " + e.getMessage());
         }
@@ -141,14 +152,8 @@ public class ReputationService {
             return;
         }
         newValue = Math.max(minScore, Math.min(maxScore, newValue));
-        try (Connection conn = database.getConnection()) {
-            ensurePlayer(conn, playerUuid);
-            String sql = "UPDATE player_registry SET reputation_score = ? WHERE uuid = ?";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setInt(1, newValue);
-                ps.setString(2, playerUuid.toString());
-                ps.executeUpdate();
-            }
+        try {
+            repository.setScore(playerUuid, newValue);
         } catch (SQLException e) {
             logger.severe("Failed to set reputation: " + e.getMessage());
         }
@@ -195,40 +200,6 @@ public class ReputationService {
         return null;
     }
 
-    private void ensurePlayer(Connection conn, UUID playerUuid) throws SQLException {
-        String checkSql = "SELECT uuid FROM player_registry WHERE uuid = ?";
-        try (PreparedStatement ps = conn.prepareStatement(checkSql)) {
-            ps.setString(1, playerUuid.toString());
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return;
-                }
-            }
-        }
-        String alias = UUID.randomUUID().toString();
-        String insertSql = "INSERT INTO player_registry (uuid, alias_id, reputation_score, reputation_rank) VALUES (?, ?, 0, 'Neuling')";
-        try (PreparedStatement ps = conn.prepareStatement(insertSql)) {
-            ps.setString(1, playerUuid.toString());
-            ps.setString(2, alias);
-            ps.executeUpdate();
-        }
-    }
-
-    private void insertEvent(Connection conn, UUID playerUuid, int delta, String reason, String source, String detailsJson) throws SQLException {
-        String eventSql = "INSERT INTO reputation_events (id, timestamp, player_uuid, `change`, reason_summary, source_module, details) VALUES (?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement ps = conn.prepareStatement(eventSql)) {
-            UUID eventId = UUID.randomUUID();
-            ps.setString(1, eventId.toString());
-            ps.setTimestamp(2, Timestamp.from(Instant.now()));
-            ps.setString(3, playerUuid.toString());
-            ps.setInt(4, delta);
-            ps.setString(5, reason);
-            ps.setString(6, source);
-            ps.setString(7, detailsJson);
-            ps.executeUpdate();
-        }
-    }
-
     public synchronized int getReputation(UUID playerUuid) {
         if (!database.isConnected()) {
             return 0;
@@ -254,7 +225,7 @@ public class ReputationService {
             return list;
         }
         String sql = "SELECT id, timestamp, `change`, reason_summary, source_module, details FROM reputation_events WHERE player_uuid = ? ORDER BY timestamp";
-        try (Connection conn = database.getConnection();
+        try (Connection conn = database.getReadConnection("player:" + playerUuid);
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, playerUuid.toString());
             try (ResultSet rs = ps.executeQuery()) {
@@ -283,7 +254,7 @@ public class ReputationService {
             return list;
         }
         String sql = "SELECT uuid, reputation_score FROM player_registry";
-        try (Connection conn = database.getConnection();
+        try (Connection conn = database.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
@@ -306,8 +277,8 @@ public class ReputationService {
         if (!database.isConnected()) {
             return;
         }
-        try (Connection conn = database.getConnection()) {
-            ensurePlayer(conn, playerUuid);
+        try {
+            repository.ensurePlayer(playerUuid);
         } catch (SQLException e) {
             logger.severe("Failed to register player: " + e.getMessage());
         }
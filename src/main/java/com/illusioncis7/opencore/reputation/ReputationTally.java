@@ -0,0 +1,74 @@
+package com.illusioncis7.opencore.reputation;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Running result of one chat analysis whose chunks are applied while they
+ * arrive. Each player's change is capped over the whole analysis exactly as
+ * if all evaluations were applied at once; the tally returns the difference
+ * to what has already been applied.
+ */
+class ReputationTally {
+
+    private final int maxGain;
+    /** Changes per chunk and player, before capping. */
+    private final Map<Integer, Map<UUID, Integer>> chunks = new HashMap<>();
+    /** Capped change already applied per player. */
+    private final Map<UUID, Integer> applied = new HashMap<>();
+
+    ReputationTally(int maxGain) {
+        this.maxGain = maxGain;
+    }
+
+    /** @return change to apply to the player now, possibly 0 */
+    synchronized int add(int chunk, UUID player, int change) {
+        chunks.computeIfAbsent(chunk, k -> new HashMap<>()).merge(player, change, Integer::sum);
+        return settle(player);
+    }
+
+    /**
+     * Forget the changes of a chunk whose answer starts over.
+     *
+     * @return changes to apply per player to undo them
+     */
+    synchronized Map<UUID, Integer> reset(int chunk) {
+        Map<UUID, Integer> removed = chunks.remove(chunk);
+        Map<UUID, Integer> corrections = new HashMap<>();
+        if (removed != null) {
+            for (UUID player : removed.keySet()) {
+                int delta = settle(player);
+                if (delta != 0) {
+                    corrections.put(player, delta);
+                }
+            }
+        }
+        return corrections;
+    }
+
+    /** @return players with changes in the analysis */
+    synchronized Set<UUID> players() {
+        Set<UUID> players = new HashSet<>();
+        for (Map<UUID, Integer> changes : chunks.values()) {
+            players.addAll(changes.keySet());
+        }
+        return players;
+    }
+
+    private int settle(UUID player) {
+        int total = 0;
+        for (Map<UUID, Integer> changes : chunks.values()) {
+            total += changes.getOrDefault(player, 0);
+        }
+        if (total > 0 && total > maxGain) {
+            total = maxGain;
+        }
+        total = Math.max(-100, Math.min(100, total));
+        int before = applied.getOrDefault(player, 0);
+        applied.put(player, total);
+        return total - before;
+    }
+}
@@ -15,9 +15,15 @@ import java.util.ArrayList;
 import com.illusioncis7.opencore.rules.RuleChange;
 
 public class RuleService {
+    /** Read-your-writes key for rule edits. */
+    private static final String RULES_KEY = "rules";
     private final JavaPlugin plugin;
     private final Database database;
     private final Logger logger;
+    /** Rules text for GPT prompts, null until built or after a change. */
+    private volatile String rulesText;
+    private volatile long rulesTextBuilt;
+    private static final long RULES_TEXT_TTL_MS = 60_000L;
 
     public RuleService(JavaPlugin plugin, Database database) {
         this.plugin = plugin;
@@ -51,16 +57,21 @@ public class RuleService {
     public Rule addRule(String text, String category) {
         if (!database.isConnected()) return null;
         String sql = "INSERT INTO server_rules (rule_text, category) VALUES (?, ?)";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, text);
-            ps.setString(2, category);
-            ps.executeUpdate();
-            try (ResultSet rs = ps.getGeneratedKeys()) {
-                if (rs.next()) {
-                    int id = rs.getInt(1);
-                    return new Rule(id, text, category);
+        try {
+            Integer id = database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setString(1, text);
+                    ps.setString(2, category);
+                    ps.executeUpdate();
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        return rs.next() ? rs.getInt(1) : null;
+                    }
                 }
+            });
+            database.markWrite(RULES_KEY);
+            rulesText = null;
+            if (id != null) {
+                return new Rule(id, text, category);
             }
         } catch (SQLException e) {
             logger.warning("Failed to add rule: " + e.getMessage());
@@ -68,11 +79,30 @@ public class RuleService {
         return null;
     }
 
+    /**
+     * All rule texts, one per line, as used in GPT prompts. Cached until a
+     * rule is changed through this service, at most for a minute so edits
+     * made directly in the database show up as well.
+     */
+    public String getRulesText() {
+        String text = rulesText;
+        if (text == null || System.currentTimeMillis() - rulesTextBuilt > RULES_TEXT_TTL_MS) {
+            StringBuilder sb = new StringBuilder();
+            for (Rule r : getRules()) {
+                sb.append(r.text).append("\n");
+            }
+            text = sb.toString();
+            rulesText = text;
+            rulesTextBuilt = System.currentTimeMillis();
+        }
+        return text;
+    }
+
     public List<Rule> getRules() {
         List<Rule> list = new ArrayList<>();
         if (!database.isConnected()) return list;
         String sql = "SELECT id, rule_text, category FROM server_rules ORDER BY id";
-        try (Connection conn = database.getConnection();
+        try (Connection conn = database.getReadConnection(RULES_KEY);
              PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
@@ -137,40 +167,48 @@ public class RuleService {
         String updateSql = "UPDATE server_rules SET rule_text = ? WHERE id = ?";
         String logSql = "INSERT INTO rule_changes (rule_id, old_text, new_text, changed_at, changed_by, suggestion_id) " +
                 "VALUES (?, ?, ?, ?, ?, ?)";
-        try (Connection conn = database.getConnection()) {
-            String oldText = null;
-            try (PreparedStatement ps = conn.prepareStatement(selectSql)) {
-                ps.setInt(1, id);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) {
-                        oldText = rs.getString(1);
-                    } else {
-                        return false;
+        try {
+            boolean updated = database.executeWrite(conn -> {
+                String oldText;
+                try (PreparedStatement ps = conn.prepareStatement(selectSql)) {
+                    ps.setInt(1, id);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            oldText = rs.getString(1);
+                        } else {
+                            return false;
+                        }
                     }
                 }
-            }
-            try (PreparedStatement ps = conn.prepareStatement(updateSql)) {
-                ps.setString(1, newText);
-                ps.setInt(2, id);
-                ps.executeUpdate();
-            }
-            try (PreparedStatement ps = conn.prepareStatement(logSql)) {
-                ps.setInt(1, id);
-                ps.setString(2, oldText);
-                ps.setString(3, newText);
-                ps.setTimestamp(4, Timestamp.from(Instant.now()));
-                if (changedBy != null) {
-                    ps.setString(5, changedBy.toString());
-                } else {
-                    ps.setNull(5, Types.VARCHAR);
+                try (PreparedStatement ps = conn.prepareStatement(updateSql)) {
+                    ps.setString(1, newText);
+                    ps.setInt(2, id);
+                    ps.executeUpdate();
                 }
-                if (suggestionId != null) {
-                    ps.setInt(6, suggestionId);
-                } else {
-                    ps.setNull(6, Types.INTEGER);
+                try (PreparedStatement ps = conn.prepareStatement(logSql)) {
+                    ps.setInt(1, id);
+                    ps.setString(2, oldText);
+                    ps.setString(3, newText);
+                    ps.setTimestamp(4, Timestamp.from(Instant.now()));
+                    if (changedBy != null) {
+                        ps.setString(5, changedBy.toString());
+                    } else {
+                        ps.setNull(5, Types.VARCHAR);
+                    }
+                    if (suggestionId != null) {
+                        ps.setInt(6, suggestionId);
+                    } else {
+                        ps.setNull(6, Types.INTEGER);
+                    }
+                    ps.executeUpdate();
                 }
-                ps.executeUpdate();
+                return true;
+            });
+            if (!updated) {
+                return false;
             }
+            database.markWrite(RULES_KEY);
+            rulesText = null;
             logger.info("Rule " + id + " updated");
             return true;
         } catch (SQLException e) {
@@ -185,10 +223,16 @@ public class RuleService {
     public boolean deleteRule(int id) {
         if (!database.isConnected()) return false;
         String sql = "DELETE FROM server_rules WHERE id = ?";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, id);
-            return ps.executeUpdate() > 0;
+        try {
+            boolean deleted = database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, id);
+                    return ps.executeUpdate();
+                }
+            }) > 0;
+            database.markWrite(RULES_KEY);
+            rulesText = null;
+            return deleted;
         } catch (SQLException e) {
             logger.warning("Failed to delete rule: " + e.getMessage());
             return false;
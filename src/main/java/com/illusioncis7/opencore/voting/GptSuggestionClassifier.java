@@ -1,31 +1,113 @@
 package com.illusioncis7.opencore.voting;
 
 import com.illusioncis7.opencore.database.Database;
+import com.illusioncis7.opencore.gpt.GptBinder;
+import com.illusioncis7.opencore.gpt.GptClassification;
+import com.illusioncis7.opencore.gpt.GptFormatException;
 import com.illusioncis7.opencore.gpt.GptService;
 import com.illusioncis7.opencore.rules.RuleService;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 import java.util.logging.Logger;
 
 /**
  * Uses the central GPT service to classify suggestions by type.
+ * <p>
+ * With batching enabled, suggestions arriving within a short window are
+ * classified together through the <code>suggest_classify_batch</code> policy,
+ * so the rules text is sent once per batch instead of once per suggestion.
+ * Suggestions missing from a batch answer are classified one by one.
+ * <p>
+ * Requests are submitted as durable GPT work keyed by suggestion id. When an
+ * answer arrives after a restart, the callbacks are rebuilt through the
+ * resolver set by {@link VotingService}; suggestions that already have a type
+ * are skipped.
  */
 public class GptSuggestionClassifier {
 
+    private static final String MODULE = "suggest_classify";
+    private static final String BATCH_MODULE = "suggest_classify_batch";
+
+    private final JavaPlugin plugin;
     private final GptService gptService;
     private final Database database;
     private final Logger logger;
     private final RuleService ruleService;
 
-    public GptSuggestionClassifier(GptService gptService, Database database, RuleService ruleService, Logger logger) {
+    private final List<Pending> pending = new ArrayList<>();
+    /** Callbacks of suggestions submitted in this run, by suggestion id. */
+    private final Map<Integer, Pending> live = new ConcurrentHashMap<>();
+    private volatile IntFunction<Pending> resolver = id -> null;
+    private boolean batchEnabled;
+    private long batchWindowMs = 2000;
+    private int batchMaxSize = 10;
+
+    /** Suggestion waiting for its classification. */
+    static final class Pending {
+        final int suggestionId;
+        final String text;
+        final Runnable onConfig;
+        final Runnable onRule;
+        final Consumer<SuggestionType> after;
+
+        Pending(int suggestionId, String text, Runnable onConfig, Runnable onRule, Consumer<SuggestionType> after) {
+            this.suggestionId = suggestionId;
+            this.text = text;
+            this.onConfig = onConfig;
+            this.onRule = onRule;
+            this.after = after;
+        }
+    }
+
+    public GptSuggestionClassifier(JavaPlugin plugin, GptService gptService, Database database, RuleService ruleService) {
+        this.plugin = plugin;
         this.gptService = gptService;
         this.database = database;
         this.ruleService = ruleService;
-        this.logger = logger;
+        this.logger = plugin.getLogger();
+        gptService.registerHandler(MODULE, (requestId, payload, response) ->
+                handleSingle(payload.getInt("suggestion_id"), response));
+        gptService.registerHandler(BATCH_MODULE, (requestId, payload, response) ->
+                handleBatch(payload.getJSONArray("suggestion_ids"), response));
+    }
+
+    /**
+     * Set the lookup that rebuilds the callbacks of a suggestion classified
+     * after a restart. It returns null for suggestions that need no
+     * classification anymore.
+     */
+    void setResolver(IntFunction<Pending> resolver) {
+        this.resolver = resolver;
+    }
+
+    /** @return callbacks for the suggestion, null if it has been handled already */
+    private Pending resolve(int suggestionId) {
+        Pending p = live.remove(suggestionId);
+        return p != null ? p : resolver.apply(suggestionId);
+    }
+
+    /**
+     * Configure micro-batching.
+     *
+     * @param windowMs how long the first suggestion of a batch waits for more
+     * @param maxSize  batch size that is sent without waiting for the window
+     */
+    public synchronized void configureBatching(boolean enabled, long windowMs, int maxSize) {
+        this.batchEnabled = enabled;
+        this.batchWindowMs = Math.max(0, windowMs);
+        this.batchMaxSize = Math.max(2, maxSize);
     }
 
     /**
@@ -37,41 +119,153 @@ public class GptSuggestionClassifier {
      * @param onRule       callback executed if the suggestion is classified as RULE_CHANGE
      */
     public void classify(int suggestionId, String text, Runnable onConfig, Runnable onRule,
-                         java.util.function.Consumer<SuggestionType> after) {
-        java.util.Map<String, String> vars = new java.util.HashMap<>();
-        vars.put("s", text);
-        vars.put("rules", joinRules());
-        gptService.submitPolicyRequest("suggest_classify", vars, null, response -> {
-            if (response == null || response.isEmpty()) {
-                handleFailure(suggestionId, "Empty GPT response");
-                return;
+                         Consumer<SuggestionType> after) {
+        classify(new Pending(suggestionId, text, onConfig, onRule, after));
+    }
+
+    void classify(Pending p) {
+        List<Pending> batch = null;
+        synchronized (this) {
+            if (!batchEnabled) {
+                batch = List.of(p);
+            } else {
+                pending.add(p);
+                if (pending.size() >= batchMaxSize) {
+                    batch = takePending();
+                } else if (pending.size() == 1) {
+                    long ticks = Math.max(1L, (batchWindowMs + 49) / 50);
+                    plugin.getServer().getScheduler().runTaskLaterAsynchronously(plugin, this::flush, ticks);
+                }
             }
-            if (!com.illusioncis7.opencore.gpt.GptSchemas.validate("suggest_classify", response)) {
-                handleFailure(suggestionId, "Invalid schema");
-                return;
+        }
+        if (batch != null) {
+            send(batch);
+        }
+    }
+
+    /** Send whatever has gathered since the window opened. */
+    private void flush() {
+        List<Pending> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        send(batch);
+    }
+
+    private List<Pending> takePending() {
+        List<Pending> batch = new ArrayList<>(pending);
+        pending.clear();
+        return batch;
+    }
+
+    private void send(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (batch.size() == 1) {
+            classifySingle(batch.get(0));
+            return;
+        }
+        JSONArray items = new JSONArray();
+        for (Pending p : batch) {
+            items.put(new JSONObject().put("id", p.suggestionId).put("text", p.text));
+        }
+        Map<String, String> vars = new HashMap<>();
+        vars.put("suggestions", items.toString());
+        vars.put("rules", ruleService.getRulesText());
+        String prompt = gptService.buildPrompt(BATCH_MODULE, vars);
+        if (prompt == null) {
+            // no batch policy configured: behave as without batching
+            for (Pending p : batch) {
+                classifySingle(p);
             }
-            try {
-                JSONObject obj = new JSONObject(response);
-                String typeStr = obj.getString("suggestion_type");
-                SuggestionType type = SuggestionType.valueOf(typeStr);
-                String reasoning = obj.optString("reasoning", "");
-                double confidence = obj.optDouble("confidence", 0.0);
-
-                logger.info("GPT Klassifikation: " + type + " (" + confidence + ") – Grund: " + reasoning);
-                updateSuggestion(suggestionId, type, reasoning, confidence);
-
-                if (type == SuggestionType.CONFIG_CHANGE && onConfig != null) {
-                    onConfig.run();
-                } else if (type == SuggestionType.RULE_CHANGE && onRule != null) {
-                    onRule.run();
-                }
-                if (after != null) {
-                    after.accept(type);
-                }
-            } catch (Exception e) {
-                handleFailure(suggestionId, "Parse error: " + e.getMessage());
+            return;
+        }
+        JSONArray ids = new JSONArray();
+        for (Pending p : batch) {
+            live.put(p.suggestionId, p);
+            ids.put(p.suggestionId);
+        }
+        logger.info("Classifying " + batch.size() + " suggestions in one GPT request");
+        gptService.submitDurable(BATCH_MODULE, new JSONObject().put("suggestion_ids", ids), BATCH_MODULE, prompt, null);
+    }
+
+    private void handleBatch(JSONArray ids, String response) {
+        Map<Integer, GptClassification> results = new HashMap<>();
+        try {
+            for (GptClassification c : GptBinder.classifications(response)) {
+                results.put(c.id, c);
+            }
+        } catch (GptFormatException e) {
+            logger.warning("Batch classification failed (" + e.getMessage() + "), classifying "
+                    + ids.length() + " suggestions one by one");
+        }
+        for (int i = 0; i < ids.length(); i++) {
+            Pending p = resolve(ids.getInt(i));
+            if (p == null) {
+                continue;
+            }
+            GptClassification c = results.get(p.suggestionId);
+            if (c != null) {
+                apply(p, c);
+            } else {
+                classifySingle(p);
+            }
+        }
+    }
+
+    private void classifySingle(Pending p) {
+        Map<String, String> vars = new HashMap<>();
+        vars.put("s", p.text);
+        vars.put("rules", ruleService.getRulesText());
+        String prompt = gptService.buildPrompt(MODULE, vars);
+        if (prompt == null) {
+            logger.warning("No policy found for module " + MODULE);
+            handleFailure(p.suggestionId, "Empty GPT response");
+            return;
+        }
+        live.put(p.suggestionId, p);
+        gptService.submitDurable(MODULE, new JSONObject().put("suggestion_id", p.suggestionId), MODULE, prompt, null);
+    }
+
+    private void handleSingle(int suggestionId, String response) {
+        Pending p = resolve(suggestionId);
+        if (p == null) {
+            logger.fine("Suggestion " + suggestionId + " already classified, answer ignored");
+            return;
+        }
+        if (response == null || response.isEmpty()) {
+            handleFailure(suggestionId, "Empty GPT response");
+            return;
+        }
+        try {
+            apply(p, GptBinder.classification(response));
+        } catch (GptFormatException e) {
+            handleFailure(suggestionId, "Invalid schema: " + e.getMessage());
+        }
+    }
+
+    /** Store one classification and run the callbacks for its type. */
+    private void apply(Pending p, GptClassification c) {
+        try {
+            SuggestionType type = SuggestionType.valueOf(c.suggestionType);
+            String reasoning = c.reasoning;
+            double confidence = c.confidence;
+
+            logger.info("GPT Klassifikation: " + type + " (" + confidence + ") – Grund: " + reasoning);
+            updateSuggestion(p.suggestionId, type, reasoning, confidence);
+
+            if (type == SuggestionType.CONFIG_CHANGE && p.onConfig != null) {
+                p.onConfig.run();
+            } else if (type == SuggestionType.RULE_CHANGE && p.onRule != null) {
+                p.onRule.run();
             }
-        });
+            if (p.after != null) {
+                p.after.accept(type);
+            }
+        } catch (Exception e) {
+            handleFailure(p.suggestionId, "Parse error: " + e.getMessage());
+        }
     }
 
     private void updateSuggestion(int id, SuggestionType type, String reasoning, double confidence) {
@@ -79,14 +273,17 @@ public class GptSuggestionClassifier {
             return;
         }
         String sql = "UPDATE suggestions SET suggestion_type = ?, gpt_reasoning = ?, gpt_confidence = ?, classified_at = ? WHERE id = ?";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, type.name());
-            ps.setString(2, reasoning);
-            ps.setDouble(3, confidence);
-            ps.setTimestamp(4, Timestamp.from(Instant.now()));
-            ps.setInt(5, id);
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, type.name());
+                    ps.setString(2, reasoning);
+                    ps.setDouble(3, confidence);
+                    ps.setTimestamp(4, Timestamp.from(Instant.now()));
+                    ps.setInt(5, id);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (Exception e) {
             logger.warning("Failed to store GPT classification: " + e.getMessage());
         }
@@ -98,22 +295,17 @@ public class GptSuggestionClassifier {
             return;
         }
         String sql = "UPDATE suggestions SET gpt_reasoning = ?, classified_at = ? WHERE id = ?";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, error);
-            ps.setTimestamp(2, Timestamp.from(Instant.now()));
-            ps.setInt(3, id);
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, error);
+                    ps.setTimestamp(2, Timestamp.from(Instant.now()));
+                    ps.setInt(3, id);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (Exception e) {
             logger.warning("Failed to log classification error: " + e.getMessage());
         }
     }
-
-    private String joinRules() {
-        StringBuilder sb = new StringBuilder();
-        for (com.illusioncis7.opencore.rules.Rule r : ruleService.getRules()) {
-            sb.append(r.text).append("\n");
-        }
-        return sb.toString();
-    }
 }
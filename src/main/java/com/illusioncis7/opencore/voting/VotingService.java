@@ -2,6 +2,10 @@ package com.illusioncis7.opencore.voting;
 
 import com.illusioncis7.opencore.config.ConfigService;
 import com.illusioncis7.opencore.database.Database;
+import com.illusioncis7.opencore.database.repository.VoteRepository;
+import com.illusioncis7.opencore.gpt.GptBinder;
+import com.illusioncis7.opencore.gpt.GptFormatException;
+import com.illusioncis7.opencore.gpt.GptMapping;
 import com.illusioncis7.opencore.gpt.GptService;
 import com.illusioncis7.opencore.reputation.ReputationService;
 import com.illusioncis7.opencore.rules.RuleService;
@@ -22,6 +26,7 @@ import java.util.logging.Logger;
 public class VotingService {
     private final JavaPlugin plugin;
     private final Database database;
+    private final VoteRepository voteRepository;
     private final GptService gptService;
     private final ConfigService configService;
     private final RuleService ruleService;
@@ -61,13 +66,29 @@ public class VotingService {
                          ReputationService reputationService, PlanHook planHook) {
         this.plugin = plugin;
         this.database = database;
+        this.voteRepository = new VoteRepository(database);
         this.gptService = gptService;
         this.configService = configService;
         this.ruleService = ruleService;
         this.reputationService = reputationService;
         this.planHook = planHook;
         this.logger = plugin.getLogger();
-        this.classifier = new GptSuggestionClassifier(gptService, database, ruleService, logger);
+        this.classifier = new GptSuggestionClassifier(plugin, gptService, database, ruleService);
+        classifier.setResolver(this::storedClassification);
+        gptService.registerHandler("suggest_map", (requestId, payload, response) -> {
+            int id = payload.getInt("suggestion_id");
+            StoredSuggestion stored = loadStoredSuggestion(id);
+            if (stored != null && !stored.mapped) {
+                applyConfigMapping(id, stored.text, response);
+            }
+        });
+        gptService.registerHandler("rule_map", (requestId, payload, response) -> {
+            int id = payload.getInt("suggestion_id");
+            StoredSuggestion stored = loadStoredSuggestion(id);
+            if (stored != null && !stored.mapped) {
+                applyRuleMapping(id, stored.text, response);
+            }
+        });
         loadConfig();
     }
 
@@ -90,6 +111,8 @@ public class VotingService {
         barLength = cfg.getInt("bar-length", 20);
         voteLifetime = java.time.Duration.ofMinutes(cfg.getInt("duration-minutes", 2880));
         voteBroadcast = cfg.getString("broadcast-message", "vote.start");
+        classifier.configureBatching(cfg.getBoolean("classify-batch.enabled", false),
+                cfg.getLong("classify-batch.window-ms", 2000), cfg.getInt("classify-batch.max-size", 10));
         org.bukkit.configuration.ConfigurationSection col = cfg.getConfigurationSection("colors");
         if (col != null) {
             colorYes = org.bukkit.ChatColor.translateAlternateColorCodes('&', col.getString("yes", "&a"));
@@ -141,7 +164,12 @@ public class VotingService {
             reputationService.adjustReputation(player, delta, "suggestion submitted", "suggestion", String.valueOf(id));
         }
 
-        classifier.classify(id, text,
+        classifier.classify(classification(id, player, text));
+        return id;
+    }
+
+    private GptSuggestionClassifier.Pending classification(int id, UUID player, String text) {
+        return new GptSuggestionClassifier.Pending(id, text,
                 () -> mapConfigChange(id, player, text),
                 () -> mapRuleChange(id, player, text),
                 type -> {
@@ -151,7 +179,51 @@ public class VotingService {
                         broadcastStart(id);
                     }
                 });
-        return id;
+    }
+
+    /** Classification callbacks for a suggestion whose answer arrives after a restart. */
+    private GptSuggestionClassifier.Pending storedClassification(int id) {
+        StoredSuggestion stored = loadStoredSuggestion(id);
+        if (stored == null || stored.type != null) {
+            return null;
+        }
+        return classification(id, stored.player, stored.text);
+    }
+
+    /** Fields of a suggestion needed to resume its GPT pipeline. */
+    private static final class StoredSuggestion {
+        final UUID player;
+        final String text;
+        final String type;
+        final boolean mapped;
+
+        StoredSuggestion(UUID player, String text, String type, boolean mapped) {
+            this.player = player;
+            this.text = text;
+            this.type = type;
+            this.mapped = mapped;
+        }
+    }
+
+    private StoredSuggestion loadStoredSuggestion(int id) {
+        if (!database.isConnected()) return null;
+        String sql = "SELECT player_uuid, text, suggestion_type, parameter_id FROM suggestions WHERE id = ?";
+        try (Connection conn = database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    UUID player = UUID.fromString(rs.getString(1));
+                    String text = rs.getString(2);
+                    String type = rs.getString(3);
+                    rs.getInt(4);
+                    return new StoredSuggestion(player, text, type, !rs.wasNull());
+                }
+            }
+        } catch (SQLException e) {
+            logger.warning("Failed to load suggestion " + id + ": " + e.getMessage());
+        }
+        return null;
     }
 
     /** Submit a suggestion with pre-defined parameter and value without GPT mapping. */
@@ -170,19 +242,20 @@ public class VotingService {
     private int insertBaseSuggestion(UUID player, String text) {
         if (!database.isConnected()) return -1;
         String sql = "INSERT INTO suggestions (player_uuid, parameter_id, new_value, text, created, open) VALUES (?, ?, ?, ?, ?, 0)";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, player.toString());
-            ps.setNull(2, Types.INTEGER);
-            ps.setNull(3, Types.VARCHAR);
-            ps.setString(4, text);
-            ps.setTimestamp(5, Timestamp.from(Instant.now()));
-            ps.executeUpdate();
-            try (ResultSet rs = ps.getGeneratedKeys()) {
-                if (rs.next()) {
-                    return rs.getInt(1);
+        try {
+            return database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setString(1, player.toString());
+                    ps.setNull(2, Types.INTEGER);
+                    ps.setNull(3, Types.VARCHAR);
+                    ps.setString(4, text);
+                    ps.setTimestamp(5, Timestamp.from(Instant.now()));
+                    ps.executeUpdate();
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        return rs.next() ? rs.getInt(1) : -1;
+                    }
                 }
-            }
+            });
         } catch (SQLException e) {
             logger.severe("Failed to store suggestion: " + e.getMessage());
         }
@@ -195,91 +268,108 @@ public class VotingService {
             markClosed(suggestionId);
             return;
         }
-        gptService.submitTemplate("suggest_map", text, player, response -> {
-            if (response == null) {
-                logger.warning("GPT mapping failed for suggestion: " + text);
-                storeMappingError(suggestionId, "GPT returned no response");
-                return;
-            }
-            if (!com.illusioncis7.opencore.gpt.GptSchemas.validate("suggest_map", response)) {
-                logger.warning("Invalid GPT mapping schema for suggestion " + suggestionId);
-                storeMappingError(suggestionId, "Invalid schema");
+        String prompt = gptService.buildTemplate("suggest_map", text);
+        if (prompt == null) {
+            logger.warning("No GPT prompt found for category suggest_map");
+            applyConfigMapping(suggestionId, text, null);
+            return;
+        }
+        gptService.submitDurable("suggest_map", new JSONObject().put("suggestion_id", suggestionId),
+                "suggest_map", prompt, player);
+    }
+
+    private void applyConfigMapping(int suggestionId, String text, String response) {
+        if (response == null) {
+            logger.warning("GPT mapping failed for suggestion: " + text);
+            storeMappingError(suggestionId, "GPT returned no response");
+            return;
+        }
+        GptMapping mapping;
+        try {
+            mapping = GptBinder.configMapping(response);
+        } catch (GptFormatException e) {
+            logger.warning("Invalid GPT mapping schema for suggestion " + suggestionId + ": " + e.getMessage());
+            storeMappingError(suggestionId, "Invalid schema");
+            return;
+        }
+        try {
+            int paramId = mapping.id;
+            String value = mapping.value;
+            if (!isEditableParam(paramId)) {
+                String error = "Config parameter " + paramId + " not editable";
+                logger.warning(error);
+                storeMappingError(suggestionId, error);
                 return;
             }
-            try {
-                JSONObject obj = new JSONObject(response);
-                int paramId = obj.getInt("id");
-                String value = obj.getString("value");
-                if (!isEditableParam(paramId)) {
-                    String error = "Config parameter " + paramId + " not editable";
-                    logger.warning(error);
-                    storeMappingError(suggestionId, error);
-                    return;
-                }
-                updateMapping(suggestionId, paramId, value);
-                markOpen(suggestionId);
-                broadcastStart(suggestionId);
-            } catch (Exception e) {
-                logger.warning("Invalid GPT mapping response: " + e.getMessage());
-                storeMappingError(suggestionId, "Parse error: " + e.getMessage());
-            }
-        });
+            updateMapping(suggestionId, paramId, value);
+            markOpen(suggestionId);
+            broadcastStart(suggestionId);
+        } catch (Exception e) {
+            logger.warning("Invalid GPT mapping response: " + e.getMessage());
+            storeMappingError(suggestionId, "Parse error: " + e.getMessage());
+        }
     }
 
     private void mapRuleChange(int suggestionId, UUID player, String text) {
         java.util.Map<String, String> vars = new java.util.HashMap<>();
         vars.put("s", text);
-        vars.put("rules", joinRules());
-        gptService.submitPolicyRequest("rule_map", vars, player, response -> {
-            if (response == null) {
-                logger.warning("GPT mapping failed for rule suggestion: " + text);
-                storeMappingError(suggestionId, "GPT returned no response");
-                return;
-            }
-            if (!com.illusioncis7.opencore.gpt.GptSchemas.validate("rule_map", response)) {
-                logger.warning("Invalid GPT rule_map schema for suggestion " + suggestionId);
-                storeMappingError(suggestionId, "Invalid schema");
-                return;
-            }
-            try {
-                JSONObject obj = new JSONObject(response);
-                int ruleId = obj.getInt("id");
-                String newText = obj.getString("text");
-                String summary = obj.optString("summary", "");
-                int impact = obj.optInt("impact", 5);
-                updateMapping(suggestionId, ruleId, newText);
-                storeRuleInfo(suggestionId, summary, impact);
-                markOpen(suggestionId);
-                broadcastStart(suggestionId);
-            } catch (Exception e) {
-                logger.warning("Invalid GPT rule mapping response: " + e.getMessage());
-                storeMappingError(suggestionId, "Parse error: " + e.getMessage());
-            }
-        });
+        vars.put("rules", ruleService.getRulesText());
+        String prompt = gptService.buildPrompt("rule_map", vars);
+        if (prompt == null) {
+            logger.warning("No policy found for module rule_map");
+            applyRuleMapping(suggestionId, text, null);
+            return;
+        }
+        gptService.submitDurable("rule_map", new JSONObject().put("suggestion_id", suggestionId),
+                "rule_map", prompt, player);
+    }
+
+    private void applyRuleMapping(int suggestionId, String text, String response) {
+        if (response == null) {
+            logger.warning("GPT mapping failed for rule suggestion: " + text);
+            storeMappingError(suggestionId, "GPT returned no response");
+            return;
+        }
+        GptMapping mapping;
+        try {
+            mapping = GptBinder.ruleMapping(response);
+        } catch (GptFormatException e) {
+            logger.warning("Invalid GPT rule_map schema for suggestion " + suggestionId + ": " + e.getMessage());
+            storeMappingError(suggestionId, "Invalid schema");
+            return;
+        }
+        try {
+            int ruleId = mapping.id;
+            String newText = mapping.value;
+            String summary = mapping.summary;
+            int impact = mapping.impact;
+            updateMapping(suggestionId, ruleId, newText);
+            storeRuleInfo(suggestionId, summary, impact);
+            markOpen(suggestionId);
+            broadcastStart(suggestionId);
+        } catch (Exception e) {
+            logger.warning("Invalid GPT rule mapping response: " + e.getMessage());
+            storeMappingError(suggestionId, "Parse error: " + e.getMessage());
+        }
     }
 
     private void storeRuleInfo(int suggestionId, String summary, int impact) {
         if (!database.isConnected()) return;
         String sql = "UPDATE suggestions SET gpt_reasoning = ?, gpt_confidence = ? WHERE id = ?";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, summary);
-            ps.setInt(2, impact);
-            ps.setInt(3, suggestionId);
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, summary);
+                    ps.setInt(2, impact);
+                    ps.setInt(3, suggestionId);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             logger.warning("Failed to store rule info: " + e.getMessage());
         }
     }
 
-    private String joinRules() {
-        StringBuilder sb = new StringBuilder();
-        for (com.illusioncis7.opencore.rules.Rule r : ruleService.getRules()) {
-            sb.append(r.text).append("\n");
-        }
-        return sb.toString();
-    }
-
     private boolean isEditableParam(int paramId) {
         if (!database.isConnected()) return false;
         String sql = "SELECT editable FROM config_params WHERE id = ?";
@@ -300,12 +390,15 @@ public class VotingService {
     private void storeMappingError(int suggestionId, String error) {
         if (!database.isConnected()) return;
         String sql = "UPDATE suggestions SET gpt_reasoning = ?, classified_at = ? WHERE id = ?";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, error);
-            ps.setTimestamp(2, Timestamp.from(Instant.now()));
-            ps.setInt(3, suggestionId);
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, error);
+                    ps.setTimestamp(2, Timestamp.from(Instant.now()));
+                    ps.setInt(3, suggestionId);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             logger.warning("Failed to log mapping error: " + e.getMessage());
         }
@@ -314,12 +407,15 @@ public class VotingService {
     private void updateMapping(int suggestionId, int paramId, String value) {
         if (!database.isConnected()) return;
         String sql = "UPDATE suggestions SET parameter_id = ?, new_value = ? WHERE id = ?";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, paramId);
-            ps.setString(2, value);
-            ps.setInt(3, suggestionId);
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, paramId);
+                    ps.setString(2, value);
+                    ps.setInt(3, suggestionId);
+                    return ps.executeUpdate();
+                }
+            });
             logger.info("Stored suggestion " + suggestionId + " for target " + paramId);
         } catch (SQLException e) {
             logger.severe("Failed to update suggestion: " + e.getMessage());
@@ -336,7 +432,7 @@ public class VotingService {
                 "LEFT JOIN config_params c ON s.parameter_id = c.id " +
                 "LEFT JOIN server_rules r ON s.parameter_id = r.id " +
                 "WHERE s.open = 1";
-        try (Connection conn = database.getConnection();
+        try (Connection conn = database.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
@@ -383,7 +479,7 @@ public class VotingService {
                 "LEFT JOIN config_params c ON s.parameter_id = c.id " +
                 "LEFT JOIN server_rules r ON s.parameter_id = r.id " +
                 "WHERE s.open = 0";
-        try (Connection conn = database.getConnection();
+        try (Connection conn = database.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
@@ -410,23 +506,15 @@ public class VotingService {
         double yesWeight = 0.0;
         double noWeight = 0.0;
         int highRepYes = 0;
-        String voteSql = "SELECT player_uuid, vote_yes, weight FROM votes WHERE suggestion_id = ?";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(voteSql)) {
-            ps.setInt(1, suggestionId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    UUID voter = UUID.fromString(rs.getString(1));
-                    boolean yes = rs.getBoolean(2);
-                    double weight = rs.getDouble(3);
-                    if (yes) {
-                        yesWeight += weight;
-                        if (reputationService.getReputation(voter) >= 50) {
-                            highRepYes++;
-                        }
-                    } else {
-                        noWeight += weight;
+        try {
+            for (VoteRepository.Vote vote : voteRepository.findBySuggestion(suggestionId)) {
+                if (vote.yes) {
+                    yesWeight += vote.weight;
+                    if (reputationService.getReputation(vote.player) >= 50) {
+                        highRepYes++;
                     }
+                } else {
+                    noWeight += vote.weight;
                 }
             }
         } catch (SQLException e) {
@@ -486,22 +574,8 @@ public class VotingService {
         if (weight <= 0.0) {
             return false;
         }
-        String sql;
-        if (database.isSQLite()) {
-            sql = "INSERT INTO votes (suggestion_id, player_uuid, vote_yes, weight) VALUES (?, ?, ?, ?) " +
-                    "ON CONFLICT(suggestion_id, player_uuid) DO UPDATE SET " +
-                    "vote_yes=excluded.vote_yes, weight=excluded.weight";
-        } else {
-            sql = "INSERT INTO votes (suggestion_id, player_uuid, vote_yes, weight) VALUES (?, ?, ?, ?) " +
-                    "ON DUPLICATE KEY UPDATE vote_yes = VALUES(vote_yes), weight = VALUES(weight)";
-        }
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, suggestionId);
-            ps.setString(2, player.toString());
-            ps.setBoolean(3, yes);
-            ps.setDouble(4, weight);
-            ps.executeUpdate();
+        try {
+            voteRepository.upsert(new VoteRepository.Vote(suggestionId, player, yes, weight));
         } catch (SQLException e) {
             logger.severe("Failed to cast vote: " + e.getMessage());
             return false;
@@ -723,10 +797,13 @@ public class VotingService {
 
     private void markClosed(int suggestionId) {
         String sql = "UPDATE suggestions SET open = 0 WHERE id = ?";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, suggestionId);
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, suggestionId);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             logger.warning("Failed to close suggestion: " + e.getMessage());
         }
@@ -734,10 +811,13 @@ public class VotingService {
 
     private void markExpired(int suggestionId) {
         String sql = "UPDATE suggestions SET open = 0, expired = 1 WHERE id = ?";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, suggestionId);
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, suggestionId);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             logger.warning("Failed to expire suggestion: " + e.getMessage());
         }
@@ -745,10 +825,13 @@ public class VotingService {
 
     private void markOpen(int suggestionId) {
         String sql = "UPDATE suggestions SET open = 1 WHERE id = ?";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, suggestionId);
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, suggestionId);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             logger.warning("Failed to open suggestion: " + e.getMessage());
         }
@@ -36,13 +36,16 @@ public class SuggestionCommentService {
     public void addComment(int suggestionId, UUID player, String content) {
         if (!database.isConnected()) return;
         String sql = "INSERT INTO suggestion_comments (suggestion_id, player_uuid, content, timestamp) VALUES (?, ?, ?, ?)";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, suggestionId);
-            ps.setString(2, player.toString());
-            ps.setString(3, content);
-            ps.setTimestamp(4, Timestamp.from(Instant.now()));
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, suggestionId);
+                    ps.setString(2, player.toString());
+                    ps.setString(3, content);
+                    ps.setTimestamp(4, Timestamp.from(Instant.now()));
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             plugin.getLogger().warning("Failed to add comment: " + e.getMessage());
         }
@@ -55,15 +55,18 @@ public class WebTokenService {
         Instant now = Instant.now();
         Instant expires = now.plus(Duration.ofMinutes(tokenValidityMinutes));
         String sql = "INSERT INTO web_access_tokens (id, player_uuid, token, type, issued_at, expires_at, used) VALUES (?, ?, ?, ?, ?, ?, 0)";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, id);
-            ps.setString(2, player.toString());
-            ps.setString(3, token);
-            ps.setString(4, type);
-            ps.setTimestamp(5, Timestamp.from(now));
-            ps.setTimestamp(6, Timestamp.from(expires));
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, id);
+                    ps.setString(2, player.toString());
+                    ps.setString(3, token);
+                    ps.setString(4, type);
+                    ps.setTimestamp(5, Timestamp.from(now));
+                    ps.setTimestamp(6, Timestamp.from(expires));
+                    return ps.executeUpdate();
+                }
+            });
             return token;
         } catch (SQLException e) {
             plugin.getLogger().warning("Failed to store access token: " + e.getMessage());
@@ -97,24 +100,28 @@ public class WebTokenService {
         cleanupExpiredTokens();
         if (!database.isConnected()) return null;
         String sql = "SELECT id, player_uuid, type, expires_at, used FROM web_access_tokens WHERE token = ?";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, token);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    boolean used = rs.getBoolean("used");
-                    String t = rs.getString("type");
-                    Timestamp exp = rs.getTimestamp("expires_at");
-                    if (!used && (type == null || type.equals(t)) && exp.toInstant().isAfter(Instant.now())) {
-                        String id = rs.getString("id");
-                        try (PreparedStatement upd = conn.prepareStatement("UPDATE web_access_tokens SET used = 1 WHERE id = ?")) {
-                            upd.setString(1, id);
-                            upd.executeUpdate();
+        try {
+            return database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, token);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            boolean used = rs.getBoolean("used");
+                            String t = rs.getString("type");
+                            Timestamp exp = rs.getTimestamp("expires_at");
+                            if (!used && (type == null || type.equals(t)) && exp.toInstant().isAfter(Instant.now())) {
+                                String id = rs.getString("id");
+                                try (PreparedStatement upd = conn.prepareStatement("UPDATE web_access_tokens SET used = 1 WHERE id = ?")) {
+                                    upd.setString(1, id);
+                                    upd.executeUpdate();
+                                }
+                                return UUID.fromString(rs.getString("player_uuid"));
+                            }
                         }
-                        return UUID.fromString(rs.getString("player_uuid"));
                     }
                 }
-            }
+                return null;
+            });
         } catch (SQLException e) {
             plugin.getLogger().warning("Failed to validate token: " + e.getMessage());
         }
@@ -156,10 +163,13 @@ public class WebTokenService {
     public void cleanupExpiredTokens() {
         if (!database.isConnected()) return;
         String sql = "DELETE FROM web_access_tokens WHERE expires_at < ? OR used = 1";
-        try (Connection conn = database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setTimestamp(1, Timestamp.from(Instant.now()));
-            ps.executeUpdate();
+        try {
+            database.executeWrite(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setTimestamp(1, Timestamp.from(Instant.now()));
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             plugin.getLogger().warning("Failed to clean tokens: " + e.getMessage());
         }
@@ -0,0 +1,149 @@
+-- Baseline schema. Matches the tables created by earlier versions,
+-- so it is safe to run against existing databases.
+
+CREATE TABLE IF NOT EXISTS chat_log (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    player_uuid VARCHAR(36) NOT NULL,
+    message_time TIMESTAMP NOT NULL,
+    message TEXT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS gpt_log (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    request_uuid VARCHAR(36) NOT NULL,
+    player_uuid VARCHAR(36),
+    request_time TIMESTAMP NOT NULL,
+    prompt TEXT NOT NULL,
+    response TEXT,
+    response_time TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS config_params (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    path VARCHAR(255) NOT NULL,
+    parameter_path VARCHAR(255) NOT NULL,
+    min_value INT,
+    max_value INT,
+    recommended_range VARCHAR(255),
+    editable BOOLEAN DEFAULT 0,
+    impact_category VARCHAR(50),
+    impact_rating INT DEFAULT 5,
+    description TEXT,
+    value_type VARCHAR(20) DEFAULT 'STRING',
+    current_value TEXT,
+    UNIQUE KEY path_param (path, parameter_path)
+);
+
+CREATE TABLE IF NOT EXISTS player_registry (
+    uuid VARCHAR(36) PRIMARY KEY,
+    alias_id VARCHAR(36) NOT NULL,
+    reputation_score INT DEFAULT 0,
+    reputation_rank VARCHAR(50)
+);
+
+CREATE TABLE IF NOT EXISTS reputation_events (
+    id VARCHAR(36) PRIMARY KEY,
+    timestamp TIMESTAMP NOT NULL,
+    player_uuid VARCHAR(36) NOT NULL,
+    `change` INT NOT NULL,
+    reason_summary VARCHAR(255),
+    source_module VARCHAR(50),
+    details TEXT
+);
+
+CREATE TABLE IF NOT EXISTS reputation_guidelines (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    module VARCHAR(50) NOT NULL,
+    rule VARCHAR(255) NOT NULL,
+    points INT NOT NULL,
+    description TEXT
+);
+
+CREATE TABLE IF NOT EXISTS suggestions (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    player_uuid VARCHAR(36) NOT NULL,
+    parameter_id INT,
+    new_value VARCHAR(255),
+    text TEXT,
+    created TIMESTAMP NOT NULL,
+    open BOOLEAN DEFAULT 1,
+    expired BOOLEAN DEFAULT 0,
+    suggestion_type ENUM('CONFIG_CHANGE','RULE_CHANGE','MODERATION_REQUEST','FEATURE_REQUEST','BUG_REPORT','EVENT_PROPOSAL','OTHER'),
+    gpt_reasoning TEXT,
+    gpt_confidence FLOAT,
+    classified_at TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS suggestion_comments (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    suggestion_id INT NOT NULL,
+    player_uuid VARCHAR(36) NOT NULL,
+    content TEXT NOT NULL,
+    timestamp TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS votes (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    suggestion_id INT NOT NULL,
+    player_uuid VARCHAR(36) NOT NULL,
+    vote_yes BOOLEAN NOT NULL,
+    weight DOUBLE NOT NULL,
+    UNIQUE KEY suggestion_player (suggestion_id, player_uuid)
+);
+
+CREATE TABLE IF NOT EXISTS gpt_prompts (
+    category VARCHAR(50) PRIMARY KEY,
+    prompt TEXT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS gpt_responses (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    player_uuid VARCHAR(36) NOT NULL,
+    module VARCHAR(50),
+    response TEXT NOT NULL,
+    created TIMESTAMP NOT NULL,
+    delivered BOOLEAN DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS server_rules (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    rule_text TEXT NOT NULL,
+    category VARCHAR(50)
+);
+
+CREATE TABLE IF NOT EXISTS rule_changes (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    rule_id INT NOT NULL,
+    old_text TEXT NOT NULL,
+    new_text TEXT NOT NULL,
+    changed_at TIMESTAMP NOT NULL,
+    changed_by VARCHAR(36),
+    suggestion_id INT
+);
+
+CREATE TABLE IF NOT EXISTS config_change_history (
+    change_id VARCHAR(36) PRIMARY KEY,
+    player_uuid VARCHAR(36),
+    param_key VARCHAR(255) NOT NULL,
+    old_value TEXT,
+    new_value TEXT,
+    changed_at TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS chat_analysis_log (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    timestamp TIMESTAMP NOT NULL,
+    chatlog TEXT NOT NULL,
+    json TEXT NOT NULL,
+    betroffene_spieler TEXT
+);
+
+CREATE TABLE IF NOT EXISTS web_access_tokens (
+    id VARCHAR(36) PRIMARY KEY,
+    player_uuid VARCHAR(36) NOT NULL,
+    token TEXT NOT NULL,
+    type VARCHAR(20) NOT NULL,
+    issued_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    used BOOLEAN DEFAULT 0
+);
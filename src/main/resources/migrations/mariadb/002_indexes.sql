@@ -0,0 +1,27 @@
+-- Secondary indexes for the hot query paths.
+-- votes needs no extra index: UNIQUE(suggestion_id, player_uuid) already covers suggestion_id lookups.
+
+CREATE INDEX IF NOT EXISTS idx_chat_log_time ON chat_log (message_time);
+CREATE INDEX IF NOT EXISTS idx_chat_log_player_time ON chat_log (player_uuid, message_time);
+
+CREATE INDEX IF NOT EXISTS idx_gpt_log_request ON gpt_log (request_uuid);
+
+CREATE INDEX IF NOT EXISTS idx_player_registry_alias ON player_registry (alias_id);
+
+CREATE INDEX IF NOT EXISTS idx_reputation_events_player_time ON reputation_events (player_uuid, timestamp);
+
+CREATE INDEX IF NOT EXISTS idx_suggestions_open_created ON suggestions (open, created);
+CREATE INDEX IF NOT EXISTS idx_suggestions_created ON suggestions (created);
+CREATE INDEX IF NOT EXISTS idx_suggestions_player_open ON suggestions (player_uuid, open);
+
+CREATE INDEX IF NOT EXISTS idx_suggestion_comments_suggestion ON suggestion_comments (suggestion_id);
+
+CREATE INDEX IF NOT EXISTS idx_gpt_responses_player_delivered ON gpt_responses (player_uuid, delivered);
+CREATE INDEX IF NOT EXISTS idx_gpt_responses_player_created ON gpt_responses (player_uuid, created);
+
+CREATE INDEX IF NOT EXISTS idx_rule_changes_rule_time ON rule_changes (rule_id, changed_at);
+
+-- tokens are 32 hex characters; TEXT columns cannot be indexed without a length
+ALTER TABLE web_access_tokens MODIFY token VARCHAR(64) NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_web_access_tokens_token ON web_access_tokens (token);
+CREATE INDEX IF NOT EXISTS idx_web_access_tokens_expires ON web_access_tokens (expires_at);
@@ -0,0 +1,10 @@
+-- Progress of /importsql runs so an interrupted import can resume.
+
+CREATE TABLE IF NOT EXISTS import_checkpoints (
+    file_name VARCHAR(255) PRIMARY KEY,
+    file_size BIGINT NOT NULL,
+    file_modified BIGINT NOT NULL,
+    statements_done BIGINT NOT NULL,
+    rows_done BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
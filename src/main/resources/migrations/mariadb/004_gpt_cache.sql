@@ -0,0 +1,12 @@
+-- Persistent tier of the GPT response cache, keyed by a SHA-256 of model, temperature and prompt.
+
+CREATE TABLE IF NOT EXISTS gpt_cache (
+    cache_key CHAR(64) PRIMARY KEY,
+    module VARCHAR(50),
+    model VARCHAR(100) NOT NULL,
+    response MEDIUMTEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_gpt_cache_expires ON gpt_cache (expires_at);
@@ -0,0 +1,16 @@
+-- Durable GPT work: a row lives from submit until its handler has processed the answer.
+
+CREATE TABLE IF NOT EXISTS gpt_queue (
+    request_uuid VARCHAR(36) PRIMARY KEY,
+    handler VARCHAR(50) NOT NULL,
+    payload TEXT,
+    module VARCHAR(50),
+    priority VARCHAR(16) NOT NULL,
+    player_uuid VARCHAR(36),
+    prompt MEDIUMTEXT NOT NULL,
+    response MEDIUMTEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    answered_at TIMESTAMP NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_gpt_queue_created ON gpt_queue (created_at);
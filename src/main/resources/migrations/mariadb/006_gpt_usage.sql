@@ -0,0 +1,18 @@
+-- GPT usage per policy module and minute: outcomes, tokens, estimated cost and latency.
+
+CREATE TABLE IF NOT EXISTS gpt_usage (
+    bucket_start TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    module VARCHAR(50) NOT NULL,
+    successes INT NOT NULL DEFAULT 0,
+    failures INT NOT NULL DEFAULT 0,
+    retries INT NOT NULL DEFAULT 0,
+    rate_limited INT NOT NULL DEFAULT 0,
+    cache_hits INT NOT NULL DEFAULT 0,
+    prompt_tokens BIGINT NOT NULL DEFAULT 0,
+    completion_tokens BIGINT NOT NULL DEFAULT 0,
+    cost_usd DOUBLE NOT NULL DEFAULT 0,
+    latency_avg_ms DOUBLE NOT NULL DEFAULT 0,
+    latency_p95_ms DOUBLE NOT NULL DEFAULT 0,
+    latency_max_ms DOUBLE NOT NULL DEFAULT 0,
+    PRIMARY KEY (bucket_start, module)
+);
@@ -0,0 +1,149 @@
+-- Baseline schema. Matches the tables created by earlier versions,
+-- so it is safe to run against existing databases.
+
+CREATE TABLE IF NOT EXISTS chat_log (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    player_uuid TEXT NOT NULL,
+    message_time TIMESTAMP NOT NULL,
+    message TEXT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS gpt_log (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    request_uuid TEXT NOT NULL,
+    player_uuid TEXT,
+    request_time TIMESTAMP NOT NULL,
+    prompt TEXT NOT NULL,
+    response TEXT,
+    response_time TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS config_params (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    path TEXT NOT NULL,
+    parameter_path TEXT NOT NULL,
+    min_value INT,
+    max_value INT,
+    recommended_range TEXT,
+    editable BOOLEAN DEFAULT 0,
+    impact_category TEXT,
+    impact_rating INT DEFAULT 5,
+    description TEXT,
+    value_type TEXT DEFAULT 'STRING',
+    current_value TEXT,
+    UNIQUE(path, parameter_path)
+);
+
+CREATE TABLE IF NOT EXISTS player_registry (
+    uuid TEXT PRIMARY KEY,
+    alias_id TEXT NOT NULL,
+    reputation_score INT DEFAULT 0,
+    reputation_rank TEXT
+);
+
+CREATE TABLE IF NOT EXISTS reputation_events (
+    id TEXT PRIMARY KEY,
+    timestamp TIMESTAMP NOT NULL,
+    player_uuid TEXT NOT NULL,
+    change INT NOT NULL,
+    reason_summary TEXT,
+    source_module TEXT,
+    details TEXT
+);
+
+CREATE TABLE IF NOT EXISTS reputation_guidelines (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    module TEXT NOT NULL,
+    rule TEXT NOT NULL,
+    points INT NOT NULL,
+    description TEXT
+);
+
+CREATE TABLE IF NOT EXISTS suggestions (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    player_uuid TEXT NOT NULL,
+    parameter_id INT,
+    new_value TEXT,
+    text TEXT,
+    created TIMESTAMP NOT NULL,
+    open BOOLEAN DEFAULT 1,
+    expired BOOLEAN DEFAULT 0,
+    suggestion_type TEXT,
+    gpt_reasoning TEXT,
+    gpt_confidence FLOAT,
+    classified_at TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS suggestion_comments (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    suggestion_id INT NOT NULL,
+    player_uuid TEXT NOT NULL,
+    content TEXT NOT NULL,
+    timestamp TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS votes (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    suggestion_id INT NOT NULL,
+    player_uuid TEXT NOT NULL,
+    vote_yes BOOLEAN NOT NULL,
+    weight DOUBLE NOT NULL,
+    UNIQUE(suggestion_id, player_uuid)
+);
+
+CREATE TABLE IF NOT EXISTS gpt_prompts (
+    category TEXT PRIMARY KEY,
+    prompt TEXT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS gpt_responses (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    player_uuid TEXT NOT NULL,
+    module TEXT,
+    response TEXT NOT NULL,
+    created TIMESTAMP NOT NULL,
+    delivered BOOLEAN DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS server_rules (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    rule_text TEXT NOT NULL,
+    category TEXT
+);
+
+CREATE TABLE IF NOT EXISTS rule_changes (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    rule_id INT NOT NULL,
+    old_text TEXT NOT NULL,
+    new_text TEXT NOT NULL,
+    changed_at TIMESTAMP NOT NULL,
+    changed_by TEXT,
+    suggestion_id INT
+);
+
+CREATE TABLE IF NOT EXISTS config_change_history (
+    change_id TEXT PRIMARY KEY,
+    player_uuid TEXT,
+    param_key TEXT NOT NULL,
+    old_value TEXT,
+    new_value TEXT,
+    changed_at TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS chat_analysis_log (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    timestamp TIMESTAMP NOT NULL,
+    chatlog TEXT NOT NULL,
+    json TEXT NOT NULL,
+    betroffene_spieler TEXT
+);
+
+CREATE TABLE IF NOT EXISTS web_access_tokens (
+    id TEXT PRIMARY KEY,
+    player_uuid TEXT NOT NULL,
+    token TEXT NOT NULL,
+    type TEXT NOT NULL,
+    issued_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    used BOOLEAN DEFAULT 0
+);
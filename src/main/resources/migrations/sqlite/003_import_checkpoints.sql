@@ -0,0 +1,10 @@
+-- Progress of /importsql runs so an interrupted import can resume.
+
+CREATE TABLE IF NOT EXISTS import_checkpoints (
+    file_name TEXT PRIMARY KEY,
+    file_size INTEGER NOT NULL,
+    file_modified INTEGER NOT NULL,
+    statements_done INTEGER NOT NULL,
+    rows_done INTEGER NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
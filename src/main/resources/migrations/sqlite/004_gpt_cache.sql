@@ -0,0 +1,12 @@
+-- Persistent tier of the GPT response cache, keyed by a SHA-256 of model, temperature and prompt.
+
+CREATE TABLE IF NOT EXISTS gpt_cache (
+    cache_key TEXT PRIMARY KEY,
+    module TEXT,
+    model TEXT NOT NULL,
+    response TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_gpt_cache_expires ON gpt_cache (expires_at);
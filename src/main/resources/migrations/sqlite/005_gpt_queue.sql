@@ -0,0 +1,16 @@
+-- Durable GPT work: a row lives from submit until its handler has processed the answer.
+
+CREATE TABLE IF NOT EXISTS gpt_queue (
+    request_uuid TEXT PRIMARY KEY,
+    handler TEXT NOT NULL,
+    payload TEXT,
+    module TEXT,
+    priority TEXT NOT NULL,
+    player_uuid TEXT,
+    prompt TEXT NOT NULL,
+    response TEXT,
+    created_at TIMESTAMP NOT NULL,
+    answered_at TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_gpt_queue_created ON gpt_queue (created_at);
@@ -0,0 +1,18 @@
+-- GPT usage per policy module and minute: outcomes, tokens, estimated cost and latency.
+
+CREATE TABLE IF NOT EXISTS gpt_usage (
+    bucket_start TIMESTAMP NOT NULL,
+    module TEXT NOT NULL,
+    successes INTEGER NOT NULL DEFAULT 0,
+    failures INTEGER NOT NULL DEFAULT 0,
+    retries INTEGER NOT NULL DEFAULT 0,
+    rate_limited INTEGER NOT NULL DEFAULT 0,
+    cache_hits INTEGER NOT NULL DEFAULT 0,
+    prompt_tokens INTEGER NOT NULL DEFAULT 0,
+    completion_tokens INTEGER NOT NULL DEFAULT 0,
+    cost_usd REAL NOT NULL DEFAULT 0,
+    latency_avg_ms REAL NOT NULL DEFAULT 0,
+    latency_p95_ms REAL NOT NULL DEFAULT 0,
+    latency_max_ms REAL NOT NULL DEFAULT 0,
+    PRIMARY KEY (bucket_start, module)
+);
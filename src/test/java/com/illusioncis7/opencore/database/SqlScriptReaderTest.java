@@ -0,0 +1,49 @@
+package com.illusioncis7.opencore.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlScriptReaderTest {
+
+    private List<String> split(String script, boolean backslashEscapes) throws Exception {
+        List<String> list = new ArrayList<>();
+        try (SqlScriptReader reader = new SqlScriptReader(new StringReader(script), backslashEscapes)) {
+            String sql;
+            while ((sql = reader.next()) != null) {
+                list.add(sql);
+            }
+        }
+        return list;
+    }
+
+    @Test
+    public void testDelimitersInsideQuotesAndComments() throws Exception {
+        String script = "-- header;\n" +
+                "INSERT INTO t VALUES ('a;b', 'it''s', \"x;y\"); # note;\n" +
+                "/* block; */ UPDATE `we;ird` SET v = 'multi\nline;';\n" +
+                "DELETE FROM t";
+        List<String> statements = split(script, true);
+        assertEquals(3, statements.size());
+        assertEquals("INSERT INTO t VALUES ('a;b', 'it''s', \"x;y\")", statements.get(0));
+        assertEquals("UPDATE `we;ird` SET v = 'multi\nline;'", statements.get(1));
+        assertEquals("DELETE FROM t", statements.get(2));
+    }
+
+    @Test
+    public void testBackslashHandlingPerDialect() throws Exception {
+        assertEquals(List.of("SELECT 'a\\'b;'"), split("SELECT 'a\\'b;';", true));
+        assertEquals(List.of("SELECT 'C:\\'", "SELECT 1"), split("SELECT 'C:\\'; SELECT 1;", false));
+    }
+
+    @Test
+    public void testDelimiterDirective() throws Exception {
+        String script = "DELETE FROM t;\nDELIMITER $$\nCREATE TRIGGER x BEGIN SELECT 1; END$$\nDELIMITER ;\nSELECT 2;";
+        List<String> statements = split(script, true);
+        assertEquals(List.of("DELETE FROM t", "CREATE TRIGGER x BEGIN SELECT 1; END", "SELECT 2"), statements);
+    }
+}
@@ -0,0 +1,105 @@
+package com.illusioncis7.opencore.database;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteExecutorTest {
+
+    /** Data source whose connections accept everything and count commits. */
+    private static DataSource source(AtomicInteger commits) {
+        Savepoint savepoint = (Savepoint) Proxy.newProxyInstance(WriteExecutorTest.class.getClassLoader(),
+                new Class<?>[]{Savepoint.class}, (proxy, method, args) -> null);
+        Connection conn = (Connection) Proxy.newProxyInstance(WriteExecutorTest.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setSavepoint":
+                            return savepoint;
+                        case "commit":
+                            commits.incrementAndGet();
+                            return null;
+                        case "getAutoCommit":
+                        case "isClosed":
+                            return false;
+                        default:
+                            return null;
+                    }
+                });
+        return (DataSource) Proxy.newProxyInstance(WriteExecutorTest.class.getClassLoader(),
+                new Class<?>[]{DataSource.class}, (proxy, method, args) ->
+                        "getConnection".equals(method.getName()) ? conn : null);
+    }
+
+    @Test
+    public void runsWorkAndCommits() throws Exception {
+        AtomicInteger commits = new AtomicInteger();
+        WriteExecutor executor = new WriteExecutor(source(commits), 8, 5000, Logger.getLogger("test"));
+        try {
+            int answer = executor.execute(conn -> 42);
+            assertEquals(42, answer);
+            assertEquals(1, commits.get());
+            SQLException e = assertThrows(SQLException.class, () -> executor.execute(conn -> {
+                throw new SQLException("boom");
+            }));
+            assertEquals("boom", e.getMessage());
+        } finally {
+            executor.shutdown();
+        }
+        assertThrows(SQLException.class, () -> executor.execute(conn -> 1));
+    }
+
+    @Test
+    public void timedOutWriteIsWithdrawn() throws Exception {
+        AtomicInteger commits = new AtomicInteger();
+        WriteExecutor executor = new WriteExecutor(source(commits), 8, 200, Logger.getLogger("test"));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean ran = new AtomicBoolean();
+        try {
+            // occupy the writer so the next write waits in the queue
+            CompletableFuture<Integer> blocker = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return executor.execute(conn -> {
+                        started.countDown();
+                        try {
+                            release.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return 1;
+                    });
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertThrows(SQLException.class, () -> executor.execute(conn -> {
+                ran.set(true);
+                return 2;
+            }));
+            release.countDown();
+            int first = blocker.get(5, TimeUnit.SECONDS);
+            int next = executor.execute(conn -> 3);
+            assertEquals(1, first);
+            assertEquals(3, next);
+            assertFalse(ran.get());
+            assertEquals(2, executor.getCommittedTasks());
+            assertEquals(0, executor.getQueueDepth());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.illusioncis7.opencore.gpt;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAtFailureRateAfterMinimumCalls() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 1000, 1);
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        // three calls are not enough to judge
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.isOpen(500));
+        assertFalse(breaker.tryAcquire(500));
+    }
+
+    @Test
+    public void oldOutcomesLeaveTheWindow() {
+        CircuitBreaker breaker = new CircuitBreaker(4, 4, 0.75, 1000, 1);
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0.5, breaker.getFailureRate(), 1e-9);
+    }
+
+    @Test
+    public void halfOpenProbeDecides() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 2, 0.5, 1000, 1);
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        assertFalse(breaker.isOpen(1000));
+        assertTrue(breaker.tryAcquire(1000));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // only one probe at a time
+        assertFalse(breaker.tryAcquire(1000));
+        breaker.onFailure(1200);
+        assertTrue(breaker.isOpen(2100));
+        assertTrue(breaker.tryAcquire(2200));
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(2, breaker.getOpenedCount());
+        assertTrue(breaker.tryAcquire(2200));
+    }
+
+    @Test
+    public void ignoredProbeFreesItsSlot() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1, 1.0, 0, 1);
+        breaker.onFailure(0);
+        assertTrue(breaker.tryAcquire(0));
+        assertFalse(breaker.tryAcquire(0));
+        breaker.onIgnored();
+        assertTrue(breaker.tryAcquire(0));
+    }
+}
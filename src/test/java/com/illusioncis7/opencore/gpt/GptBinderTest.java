@@ -0,0 +1,139 @@
+package com.illusioncis7.opencore.gpt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GptBinderTest {
+
+    private static GptFormatException failure(String module, String json) {
+        try {
+            switch (module) {
+                case "chat_analysis":
+                    GptBinder.evaluations(json);
+                    break;
+                case "suggest_classify":
+                    GptBinder.classification(json);
+                    break;
+                default:
+                    GptBinder.ruleMapping(json);
+                    break;
+            }
+        } catch (GptFormatException e) {
+            return e;
+        }
+        return null;
+    }
+
+    @Test
+    public void bindsEvaluations() throws Exception {
+        List<GptEvaluation> list = GptBinder.evaluations("{\"evaluations\": [\n"
+                + "  {\"player\": \"Fox\", \"flag\": \"spam\", \"change\": -3, \"reason\": \"caps \\u00fcber alles\"},\n"
+                + "  {\"player\": \"Owl\", \"flag\": \"helpful\", \"change\": 2.0}\n"
+                + "]}");
+        assertEquals(2, list.size());
+        assertEquals("Fox", list.get(0).player);
+        assertEquals(-3, list.get(0).change);
+        assertEquals("caps über alles", list.get(0).reason);
+        assertEquals(2, list.get(1).change);
+        assertEquals("", list.get(1).reason);
+        assertEquals(0, GptBinder.evaluations("{\"evaluations\":[]}").size());
+    }
+
+    @Test
+    public void bindsSingleObjects() throws Exception {
+        GptClassification c = GptBinder.classification(
+                "{\"suggestion_type\":\"RULE_CHANGE\",\"confidence\":0.75,\"extra\":{\"a\":[1,2]}}");
+        assertEquals("RULE_CHANGE", c.suggestionType);
+        assertEquals(0.75, c.confidence, 1e-9);
+        assertEquals("", c.reasoning);
+        assertEquals(-1, c.id);
+        GptMapping rule = GptBinder.ruleMapping("{\"id\":4,\"text\":\"Kein Spam\"}");
+        assertEquals(4, rule.id);
+        assertEquals("Kein Spam", rule.value);
+        assertEquals(5, rule.impact);
+        assertEquals("x", GptBinder.configMapping("{\"id\":1,\"value\":\"x\"}").value);
+        List<GptClassification> batch = GptBinder.classifications(
+                "{\"classifications\":[{\"id\":7,\"suggestion_type\":\"OTHER\"},{\"id\":9,\"suggestion_type\":\"CONFIG_CHANGE\"}]}");
+        assertEquals(9, batch.get(1).id);
+    }
+
+    @Test
+    public void rejectsSchemaViolations() {
+        assertNotNull(failure("chat_analysis", "{\"evaluations\":[{\"player\":\"Fox\",\"flag\":\"spam\"}]}"));
+        assertNotNull(failure("chat_analysis", "{\"evaluations\":[{\"player\":\"Fox\",\"flag\":\"spam\",\"change\":\"-3\"}]}"));
+        assertNotNull(failure("chat_analysis", "{\"evaluations\":[{\"player\":\"Fox\",\"flag\":\"spam\",\"change\":1,\"x\":1}]}"));
+        assertNotNull(failure("chat_analysis", "{\"evaluations\":[],\"note\":\"\"}"));
+        assertNotNull(failure("chat_analysis", "{}"));
+        assertNotNull(failure("chat_analysis", "{\"evaluations\":[]} trailing"));
+        assertNotNull(failure("chat_analysis", "{\"evaluations\":[}"));
+        assertNotNull(failure("chat_analysis", "Here you go: {\"evaluations\":[]}"));
+        assertNotNull(failure("suggest_classify", "{\"reasoning\":\"no type\"}"));
+        assertNotNull(failure("suggest_classify", "[]"));
+        assertNotNull(failure("rule_map", "{\"id\":1.5,\"text\":\"t\"}"));
+        assertTrue(failure("chat_analysis", "{\"evaluations\":[{\"player\":\"Fox\",\"flag\":\"spam\"}]}")
+                .getMessage().contains("change"));
+    }
+
+    @Test
+    public void emitsElementsAsTheyClose() throws Exception {
+        List<GptEvaluation> seen = new ArrayList<>();
+        JsonStreamParser parser = GptBinder.parser("chat_analysis", "evaluations[]", f -> new GptEvaluation(
+                (String) f.get("player"), (String) f.get("flag"), ((Number) f.get("change")).intValue(), ""), seen::add);
+        parser.feed("{\"evaluations\":[{\"player\":\"F");
+        assertEquals(0, seen.size());
+        parser.feed("ox\",\"flag\":\"spam\",\"change\":-1");
+        assertEquals(0, seen.size());
+        parser.feed("},{\"player\":\"Owl\",\"flag\":\"spam\",\"change\":1}");
+        assertEquals(2, seen.size());
+        assertEquals("Fox", seen.get(0).player);
+        parser.feed("]}");
+        parser.end();
+        assertTrue(parser.isDone());
+    }
+
+    @Test
+    public void streamsEvaluationsAcrossRestarts() {
+        List<String> events = new ArrayList<>();
+        GptStreamListener listener = GptBinder.evaluationStream(new GptBinder.Elements<GptEvaluation>() {
+            @Override
+            public void element(GptEvaluation element) {
+                events.add(element.player);
+            }
+
+            @Override
+            public void restart() {
+                events.add("restart");
+            }
+
+            @Override
+            public void complete(String error) {
+                events.add(error == null ? "ok" : "error");
+            }
+        });
+        listener.onDelta("{\"evaluations\":[{\"player\":\"Fox\",\"flag\":\"spam\",\"change\":-1},{\"pla");
+        listener.onRestart();
+        listener.onDelta("{\"evaluations\":[{\"player\":\"Owl\",\"flag\":\"spam\",\"change\":1}");
+        listener.onDelta("]}");
+        listener.onComplete("{}");
+        assertEquals(List.of("Fox", "restart", "Owl", "ok"), events);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void parsesTrees() throws Exception {
+        Map<String, Object> tree = (Map<String, Object>) JsonStreamParser.parse(
+                "{\"a\": [1, -2.5e1, true, null, \"\\\"q\\\"\"], \"b\": {}}");
+        List<Object> a = (List<Object>) tree.get("a");
+        assertEquals(1L, a.get(0));
+        assertEquals(-25.0, (Double) a.get(1), 1e-9);
+        assertEquals(Boolean.TRUE, a.get(2));
+        assertNull(a.get(3));
+        assertEquals("\"q\"", a.get(4));
+        assertTrue(((Map<String, Object>) tree.get("b")).isEmpty());
+    }
+}
@@ -0,0 +1,65 @@
+package com.illusioncis7.opencore.gpt;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GptCassetteTest {
+
+    private static final Logger LOGGER = Logger.getLogger("test");
+
+    @Test
+    public void replaysRecordedTakesInTurn() throws Exception {
+        File file = new File(Files.createTempDirectory("cassette").toFile(), "gpt.cassette");
+        GptCassette recorder = new GptCassette(LOGGER);
+        recorder.configure(GptCassette.Mode.RECORD, file, GptCassette.Latency.NONE, 800, 3000, 1, false);
+        recorder.record("chat_analysis", "Chat:\n[a]: hi", "o4-mini", "first", 1200, 50, 10);
+        recorder.record("chat_analysis", "Chat:\n[a]: hi", "o4-mini", "second", 900, 50, 12);
+        recorder.record("rule_map", "Chat:\n[a]: hi", "o4-mini", "rule", 700, 40, 8);
+        recorder.save();
+        assertTrue(file.isFile());
+
+        GptCassette player = new GptCassette(LOGGER);
+        player.configure(GptCassette.Mode.REPLAY, file, GptCassette.Latency.RECORDED, 800, 3000, 1, false);
+        assertEquals(3, player.size());
+        // whitespace differences do not matter, the module does
+        GptCassette.Entry first = player.next("chat_analysis", "  Chat: [a]:   hi ");
+        assertEquals("first", first.answer);
+        assertEquals(1200L, player.latencyMs(first));
+        assertEquals("second", player.next("chat_analysis", "Chat:\n[a]: hi").answer);
+        assertEquals("first", player.next("chat_analysis", "Chat:\n[a]: hi").answer);
+        assertEquals("rule", player.next("rule_map", "Chat:\n[a]: hi").answer);
+        assertNull(player.next("suggest_map", "Chat:\n[a]: hi"));
+        // nothing is recorded while replaying
+        player.record("suggest_map", "x", "o4-mini", "y", 1, 1, 1);
+        assertEquals(3, player.size());
+    }
+
+    @Test
+    public void lognormalLatencyIsSeededAndCentredOnTheMedian() {
+        GptCassette.Entry entry = new GptCassette.Entry("m", "h", "o4-mini", "a", 0, 0, 0);
+        GptCassette a = new GptCassette(LOGGER);
+        GptCassette b = new GptCassette(LOGGER);
+        File none = new File("does-not-exist.cassette");
+        a.configure(GptCassette.Mode.REPLAY, none, GptCassette.Latency.LOGNORMAL, 800, 3000, 42, false);
+        b.configure(GptCassette.Mode.REPLAY, none, GptCassette.Latency.LOGNORMAL, 800, 3000, 42, false);
+        int below = 0;
+        int over95 = 0;
+        for (int i = 0; i < 2000; i++) {
+            long latency = a.latencyMs(entry);
+            assertEquals(latency, b.latencyMs(entry));
+            if (latency < 800) {
+                below++;
+            }
+            if (latency > 3000) {
+                over95++;
+            }
+        }
+        assertTrue(below > 900 && below < 1100);
+        assertTrue(over95 > 50 && over95 < 150);
+    }
+}
@@ -0,0 +1,25 @@
+package com.illusioncis7.opencore.gpt;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GptResponseCacheTest {
+
+    @Test
+    public void normalizeCollapsesWhitespace() {
+        assertEquals("a b c", GptResponseCache.normalize("  a \n\tb   c \r\n"));
+        assertEquals("", GptResponseCache.normalize(" \n "));
+    }
+
+    @Test
+    public void keyIgnoresWhitespaceButNotContent() {
+        String a = GptResponseCache.key("o4-mini", 0.8, "Regeln:\n- keine Griefer\n");
+        String b = GptResponseCache.key("o4-mini", 0.8, "Regeln: - keine   Griefer");
+        assertEquals(a, b);
+        assertEquals(64, a.length());
+        assertNotEquals(a, GptResponseCache.key("o4-mini", 0.8, "Regeln: - keine Griefer!"));
+        assertNotEquals(a, GptResponseCache.key("o4-mini", 0.2, "Regeln: - keine Griefer"));
+        assertNotEquals(a, GptResponseCache.key("gpt-4o", 0.8, "Regeln: - keine Griefer"));
+    }
+}
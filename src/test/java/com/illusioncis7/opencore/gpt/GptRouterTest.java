@@ -0,0 +1,83 @@
+package com.illusioncis7.opencore.gpt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GptRouterTest {
+
+    private static GptProvider provider(String name) {
+        return new GptProvider(name, "http://127.0.0.1/" + name, "", name, false, false,
+                new RateLimiter(0, 0), new CircuitBreaker(2, 2, 0.5, 60_000, 1));
+    }
+
+    private static Map<String, GptProvider> providers(GptProvider... list) {
+        Map<String, GptProvider> map = new LinkedHashMap<>();
+        for (GptProvider p : list) {
+            map.put(p.name, p);
+        }
+        return map;
+    }
+
+    @Test
+    public void modulesUseTheirOwnRoute() {
+        GptProvider openai = provider("openai");
+        GptProvider local = provider("local");
+        Map<String, List<String>> routes = new HashMap<>();
+        routes.put("chat_analysis", Arrays.asList("local", "openai", "missing"));
+        GptRouter router = new GptRouter(providers(openai, local), Collections.emptyList(), routes, 0.5, null);
+        assertEquals(Arrays.asList(openai, local), router.route("rule_map"));
+        assertEquals(Arrays.asList(local, openai), router.route("chat_analysis"));
+        assertEquals(local, router.primary("chat_analysis"));
+        assertEquals(openai, router.primary(null));
+    }
+
+    @Test
+    public void failedProviderIsTriedLast() {
+        GptProvider a = provider("a");
+        GptProvider b = provider("b");
+        GptRouter router = new GptRouter(providers(a, b), Collections.emptyList(), new HashMap<>(), 0.5, null);
+        long[] wait = new long[1];
+        assertEquals(b, router.acquire(null, 10, a, wait));
+        assertEquals(Arrays.asList(b, a), router.candidates(null, a));
+    }
+
+    @Test
+    public void unhealthyProvidersComeAfterHealthyOnes() {
+        GptProvider a = provider("a");
+        GptProvider b = provider("b");
+        GptProvider c = provider("c");
+        for (int i = 0; i < 5; i++) {
+            a.recordFailure();
+        }
+        for (int i = 0; i < 4; i++) {
+            b.recordFailure();
+        }
+        GptRouter router = new GptRouter(providers(a, b, c), Collections.emptyList(), new HashMap<>(), 0.5, null);
+        assertEquals(Arrays.asList(c, b, a), router.candidates(null, null));
+    }
+
+    @Test
+    public void openBreakersAreSkipped() {
+        GptProvider a = provider("a");
+        GptProvider b = provider("b");
+        GptRouter router = new GptRouter(providers(a, b), Collections.emptyList(), new HashMap<>(), 0.5, null);
+        a.breaker.onFailure();
+        a.breaker.onFailure();
+        assertFalse(router.isOpen(null));
+        long[] wait = new long[1];
+        assertEquals(b, router.acquire(null, 10, null, wait));
+        b.breaker.onFailure();
+        b.breaker.onFailure();
+        assertTrue(router.isOpen(null));
+        assertNull(router.acquire(null, 10, null, wait));
+        assertTrue(wait[0] > 0 && wait[0] <= 60_000);
+    }
+}
@@ -0,0 +1,90 @@
+package com.illusioncis7.opencore.gpt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GptSchedulerTest {
+
+    private static GptRequest request(String module, UUID player, GptPriority priority) {
+        GptRequest r = new GptRequest(UUID.randomUUID(), module, "prompt", player, null);
+        r.priority = priority;
+        return r;
+    }
+
+    @Test
+    public void interactiveGoesFirst() {
+        GptScheduler scheduler = new GptScheduler();
+        scheduler.configure(0, Map.of());
+        GptRequest background = request("chat_analysis", null, GptPriority.BACKGROUND);
+        GptRequest pipeline = request("suggest_classify", null, GptPriority.PIPELINE);
+        GptRequest interactive = request(null, UUID.randomUUID(), GptPriority.INTERACTIVE);
+        scheduler.add(background, 100);
+        scheduler.add(pipeline, 100);
+        scheduler.add(interactive, 100);
+        assertSame(interactive, scheduler.peek());
+        assertSame(interactive, scheduler.poll());
+        assertSame(pipeline, scheduler.poll());
+        assertSame(background, scheduler.poll());
+        assertNull(scheduler.poll());
+    }
+
+    @Test
+    public void floodingModuleDoesNotStarveOthers() {
+        GptScheduler scheduler = new GptScheduler();
+        scheduler.configure(0, Map.of());
+        for (int i = 0; i < 10; i++) {
+            scheduler.add(request("rule_map", null, GptPriority.PIPELINE), 100);
+        }
+        GptRequest other = request("suggest_map", null, GptPriority.PIPELINE);
+        scheduler.add(other, 100);
+        List<GptRequest> order = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            order.add(scheduler.poll());
+        }
+        assertTrue(order.contains(other), "second flow served within the first rounds");
+    }
+
+    @Test
+    public void weightsShareALevel() {
+        GptScheduler scheduler = new GptScheduler();
+        scheduler.configure(0, Map.of("heavy", 3.0));
+        for (int i = 0; i < 8; i++) {
+            scheduler.add(request("heavy", null, GptPriority.PIPELINE), 100);
+            scheduler.add(request("light", null, GptPriority.PIPELINE), 100);
+        }
+        int heavy = 0;
+        for (int i = 0; i < 8; i++) {
+            if ("heavy".equals(scheduler.poll().module)) heavy++;
+        }
+        assertEquals(6, heavy);
+    }
+
+    @Test
+    public void agingLiftsWaitingBackgroundWork() throws InterruptedException {
+        GptScheduler scheduler = new GptScheduler();
+        scheduler.configure(50, Map.of());
+        GptRequest background = request("chat_analysis", null, GptPriority.BACKGROUND);
+        scheduler.add(background, 100);
+        Thread.sleep(150);
+        scheduler.add(request("suggest_classify", null, GptPriority.PIPELINE), 100);
+        assertSame(background, scheduler.poll());
+    }
+
+    @Test
+    public void requeuedRequestStaysAtTheHead() {
+        GptScheduler scheduler = new GptScheduler();
+        GptRequest first = request("a", null, GptPriority.PIPELINE);
+        scheduler.add(first, 100);
+        scheduler.add(request("a", null, GptPriority.PIPELINE), 100);
+        assertSame(first, scheduler.poll());
+        scheduler.requeue(first);
+        assertEquals(2, scheduler.size());
+        assertSame(first, scheduler.poll());
+    }
+}
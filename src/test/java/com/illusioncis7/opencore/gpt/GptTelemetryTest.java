@@ -0,0 +1,42 @@
+package com.illusioncis7.opencore.gpt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GptTelemetryTest {
+
+    @Test
+    public void estimatesCostFromConfiguredPrices() {
+        GptTelemetry telemetry = new GptTelemetry(null, null);
+        telemetry.setPrices(Map.of("o4-mini", new double[]{1.10, 4.40}));
+        assertEquals(0.0011 + 0.0022, telemetry.cost("o4-mini", 1000, 500), 1e-12);
+        assertEquals(0.0, telemetry.cost("unknown", 1000, 500), 0.0);
+    }
+
+    @Test
+    public void countsPerModule() {
+        GptTelemetry telemetry = new GptTelemetry(null, null);
+        telemetry.setPrices(Map.of("m", new double[]{1.0, 2.0}));
+        telemetry.recordSuccess("chat_analysis", "m", 1200, 3000, 400);
+        telemetry.recordRetry("chat_analysis");
+        telemetry.recordSuccess("chat_analysis", "m", 800, 1000, 100);
+        telemetry.recordFailure(null, -1);
+        telemetry.recordCacheHit("suggest_map");
+
+        Map<String, GptTelemetry.Stats> totals = telemetry.getTotals();
+        assertEquals(3, totals.size());
+        GptTelemetry.Stats chat = totals.get("chat_analysis");
+        assertEquals(2, chat.getSuccesses());
+        assertEquals(1, chat.getRetries());
+        assertEquals(4000, chat.getPromptTokens());
+        assertEquals(500, chat.getCompletionTokens());
+        assertEquals((4000 * 1.0 + 500 * 2.0) / 1_000_000.0, chat.getCost(), 1e-12);
+        assertEquals(2, chat.latency.getCount());
+        assertEquals(1, totals.get(GptTelemetry.OTHER).getFailures());
+        assertEquals(0, totals.get(GptTelemetry.OTHER).latency.getCount());
+        assertEquals(1, totals.get("suggest_map").getCacheHits());
+    }
+}
@@ -0,0 +1,102 @@
+package com.illusioncis7.opencore.gpt;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GptTransportTest {
+
+    @Test
+    public void gzipRoundTrip() {
+        byte[] data = "{\"content\":\"aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] packed = GptTransport.gzip(data);
+        assertTrue(packed.length < data.length);
+        assertEquals(new String(data, StandardCharsets.UTF_8),
+                new String(GptTransport.gunzip(packed), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void compressesBothDirections() throws Exception {
+        AtomicReference<String> received = new AtomicReference<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", ex -> {
+            byte[] body;
+            try (InputStream in = ex.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            if ("gzip".equals(ex.getRequestHeaders().getFirst("Content-Encoding"))) {
+                body = GptTransport.gunzip(body);
+            }
+            received.set(new String(body, StandardCharsets.UTF_8));
+            byte[] answer = GptTransport.gzip("{\"ok\":true}".getBytes(StandardCharsets.UTF_8));
+            ex.getResponseHeaders().add("Content-Encoding", "gzip");
+            ex.sendResponseHeaders(200, answer.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(answer);
+            }
+        });
+        server.start();
+        GptTransport transport = new GptTransport(2, 16, 1000, true, 10);
+        try {
+            String json = "{\"prompt\":\"" + "x".repeat(200) + "\"}";
+            HttpRequest request = transport.post(HttpRequest.newBuilder()
+                    .uri(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/")), json);
+            assertEquals(HttpClient.Version.HTTP_1_1, request.version().orElse(null));
+            HttpResponse<String> response = transport.send(request).get(10, TimeUnit.SECONDS);
+            assertEquals("{\"ok\":true}", response.body());
+            assertEquals(json, received.get());
+            assertTrue(transport.getBytesSent() < transport.getBytesSentPlain());
+            assertEquals(11L, transport.getBytesReceivedPlain());
+            assertEquals(1L, transport.getExchanges());
+            assertEquals(0, transport.getActive());
+        } finally {
+            transport.shutdown();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void streamsServerSentEvents() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", ex -> {
+            ex.getRequestBody().readAllBytes();
+            ex.getResponseHeaders().add("Content-Type", "text/event-stream");
+            ex.sendResponseHeaders(200, 0);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(": keep-alive\n\ndata: {\"a\":1}\n\n".getBytes(StandardCharsets.UTF_8));
+                os.flush();
+                os.write("event: x\ndata: one\ndata:two\r\n\r\ndata: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.start();
+        GptTransport transport = new GptTransport(2, 16, 1000, false, 0);
+        try {
+            List<String> events = new CopyOnWriteArrayList<>();
+            HttpRequest request = transport.post(HttpRequest.newBuilder()
+                    .uri(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/")), "{}", false);
+            assertFalse(request.headers().firstValue("Accept-Encoding").isPresent());
+            HttpResponse<String> response = transport.stream(request, events::add).get(10, TimeUnit.SECONDS);
+            assertEquals(200, response.statusCode());
+            assertEquals("", response.body());
+            assertEquals(List.of("{\"a\":1}", "one\ntwo", "[DONE]"), events);
+        } finally {
+            transport.shutdown();
+            server.stop(0);
+        }
+    }
+}
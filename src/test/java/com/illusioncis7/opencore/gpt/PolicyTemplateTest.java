@@ -0,0 +1,32 @@
+package com.illusioncis7.opencore.gpt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PolicyTemplateTest {
+
+    @Test
+    public void rendersAllSlotsInOnePass() {
+        PolicyTemplate t = PolicyTemplate.compile("Regeln:\n%rules%\nVorschlag: %s% (%s%)");
+        assertEquals(List.of("rules", "s"), List.copyOf(t.getPlaceholders()));
+        assertEquals("Regeln:\nA\nB\nVorschlag: mehr Diamanten (mehr Diamanten)",
+                t.render(Map.of("rules", "A\nB", "s", "mehr Diamanten")));
+    }
+
+    @Test
+    public void valuesAreNotScannedForPlaceholders() {
+        PolicyTemplate t = PolicyTemplate.compile("%message% / %rules%");
+        assertEquals("spam %rules% / R", t.render(Map.of("message", "spam %rules%", "rules", "R")));
+    }
+
+    @Test
+    public void percentSignsOutsidePlaceholdersStayLiteral() {
+        PolicyTemplate t = PolicyTemplate.compile("100% sicher, 50 % Chance, %unset% und %");
+        assertEquals(List.of("unset"), List.copyOf(t.getPlaceholders()));
+        assertEquals("100% sicher, 50 % Chance, %unset% und %", t.render(Map.of()));
+    }
+}
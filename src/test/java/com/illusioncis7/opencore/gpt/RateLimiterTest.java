@@ -0,0 +1,72 @@
+package com.illusioncis7.opencore.gpt;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpHeaders;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimiterTest {
+
+    private static HttpHeaders headers(String... pairs) {
+        Map<String, List<String>> map = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            map.put(pairs[i], List.of(pairs[i + 1]));
+        }
+        return HttpHeaders.of(map, (k, v) -> true);
+    }
+
+    @Test
+    public void parsesResetDurations() {
+        assertEquals(20, RateLimiter.parseDuration("20ms"));
+        assertEquals(1500, RateLimiter.parseDuration("1.5s"));
+        assertEquals(360_000, RateLimiter.parseDuration("6m0s"));
+        assertEquals(0, RateLimiter.parseDuration(null));
+    }
+
+    @Test
+    public void unknownLimitsAreNotEnforced() {
+        RateLimiter limiter = new RateLimiter(0, 0);
+        assertEquals(0, limiter.acquire(1_000_000));
+        assertEquals(0, limiter.acquire(1_000_000));
+    }
+
+    @Test
+    public void waitsWhenTokenBudgetIsUsed() {
+        RateLimiter limiter = new RateLimiter(60, 1000);
+        assertEquals(0, limiter.acquire(600));
+        long wait = limiter.acquire(600);
+        // 200 missing tokens at 1000 per minute
+        assertTrue(wait > 11_000 && wait <= 12_000, "wait " + wait);
+        assertTrue(limiter.getRemainingTokens() >= 400);
+    }
+
+    @Test
+    public void releaseReturnsBothBudgets() {
+        RateLimiter limiter = new RateLimiter(1, 1000);
+        assertEquals(0, limiter.acquire(600));
+        assertTrue(limiter.acquire(100) > 0);
+        limiter.release(600);
+        assertEquals(0, limiter.acquire(600));
+    }
+
+    @Test
+    public void headersLowerTheRemainingBudget() {
+        RateLimiter limiter = new RateLimiter(0, 0);
+        limiter.update(headers("x-ratelimit-limit-requests", "100", "x-ratelimit-remaining-requests", "0"));
+        assertEquals(100, limiter.getRequestLimit());
+        assertTrue(limiter.acquire(1) > 0);
+    }
+
+    @Test
+    public void rateLimitPausesForRetryAfter() {
+        RateLimiter limiter = new RateLimiter(0, 0);
+        long pause = limiter.onRateLimited(headers("retry-after", "3"));
+        assertTrue(pause > 2_900 && pause <= 3_000, "pause " + pause);
+        assertTrue(limiter.acquire(1) > 0);
+        assertEquals(1, limiter.getRateLimitedCount());
+    }
+}
@@ -0,0 +1,213 @@
+package com.illusioncis7.opencore.logging;
+
+import com.illusioncis7.opencore.database.SqlScriptReader;
+import com.illusioncis7.opencore.database.repository.ChatLogRepository;
+import com.illusioncis7.opencore.database.repository.ChatLogRepository.Entry;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Compares the chat journal with the <code>chat_log</code> table on SQLite
+ * and, if a JDBC URL is given, MariaDB. Measures appending in chat-buffer
+ * sized batches and reading the newest 10% of messages, which is what the
+ * chat analyzer does every interval.
+ * <p>
+ * Usage: <code>ChatStoreBenchmark [messages] [jdbc:mariadb://host/db?user=..&amp;password=..]</code>.
+ * The MariaDB database should be a scratch database; the benchmark removes
+ * only the rows it inserted.
+ */
+public class ChatStoreBenchmark {
+
+    private static final int BATCH = 256;
+    private static final int PLAYERS = 50;
+    private static final int READ_ROUNDS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        List<Entry> entries = generate(messages);
+        long windowStart = entries.get(messages - messages / 10).time - 1;
+
+        File tmp = Files.createTempDirectory("opencore-chat-bench").toFile();
+        System.out.printf("%d messages, batch %d, window %d messages%n", messages, BATCH, messages / 10);
+
+        try {
+            run(tmp, args, entries, windowStart);
+        } finally {
+            deleteRecursively(tmp);
+        }
+    }
+
+    private static void run(File tmp, String[] args, List<Entry> entries, long windowStart) throws Exception {
+        JournalChatStore journal = new JournalChatStore(new File(tmp, "journal"), 65536, 64, 0, false,
+                Logger.getLogger("bench"));
+        try {
+            benchJournal("journal", journal, entries, windowStart);
+        } finally {
+            journal.close();
+        }
+
+        Properties props = new Properties();
+        props.setProperty("journal_mode", "WAL");
+        props.setProperty("synchronous", "NORMAL");
+        props.setProperty("mmap_size", String.valueOf(256L * 1024 * 1024));
+        props.setProperty("cache_size", String.valueOf(-64L * 1024));
+        try (Connection conn = DriverManager.getConnection(
+                "jdbc:sqlite:" + new File(tmp, "bench.db").getAbsolutePath(), props)) {
+            benchJdbc("sqlite", conn, "sqlite", entries, windowStart);
+        }
+
+        if (args.length > 1) {
+            try (Connection conn = DriverManager.getConnection(args[1])) {
+                benchJdbc("mariadb", conn, "mariadb", entries, windowStart);
+            }
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static List<Entry> generate(int count) {
+        Random random = new Random(42);
+        UUID[] players = new UUID[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = UUID.randomUUID();
+        }
+        long time = System.currentTimeMillis() - count * 100L;
+        List<Entry> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // mostly short lines, a few long ones that need the overflow area
+            int len = random.nextInt(20) == 0 ? 300 + random.nextInt(200) : 10 + random.nextInt(60);
+            StringBuilder sb = new StringBuilder(len);
+            for (int c = 0; c < len; c++) {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+            list.add(new Entry(players[random.nextInt(PLAYERS)], time, sb.toString()));
+            time += 100;
+        }
+        return list;
+    }
+
+    private static void benchJournal(String name, ChatStore store, List<Entry> entries, long windowStart)
+            throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < entries.size(); i += BATCH) {
+            store.append(entries.subList(i, Math.min(entries.size(), i + BATCH)));
+        }
+        long appendNanos = System.nanoTime() - start;
+        long[] reads = new long[READ_ROUNDS];
+        int found = 0;
+        for (int r = 0; r < READ_ROUNDS; r++) {
+            int[] counter = {0};
+            long t = System.nanoTime();
+            store.read(Instant.ofEpochMilli(windowStart), null, m -> counter[0]++);
+            reads[r] = System.nanoTime() - t;
+            found = counter[0];
+        }
+        report(name, entries.size(), appendNanos, reads, found);
+    }
+
+    private static void benchJdbc(String name, Connection conn, String dialect, List<Entry> entries,
+                                  long windowStart) throws Exception {
+        migrate(conn, dialect);
+        long start = System.nanoTime();
+        conn.setAutoCommit(false);
+        try (PreparedStatement ps = conn.prepareStatement(ChatLogRepository.INSERT_SQL)) {
+            // one transaction per batch, like ChatLogger through the repository
+            for (int i = 0; i < entries.size(); i += BATCH) {
+                for (Entry e : entries.subList(i, Math.min(entries.size(), i + BATCH))) {
+                    ps.setString(1, e.player.toString());
+                    ps.setTimestamp(2, new Timestamp(e.time));
+                    ps.setString(3, e.message);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            }
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        long appendNanos = System.nanoTime() - start;
+        long[] reads = new long[READ_ROUNDS];
+        int found = 0;
+        try (PreparedStatement ps = conn.prepareStatement(JdbcChatStore.selectSql(false))) {
+            for (int r = 0; r < READ_ROUNDS; r++) {
+                long t = System.nanoTime();
+                ps.setTimestamp(1, new Timestamp(windowStart));
+                int count = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        // materialize the same fields JdbcChatStore does
+                        UUID.fromString(rs.getString(2));
+                        rs.getString(3);
+                        rs.getString(4);
+                        rs.getTimestamp(5);
+                        count++;
+                    }
+                }
+                reads[r] = System.nanoTime() - t;
+                found = count;
+            }
+        }
+        report(name, entries.size(), appendNanos, reads, found);
+        cleanup(conn, entries);
+    }
+
+    private static void migrate(Connection conn, String dialect) throws Exception {
+        for (String script : new String[]{"001_baseline", "002_indexes"}) {
+            String path = "migrations/" + dialect + "/" + script + ".sql";
+            InputStream in = ChatStoreBenchmark.class.getClassLoader().getResourceAsStream(path);
+            if (in == null) {
+                throw new IllegalStateException("Missing " + path);
+            }
+            try (SqlScriptReader reader = new SqlScriptReader(
+                    new InputStreamReader(in, StandardCharsets.UTF_8), dialect.equals("mariadb"));
+                 Statement stmt = conn.createStatement()) {
+                String sql;
+                while ((sql = reader.next()) != null) {
+                    stmt.execute(sql);
+                }
+            }
+        }
+    }
+
+    private static void cleanup(Connection conn, List<Entry> entries) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM chat_log WHERE player_uuid = ?")) {
+            for (UUID player : entries.stream().map(e -> e.player).distinct().toList()) {
+                ps.setString(1, player.toString());
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    private static void report(String name, int messages, long appendNanos, long[] reads, int found) {
+        Arrays.sort(reads);
+        System.out.printf("%-8s append %9.0f msg/s | window read p50 %8.2f ms, max %8.2f ms (%d rows)%n",
+                name, messages / (appendNanos / 1e9), reads[reads.length / 2] / 1e6,
+                reads[reads.length - 1] / 1e6, found);
+    }
+}
@@ -0,0 +1,83 @@
+package com.illusioncis7.opencore.logging;
+
+import com.illusioncis7.opencore.database.repository.ChatLogRepository.Entry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalChatStoreTest {
+
+    @TempDir
+    File dir;
+
+    private JournalChatStore open() throws Exception {
+        return new JournalChatStore(dir, 1024, 16, 0, false, Logger.getLogger("test"));
+    }
+
+    private List<ChatStore.StoredMessage> read(ChatStore store, long from, Long to) throws Exception {
+        List<ChatStore.StoredMessage> list = new ArrayList<>();
+        store.read(Instant.ofEpochMilli(from), to != null ? Instant.ofEpochMilli(to) : null, list::add);
+        return list;
+    }
+
+    @Test
+    public void testWindowAcrossSegmentsAndReopen() throws Exception {
+        UUID player = UUID.randomUUID();
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            entries.add(new Entry(player, 1000L + i, "msg " + i));
+        }
+        JournalChatStore store = open();
+        store.append(entries.subList(0, 1500));
+        store.append(entries.subList(1500, 3000));
+
+        List<ChatStore.StoredMessage> window = read(store, 1999L, 3100L);
+        assertEquals(1101, window.size());
+        assertEquals("msg 1000", window.get(0).message);
+        assertEquals(1001L, window.get(0).id);
+        assertEquals("msg 2100", window.get(window.size() - 1).message);
+        assertEquals(player, window.get(0).player);
+        store.close();
+
+        JournalChatStore reopened = open();
+        assertEquals(3000, reopened.getMessageCount());
+        reopened.append(List.of(new Entry(player, 5000L, "after restart")));
+        List<ChatStore.StoredMessage> tail = read(reopened, 3998L, null);
+        assertEquals(2, tail.size());
+        assertEquals("after restart", tail.get(1).message);
+        assertEquals(3001L, tail.get(1).id);
+        reopened.close();
+    }
+
+    @Test
+    public void testOverflowAndOutOfOrderTimes() throws Exception {
+        UUID player = UUID.randomUUID();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append("äöü");
+        }
+        String longText = sb.toString();
+        JournalChatStore store = open();
+        store.append(List.of(new Entry(player, 100L, "short"),
+                new Entry(player, 200L, longText),
+                new Entry(player, 150L, "late")));
+        List<ChatStore.StoredMessage> all = read(store, 0L, null);
+        assertEquals(3, all.size());
+        assertEquals(longText, all.get(1).message);
+        // clamped so the time index stays sorted
+        assertEquals(200L, all.get(2).time);
+        store.close();
+
+        JournalChatStore reopened = open();
+        assertEquals(longText, read(reopened, 100L, 200L).get(0).message);
+        reopened.close();
+    }
+}
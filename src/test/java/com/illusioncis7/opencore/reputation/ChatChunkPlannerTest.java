@@ -0,0 +1,72 @@
+package com.illusioncis7.opencore.reputation;
+
+import com.illusioncis7.opencore.gpt.TokenEstimator;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChatChunkPlannerTest {
+
+    private static final Instant T0 = Instant.parse("2026-01-01T12:00:00Z");
+
+    private static ChatAnalyzerTask.ChatMessage msg(long id, int second, String text) {
+        return new ChatAnalyzerTask.ChatMessage(id, UUID.randomUUID(), "P" + (id % 3), text, T0.plusSeconds(second));
+    }
+
+    private static int tokens(List<ChatAnalyzerTask.ChatMessage> chunk) {
+        int total = 0;
+        for (ChatAnalyzerTask.ChatMessage m : chunk) {
+            total += TokenEstimator.estimate(ChatChunkPlanner.line(m));
+        }
+        return total;
+    }
+
+    @Test
+    public void smallWindowIsOneChunk() {
+        List<ChatAnalyzerTask.ChatMessage> messages = List.of(msg(1, 0, "hi"), msg(2, 5, "hallo zusammen"));
+        List<List<ChatAnalyzerTask.ChatMessage>> chunks = new ChatChunkPlanner(1000, Duration.ofMinutes(2)).plan(messages);
+        assertEquals(1, chunks.size());
+        assertEquals(messages, chunks.get(0));
+    }
+
+    @Test
+    public void threadsStayTogether() {
+        List<ChatAnalyzerTask.ChatMessage> messages = new ArrayList<>();
+        // three threads of four messages, ten minutes apart
+        for (int t = 0; t < 3; t++) {
+            for (int m = 0; m < 4; m++) {
+                messages.add(msg(t * 4 + m, t * 600 + m * 10, "wer hat noch Eisen zum Tauschen übrig"));
+            }
+        }
+        int threadTokens = tokens(messages.subList(0, 4));
+        ChatChunkPlanner planner = new ChatChunkPlanner(threadTokens * 2 - 1, Duration.ofMinutes(2));
+        List<List<ChatAnalyzerTask.ChatMessage>> chunks = planner.plan(messages);
+        assertEquals(3, chunks.size());
+        for (int t = 0; t < 3; t++) {
+            assertEquals(messages.subList(t * 4, t * 4 + 4), chunks.get(t));
+        }
+    }
+
+    @Test
+    public void oversizedThreadIsSplitWithinBudget() {
+        List<ChatAnalyzerTask.ChatMessage> messages = new ArrayList<>();
+        for (int m = 0; m < 50; m++) {
+            messages.add(msg(m, m * 5, "das ist eine ziemlich lange Nachricht im selben Gespräch"));
+        }
+        messages.add(msg(50, 255, "x".repeat(5000)));
+        List<List<ChatAnalyzerTask.ChatMessage>> chunks = new ChatChunkPlanner(100, Duration.ofMinutes(2)).plan(messages);
+        assertTrue(chunks.size() > 1);
+        int count = 0;
+        for (List<ChatAnalyzerTask.ChatMessage> chunk : chunks) {
+            assertTrue(tokens(chunk) <= 100);
+            count += chunk.size();
+        }
+        assertEquals(messages.size(), count);
+    }
+}
@@ -0,0 +1,45 @@
+package com.illusioncis7.opencore.reputation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReputationTallyTest {
+
+    @Test
+    public void capsGainsOverAllChunks() {
+        UUID fox = UUID.randomUUID();
+        ReputationTally tally = new ReputationTally(10);
+        assertEquals(6, tally.add(0, fox, 6));
+        assertEquals(4, tally.add(1, fox, 6));
+        assertEquals(0, tally.add(1, fox, 3));
+        assertEquals(-5, tally.add(0, fox, -10));
+        assertEquals(0, tally.add(2, fox, 0));
+    }
+
+    @Test
+    public void resetTakesBackAChunk() {
+        UUID fox = UUID.randomUUID();
+        UUID owl = UUID.randomUUID();
+        ReputationTally tally = new ReputationTally(10);
+        tally.add(0, fox, 8);
+        tally.add(1, fox, 8);
+        tally.add(1, owl, -3);
+        Map<UUID, Integer> corrections = tally.reset(1);
+        assertEquals(Map.of(fox, -2, owl, 3), corrections);
+        assertEquals(-8, tally.add(2, fox, -8));
+        assertTrue(tally.reset(5).isEmpty());
+        assertEquals(Set.of(fox), tally.players());
+    }
+
+    @Test
+    public void clampsLosses() {
+        UUID fox = UUID.randomUUID();
+        ReputationTally tally = new ReputationTally(10);
+        assertEquals(-100, tally.add(0, fox, -80) + tally.add(1, fox, -80));
+    }
+}
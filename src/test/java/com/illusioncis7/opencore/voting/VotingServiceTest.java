@@ -2,25 +2,26 @@ package com.illusioncis7.opencore.voting;
 
 import com.illusioncis7.opencore.config.ConfigService;
 import com.illusioncis7.opencore.database.Database;
+import com.illusioncis7.opencore.database.SqlWork;
 import com.illusioncis7.opencore.gpt.GptService;
 import com.illusioncis7.opencore.reputation.ReputationService;
 import com.illusioncis7.opencore.rules.RuleService;
 import com.illusioncis7.opencore.voting.VotingService;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.json.JSONObject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.util.UUID;
 import java.util.logging.Logger;
-import java.util.function.Consumer;
 
 import static org.mockito.Mockito.*;
 
@@ -47,36 +48,42 @@ public class VotingServiceTest {
     @BeforeEach
     public void setup() {
         when(plugin.getLogger()).thenReturn(Logger.getLogger("test"));
-        when(plugin.getConfig()).thenReturn(new org.bukkit.configuration.file.YamlConfiguration());
         service = new VotingService(plugin, database, gptService, configService, ruleService, reputationService, planHook);
     }
 
     @Test
     public void testInvalidParameterStoredAsError() throws Exception {
+        ArgumentCaptor<GptService.DurableHandler> handler = ArgumentCaptor.forClass(GptService.DurableHandler.class);
+        verify(gptService).registerHandler(eq("suggest_map"), handler.capture());
+
         Connection conn = mock(Connection.class);
+        PreparedStatement psLoad = mock(PreparedStatement.class);
         PreparedStatement psSelect = mock(PreparedStatement.class);
         PreparedStatement psError = mock(PreparedStatement.class);
+        ResultSet rsLoad = mock(ResultSet.class);
         ResultSet rs = mock(ResultSet.class);
 
+        when(database.isConnected()).thenReturn(true);
         when(database.getConnection()).thenReturn(conn);
+        when(database.executeWrite(any())).thenAnswer(inv -> inv.<SqlWork<?>>getArgument(0).run(conn));
+        when(conn.prepareStatement(ArgumentMatchers.contains("FROM suggestions"))).thenReturn(psLoad);
         when(conn.prepareStatement(ArgumentMatchers.contains("config_params"))).thenReturn(psSelect);
         when(conn.prepareStatement(ArgumentMatchers.contains("gpt_reasoning"))).thenReturn(psError);
+        when(psLoad.executeQuery()).thenReturn(rsLoad);
+        when(rsLoad.next()).thenReturn(true);
+        when(rsLoad.getString(1)).thenReturn(UUID.randomUUID().toString());
+        when(rsLoad.getString(2)).thenReturn("change setting");
+        when(rsLoad.getString(3)).thenReturn("CONFIG_CHANGE");
+        when(rsLoad.wasNull()).thenReturn(true); // not mapped yet
         when(psSelect.executeQuery()).thenReturn(rs);
         when(rs.next()).thenReturn(true);
         when(rs.getBoolean(1)).thenReturn(false); // not editable
 
-        doAnswer(inv -> {
-            Consumer<String> cb = inv.getArgument(3);
-            cb.accept("{\"id\":1,\"value\":\"new\"}");
-            return null;
-        }).when(gptService).submitTemplate(anyString(), anyString(), any(), any());
-
-        Method m = VotingService.class.getDeclaredMethod("mapConfigChange", int.class, UUID.class, String.class);
-        m.setAccessible(true);
-        m.invoke(service, 5, UUID.randomUUID(), "change setting");
+        handler.getValue().handle(UUID.randomUUID(), new JSONObject().put("suggestion_id", 5),
+                "{\"id\":1,\"value\":\"new\"}");
 
-        verify(conn, never()).prepareStatement(ArgumentMatchers.contains("parameter_id"));
-        verify(conn).prepareStatement(ArgumentMatchers.contains("gpt_reasoning"));
+        verify(conn, never()).prepareStatement(ArgumentMatchers.contains("SET parameter_id"));
+        verify(psError).setString(1, "Config parameter 1 not editable");
         verify(psError).executeUpdate();
     }
 }